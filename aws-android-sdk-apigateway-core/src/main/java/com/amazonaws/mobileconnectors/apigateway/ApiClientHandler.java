@@ -22,11 +22,11 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.Signer;
 import com.amazonaws.http.ExecutionContext;
 import com.amazonaws.http.HttpClient;
+import com.amazonaws.http.HttpClients;
 import com.amazonaws.http.HttpMethodName;
 import com.amazonaws.http.HttpRequest;
 import com.amazonaws.http.HttpRequestFactory;
 import com.amazonaws.http.HttpResponse;
-import com.amazonaws.http.UrlHttpClient;
 import com.amazonaws.mobileconnectors.apigateway.annotation.Operation;
 import com.amazonaws.mobileconnectors.apigateway.annotation.Parameter;
 import com.amazonaws.util.DateUtils;
@@ -89,7 +89,7 @@ class ApiClientHandler implements InvocationHandler {
         this.apiKey = apiKey;
         this.clientConfiguration = clientConfiguration;
 
-        client = new UrlHttpClient(this.clientConfiguration);
+        client = HttpClients.createDefault(this.clientConfiguration);
         requestFactory = new HttpRequestFactory();
     }
 
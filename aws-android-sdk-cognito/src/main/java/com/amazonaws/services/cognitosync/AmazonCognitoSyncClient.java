@@ -226,7 +226,8 @@ public class AmazonCognitoSyncClient extends AmazonWebServiceClient implements A
      */
     public AmazonCognitoSyncClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
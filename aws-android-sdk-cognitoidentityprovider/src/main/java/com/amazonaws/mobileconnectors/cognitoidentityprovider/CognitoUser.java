@@ -41,6 +41,7 @@ import com.amazonaws.mobileconnectors.cognitoidentityprovider.tokens.CognitoAcce
 import com.amazonaws.mobileconnectors.cognitoidentityprovider.tokens.CognitoIdToken;
 import com.amazonaws.mobileconnectors.cognitoidentityprovider.tokens.CognitoRefreshToken;
 import com.amazonaws.mobileconnectors.cognitoidentityprovider.util.CognitoDeviceHelper;
+import com.amazonaws.mobileconnectors.cognitoidentityprovider.util.CognitoIdentityProviderClientConfig;
 import com.amazonaws.mobileconnectors.cognitoidentityprovider.util.CognitoSecretHash;
 import com.amazonaws.mobileconnectors.cognitoidentityprovider.util.CognitoServiceConstants;
 import com.amazonaws.mobileconnectors.cognitoidentityprovider.util.Hkdf;
@@ -100,6 +101,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -198,6 +202,8 @@ public class CognitoUser {
         this.secretHash = secretHash;
         this.deviceKey = null;
         cipSession = null;
+        // Users are usually created ahead of sign-in, giving the pool time to fill
+        AuthenticationHelper.fillEphemeralKeyPool();
     }
 
     /**
@@ -769,6 +775,11 @@ public class CognitoUser {
 
     /**
      * Call this method for valid, cached tokens for this user.
+     * <p>
+     * Sessions are kept in memory and shared by all instances for this user.
+     * Concurrent callers wait for a single token refresh, and a session that
+     * is close to the refresh threshold is refreshed in the background.
+     * </p>
      *
      * @return Valid, cached tokens {@link CognitoUserSession}. {@code null}
      *         otherwise.
@@ -778,34 +789,96 @@ public class CognitoUser {
             throw new CognitoNotAuthorizedException("User-ID is null");
         }
 
-        if (cipSession != null) {
-            if (cipSession.isValidForThreshold()) {
-                return cipSession;
+        final CognitoUserSessionCache.Entry entry = CognitoUserSessionCache.getEntry(clientId,
+                userId);
+        final CognitoUserSession currentSession = entry.getSession();
+        if (currentSession != null && currentSession.isValidForThreshold()) {
+            if (!currentSession.isValidFor(CognitoIdentityProviderClientConfig
+                    .getPrefetchThreshold())) {
+                prefetchSession(entry);
             }
+            cipSession = currentSession;
+            return cipSession;
         }
 
-        final CognitoUserSession cachedTokens = readCachedTokens();
+        synchronized (entry.getRefreshLock()) {
+            // Another caller may have refreshed the session while this one waited
+            final CognitoUserSession refreshedSession = entry.getSession();
+            if (refreshedSession != null && refreshedSession.isValidForThreshold()) {
+                cipSession = refreshedSession;
+                return cipSession;
+            }
 
-        if (cachedTokens.isValidForThreshold()) {
-            cipSession = cachedTokens;
-            return cipSession;
-        }
+            final int generation = entry.getGeneration();
+            final CognitoUserSession cachedTokens = readCachedTokens();
 
-        if (cachedTokens.getRefreshToken() != null) {
-            try {
-                cipSession = refreshSession(cachedTokens);
-                cacheTokens(cipSession);
+            if (cachedTokens.isValidForThreshold()) {
+                entry.setSession(cachedTokens, generation);
+                cipSession = cachedTokens;
                 return cipSession;
-            } catch (final NotAuthorizedException nae) {
-                clearCachedTokens();
-                throw new CognitoNotAuthorizedException("User is not authenticated", nae);
-            } catch (final Exception e) {
-                throw new CognitoInternalErrorException("Failed to authenticate user", e);
+            }
+
+            if (cachedTokens.getRefreshToken() != null) {
+                try {
+                    cipSession = refreshSession(cachedTokens);
+                    if (entry.setSession(cipSession, generation)) {
+                        persistTokens(cipSession);
+                    }
+                    return cipSession;
+                } catch (final NotAuthorizedException nae) {
+                    clearCachedTokens();
+                    throw new CognitoNotAuthorizedException("User is not authenticated", nae);
+                } catch (final Exception e) {
+                    throw new CognitoInternalErrorException("Failed to authenticate user", e);
+                }
             }
         }
         throw new CognitoNotAuthorizedException("User is not authenticated");
     }
 
+    /**
+     * Refreshes the cached session in the background, unless a refresh for
+     * this user is already pending. Callers keep using the current session,
+     * which is still valid for the refresh threshold.
+     *
+     * @param entry REQUIRED: Cache entry of this user.
+     */
+    private void prefetchSession(final CognitoUserSessionCache.Entry entry) {
+        if (!entry.startPrefetch()) {
+            return;
+        }
+        final Runnable refresh = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (entry.getRefreshLock()) {
+                        final int generation = entry.getGeneration();
+                        final CognitoUserSession currentSession = entry.getSession();
+                        if (currentSession == null || currentSession.isValidFor(
+                                CognitoIdentityProviderClientConfig.getPrefetchThreshold())) {
+                            return;
+                        }
+                        final CognitoUserSession refreshedSession = refreshSession(currentSession);
+                        if (entry.setSession(refreshedSession, generation)) {
+                            persistTokens(refreshedSession);
+                        }
+                    }
+                } catch (final Exception e) {
+                    // The session is refreshed inline once it reaches the refresh threshold
+                    LOGGER.warn("Failed to refresh session in background", e);
+                } finally {
+                    entry.endPrefetch();
+                }
+            }
+        };
+        try {
+            CognitoUserSessionCache.executeRefresh(refresh);
+        } catch (final RuntimeException e) {
+            entry.endPrefetch();
+            LOGGER.warn("Failed to schedule session refresh", e);
+        }
+    }
+
     /**
      * Request to change password for this user, in background.
      * <p>
@@ -1682,6 +1755,7 @@ public class CognitoUser {
      * Removes all cached tokens.
      */
     private void clearCachedTokens() {
+        CognitoUserSessionCache.getEntry(clientId, userId).clear();
         try {
             // Clear all cached tokens.
             final SharedPreferences csiCachedTokens = context
@@ -1748,6 +1822,16 @@ public class CognitoUser {
      * @param session REQUIRED: Tokens to be cached.
      */
     private void cacheTokens(CognitoUserSession session) {
+        CognitoUserSessionCache.getEntry(clientId, userId).setSession(session);
+        persistTokens(session);
+    }
+
+    /**
+     * Writes tokens to SharedPreferences. The file is written asynchronously.
+     *
+     * @param session REQUIRED: Tokens to be stored.
+     */
+    private void persistTokens(CognitoUserSession session) {
         try {
             final SharedPreferences csiCachedTokens = context
                     .getSharedPreferences("CognitoIdentityProviderCache", 0);
@@ -2684,22 +2768,25 @@ public class CognitoUser {
     }
 
     /**
-     * Private class for SRP client side math.
+     * Class for SRP client side math.
      */
     @SuppressWarnings({
             "checkstyle:parametername", "checkstyle:localvariablename", "checkstyle:membername",
             "checkstyle:staticvariablename"
         })
-    private static class AuthenticationHelper {
+    static class AuthenticationHelper {
         private BigInteger a;
         private BigInteger A;
         private String poolName;
 
         public AuthenticationHelper(String userPoolName) {
-            do {
-                a = new BigInteger(EPHEMERAL_KEY_LENGTH, SECURE_RANDOM).mod(N);
-                A = GG.modPow(a, N);
-            } while (A.mod(N).equals(BigInteger.ZERO));
+            BigInteger[] ephemeralKey = EPHEMERAL_KEY_POOL.poll();
+            if (ephemeralKey == null) {
+                ephemeralKey = generateEphemeralKey();
+            }
+            a = ephemeralKey[0];
+            A = ephemeralKey[1];
+            fillEphemeralKeyPool();
 
             if (userPoolName.contains("_")) {
                 poolName = userPoolName.split("_", 2)[1];
@@ -2708,6 +2795,65 @@ public class CognitoUser {
             }
         }
 
+        /**
+         * Generates a private ephemeral key a and its public key A = g^a.
+         *
+         * @return {a, A}.
+         */
+        private static BigInteger[] generateEphemeralKey() {
+            BigInteger privateKey;
+            BigInteger publicKey;
+            do {
+                privateKey = new BigInteger(EPHEMERAL_KEY_LENGTH, SECURE_RANDOM).mod(N);
+                publicKey = GG.modPow(privateKey, N);
+            } while (publicKey.mod(N).equals(BigInteger.ZERO));
+            return new BigInteger[] {
+                    privateKey, publicKey
+            };
+        }
+
+        /**
+         * Tops up the pool of precomputed ephemeral keys to
+         * {@link CognitoIdentityProviderClientConfig#getEphemeralKeyPoolSize()}
+         * on a background thread. Each key is handed out once.
+         */
+        static void fillEphemeralKeyPool() {
+            final int poolSize = CognitoIdentityProviderClientConfig.getEphemeralKeyPoolSize();
+            if (poolSize <= 0) {
+                EPHEMERAL_KEY_POOL.clear();
+                return;
+            }
+            if (EPHEMERAL_KEY_POOL.size() >= poolSize
+                    || !EPHEMERAL_KEY_POOL_FILLING.compareAndSet(false, true)) {
+                return;
+            }
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (EPHEMERAL_KEY_POOL.size() < CognitoIdentityProviderClientConfig
+                                .getEphemeralKeyPoolSize()) {
+                            EPHEMERAL_KEY_POOL.offer(generateEphemeralKey());
+                        }
+                    } catch (final Exception e) {
+                        LOGGER.warn("Failed to precompute SRP ephemeral keys", e);
+                    } finally {
+                        EPHEMERAL_KEY_POOL_FILLING.set(false);
+                    }
+                }
+            }, "cognito-srp-key-thread");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+
+        /**
+         * @return the number of precomputed ephemeral keys in the pool.
+         */
+        static int getEphemeralKeyPoolCount() {
+            return EPHEMERAL_KEY_POOL.size();
+        }
+
         public BigInteger geta() {
             return a;
         }
@@ -2737,6 +2883,13 @@ public class CognitoUser {
         private static final BigInteger KK;
 
         private static final int EPHEMERAL_KEY_LENGTH = 1024;
+
+        /**
+         * Precomputed {a, A} pairs, see {@link #fillEphemeralKeyPool()}.
+         */
+        private static final BlockingQueue<BigInteger[]> EPHEMERAL_KEY_POOL =
+                new LinkedBlockingQueue<BigInteger[]>();
+        private static final AtomicBoolean EPHEMERAL_KEY_POOL_FILLING = new AtomicBoolean();
         private static final int DERIVED_KEY_SIZE = 16;
         private static final String DERIVED_KEY_INFO = "Caldera Derived Key";
 
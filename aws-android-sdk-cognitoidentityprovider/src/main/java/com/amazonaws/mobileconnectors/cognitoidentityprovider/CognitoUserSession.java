@@ -108,11 +108,21 @@ public class CognitoUserSession {
      * @return boolean to indicate if the session is valid for atleast {@link CognitoIdentityProviderClientConfig#refreshThreshold} seconds.
      */
     public boolean isValidForThreshold() {
+        return isValidFor(CognitoIdentityProviderClientConfig.getRefreshThreshold());
+    }
+
+    /**
+     * Returns true if this session is valid for more than the given time.
+     *
+     * @param millis time in milli seconds.
+     * @return boolean to indicate if the session is valid for more than {@code millis}.
+     */
+    boolean isValidFor(long millis) {
         try {
             final long currentTime = System.currentTimeMillis()
                     - SDKGlobalConfiguration.getGlobalTimeOffset() * SECS_CONVERSION;
             final long expiresInMilliSeconds = idToken.getExpiration().getTime() - currentTime;
-            return (expiresInMilliSeconds > CognitoIdentityProviderClientConfig.getRefreshThreshold());
+            return (expiresInMilliSeconds > millis);
         } catch (final Exception e) {
             return false;
         }
@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2013-2016 Amazon.com,
+ *  Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Amazon Software License (the "License").
+ *  You may not use this file except in compliance with the
+ *  License. A copy of the License is located at
+ *
+ *      http://aws.amazon.com/asl/
+ *
+ *  or in the "license" file accompanying this file. This file is
+ *  distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ *  CONDITIONS OF ANY KIND, express or implied. See the License
+ *  for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.cognitoidentityprovider;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory cache of user sessions, shared by all {@link CognitoUser}
+ * instances of an app client. The tokens in SharedPreferences remain the
+ * persistent copy; this cache saves re-reading them on every call and lets
+ * concurrent callers share a single token refresh.
+ */
+final class CognitoUserSessionCache {
+
+    /**
+     * Seconds an idle refresh thread is kept alive.
+     */
+    private static final int REFRESH_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private static final ConcurrentMap<String, Entry> ENTRIES =
+            new ConcurrentHashMap<String, Entry>();
+
+    private static Executor refreshExecutor;
+
+    private CognitoUserSessionCache() {
+    }
+
+    /**
+     * Returns the cache entry for a user, creating it if necessary.
+     *
+     * @param clientId REQUIRED: App client id.
+     * @param userId REQUIRED: User id.
+     * @return the cache entry for the user.
+     */
+    static Entry getEntry(String clientId, String userId) {
+        final String key = clientId + "." + userId;
+        Entry entry = ENTRIES.get(key);
+        if (entry == null) {
+            final Entry newEntry = new Entry();
+            entry = ENTRIES.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Runs a background token refresh.
+     *
+     * @param task REQUIRED: The refresh.
+     */
+    static synchronized void executeRefresh(Runnable task) {
+        if (refreshExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                    REFRESH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            final Thread t = new Thread(r);
+                            t.setName("cognito-user-session-refresh-thread");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            refreshExecutor = executor;
+        }
+        refreshExecutor.execute(task);
+    }
+
+    /**
+     * Cached session of one user. Token refreshes for the user hold
+     * {@link #getRefreshLock()}, so that concurrent callers wait for a single
+     * refresh instead of starting their own.
+     */
+    static final class Entry {
+        private final Object refreshLock = new Object();
+        private final AtomicBoolean prefetching = new AtomicBoolean();
+        private CognitoUserSession session;
+        /**
+         * Incremented whenever the session is cleared, so that a refresh that
+         * started before a sign-out does not bring the session back.
+         */
+        private int generation;
+
+        Object getRefreshLock() {
+            return refreshLock;
+        }
+
+        /**
+         * Claims the background refresh for this user.
+         *
+         * @return true if no background refresh was pending.
+         */
+        boolean startPrefetch() {
+            return prefetching.compareAndSet(false, true);
+        }
+
+        void endPrefetch() {
+            prefetching.set(false);
+        }
+
+        synchronized CognitoUserSession getSession() {
+            return session;
+        }
+
+        synchronized int getGeneration() {
+            return generation;
+        }
+
+        synchronized void setSession(CognitoUserSession session) {
+            this.session = session;
+        }
+
+        /**
+         * Stores a refreshed session unless the session was cleared since the
+         * refresh started.
+         *
+         * @param session REQUIRED: The refreshed session.
+         * @param expectedGeneration generation read before the refresh.
+         * @return true if the session was stored.
+         */
+        synchronized boolean setSession(CognitoUserSession session, int expectedGeneration) {
+            if (generation != expectedGeneration) {
+                return false;
+            }
+            this.session = session;
+            return true;
+        }
+
+        synchronized void clear() {
+            session = null;
+            generation++;
+        }
+    }
+}
@@ -42,6 +42,25 @@ public final class CognitoIdentityProviderClientConfig {
      */
     private static long refreshThreshold = REFRESH_THRESHOLD_DEFAULT;
 
+    private static final long PREFETCH_THRESHOLD_DEFAULT = 600 * 1000;
+
+    /**
+     * Threshold for background token refresh, in milli seconds.
+     * Tokens are refreshed in the background, while the current ones are still
+     * returned, if the session is valid for less than this value.
+     */
+    private static long prefetchThreshold = PREFETCH_THRESHOLD_DEFAULT;
+
+    /**
+     * Maximum number of precomputed SRP ephemeral keys.
+     */
+    private static final int EPHEMERAL_KEY_POOL_SIZE_MAX = 16;
+
+    /**
+     * Number of precomputed SRP ephemeral keys.
+     */
+    private static volatile int ephemeralKeyPoolSize = 0;
+
     /**
      * Set the threshold for token refresh.
      *
@@ -59,4 +78,43 @@ public final class CognitoIdentityProviderClientConfig {
     public static long getRefreshThreshold() {
         return refreshThreshold;
     }
+
+    /**
+     * Set the threshold for background token refresh. Values not greater than
+     * the refresh threshold disable background refresh.
+     *
+     * @param threshold         REQUIRED: Threshold for background token refresh in milli seconds.
+     */
+    public static void setPrefetchThreshold(long threshold) {
+        if (threshold < 0) {
+            throw new CognitoParameterInvalidException(
+                    "The value of prefetchThreshold must not be negative");
+        }
+        prefetchThreshold = threshold;
+    }
+
+    public static long getPrefetchThreshold() {
+        return prefetchThreshold;
+    }
+
+    /**
+     * Set the number of SRP ephemeral keys precomputed in the background.
+     * Generating a key takes a 3072-bit modular exponentiation, which
+     * otherwise runs when authentication starts. Each precomputed key is used
+     * for a single authentication. Default is 0, which disables the pool.
+     *
+     * @param size              REQUIRED: Number of keys to keep ready.
+     */
+    public static void setEphemeralKeyPoolSize(int size) {
+        if (size < 0 || size > EPHEMERAL_KEY_POOL_SIZE_MAX) {
+            throw new CognitoParameterInvalidException(
+                    String.format("The value of ephemeralKeyPoolSize must be between %d and %d",
+                    0, EPHEMERAL_KEY_POOL_SIZE_MAX));
+        }
+        ephemeralKeyPoolSize = size;
+    }
+
+    public static int getEphemeralKeyPoolSize() {
+        return ephemeralKeyPoolSize;
+    }
 }
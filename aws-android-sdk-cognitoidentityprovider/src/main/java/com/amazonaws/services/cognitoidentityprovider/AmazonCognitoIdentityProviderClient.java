@@ -215,7 +215,8 @@ public class AmazonCognitoIdentityProviderClient extends AmazonWebServiceClient
      */
     public AmazonCognitoIdentityProviderClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.cognitoidentityprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.mobileconnectors.cognitoidentityprovider.CognitoUser.AuthenticationHelper;
+import com.amazonaws.mobileconnectors.cognitoidentityprovider.util.CognitoIdentityProviderClientConfig;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+public class AuthenticationHelperTest {
+
+    private static final String POOL_ID = "us-east-1_pool";
+    private static final int KEYS = 8;
+    /** The 3072-bit group modulus and generator the helper uses. */
+    private static final BigInteger N = new BigInteger(
+            "FFFFFFFFFFFFFFFFC90FDAA22168C234C4C6628B80DC1CD1"
+                    + "29024E088A67CC74020BBEA63B139B22514A08798E3404DD"
+                    + "EF9519B3CD3A431B302B0A6DF25F14374FE1356D6D51C245"
+                    + "E485B576625E7EC6F44C42E9A637ED6B0BFF5CB6F406B7ED"
+                    + "EE386BFB5A899FA5AE9F24117C4B1FE649286651ECE45B3D"
+                    + "C2007CB8A163BF0598DA48361C55D39A69163FA8FD24CF5F"
+                    + "83655D23DCA3AD961C62F356208552BB9ED529077096966D"
+                    + "670C354E4ABC9804F1746C08CA18217C32905E462E36CE3B"
+                    + "E39E772C180E86039B2783A2EC07A28FB5C55DF06F4C52C9"
+                    + "DE2BCBF6955817183995497CEA956AE515D2261898FA0510"
+                    + "15728E5A8AAAC42DAD33170D04507A33A85521ABDF1CBA64"
+                    + "ECFB850458DBEF0A8AEA71575D060C7DB3970F85A6E1E4C7"
+                    + "ABF5AE8CDB0933D71E8C94E04A25619DCEE3D2261AD2EE6B"
+                    + "F12FFA06D98A0864D87602733EC86A64521F2B18177B200C"
+                    + "BBE117577A615D6C770988C0BAD946E208E24FA074E5AB31"
+                    + "43DB5BFCE0FD108E4B82D120A93AD2CAFFFFFFFFFFFFFFFF", 16);
+    private static final BigInteger G = BigInteger.valueOf(2);
+
+    @After
+    public void teardown() {
+        CognitoIdentityProviderClientConfig.setEphemeralKeyPoolSize(0);
+        AuthenticationHelper.fillEphemeralKeyPool();
+    }
+
+    @Test
+    public void testPooledKeysAreFasterThanGeneratedKeys() throws Exception {
+        CognitoIdentityProviderClientConfig.setEphemeralKeyPoolSize(0);
+        // warm up
+        timeKeys(KEYS);
+        final long generated = timeKeys(KEYS);
+
+        CognitoIdentityProviderClientConfig.setEphemeralKeyPoolSize(2 * KEYS);
+        AuthenticationHelper.fillEphemeralKeyPool();
+        awaitPoolCount(2 * KEYS);
+        final long pooled = timeKeys(KEYS);
+
+        System.out.println(String.format("SRP ephemeral key: %d us generated, %d us pooled",
+                generated / KEYS / 1000, pooled / KEYS / 1000));
+        // modPow over the 3072-bit group takes milliseconds, a poll microseconds
+        assertTrue("pooled " + pooled + " ns, generated " + generated + " ns",
+                pooled * 10 < generated);
+    }
+
+    @Test
+    public void testPooledKeysAreValidAndNotReused() throws Exception {
+        CognitoIdentityProviderClientConfig.setEphemeralKeyPoolSize(KEYS);
+        AuthenticationHelper.fillEphemeralKeyPool();
+        awaitPoolCount(KEYS);
+
+        final Set<BigInteger> publicKeys = new HashSet<BigInteger>();
+        // more than the pool holds, so some are generated inline
+        for (int i = 0; i < 2 * KEYS; i++) {
+            final AuthenticationHelper helper = new AuthenticationHelper(POOL_ID);
+            assertEquals(G.modPow(helper.geta(), N), helper.getA());
+            publicKeys.add(helper.getA());
+        }
+        assertEquals(2 * KEYS, publicKeys.size());
+    }
+
+    @Test
+    public void testDisablingPoolDropsKeys() throws Exception {
+        CognitoIdentityProviderClientConfig.setEphemeralKeyPoolSize(KEYS);
+        AuthenticationHelper.fillEphemeralKeyPool();
+        awaitPoolCount(KEYS);
+
+        CognitoIdentityProviderClientConfig.setEphemeralKeyPoolSize(0);
+        new AuthenticationHelper(POOL_ID);
+        assertEquals(0, AuthenticationHelper.getEphemeralKeyPoolCount());
+    }
+
+    /**
+     * @return the nanoseconds taken to create the given number of helpers.
+     */
+    private static long timeKeys(int count) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            new AuthenticationHelper(POOL_ID);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void awaitPoolCount(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 30000;
+        while (AuthenticationHelper.getEphemeralKeyPoolCount() < count) {
+            assertTrue("pool filled", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
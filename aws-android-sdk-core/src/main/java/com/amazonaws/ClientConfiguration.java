@@ -16,8 +16,10 @@
 package com.amazonaws;
 
 import com.amazonaws.http.IdleConnectionReaper;
+import com.amazonaws.retry.AdaptiveRateLimiter;
 import com.amazonaws.retry.PredefinedRetryPolicies;
 import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryQuota;
 import com.amazonaws.util.VersionInfoUtils;
 
 import java.net.InetAddress;
@@ -39,6 +41,18 @@ public class ClientConfiguration {
     /** The default max connection pool size. */
     public static final int DEFAULT_MAX_CONNECTIONS = 10;
 
+    /** The default max number of pooled connections to a single host. */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 10;
+
+    /** The default time after which an idle pooled connection is closed. */
+    public static final long DEFAULT_CONNECTION_MAX_IDLE_MILLIS = 60 * 1000;
+
+    /**
+     * The default maximum number of asynchronous request attempts a single
+     * client runs concurrently.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_ASYNC_REQUESTS = 10;
+
     /** The default HTTP user agent header for AWS Java SDK clients. */
     public static final String DEFAULT_USER_AGENT = VersionInfoUtils.getUserAgent();
 
@@ -79,6 +93,12 @@ public class ClientConfiguration {
     /** The retry policy upon failed requests. **/
     private RetryPolicy retryPolicy = DEFAULT_RETRY_POLICY;
 
+    /** Optional budget shared by the retries of failed requests. */
+    private RetryQuota retryQuota;
+
+    /** Optional limiter adapting the request rate to throttling errors. */
+    private AdaptiveRateLimiter rateLimiter;
+
     /** Optionally specifies the local address to bind to */
     private InetAddress localAddress;
 
@@ -124,6 +144,19 @@ public class ClientConfiguration {
     /** The maximum number of open HTTP connections. */
     private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 
+    /** The maximum number of pooled HTTP connections to a single host. */
+    private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    /** The time after which an idle pooled HTTP connection is closed. */
+    private long connectionMaxIdleMillis = DEFAULT_CONNECTION_MAX_IDLE_MILLIS;
+
+    /**
+     * Whether service clients use the connection pooling
+     * {@link com.amazonaws.http.PooledHttpClient} instead of the default
+     * {@link com.amazonaws.http.UrlHttpClient}.
+     */
+    private boolean useConnectionPool = false;
+
     /**
      * The amount of time to wait (in milliseconds) for data to be transfered
      * over an established, open connection before the connection is timed out.
@@ -184,6 +217,13 @@ public class ClientConfiguration {
      */
     private boolean enableGzip = false;
 
+    /**
+     * The maximum number of asynchronous request attempts that run
+     * concurrently. Requests waiting for a retry back-off do not count
+     * towards this limit.
+     */
+    private int maxConcurrentAsyncRequests = DEFAULT_MAX_CONCURRENT_ASYNC_REQUESTS;
+
     /**
      * Constructor.
      */
@@ -197,8 +237,13 @@ public class ClientConfiguration {
     public ClientConfiguration(ClientConfiguration other) {
         this.connectionTimeout = other.connectionTimeout;
         this.maxConnections = other.maxConnections;
+        this.maxConnectionsPerHost = other.maxConnectionsPerHost;
+        this.connectionMaxIdleMillis = other.connectionMaxIdleMillis;
+        this.useConnectionPool = other.useConnectionPool;
         this.maxErrorRetry = other.maxErrorRetry;
         this.retryPolicy = other.retryPolicy;
+        this.retryQuota = other.retryQuota;
+        this.rateLimiter = other.rateLimiter;
         this.localAddress = other.localAddress;
         this.protocol = other.protocol;
         this.proxyDomain = other.proxyDomain;
@@ -217,6 +262,7 @@ public class ClientConfiguration {
         this.trustManager = other.trustManager;
         this.curlLogging = other.curlLogging;
         this.enableGzip = other.enableGzip;
+        this.maxConcurrentAsyncRequests = other.maxConcurrentAsyncRequests;
     }
 
     /**
@@ -313,6 +359,122 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the maximum number of pooled HTTP connections to a single host.
+     * Only used when connection pooling is enabled, see
+     * {@link #isUseConnectionPool()}.
+     *
+     * @return The maximum number of pooled HTTP connections to a single host.
+     */
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Sets the maximum number of pooled HTTP connections to a single host.
+     * Only used when connection pooling is enabled, see
+     * {@link #isUseConnectionPool()}.
+     *
+     * @param maxConnectionsPerHost The maximum number of pooled HTTP
+     *            connections to a single host.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Sets the maximum number of pooled HTTP connections to a single host, and
+     * returns the updated ClientConfiguration object so that additional
+     * method calls may be chained together.
+     *
+     * @param maxConnectionsPerHost The maximum number of pooled HTTP
+     *            connections to a single host.
+     * @return The updated ClientConfiguration object.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        setMaxConnectionsPerHost(maxConnectionsPerHost);
+        return this;
+    }
+
+    /**
+     * Returns the time in milliseconds after which an idle pooled HTTP
+     * connection is closed. Only used when connection pooling is enabled, see
+     * {@link #isUseConnectionPool()}.
+     *
+     * @return The maximum idle time of a pooled connection in milliseconds.
+     */
+    public long getConnectionMaxIdleMillis() {
+        return connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the time in milliseconds after which an idle pooled HTTP
+     * connection is closed. Only used when connection pooling is enabled, see
+     * {@link #isUseConnectionPool()}.
+     *
+     * @param connectionMaxIdleMillis The maximum idle time of a pooled
+     *            connection in milliseconds.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public void setConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the time in milliseconds after which an idle pooled HTTP
+     * connection is closed, and returns the updated ClientConfiguration object
+     * so that additional method calls may be chained together.
+     *
+     * @param connectionMaxIdleMillis The maximum idle time of a pooled
+     *            connection in milliseconds.
+     * @return The updated ClientConfiguration object.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        setConnectionMaxIdleMillis(connectionMaxIdleMillis);
+        return this;
+    }
+
+    /**
+     * Returns whether service clients send requests over a pool of
+     * persistent connections ({@link com.amazonaws.http.PooledHttpClient})
+     * instead of {@link com.amazonaws.http.UrlHttpClient}. Defaults to false.
+     *
+     * @return Whether connection pooling is enabled.
+     */
+    public boolean isUseConnectionPool() {
+        return useConnectionPool;
+    }
+
+    /**
+     * Sets whether service clients send requests over a pool of persistent
+     * connections ({@link com.amazonaws.http.PooledHttpClient}) instead of
+     * {@link com.amazonaws.http.UrlHttpClient}. Keeping connections open
+     * avoids a TCP and TLS handshake per request.
+     *
+     * @param useConnectionPool Whether connection pooling is enabled.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public void setUseConnectionPool(boolean useConnectionPool) {
+        this.useConnectionPool = useConnectionPool;
+    }
+
+    /**
+     * Sets whether service clients send requests over a pool of persistent
+     * connections, and returns the updated ClientConfiguration object so that
+     * additional method calls may be chained together.
+     *
+     * @param useConnectionPool Whether connection pooling is enabled.
+     * @return The updated ClientConfiguration object.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withConnectionPool(boolean useConnectionPool) {
+        setUseConnectionPool(useConnectionPool);
+        return this;
+    }
+
     /**
      * Returns the HTTP user agent header to send with all requests.
      *
@@ -621,6 +783,80 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the quota limiting the retries of failed requests, or null if
+     * retries are only limited per request by the retry policy.
+     *
+     * @return The retry quota, or null.
+     */
+    public RetryQuota getRetryQuota() {
+        return retryQuota;
+    }
+
+    /**
+     * Sets the quota limiting the retries of failed requests. Each retry draws
+     * from the quota and successful requests replenish it; once it is
+     * exhausted failed requests are not retried, even if the retry policy
+     * allows it. Share the same quota among clients to give them a common
+     * retry budget. By default no quota is used.
+     *
+     * @param retryQuota The retry quota, or null to disable it.
+     */
+    public void setRetryQuota(RetryQuota retryQuota) {
+        this.retryQuota = retryQuota;
+    }
+
+    /**
+     * Sets the quota limiting the retries of failed requests, and returns the
+     * updated ClientConfiguration object.
+     *
+     * @param retryQuota The retry quota, or null to disable it.
+     * @return the client configuration.
+     * @see #setRetryQuota(RetryQuota)
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withRetryQuota(RetryQuota retryQuota) {
+        setRetryQuota(retryQuota);
+        return this;
+    }
+
+    /**
+     * Returns the limiter adapting the rate of requests to throttling errors,
+     * or null if requests are not rate limited.
+     *
+     * @return The rate limiter, or null.
+     */
+    public AdaptiveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the limiter adapting the rate of requests to throttling errors.
+     * After the first throttling error every request attempt, including
+     * retries, waits for the limiter before being sent, so the client settles
+     * at the rate the service sustains. Share the same limiter among clients
+     * calling the same resource. By default requests are not rate limited.
+     *
+     * @param rateLimiter The rate limiter, or null to disable it.
+     */
+    public void setRateLimiter(AdaptiveRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sets the limiter adapting the rate of requests to throttling errors, and
+     * returns the updated ClientConfiguration object.
+     *
+     * @param rateLimiter The rate limiter, or null to disable it.
+     * @return the client configuration.
+     * @see #setRateLimiter(AdaptiveRateLimiter)
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withRateLimiter(AdaptiveRateLimiter rateLimiter) {
+        setRateLimiter(rateLimiter);
+        return this;
+    }
+
     /**
      * Returns the maximum number of retry attempts for failed retryable
      * requests (ex: 5xx error responses from a service). This method returns -1
@@ -1132,4 +1368,47 @@ public class ClientConfiguration {
         setEnableGzip(enableGzip);
         return this;
     }
+
+    /**
+     * Returns the maximum number of asynchronous request attempts that a
+     * client runs concurrently. Additional asynchronous requests are queued
+     * until a running attempt completes. Requests waiting for a retry back-off
+     * do not hold a slot.
+     *
+     * @return the maximum number of concurrent asynchronous request attempts.
+     */
+    public int getMaxConcurrentAsyncRequests() {
+        return maxConcurrentAsyncRequests;
+    }
+
+    /**
+     * Sets the maximum number of asynchronous request attempts that a client
+     * runs concurrently.
+     *
+     * @param maxConcurrentAsyncRequests the maximum number of concurrent
+     *            asynchronous request attempts; must be positive.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public void setMaxConcurrentAsyncRequests(int maxConcurrentAsyncRequests) {
+        if (maxConcurrentAsyncRequests <= 0) {
+            throw new IllegalArgumentException(
+                    "maxConcurrentAsyncRequests must be positive");
+        }
+        this.maxConcurrentAsyncRequests = maxConcurrentAsyncRequests;
+    }
+
+    /**
+     * Sets the maximum number of asynchronous request attempts that a client
+     * runs concurrently, and returns the updated ClientConfiguration object so
+     * that additional calls may be chained together.
+     *
+     * @param maxConcurrentAsyncRequests the maximum number of concurrent
+     *            asynchronous request attempts; must be positive.
+     * @return The updated ClientConfiguration object.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withMaxConcurrentAsyncRequests(int maxConcurrentAsyncRequests) {
+        setMaxConcurrentAsyncRequests(maxConcurrentAsyncRequests);
+        return this;
+    }
 }
@@ -46,6 +46,13 @@ public class AWS4Signer extends AbstractAWSSigner
     private static final String TIME_PATTERN = "yyyyMMdd'T'HHmmss'Z'";
     private static final long MILLISEC = 1000L;
 
+    /**
+     * Derived signing keys shared by all AWS4 signers. A signing key is only
+     * valid for one day, so caching saves four HMAC computations per request.
+     */
+    private static final SigningKeyCache SIGNING_KEY_CACHE =
+            new SigningKeyCache(SigningKeyCache.DEFAULT_MAX_ENTRIES);
+
     /** Seconds in a week, which is the max expiration time Sig-v4 accepts */
     private static final long MAX_EXPIRATION_TIME_IN_SECONDS = 60 * 60 * 24 * 7;
     /**
@@ -294,6 +301,23 @@ public class AWS4Signer extends AbstractAWSSigner
         final String stringToSign = getStringToSign(algorithm, timeStamp, scope,
                 getCanonicalRequest(request, contentSha256));
 
+        final byte[] kSigning = deriveSigningKey(sanitizedCredentials, dateStamp, regionName,
+                serviceName);
+
+        final byte[] signature = sign(stringToSign.getBytes(StringUtils.UTF8), kSigning,
+                SigningAlgorithm.HmacSHA256);
+        return new HeaderSigningResult(timeStamp, scope, kSigning, signature);
+    }
+
+    @SuppressWarnings("checkstyle:hiddenfield")
+    private byte[] deriveSigningKey(AWSCredentials sanitizedCredentials, String dateStamp,
+            String regionName, String serviceName) {
+        byte[] kSigning = SIGNING_KEY_CACHE.get(sanitizedCredentials, dateStamp, regionName,
+                serviceName);
+        if (kSigning != null) {
+            return kSigning;
+        }
+
         // AWS4 uses a series of derived keys, formed by hashing different
         // pieces of data
         final byte[] kSecret = ("AWS4" + sanitizedCredentials.getAWSSecretKey())
@@ -301,11 +325,47 @@ public class AWS4Signer extends AbstractAWSSigner
         final byte[] kDate = sign(dateStamp, kSecret, SigningAlgorithm.HmacSHA256);
         final byte[] kRegion = sign(regionName, kDate, SigningAlgorithm.HmacSHA256);
         final byte[] kService = sign(serviceName, kRegion, SigningAlgorithm.HmacSHA256);
-        final byte[] kSigning = sign(TERMINATOR, kService, SigningAlgorithm.HmacSHA256);
+        kSigning = sign(TERMINATOR, kService, SigningAlgorithm.HmacSHA256);
 
-        final byte[] signature = sign(stringToSign.getBytes(StringUtils.UTF8), kSigning,
-                SigningAlgorithm.HmacSHA256);
-        return new HeaderSigningResult(timeStamp, scope, kSigning, signature);
+        SIGNING_KEY_CACHE.put(sanitizedCredentials, dateStamp, regionName, serviceName,
+                kSigning);
+        return kSigning;
+    }
+
+    /**
+     * Returns the number of requests, across all AWS4 signers, that were
+     * signed with a cached signing key.
+     *
+     * @return the signing key cache hit count.
+     */
+    public static long getSigningKeyCacheHitCount() {
+        return SIGNING_KEY_CACHE.getHitCount();
+    }
+
+    /**
+     * Returns the number of requests, across all AWS4 signers, for which the
+     * signing key had to be derived.
+     *
+     * @return the signing key cache miss count.
+     */
+    public static long getSigningKeyCacheMissCount() {
+        return SIGNING_KEY_CACHE.getMissCount();
+    }
+
+    /**
+     * Returns the fraction of signing key lookups served from the cache.
+     *
+     * @return the hit rate between 0 and 1, or 0 if nothing has been signed.
+     */
+    public static double getSigningKeyCacheHitRate() {
+        final long hits = SIGNING_KEY_CACHE.getHitCount();
+        final long total = hits + SIGNING_KEY_CACHE.getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /** Clears the signing key cache. For testing only. */
+    static void clearSigningKeyCache() {
+        SIGNING_KEY_CACHE.clear();
     }
 
     protected final String getTimeStamp(long dateMilli) {
@@ -470,6 +470,10 @@ public class CognitoCachingCredentialsProvider
 
     @Override
     public AWSSessionCredentials getCredentials() {
+        final AWSSessionCredentials current = getPublishedCredentials();
+        if (current != null) {
+            return current;
+        }
     	credentialsLock.writeLock().lock();
         try {
         	// return only if the credentials are valid
@@ -478,6 +482,7 @@ public class CognitoCachingCredentialsProvider
         	}
 
         	if ((sessionCredentialsExpiration != null) && !needsNewSession()) {
+        		publishSessionCredentials();
         		return sessionCredentials;
         	}
         	// super will validate loaded credentials
@@ -33,8 +33,16 @@ import com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityReque
 import com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityResult;
 import com.amazonaws.services.securitytoken.model.Credentials;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.json.JSONObject;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.Date;
 import java.util.HashMap;
@@ -47,6 +55,14 @@ import java.util.Map;
  */
 public class CognitoCredentialsProvider implements AWSCredentialsProvider {
 
+    private static final Log LOGGER = LogFactory.getLog(CognitoCredentialsProvider.class);
+
+    /** Seconds an idle prefetch thread is kept alive */
+    private static final int PREFETCH_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    /** Executor shared by all providers for background credential refreshes */
+    private static Executor prefetchExecutor;
+
     /** Used in the enhanced get credentials flow */
     private AmazonCognitoIdentity cib;
 
@@ -59,6 +75,11 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     /** Default threshold for refreshing session credentials */
     public static final int DEFAULT_THRESHOLD_SECONDS = 500;
 
+    /**
+     * Default threshold for refreshing session credentials in the background
+     */
+    public static final int DEFAULT_PREFETCH_THRESHOLD_SECONDS = 1000;
+
     /** The current session credentials */
     protected AWSSessionCredentials sessionCredentials;
 
@@ -84,6 +105,21 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     
     protected ReentrantReadWriteLock credentialsLock;
 
+    /**
+     * Remaining lifetime, in seconds, below which session credentials are
+     * refreshed in the background while callers keep using the current ones
+     */
+    private volatile int prefetchThreshold = DEFAULT_PREFETCH_THRESHOLD_SECONDS;
+
+    /**
+     * The last published session credentials, read without taking
+     * credentialsLock. Null when there are no usable credentials.
+     */
+    private volatile CredentialsSnapshot credentialsSnapshot;
+
+    /** Is a background refresh scheduled or running? */
+    private final AtomicBoolean prefetching = new AtomicBoolean();
+
     /**
      * Constructs a new {@link CognitoCredentialsProvider}, which will use the
      * specified Amazon Cognito identity pool to make a request, using the basic
@@ -414,6 +450,7 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     	credentialsLock.writeLock().lock();
     	try {
     		sessionCredentialsExpiration = expiration;
+    		publishSessionCredentials();
     	} finally {
     		credentialsLock.writeLock().unlock();
     	}
@@ -435,21 +472,138 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     /**
      * If the current session has expired/credentials are invalid, a new session
      * is started, establishing the credentials. In either case, those
-     * credentials are returned
+     * credentials are returned. Valid credentials are returned without
+     * locking; once they come within the prefetch threshold of expiring they
+     * are refreshed in the background.
      */
     @Override
     public AWSSessionCredentials getCredentials() {
+        final AWSSessionCredentials current = getPublishedCredentials();
+        if (current != null) {
+            return current;
+        }
     	credentialsLock.writeLock().lock();
     	try {
     		if (needsNewSession()) {
     			startSession();
     		}
+    		publishSessionCredentials();
     		return sessionCredentials;
     	} finally {
     		credentialsLock.writeLock().unlock();
     	}
     }
 
+    /**
+     * Returns the published session credentials if they are outside the
+     * refresh threshold, scheduling a background refresh when they are
+     * within the prefetch threshold.
+     *
+     * @return the current credentials, or null if the caller has to start a
+     *         new session.
+     */
+    AWSSessionCredentials getPublishedCredentials() {
+        final CredentialsSnapshot snapshot = credentialsSnapshot;
+        if (snapshot == null) {
+            return null;
+        }
+        final long timeRemaining = getTimeRemaining(snapshot.expiration);
+        if (timeRemaining < refreshThreshold * 1000L) {
+            return null;
+        }
+        if (timeRemaining < getPrefetchWindow(snapshot)) {
+            schedulePrefetch();
+        }
+        return snapshot.credentials;
+    }
+
+    /**
+     * Publishes sessionCredentials and sessionCredentialsExpiration to
+     * lock-free readers. Must be called with the write lock held whenever
+     * either field changes.
+     */
+    void publishSessionCredentials() {
+        if (sessionCredentials == null || sessionCredentialsExpiration == null) {
+            credentialsSnapshot = null;
+        } else {
+            credentialsSnapshot = new CredentialsSnapshot(sessionCredentials,
+                    sessionCredentialsExpiration);
+        }
+    }
+
+    /**
+     * Returns the remaining lifetime in milliseconds below which the given
+     * credentials are refreshed in the background: the prefetch threshold, but
+     * at most half the lifetime they had when published, so that credentials
+     * of a short session aren't refreshed on every call.
+     */
+    private long getPrefetchWindow(CredentialsSnapshot snapshot) {
+        return Math.min(prefetchThreshold * 1000L, snapshot.lifetime / 2);
+    }
+
+    /**
+     * Starts a background refresh unless one is already pending.
+     */
+    private void schedulePrefetch() {
+        if (!prefetching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            getPrefetchExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        prefetch();
+                    } finally {
+                        prefetching.set(false);
+                    }
+                }
+            });
+        } catch (final RuntimeException e) {
+            prefetching.set(false);
+            LOGGER.warn("Failed to schedule credentials refresh", e);
+        }
+    }
+
+    /**
+     * Refreshes the session credentials if no other thread has done so since
+     * the refresh was scheduled. Failures are left to the next caller that
+     * finds the credentials within the refresh threshold.
+     */
+    private void prefetch() {
+        credentialsLock.writeLock().lock();
+        try {
+            final CredentialsSnapshot snapshot = credentialsSnapshot;
+            if (snapshot != null
+                    && getTimeRemaining(snapshot.expiration) < getPrefetchWindow(snapshot)) {
+                refresh();
+            }
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Failed to refresh credentials in the background", e);
+        } finally {
+            credentialsLock.writeLock().unlock();
+        }
+    }
+
+    private static synchronized Executor getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                    PREFETCH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            final Thread t = new Thread(r);
+                            t.setName("android-sdk-credentials-refresh-thread");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            prefetchExecutor = executor;
+        }
+        return prefetchExecutor;
+    }
+
     /**
      * Set the duration of the session credentials created by this client in
      * seconds. Values must be supported by AssumeRoleWithWebIdentityRequest.
@@ -532,6 +686,33 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
         return this.refreshThreshold;
     }
 
+    /**
+     * Set the remaining lifetime, in seconds, below which the session
+     * credentials are refreshed on a background thread while callers keep
+     * using the current ones. Callers only block on a refresh once the
+     * credentials come within the refresh threshold. A value not greater
+     * than the refresh threshold disables background refreshes. At most half
+     * the lifetime of the credentials is used, so that a threshold longer
+     * than the session doesn't refresh it on every call.
+     *
+     * @param prefetchThreshold The new prefetch threshold for session
+     *            credentials
+     */
+    public void setPrefetchThreshold(int prefetchThreshold) {
+        this.prefetchThreshold = prefetchThreshold;
+    }
+
+    /**
+     * Get the background refresh threshold for the session credentials
+     * created by this client in seconds.
+     *
+     * @return The prefetch threshold for session credentials created by this
+     *         provider
+     */
+    public int getPrefetchThreshold() {
+        return prefetchThreshold;
+    }
+
     protected void setIdentityId(String identityId) {
         identityProvider.identityChanged(identityId);
     }
@@ -609,6 +790,7 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     	credentialsLock.writeLock().lock();
     	try {
     		startSession();
+    		publishSessionCredentials();
     	} finally {
     		credentialsLock.writeLock().unlock();
     	}
@@ -639,6 +821,7 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     	try {
     		sessionCredentials = null;
     		sessionCredentialsExpiration = null;
+    		credentialsSnapshot = null;
     	} finally {
     		credentialsLock.writeLock().unlock();
     	}
@@ -813,11 +996,37 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
         if (sessionCredentials == null) {
             return true;
         }
+        return getTimeRemaining(sessionCredentialsExpiration) < (refreshThreshold * 1000);
+    }
+
+    /**
+     * Returns the time left until the given expiration, corrected by the
+     * global clock offset.
+     *
+     * @param expiration credentials expiration time.
+     * @return milliseconds until expiration.
+     */
+    private static long getTimeRemaining(Date expiration) {
         long currentTime = System.currentTimeMillis()
                 - SDKGlobalConfiguration.getGlobalTimeOffset() * 1000;
-        long timeRemaining = sessionCredentialsExpiration.getTime()
-                - currentTime;
-        return timeRemaining < (refreshThreshold * 1000);
+        return expiration.getTime() - currentTime;
+    }
+
+    /**
+     * Immutable pair of session credentials and their expiration, published
+     * to lock-free readers.
+     */
+    private static final class CredentialsSnapshot {
+        private final AWSSessionCredentials credentials;
+        private final Date expiration;
+        /** Milliseconds the credentials were valid for when published. */
+        private final long lifetime;
+
+        CredentialsSnapshot(AWSSessionCredentials credentials, Date expiration) {
+            this.credentials = credentials;
+            this.expiration = new Date(expiration.getTime());
+            this.lifetime = getTimeRemaining(expiration);
+        }
     }
 
     /**
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, thread-safe cache of derived AWS4 signing keys. The signing key
+ * only depends on the secret key, the date, the region and the service, so it
+ * can be reused for every request signed against the same scope on the same
+ * day. The least recently used entry is evicted once the cache is full.
+ */
+final class SigningKeyCache {
+
+    /** Default maximum number of signing keys kept in the cache. */
+    static final int DEFAULT_MAX_ENTRIES = 300;
+
+    private final Map<String, SigningKey> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    SigningKeyCache(final int maxEntries) {
+        cache = new LinkedHashMap<String, SigningKey>(maxEntries, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SigningKey> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached signing key for the given scope, or null if it has
+     * not been derived yet or was derived for another day or secret key.
+     *
+     * @param credentials the credentials used for signing.
+     * @param dateStamp the date part of the scope, e.g. 20170101.
+     * @param regionName the region part of the scope.
+     * @param serviceName the service part of the scope.
+     * @return the signing key, or null on a cache miss.
+     */
+    byte[] get(AWSCredentials credentials, String dateStamp, String regionName,
+            String serviceName) {
+        final String cacheKey = cacheKey(credentials, regionName, serviceName);
+        final SigningKey signingKey;
+        synchronized (cache) {
+            signingKey = cache.get(cacheKey);
+        }
+        if (signingKey != null && signingKey.matches(credentials.getAWSSecretKey(), dateStamp)) {
+            hits.incrementAndGet();
+            return signingKey.kSigning;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a derived signing key, replacing any key previously derived for
+     * the same credentials, region and service.
+     */
+    void put(AWSCredentials credentials, String dateStamp, String regionName,
+            String serviceName, byte[] kSigning) {
+        final SigningKey signingKey = new SigningKey(credentials.getAWSSecretKey(), dateStamp,
+                kSigning);
+        synchronized (cache) {
+            cache.put(cacheKey(credentials, regionName, serviceName), signingKey);
+        }
+    }
+
+    /** @return the number of lookups that returned a cached key. */
+    long getHitCount() {
+        return hits.get();
+    }
+
+    /** @return the number of lookups that required deriving a new key. */
+    long getMissCount() {
+        return misses.get();
+    }
+
+    /** @return the number of signing keys currently cached. */
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /** Removes all entries and resets the hit and miss counters. */
+    void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private static String cacheKey(AWSCredentials credentials, String regionName,
+            String serviceName) {
+        return credentials.getAWSAccessKeyId() + "/" + regionName + "/" + serviceName;
+    }
+
+    private static final class SigningKey {
+        private final String secretKey;
+        private final String dateStamp;
+        private final byte[] kSigning;
+
+        @SuppressWarnings("checkstyle:hiddenfield")
+        SigningKey(String secretKey, String dateStamp, byte[] kSigning) {
+            this.secretKey = secretKey;
+            this.dateStamp = dateStamp;
+            this.kSigning = kSigning;
+        }
+
+        @SuppressWarnings("checkstyle:hiddenfield")
+        boolean matches(String secretKey, String dateStamp) {
+            return this.dateStamp.equals(dateStamp) && this.secretKey != null
+                    && this.secretKey.equals(secretKey);
+        }
+    }
+}
@@ -29,12 +29,15 @@ import com.amazonaws.ResponseMetadata;
 import com.amazonaws.SDKGlobalConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.Signer;
+import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.handlers.CredentialsRequestHandler;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.internal.CRC32MismatchException;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.AdaptiveRateLimiter;
 import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryQuota;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.util.AWSRequestMetrics;
 import com.amazonaws.util.AWSRequestMetrics.Field;
@@ -53,6 +56,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * The Amazon HTTP Client class.
@@ -101,6 +107,15 @@ public class AmazonHttpClient {
 
     private final HttpRequestFactory requestFactory = new HttpRequestFactory();
 
+    /**
+     * Scheduler used by asynchronous executions; null to use the scheduler
+     * shared by all clients. Guarded by this.
+     */
+    private ScheduledExecutorService asyncScheduler;
+
+    /** Dispatcher for asynchronous executions, created on first use. */
+    private AsyncRequestDispatcher asyncDispatcher;
+
     /**
      * Constructs a new AWS client using the specified client configuration
      * options (ex: max retry attempts, proxy settings, etc).
@@ -109,7 +124,7 @@ public class AmazonHttpClient {
      *            communicate with AWS (ex: proxy settings, retry count, etc.).
      */
     public AmazonHttpClient(ClientConfiguration config) {
-        this(config, new UrlHttpClient(config));
+        this(config, HttpClients.createDefault(config));
     }
 
     /**
@@ -126,7 +141,7 @@ public class AmazonHttpClient {
     @Deprecated
     public AmazonHttpClient(ClientConfiguration config,
             RequestMetricCollector requestMetricCollector) {
-        this(config, new UrlHttpClient(config), requestMetricCollector);
+        this(config, HttpClients.createDefault(config), requestMetricCollector);
     }
 
     /**
@@ -220,6 +235,94 @@ public class AmazonHttpClient {
         }
     }
 
+    /**
+     * Executes the request asynchronously and returns a future for the
+     * result. See
+     * {@link #executeAsync(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext, AsyncHandler)}.
+     *
+     * @param request The AmazonWebServices request to send to the remote server
+     * @param responseHandler A response handler to accept a successful response
+     *            from the remote server
+     * @param errorResponseHandler A response handler to accept an unsuccessful
+     *            response from the remote server
+     * @param executionContext Additional information about the context of this
+     *            web service call
+     * @param <T> the response type.
+     * @return a future for the result of the request.
+     */
+    public <T> Future<Response<T>> executeAsync(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext) {
+        return executeAsync(request, responseHandler, errorResponseHandler,
+                executionContext, null);
+    }
+
+    /**
+     * Executes the request asynchronously and returns a future for the
+     * result.
+     * <p>
+     * Each attempt of the request runs on the client's scheduler (see
+     * {@link #setAsyncScheduler(ScheduledExecutorService)}), and at most
+     * {@link ClientConfiguration#getMaxConcurrentAsyncRequests()} attempts of
+     * this client run at the same time. When an attempt fails with a
+     * retryable error, the next attempt is scheduled after the back-off delay
+     * of the configured {@link RetryPolicy} instead of sleeping, so waiting
+     * retries do not occupy any thread.
+     *
+     * @param request The AmazonWebServices request to send to the remote server
+     * @param responseHandler A response handler to accept a successful response
+     *            from the remote server
+     * @param errorResponseHandler A response handler to accept an unsuccessful
+     *            response from the remote server
+     * @param executionContext Additional information about the context of this
+     *            web service call
+     * @param asyncHandler optional callback notified, before the future
+     *            completes, with the original request and the response or the
+     *            failure; may be null.
+     * @param <T> the response type.
+     * @return a future for the result of the request.
+     */
+    public <T> Future<Response<T>> executeAsync(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            AsyncHandler<AmazonWebServiceRequest, Response<T>> asyncHandler) {
+        if (executionContext == null) {
+            throw new AmazonClientException(
+                    "Internal SDK Error: No execution context parameter specified.");
+        }
+        final List<RequestHandler2> requestHandler2s = requestHandler2s(request, executionContext);
+        final ExecutionState state = prepareExecution(request, executionContext);
+        final AsyncExecution<T> execution = new AsyncExecution<T>(request, responseHandler,
+                errorResponseHandler, executionContext, requestHandler2s, state,
+                getAsyncDispatcher(), asyncHandler);
+        execution.dispatcher.execute(execution);
+        return execution.future;
+    }
+
+    /**
+     * Sets the scheduler that runs the asynchronous executions of this client
+     * and their retry back-off. By default a scheduler shared by all clients
+     * is used. Executions already in progress keep their current scheduler.
+     *
+     * @param scheduler the scheduler, or null to use the shared one.
+     */
+    public synchronized void setAsyncScheduler(ScheduledExecutorService scheduler) {
+        this.asyncScheduler = scheduler;
+        this.asyncDispatcher = null;
+    }
+
+    synchronized AsyncRequestDispatcher getAsyncDispatcher() {
+        if (asyncDispatcher == null) {
+            asyncDispatcher = new AsyncRequestDispatcher(
+                    asyncScheduler != null ? asyncScheduler
+                            : AsyncRequestDispatcher.getSharedScheduler(),
+                    config.getMaxConcurrentAsyncRequests());
+        }
+        return asyncDispatcher;
+    }
+
     void afterError(Request<?> request, Response<?> response,
             List<RequestHandler2> requestHandler2s, AmazonClientException e) {
         for (final RequestHandler2 handler2 : requestHandler2s) {
@@ -265,19 +368,27 @@ public class AmazonHttpClient {
      * @see AmazonHttpClient#execute(Request, HttpResponseHandler,
      *      HttpResponseHandler, ExecutionContext)
      */
-    @SuppressWarnings("checkstyle:methodlength")
     <T> Response<T> executeHelper(Request<?> request,
             HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
             HttpResponseHandler<AmazonServiceException> errorResponseHandler,
             ExecutionContext executionContext) {
-        /*
-         * Depending on which response handler we end up choosing to handle the
-         * HTTP response, it might require us to leave the underlying HTTP
-         * connection open, depending on whether or not it reads the complete
-         * HTTP response stream from the HTTP connection, or if delays reading
-         * any of the content until after a response is returned to the caller.
-         */
-        boolean leaveHttpConnectionOpen = false;
+        final ExecutionState state = prepareExecution(request, executionContext);
+        while (true) {
+            final Response<T> response = executeOnce(request, responseHandler,
+                    errorResponseHandler, executionContext, state, true);
+            if (response != null) {
+                return response;
+            }
+        } /* end while (true) */
+    }
+
+    /**
+     * Applies the per-execution request options (user agent, invocation id)
+     * and snapshots the original parameters, headers and content so that
+     * every attempt can start over from the original request.
+     */
+    private ExecutionState prepareExecution(Request<?> request,
+            ExecutionContext executionContext) {
         final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
         /*
          * add the service endpoint to the logs. You can infer service name from
@@ -290,189 +401,218 @@ public class AmazonHttpClient {
         // user-agent.
         setUserAgent(request);
         request.addHeader(HEADER_SDK_TRANSACTION_ID, UUID.randomUUID().toString());
-        int requestCount = 0;
-        long lastBackoffDelay = 0;
-        URI redirectedURI = null;
-        AmazonClientException retriedException = null;
 
         // Make a copy of the original request params and headers so that we can
         // permute it in this loop and start over with the original every time.
-        final Map<String, String> originalParameters = new LinkedHashMap<String, String>(
-                request.getParameters());
-        final Map<String, String> originalHeaders = new HashMap<String, String>(request.getHeaders());
+        final ExecutionState state = new ExecutionState();
+        state.originalParameters = new LinkedHashMap<String, String>(request.getParameters());
+        state.originalHeaders = new HashMap<String, String>(request.getHeaders());
         // mark input stream if supported
-        final InputStream originalContent = request.getContent();
-        if (originalContent != null && originalContent.markSupported()) {
-            originalContent.mark(-1);
+        state.originalContent = request.getContent();
+        if (state.originalContent != null && state.originalContent.markSupported()) {
+            state.originalContent.mark(-1);
         }
+        state.credentials = executionContext.getCredentials();
+        return state;
+    }
 
-        final AWSCredentials credentials = executionContext.getCredentials();
-        Signer signer = null;
-        HttpResponse httpResponse = null;
-        HttpRequest httpRequest = null;
+    /**
+     * Performs a single attempt of the request described by the given
+     * execution state.
+     *
+     * @param pauseBeforeRetry whether this attempt should sleep for the retry
+     *            back-off itself. Asynchronous executions schedule the attempt
+     *            after the back-off delay instead of blocking a thread.
+     * @return the response if the attempt succeeded, or null if the request
+     *         should be retried.
+     * @throws AmazonClientException if the request failed and should not be
+     *             retried.
+     */
+    @SuppressWarnings("checkstyle:methodlength")
+    <T> Response<T> executeOnce(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext, ExecutionState state,
+            boolean pauseBeforeRetry) {
+        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
 
-        while (true) {
-            ++requestCount;
-            awsRequestMetrics.setCounter(Field.RequestCount, requestCount);
-            if (requestCount > 1) { // retry
-                request.setParameters(originalParameters);
-                request.setHeaders(originalHeaders);
-                request.setContent(originalContent);
-            }
-            if (redirectedURI != null && request.getEndpoint() == null
-                    && request.getResourcePath() == null) {
-                request.setEndpoint(URI.create(
-                        redirectedURI.getScheme() + "://" + redirectedURI.getAuthority()));
-                request.setResourcePath(redirectedURI.getPath());
-            }
+        final int requestCount = ++state.requestCount;
+        awsRequestMetrics.setCounter(Field.RequestCount, requestCount);
+        if (requestCount > 1) { // retry
+            request.setParameters(state.originalParameters);
+            request.setHeaders(state.originalHeaders);
+            request.setContent(state.originalContent);
+        }
+        if (state.redirectedURI != null && request.getEndpoint() == null
+                && request.getResourcePath() == null) {
+            request.setEndpoint(URI.create(
+                    state.redirectedURI.getScheme() + "://"
+                            + state.redirectedURI.getAuthority()));
+            request.setResourcePath(state.redirectedURI.getPath());
+        }
 
-            try {
-                if (requestCount > 1) { // retry
+        try {
+            if (requestCount > 1) { // retry
+                if (pauseBeforeRetry) {
                     awsRequestMetrics.startEvent(Field.RetryPauseTime);
                     try {
-                        lastBackoffDelay = pauseBeforeNextRetry(request.getOriginalRequest(),
-                                retriedException,
+                        state.lastBackoffDelay = pauseBeforeNextRetry(
+                                request.getOriginalRequest(),
+                                state.retriedException,
                                 requestCount,
                                 config.getRetryPolicy());
                     } finally {
                         awsRequestMetrics.endEvent(Field.RetryPauseTime);
                     }
-                    final InputStream content = request.getContent();
-                    if (content != null && content.markSupported()) {
-                        content.reset();
-                    }
-                }
-                request.addHeader(HEADER_SDK_RETRY_INFO,
-                        (requestCount - 1) + "/" + lastBackoffDelay);
-
-                // Sign the request if a signer was provided
-                if (signer == null) {
-                    signer = executionContext.getSignerByURI(request.getEndpoint());
                 }
-                if (signer != null && credentials != null) {
-                    awsRequestMetrics.startEvent(Field.RequestSigningTime);
-                    try {
-                        signer.sign(request, credentials);
-                    } finally {
-                        awsRequestMetrics.endEvent(Field.RequestSigningTime);
-                    }
+                final InputStream content = request.getContent();
+                if (content != null && content.markSupported()) {
+                    content.reset();
                 }
+            }
+            final long rateLimitDelay = acquireSendToken(state);
+            if (rateLimitDelay > 0) {
+                sleepForRateLimit(rateLimitDelay);
+            }
+            state.sendTokenAcquired = false;
 
-                if (REQUEST_LOG.isDebugEnabled()) {
-                    REQUEST_LOG.debug("Sending Request: " + request.toString());
-                }
+            request.addHeader(HEADER_SDK_RETRY_INFO,
+                    (requestCount - 1) + "/" + state.lastBackoffDelay);
 
-                httpRequest = requestFactory.createHttpRequest(request, config,
-                        executionContext);
-
-                retriedException = null;
-                awsRequestMetrics.startEvent(Field.HttpRequestTime);
+            // Sign the request if a signer was provided
+            if (state.signer == null) {
+                state.signer = executionContext.getSignerByURI(request.getEndpoint());
+            }
+            if (state.signer != null && state.credentials != null) {
+                awsRequestMetrics.startEvent(Field.RequestSigningTime);
                 try {
-                    httpResponse = httpClient.execute(httpRequest);
+                    state.signer.sign(request, state.credentials);
                 } finally {
-                    awsRequestMetrics.endEvent(Field.HttpRequestTime);
+                    awsRequestMetrics.endEvent(Field.RequestSigningTime);
                 }
+            }
 
-                if (isRequestSuccessful(httpResponse)) {
-                    awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
-                    /*
-                     * If we get back any 2xx status code, then we know we
-                     * should treat the service call as successful.
-                     */
-                    leaveHttpConnectionOpen = responseHandler.needsConnectionLeftOpen();
-                    final T response = handleResponse(request, responseHandler,
-                            httpResponse,
-                            executionContext);
-                    return new Response<T>(response, httpResponse);
-                } else if (isTemporaryRedirect(httpResponse)) {
-                    /*
-                     * S3 sends 307 Temporary Redirects if you try to delete an
-                     * EU bucket from the US endpoint. If we get a 307, we'll
-                     * point the HTTP method to the redirected location, and let
-                     * the next retry deliver the request to the right location.
-                     */
-                    final String redirectedLocation = httpResponse.getHeaders().get("Location");
-                    log.debug("Redirecting to: " + redirectedLocation);
-                    // set redirect uri and retry
-                    redirectedURI = URI.create(redirectedLocation);
-                    request.setEndpoint(null);
-                    request.setResourcePath(null);
-                    awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
-                    awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
-                    awsRequestMetrics.addProperty(Field.AWSRequestID, null);
-                } else {
-                    leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
-                    final AmazonServiceException ase = handleErrorResponse(request, errorResponseHandler,
-                            httpResponse);
-                    awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
-                    awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
-                    awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
-
-                    if (!shouldRetry(request.getOriginalRequest(),
-                            httpRequest.getContent(),
-                            ase,
-                            requestCount,
-                            config.getRetryPolicy())) {
-                        throw ase;
-                    }
+            if (REQUEST_LOG.isDebugEnabled()) {
+                REQUEST_LOG.debug("Sending Request: " + request.toString());
+            }
 
-                    // Cache the retryable exception
-                    retriedException = ase;
-                    /*
-                     * Checking for clock skew error again because we don't want
-                     * to set the global time offset for every service
-                     * exception.
-                     */
-                    if (RetryUtils.isClockSkewError(ase)) {
-                        final int timeOffset = parseClockSkewOffset(httpResponse, ase);
-                        SDKGlobalConfiguration.setGlobalTimeOffset(timeOffset);
-                    }
-                    resetRequestAfterError(request, ase);
-                }
-            } catch (final IOException ioe) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
-                }
-                awsRequestMetrics.incrementCounter(Field.Exception);
-                awsRequestMetrics.addProperty(Field.Exception, ioe);
+            state.httpRequest = requestFactory.createHttpRequest(request, config,
+                    executionContext);
+
+            state.retriedException = null;
+            awsRequestMetrics.startEvent(Field.HttpRequestTime);
+            try {
+                state.httpResponse = httpClient.execute(state.httpRequest);
+            } finally {
+                awsRequestMetrics.endEvent(Field.HttpRequestTime);
+            }
+
+            final HttpResponse httpResponse = state.httpResponse;
+            if (isRequestSuccessful(httpResponse)) {
+                awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
+                updateSendingRate(false);
+                releaseRetryQuota(state);
+                /*
+                 * If we get back any 2xx status code, then we know we should
+                 * treat the service call as successful.
+                 */
+                state.leaveHttpConnectionOpen = responseHandler.needsConnectionLeftOpen();
+                final T response = handleResponse(request, responseHandler,
+                        httpResponse,
+                        executionContext);
+                return new Response<T>(response, httpResponse);
+            } else if (isTemporaryRedirect(httpResponse)) {
+                /*
+                 * S3 sends 307 Temporary Redirects if you try to delete an EU
+                 * bucket from the US endpoint. If we get a 307, we'll point the
+                 * HTTP method to the redirected location, and let the next
+                 * retry deliver the request to the right location.
+                 */
+                final String redirectedLocation = httpResponse.getHeaders().get("Location");
+                log.debug("Redirecting to: " + redirectedLocation);
+                // set redirect uri and retry
+                state.redirectedURI = URI.create(redirectedLocation);
+                request.setEndpoint(null);
+                request.setResourcePath(null);
+                awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
+                awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
                 awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+            } else {
+                state.leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
+                final AmazonServiceException ase = handleErrorResponse(request,
+                        errorResponseHandler,
+                        httpResponse);
+                awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
+                awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
+                awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
+                updateSendingRate(RetryUtils.isThrottlingException(ase));
 
-                final AmazonClientException ace = new AmazonClientException(
-                        "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 if (!shouldRetry(request.getOriginalRequest(),
-                        httpRequest.getContent(),
-                        ace,
+                        state.httpRequest.getContent(),
+                        ase,
                         requestCount,
-                        config.getRetryPolicy())) {
-                    throw ace;
+                        config.getRetryPolicy())
+                        || !acquireRetryQuota(state, ase)) {
+                    throw ase;
                 }
 
                 // Cache the retryable exception
-                retriedException = ace;
-                resetRequestAfterError(request, ioe);
-            } catch (final RuntimeException e) {
-                throw handleUnexpectedFailure(e, awsRequestMetrics);
-            } catch (final Error e) {
-                throw handleUnexpectedFailure(e, awsRequestMetrics);
-            } finally {
+                state.retriedException = ase;
                 /*
-                 * Some response handlers need to manually manage the HTTP
-                 * connection and will take care of releasing the connection on
-                 * their own, but if this response handler doesn't need the
-                 * connection left open, we go ahead and release the it to free
-                 * up resources.
+                 * Checking for clock skew error again because we don't want to
+                 * set the global time offset for every service exception.
                  */
-                if (!leaveHttpConnectionOpen && httpResponse != null) {
-                    try {
-                        if (httpResponse.getRawContent() != null) {
-                            httpResponse.getRawContent().close();
-                        }
-                    } catch (final IOException e) {
-                        log.warn("Cannot close the response content.", e);
+                if (RetryUtils.isClockSkewError(ase)) {
+                    final int timeOffset = parseClockSkewOffset(httpResponse, ase);
+                    SDKGlobalConfiguration.setGlobalTimeOffset(timeOffset);
+                }
+                resetRequestAfterError(request, ase);
+            }
+        } catch (final IOException ioe) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+            }
+            awsRequestMetrics.incrementCounter(Field.Exception);
+            awsRequestMetrics.addProperty(Field.Exception, ioe);
+            awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+
+            final AmazonClientException ace = new AmazonClientException(
+                    "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+            if (!shouldRetry(request.getOriginalRequest(),
+                    state.httpRequest.getContent(),
+                    ace,
+                    requestCount,
+                    config.getRetryPolicy())
+                    || !acquireRetryQuota(state, ace)) {
+                throw ace;
+            }
+
+            // Cache the retryable exception
+            state.retriedException = ace;
+            resetRequestAfterError(request, ioe);
+        } catch (final RuntimeException e) {
+            throw handleUnexpectedFailure(e, awsRequestMetrics);
+        } catch (final Error e) {
+            throw handleUnexpectedFailure(e, awsRequestMetrics);
+        } finally {
+            /*
+             * Some response handlers need to manually manage the HTTP
+             * connection and will take care of releasing the connection on
+             * their own, but if this response handler doesn't need the
+             * connection left open, we go ahead and release the it to free up
+             * resources.
+             */
+            if (!state.leaveHttpConnectionOpen && state.httpResponse != null) {
+                try {
+                    if (state.httpResponse.getRawContent() != null) {
+                        state.httpResponse.getRawContent().close();
                     }
+                } catch (final IOException e) {
+                    log.warn("Cannot close the response content.", e);
                 }
             }
-        } /* end while (true) */
+        }
+        return null;
     }
 
     /**
@@ -730,6 +870,74 @@ public class AmazonHttpClient {
         return exception;
     }
 
+    /**
+     * Withdraws the cost of retrying after the given failure from the
+     * configured retry quota, if any.
+     *
+     * @return false if the quota is exhausted and the request must not be
+     *         retried.
+     */
+    private boolean acquireRetryQuota(ExecutionState state, AmazonClientException exception) {
+        final RetryQuota retryQuota = config.getRetryQuota();
+        if (retryQuota == null) {
+            return true;
+        }
+        final int cost = retryQuota.acquire(exception);
+        if (cost < 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Retry quota exhausted, not retrying: " + exception.getMessage());
+            }
+            return false;
+        }
+        state.retryQuotaCost = cost;
+        return true;
+    }
+
+    /**
+     * Returns the tokens withdrawn for the last retry, or the increment for a
+     * first attempt, to the configured retry quota after a success.
+     */
+    private void releaseRetryQuota(ExecutionState state) {
+        final RetryQuota retryQuota = config.getRetryQuota();
+        if (retryQuota != null) {
+            retryQuota.release(state.retryQuotaCost);
+        }
+    }
+
+    /**
+     * Reserves a token for the next attempt from the configured rate limiter,
+     * unless one is already reserved.
+     *
+     * @return the time to wait before sending the attempt, in milliseconds.
+     */
+    private long acquireSendToken(ExecutionState state) {
+        final AdaptiveRateLimiter rateLimiter = config.getRateLimiter();
+        if (rateLimiter == null || state.sendTokenAcquired) {
+            return 0;
+        }
+        state.sendTokenAcquired = true;
+        return rateLimiter.acquire();
+    }
+
+    private void updateSendingRate(boolean throttled) {
+        final AdaptiveRateLimiter rateLimiter = config.getRateLimiter();
+        if (rateLimiter != null) {
+            rateLimiter.updateSendingRate(throttled);
+        }
+    }
+
+    private void sleepForRateLimit(long delay) {
+        if (log.isDebugEnabled()) {
+            log.debug("Client side rate limit, sending request in " + delay + "ms");
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Sleep for a period of time on failed request to avoid flooding a service
      * with retries.
@@ -746,6 +954,35 @@ public class AmazonHttpClient {
             AmazonClientException previousException,
             int requestCount,
             RetryPolicy retryPolicy) {
+        final long delay = delayBeforeNextRetry(originalRequest, previousException,
+                requestCount, retryPolicy);
+
+        try {
+            Thread.sleep(delay);
+            return delay;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Computes the back-off delay before the next attempt of a failed
+     * request, without waiting for it.
+     *
+     * @param originalRequest The original service request that is being
+     *            executed.
+     * @param previousException Exception information for the previous attempt,
+     *            if any.
+     * @param requestCount current request count (including the next attempt
+     *            after the delay)
+     * @param retryPolicy The retry policy configured in this http client.
+     * @return the delay in milliseconds.
+     */
+    long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+            AmazonClientException previousException,
+            int requestCount,
+            RetryPolicy retryPolicy) {
         final int retries = requestCount // including next attempt
                 - 1 // number of attempted requests
                 - 1; // number of attempted retries
@@ -757,14 +994,7 @@ public class AmazonHttpClient {
             log.debug("Retriable error detected, " +
                     "will retry in " + delay + "ms, attempt number: " + retries);
         }
-
-        try {
-            Thread.sleep(delay);
-            return delay;
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
-        }
+        return delay;
     }
 
     /**
@@ -817,6 +1047,152 @@ public class AmazonHttpClient {
         return (int) (diff / TIME_MILLISEC);
     }
 
+    /**
+     * The state of one execution of a request that is carried from one
+     * attempt to the next.
+     */
+    static final class ExecutionState {
+        int requestCount;
+        long lastBackoffDelay;
+        URI redirectedURI;
+        AmazonClientException retriedException;
+        Map<String, String> originalParameters;
+        Map<String, String> originalHeaders;
+        InputStream originalContent;
+        AWSCredentials credentials;
+        Signer signer;
+        HttpRequest httpRequest;
+        HttpResponse httpResponse;
+        boolean leaveHttpConnectionOpen;
+        int retryQuotaCost;
+        boolean sendTokenAcquired;
+    }
+
+    /**
+     * An asynchronous execution of a request. Each run performs one attempt;
+     * a retryable failure reschedules this execution on the dispatcher after
+     * the back-off delay.
+     */
+    private final class AsyncExecution<T> implements AsyncRequestDispatcher.DelayedAttempt {
+        private final Request<?> request;
+        private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+        private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+        private final ExecutionContext executionContext;
+        private final List<RequestHandler2> requestHandler2s;
+        private final ExecutionState state;
+        private final AsyncRequestDispatcher dispatcher;
+        private final AsyncHandler<AmazonWebServiceRequest, Response<T>> asyncHandler;
+        private final AsyncResponseFuture<Response<T>> future =
+                new AsyncResponseFuture<Response<T>>();
+
+        @SuppressWarnings("checkstyle:parameternumber")
+        AsyncExecution(Request<?> request,
+                HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+                ExecutionContext executionContext,
+                List<RequestHandler2> requestHandler2s,
+                ExecutionState state,
+                AsyncRequestDispatcher dispatcher,
+                AsyncHandler<AmazonWebServiceRequest, Response<T>> asyncHandler) {
+            this.request = request;
+            this.responseHandler = responseHandler;
+            this.errorResponseHandler = errorResponseHandler;
+            this.executionContext = executionContext;
+            this.requestHandler2s = requestHandler2s;
+            this.state = state;
+            this.dispatcher = dispatcher;
+            this.asyncHandler = asyncHandler;
+        }
+
+        @Override
+        public void run() {
+            final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+            if (future.isCancelled()) {
+                return;
+            }
+            // Wait for the rate limiter without holding a thread; a retry
+            // keeps accounting this wait as part of its pause.
+            final long rateLimitDelay = acquireSendToken(state);
+            if (rateLimitDelay > 0) {
+                try {
+                    dispatcher.schedule(this, rateLimitDelay);
+                    return;
+                } catch (final RejectedExecutionException e) {
+                    log.debug("Unable to delay request for rate limit, sending it now", e);
+                }
+            }
+            if (state.requestCount > 0) {
+                awsRequestMetrics.endEvent(Field.RetryPauseTime);
+            }
+            try {
+                final Response<T> response = executeOnce(request, responseHandler,
+                        errorResponseHandler, executionContext, state, false);
+                if (response == null) {
+                    scheduleRetry(awsRequestMetrics);
+                    return;
+                }
+                final TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
+                afterResponse(request, requestHandler2s, response, timingInfo);
+                onSuccess(response);
+            } catch (final AmazonClientException e) {
+                afterError(request, null, requestHandler2s, e);
+                onFailure(e);
+            } catch (final RuntimeException e) {
+                onFailure(e);
+            } catch (final Error e) {
+                onFailure(e);
+            }
+        }
+
+        @Override
+        public void onRejected(RejectedExecutionException e) {
+            final AmazonClientException ace = new AmazonClientException(
+                    "Unable to run delayed request", e);
+            afterError(request, null, requestHandler2s, ace);
+            onFailure(ace);
+        }
+
+        private void scheduleRetry(AWSRequestMetrics awsRequestMetrics) {
+            state.lastBackoffDelay = delayBeforeNextRetry(request.getOriginalRequest(),
+                    state.retriedException,
+                    state.requestCount + 1,
+                    config.getRetryPolicy());
+            awsRequestMetrics.startEvent(Field.RetryPauseTime);
+            try {
+                dispatcher.schedule(this, state.lastBackoffDelay);
+            } catch (final RejectedExecutionException e) {
+                awsRequestMetrics.endEvent(Field.RetryPauseTime);
+                final AmazonClientException ace = new AmazonClientException(
+                        "Unable to schedule request retry", state.retriedException);
+                afterError(request, null, requestHandler2s, ace);
+                onFailure(ace);
+            }
+        }
+
+        private void onSuccess(Response<T> response) {
+            if (asyncHandler != null && !future.isDone()) {
+                try {
+                    asyncHandler.onSuccess(request.getOriginalRequest(), response);
+                } catch (final RuntimeException e) {
+                    log.warn("Async handler threw an exception", e);
+                }
+            }
+            future.set(response);
+        }
+
+        private void onFailure(Throwable t) {
+            if (asyncHandler != null && !future.isDone()) {
+                try {
+                    asyncHandler.onError(t instanceof Exception ? (Exception) t
+                            : new AmazonClientException(t.getMessage(), t));
+                } catch (final RuntimeException e) {
+                    log.warn("Async handler threw an exception", e);
+                }
+            }
+            future.setFailure(t);
+        }
+    }
+
     @Override
     protected void finalize() throws Throwable {
         this.shutdown();
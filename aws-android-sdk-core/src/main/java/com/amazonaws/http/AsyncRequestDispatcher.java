@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives the asynchronous executions of a single {@link AmazonHttpClient}.
+ * <p>
+ * Request attempts run on a {@link ScheduledExecutorService}, by default one
+ * shared by all clients. A retry back-off is a delayed task on that scheduler
+ * instead of a sleeping thread, so requests waiting to be retried do not pin
+ * any thread. At most {@code maxConcurrentRequests} attempts of the owning
+ * client run at the same time; further attempts are queued in arrival order
+ * and started as running attempts complete.
+ */
+final class AsyncRequestDispatcher {
+
+    /** Number of threads in the scheduler shared by all clients. */
+    private static final int SHARED_SCHEDULER_THREADS = 10;
+
+    /** Idle time after which the shared scheduler's threads are released. */
+    private static final long SHARED_SCHEDULER_KEEP_ALIVE_SECONDS = 60;
+
+    private static final Log log = LogFactory.getLog(AsyncRequestDispatcher.class);
+
+    /** Scheduler shared by all clients, created on first use. */
+    private static ScheduledExecutorService sharedScheduler;
+
+    private final ScheduledExecutorService scheduler;
+    private final int maxConcurrentRequests;
+
+    /** Attempts waiting for a running slot. Guarded by this. */
+    private final Queue<Runnable> pending = new LinkedList<Runnable>();
+
+    /** Number of attempts currently running. Guarded by this. */
+    private int running;
+
+    /**
+     * @param scheduler the scheduler that runs the attempts and their retry
+     *            back-off.
+     * @param maxConcurrentRequests the maximum number of attempts running at
+     *            the same time.
+     */
+    AsyncRequestDispatcher(ScheduledExecutorService scheduler, int maxConcurrentRequests) {
+        if (scheduler == null) {
+            throw new IllegalArgumentException("scheduler cannot be null");
+        }
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+        }
+        this.scheduler = scheduler;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Returns the scheduler shared by all clients that do not specify their
+     * own. Its daemon threads are released after a minute of inactivity.
+     *
+     * @return the shared scheduler.
+     */
+    static synchronized ScheduledExecutorService getSharedScheduler() {
+        if (sharedScheduler == null) {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                    SHARED_SCHEDULER_THREADS, new ThreadFactory() {
+                        private final AtomicInteger threadCount = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            final Thread t = new Thread(r);
+                            t.setName("android-sdk-async-request-thread-"
+                                    + threadCount.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            executor.setKeepAliveTime(SHARED_SCHEDULER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            executor.allowCoreThreadTimeOut(true);
+            sharedScheduler = executor;
+        }
+        return sharedScheduler;
+    }
+
+    /**
+     * Runs the given attempt as soon as a slot is available.
+     *
+     * @param attempt the request attempt.
+     * @throws RejectedExecutionException if the scheduler no longer accepts
+     *             tasks.
+     */
+    void execute(Runnable attempt) {
+        synchronized (this) {
+            if (running >= maxConcurrentRequests) {
+                pending.add(attempt);
+                return;
+            }
+            running++;
+        }
+        try {
+            start(attempt);
+        } catch (final RejectedExecutionException e) {
+            onAttemptFinished();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the given attempt after the given delay. The attempt does not hold
+     * a slot while it is waiting. If the scheduler stops accepting tasks
+     * while the attempt is waiting, the attempt is told through
+     * {@link DelayedAttempt#onRejected(RejectedExecutionException)}.
+     *
+     * @param attempt the request attempt.
+     * @param delayMillis the delay in milliseconds.
+     * @throws RejectedExecutionException if the scheduler no longer accepts
+     *             tasks.
+     */
+    void schedule(final DelayedAttempt attempt, long delayMillis) {
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    execute(attempt);
+                } catch (final RejectedExecutionException e) {
+                    attempt.onRejected(e);
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A request attempt that can be delayed, and that must be told if it can
+     * no longer run so that its caller is not left waiting.
+     */
+    interface DelayedAttempt extends Runnable {
+        /**
+         * Called, on the scheduler thread, when the scheduler rejected the
+         * attempt once its delay was over.
+         *
+         * @param e the rejection.
+         */
+        void onRejected(RejectedExecutionException e);
+    }
+
+    /**
+     * @return the number of attempts currently running.
+     */
+    synchronized int getRunningCount() {
+        return running;
+    }
+
+    /**
+     * @return the number of attempts waiting for a slot.
+     */
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private void start(final Runnable attempt) {
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    attempt.run();
+                } finally {
+                    onAttemptFinished();
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands the slot of a finished attempt to the next pending one, if any.
+     */
+    private void onAttemptFinished() {
+        final Runnable next;
+        synchronized (this) {
+            next = pending.poll();
+            if (next == null) {
+                running--;
+                return;
+            }
+        }
+        try {
+            start(next);
+        } catch (final RejectedExecutionException e) {
+            // The scheduler was shut down underneath us; run the attempt on
+            // this thread so that its future is still completed.
+            log.debug("Scheduler rejected a pending request, running it inline", e);
+            try {
+                next.run();
+            } finally {
+                onAttemptFinished();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future of an asynchronous execution started through
+ * {@link AmazonHttpClient#executeAsync}. It is completed by whichever thread
+ * runs the final attempt of the request. Cancelling the future prevents any
+ * further attempt from being started, but does not interrupt an attempt that
+ * is already in flight.
+ *
+ * @param <V> the result type.
+ */
+final class AsyncResponseFuture<V> implements Future<V> {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /** Guarded by this. */
+    private boolean completed;
+    private boolean cancelled;
+    private V result;
+    private Throwable failure;
+
+    /**
+     * Completes the future with the given result.
+     *
+     * @param value the result.
+     * @return true if this call completed the future.
+     */
+    boolean set(V value) {
+        synchronized (this) {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            result = value;
+        }
+        done.countDown();
+        return true;
+    }
+
+    /**
+     * Completes the future with the given failure.
+     *
+     * @param t the failure.
+     * @return true if this call completed the future.
+     */
+    boolean setFailure(Throwable t) {
+        synchronized (this) {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            failure = t;
+        }
+        done.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            cancelled = true;
+        }
+        done.countDown();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return completed;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        done.await();
+        return getResult();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private synchronized V getResult() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return result;
+    }
+}
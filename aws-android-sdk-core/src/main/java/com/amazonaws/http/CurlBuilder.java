@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Helper class to build a curl message, logged by the HTTP clients when
+ * {@link com.amazonaws.ClientConfiguration#isCurlLogging()} is set.
+ */
+final class CurlBuilder {
+
+    /** The {@link URL} of the operation. */
+    private final URL url;
+    /** The method to execute on the given url. */
+    private String method = null;
+    /**
+     * A map of headers and their values to be sent with the curl request.
+     */
+    private final HashMap<String, String> headers = new HashMap<String, String>();
+    /** The content to send with the curl request. */
+    private String content = null;
+    /** Whether or not the content cannot be written to the curl command. */
+    private boolean contentOverflow = false;
+
+    /**
+     * Builds a new curl command for the given {@link URL}.
+     *
+     * @param url The {@link URL} for the operation, must not be
+     *            {@code null}.
+     */
+    public CurlBuilder(URL url) {
+        if (url == null) {
+            throw new IllegalArgumentException("Must have a valid url");
+        }
+        this.url = url;
+    }
+
+    /**
+     * Set the method to call for the given curl command. This method will
+     * override the previous value.
+     *
+     * @param method The method to use for the request.
+     * @return This object for chaining.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public CurlBuilder setMethod(String method) {
+        this.method = method;
+        return this;
+    }
+
+    /**
+     * Set the headers used for the given curl command. This method will
+     * override the previous values.
+     *
+     * @param headers The headers to use for the request.
+     * @return This object for chaining.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public CurlBuilder setHeaders(Map<String, String> headers) {
+        this.headers.clear();
+        this.headers.putAll(headers);
+        return this;
+    }
+
+    /**
+     * Set the content used for the given curl command. This method will
+     * override the previous value.
+     *
+     * @param content The content to use for the request.
+     * @return This object for chaining.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public CurlBuilder setContent(String content) {
+        this.content = content;
+        return this;
+    }
+
+    /**
+     * Sets whether or not the content is too large for the curl command.
+     * Content of length greater than {@link Integer#MAX_VALUE} are
+     * considered too long. If set, the curl should not be logged as it will
+     * be invalid.
+     *
+     * @param contentOverflow Whether or not the content is too long to
+     *            print.
+     * @return This object for chaining.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public CurlBuilder setContentOverflow(boolean contentOverflow) {
+        this.contentOverflow = contentOverflow;
+        return this;
+    }
+
+    /**
+     * @return Whether or not this object is valid for printing.
+     */
+    public boolean isValid() {
+        return !contentOverflow;
+    }
+
+    /**
+     * Creates a curl command that can be replayed from command line.
+     *
+     * @return The curl command.
+     * @throws IllegalStateException If {@link #isValid()} returns false.
+     */
+    public String build() {
+        if (!isValid()) {
+            throw new IllegalStateException("Invalid state, cannot create curl command");
+        }
+        final StringBuilder stringBuilder = new StringBuilder("curl");
+        if (method != null) {
+            stringBuilder.append(" -X ")
+                    .append(method);
+        }
+        for (final Map.Entry<String, String> entry : headers.entrySet()) {
+            stringBuilder.append(" -H \"")
+                    .append(entry.getKey())
+                    .append(":")
+                    .append(entry.getValue())
+                    .append("\"");
+        }
+        if (content != null) {
+            stringBuilder.append(" -d '")
+                    .append(content)
+                    .append("'");
+        }
+        return stringBuilder.append(" ")
+                .append(url.toString())
+                .toString();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * Creates the {@link HttpClient} that service clients use by default.
+ */
+public final class HttpClients {
+
+    private HttpClients() {
+    }
+
+    /**
+     * Creates the HTTP client selected by the given configuration: a
+     * {@link PooledHttpClient} if
+     * {@link ClientConfiguration#isUseConnectionPool()} is set, otherwise a
+     * {@link UrlHttpClient}.
+     *
+     * @param config the client configuration.
+     * @return a new HTTP client.
+     */
+    public static HttpClient createDefault(ClientConfiguration config) {
+        if (config.isUseConnectionPool()) {
+            return new PooledHttpClient(config);
+        }
+        return new UrlHttpClient(config);
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pool of persistent HTTP connections used by {@link PooledHttpClient}.
+ * <p>
+ * Connections are grouped by route (scheme, host and port). The pool bounds
+ * the number of connections per route as well as the total number of
+ * connections, and hands out the most recently used idle connection of a
+ * route first. Idle connections are closed once they have been idle for
+ * longer than the configured maximum idle time, either when a connection is
+ * leased or when the {@link IdleConnectionReaper} runs.
+ */
+class HttpConnectionPool {
+
+    private static final Log log = LogFactory.getLog(HttpConnectionPool.class);
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final int maxConnectionsPerRoute;
+    private final int maxTotalConnections;
+    private final long maxIdleMillis;
+
+    /** Per route state. Guarded by this. */
+    private final Map<String, RouteState> routes = new HashMap<String, RouteState>();
+
+    /** Number of connections allocated across all routes. Guarded by this. */
+    private int totalAllocated;
+
+    /** Guarded by this. */
+    private boolean shutdown;
+
+    /**
+     * @param maxConnectionsPerRoute maximum number of connections to a single
+     *            route.
+     * @param maxTotalConnections maximum number of connections across all
+     *            routes.
+     * @param maxIdleMillis time after which an idle connection is closed.
+     */
+    HttpConnectionPool(int maxConnectionsPerRoute, int maxTotalConnections, long maxIdleMillis) {
+        if (maxConnectionsPerRoute <= 0 || maxTotalConnections <= 0) {
+            throw new IllegalArgumentException("Connection limits must be positive");
+        }
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.maxTotalConnections = maxTotalConnections;
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    /**
+     * Leases a connection to the given route. Returns an idle pooled
+     * connection if one is available. Otherwise, if the limits allow it, a
+     * slot is reserved for a new connection and null is returned; the caller
+     * must then open a connection and either {@link #release} it or call
+     * {@link #cancelReservation} if opening failed.
+     *
+     * @param route the route key.
+     * @param timeoutMillis maximum time to wait for a connection or a slot; 0
+     *            waits indefinitely.
+     * @return an idle connection, or null if the caller should open a new one.
+     * @throws IOException if the pool is shut down, or no connection became
+     *             available in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    synchronized PooledConnection lease(String route, long timeoutMillis)
+            throws IOException, InterruptedException {
+        final long deadline = timeoutMillis > 0
+                ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+        final RouteState state = getRouteState(route);
+        while (true) {
+            if (shutdown) {
+                throw new IOException("Connection pool shut down");
+            }
+            final long now = System.currentTimeMillis();
+            while (!state.idle.isEmpty()) {
+                final PooledConnection connection = state.idle.removeFirst();
+                if (connection.isExpired(now, maxIdleMillis) || !connection.isOpen()) {
+                    discard(state, connection);
+                    continue;
+                }
+                return connection;
+            }
+            if (state.allocated < maxConnectionsPerRoute) {
+                if (totalAllocated >= maxTotalConnections) {
+                    closeOldestIdleConnection();
+                }
+                if (totalAllocated < maxTotalConnections) {
+                    state.allocated++;
+                    totalAllocated++;
+                    return null;
+                }
+            }
+            final long remaining = deadline - now;
+            if (remaining <= 0) {
+                throw new IOException("Timeout waiting for connection from pool");
+            }
+            wait(remaining);
+        }
+    }
+
+    /**
+     * Releases a slot reserved by {@link #lease} that could not be turned into
+     * a connection.
+     *
+     * @param route the route key.
+     */
+    synchronized void cancelReservation(String route) {
+        final RouteState state = getRouteState(route);
+        state.allocated--;
+        totalAllocated--;
+        notifyAll();
+    }
+
+    /**
+     * Returns a leased connection to the pool.
+     *
+     * @param connection the connection.
+     * @param reusable whether the connection can be reused; if false it is
+     *            closed.
+     */
+    synchronized void release(PooledConnection connection, boolean reusable) {
+        final RouteState state = getRouteState(connection.route);
+        if (reusable && !shutdown && connection.isOpen()) {
+            connection.lastUsed = System.currentTimeMillis();
+            state.idle.addFirst(connection);
+        } else {
+            discard(state, connection);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Closes connections that have been idle for longer than the maximum idle
+     * time. Invoked periodically by the {@link IdleConnectionReaper}.
+     */
+    void closeExpiredConnections() {
+        final List<PooledConnection> expired = new ArrayList<PooledConnection>();
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            for (final RouteState state : routes.values()) {
+                final Iterator<PooledConnection> it = state.idle.iterator();
+                while (it.hasNext()) {
+                    final PooledConnection connection = it.next();
+                    if (connection.isExpired(now, maxIdleMillis)) {
+                        it.remove();
+                        state.allocated--;
+                        totalAllocated--;
+                        expired.add(connection);
+                    }
+                }
+            }
+            if (!expired.isEmpty()) {
+                notifyAll();
+            }
+        }
+        for (final PooledConnection connection : expired) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Closes all idle connections and rejects further leases. Leased
+     * connections are closed when they are released.
+     */
+    void shutdown() {
+        final List<PooledConnection> idle = new ArrayList<PooledConnection>();
+        synchronized (this) {
+            shutdown = true;
+            for (final RouteState state : routes.values()) {
+                state.allocated -= state.idle.size();
+                totalAllocated -= state.idle.size();
+                idle.addAll(state.idle);
+                state.idle.clear();
+            }
+            notifyAll();
+        }
+        for (final PooledConnection connection : idle) {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return the number of idle connections across all routes.
+     */
+    synchronized int getIdleCount() {
+        int count = 0;
+        for (final RouteState state : routes.values()) {
+            count += state.idle.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of connections allocated across all routes.
+     */
+    synchronized int getAllocatedCount() {
+        return totalAllocated;
+    }
+
+    private RouteState getRouteState(String route) {
+        RouteState state = routes.get(route);
+        if (state == null) {
+            state = new RouteState();
+            routes.put(route, state);
+        }
+        return state;
+    }
+
+    private void discard(RouteState state, PooledConnection connection) {
+        state.allocated--;
+        totalAllocated--;
+        connection.close();
+    }
+
+    /**
+     * Closes the least recently used idle connection of any route to make room
+     * for a connection to another route.
+     */
+    private void closeOldestIdleConnection() {
+        RouteState oldestState = null;
+        PooledConnection oldest = null;
+        for (final RouteState state : routes.values()) {
+            if (!state.idle.isEmpty()) {
+                final PooledConnection candidate = state.idle.getLast();
+                if (oldest == null || candidate.lastUsed < oldest.lastUsed) {
+                    oldest = candidate;
+                    oldestState = state;
+                }
+            }
+        }
+        if (oldest != null) {
+            oldestState.idle.removeLast();
+            discard(oldestState, oldest);
+        }
+    }
+
+    /** Connections of one route; the most recently used idle one first. */
+    private static final class RouteState {
+        private final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+        private int allocated;
+    }
+
+    /**
+     * An open connection to a route with buffered streams.
+     */
+    static final class PooledConnection {
+        final String route;
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+        /** Scratch buffer for copying request and response bodies. */
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long lastUsed;
+
+        /**
+         * @param route the route key.
+         * @param socket the connected socket.
+         * @throws IOException if the socket streams cannot be obtained.
+         */
+        PooledConnection(String route, Socket socket) throws IOException {
+            this.route = route;
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        boolean isOpen() {
+            return !socket.isClosed() && !socket.isInputShutdown()
+                    && !socket.isOutputShutdown();
+        }
+
+        boolean isExpired(long now, long maxIdleMillis) {
+            return now - lastUsed > maxIdleMillis;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (final IOException e) {
+                log.debug("Unable to close connection to " + route, e);
+            }
+        }
+    }
+}
@@ -52,6 +52,11 @@ public final class IdleConnectionReaper extends Thread {
      * periodically checked and idle connections closed.
      */
     private static final ArrayList<ClientConnectionManager> CONNECTION_MANAGERS = new ArrayList<ClientConnectionManager>();
+    /**
+     * The list of registered {@link PooledHttpClient} connection pools, whose
+     * expired idle connections will be periodically closed.
+     */
+    private static final ArrayList<HttpConnectionPool> CONNECTION_POOLS = new ArrayList<HttpConnectionPool>();
     /**
      * Set to true when shutting down the reaper; Once set to true, this flag is
      * never set back to false.
@@ -95,7 +100,35 @@ public final class IdleConnectionReaper extends Thread {
     public static synchronized boolean removeConnectionManager(
             ClientConnectionManager connectionManager) {
         boolean b = CONNECTION_MANAGERS.remove(connectionManager);
-        if (CONNECTION_MANAGERS.isEmpty())
+        if (CONNECTION_MANAGERS.isEmpty() && CONNECTION_POOLS.isEmpty())
+            shutdown();
+        return b;
+    }
+
+    /**
+     * Registers the given connection pool with this reaper.
+     * @param connectionPool the connection pool.
+     * @return true if the connection pool has been successfully registered;
+     *         false otherwise.
+     */
+    static synchronized boolean registerConnectionPool(HttpConnectionPool connectionPool) {
+        if (instance == null) {
+            instance = new IdleConnectionReaper();
+            instance.start();
+        }
+        return CONNECTION_POOLS.add(connectionPool);
+    }
+
+    /**
+     * Removes the given connection pool from this reaper, and shutting down
+     * the reaper if there is nothing left to monitor.
+     * @param connectionPool the connection pool.
+     * @return true if the connection pool has been successfully removed;
+     *         false otherwise.
+     */
+    static synchronized boolean removeConnectionPool(HttpConnectionPool connectionPool) {
+        boolean b = CONNECTION_POOLS.remove(connectionPool);
+        if (CONNECTION_MANAGERS.isEmpty() && CONNECTION_POOLS.isEmpty())
             shutdown();
         return b;
     }
@@ -122,9 +155,12 @@ public final class IdleConnectionReaper extends Thread {
                 // (rather
                 // than block/lock while this loop executes).
                 List<ClientConnectionManager> connectionManagers = null;
+                List<HttpConnectionPool> connectionPools = null;
                 synchronized (IdleConnectionReaper.class) {
                     connectionManagers = (List<ClientConnectionManager>) IdleConnectionReaper.CONNECTION_MANAGERS
                             .clone();
+                    connectionPools = (List<HttpConnectionPool>) IdleConnectionReaper.CONNECTION_POOLS
+                            .clone();
                 }
                 for (ClientConnectionManager connectionManager : connectionManagers) {
                     // When we release connections, the connection manager
@@ -137,6 +173,15 @@ public final class IdleConnectionReaper extends Thread {
                         log.warn("Unable to close idle connections", t);
                     }
                 }
+                for (HttpConnectionPool connectionPool : connectionPools) {
+                    // Pools close connections according to their own
+                    // configured maximum idle time.
+                    try {
+                        connectionPool.closeExpiredConnections();
+                    } catch (Exception t) {
+                        log.warn("Unable to close idle connections", t);
+                    }
+                }
             } catch (Throwable t) {
                 log.debug("Reaper thread: ", t);
             }
@@ -159,6 +204,7 @@ public final class IdleConnectionReaper extends Thread {
             instance.markShuttingDown();
             instance.interrupt();
             CONNECTION_MANAGERS.clear();
+            CONNECTION_POOLS.clear();
             instance = null;
             return true;
         }
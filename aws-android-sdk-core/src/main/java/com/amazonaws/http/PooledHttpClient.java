@@ -0,0 +1,759 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.HttpConnectionPool.PooledConnection;
+import com.amazonaws.util.StringUtils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+/**
+ * An implementation of {@link HttpClient} that speaks HTTP/1.1 over an
+ * explicit pool of persistent connections.
+ * <p>
+ * Compared to {@link UrlHttpClient}, connections are kept alive and reused
+ * according to the limits of the {@link ClientConfiguration}:
+ * {@link ClientConfiguration#getMaxConnectionsPerHost()} bounds the
+ * connections to a single host, {@link ClientConfiguration#getMaxConnections()}
+ * bounds the total, and connections idle for longer than
+ * {@link ClientConfiguration#getConnectionMaxIdleMillis()} are closed, either
+ * lazily or by the {@link IdleConnectionReaper}. All TLS connections of a
+ * client are created by the same socket factory, so TLS sessions are cached
+ * and resumed when a new connection to the same host is opened.
+ * <p>
+ * The Expect 100-continue header is not sent; request bodies are written
+ * immediately after the headers. Requests through a proxy are delegated to a
+ * {@link UrlHttpClient}. Like it, this client logs each request as a curl
+ * command when {@link ClientConfiguration#isCurlLogging()} is set; the content
+ * of the request is then buffered in memory while it is sent.
+ */
+public class PooledHttpClient implements HttpClient {
+
+    private static final Log log = LogFactory.getLog(PooledHttpClient.class);
+
+    private static final int HTTP_PORT = 80;
+    private static final int HTTPS_PORT = 443;
+    private static final int HTTP_STATUS_CONTINUE = 100;
+    private static final int HTTP_STATUS_OK = 200;
+    private static final int HTTP_STATUS_NO_CONTENT = 204;
+    private static final int HTTP_STATUS_NOT_MODIFIED = 304;
+    private static final int HEX_RADIX = 16;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    /**
+     * Maximum number of unread response bytes that are drained when a
+     * response is closed early, so that its connection can be reused.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private static final byte[] CRLF = {
+            '\r', '\n'
+    };
+    private static final byte[] LAST_CHUNK = {
+            '0', '\r', '\n', '\r', '\n'
+    };
+
+    private final ClientConfiguration config;
+    private final HttpConnectionPool pool;
+    private final SSLSocketFactory sslSocketFactory;
+    private final HostnameVerifier hostnameVerifier =
+            HttpsURLConnection.getDefaultHostnameVerifier();
+
+    /** Client used instead when a proxy is configured; null otherwise. */
+    private final UrlHttpClient proxyClient;
+
+    /**
+     * Constructor.
+     * @param config the client config.
+     */
+    public PooledHttpClient(ClientConfiguration config) {
+        this.config = config;
+        this.pool = new HttpConnectionPool(config.getMaxConnectionsPerHost(),
+                config.getMaxConnections(), config.getConnectionMaxIdleMillis());
+        this.sslSocketFactory = createSslSocketFactory(config);
+        this.proxyClient = config.getProxyHost() != null && config.getProxyPort() > 0
+                ? new UrlHttpClient(config) : null;
+        if (config.useReaper()) {
+            IdleConnectionReaper.registerConnectionPool(pool);
+        }
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        if (proxyClient != null) {
+            return proxyClient.execute(request);
+        }
+        final URI uri = request.getUri();
+        final boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        final String host = uri.getHost();
+        final int port = uri.getPort() != -1 ? uri.getPort() : secure ? HTTPS_PORT : HTTP_PORT;
+        final String route = (secure ? "https://" : "http://") + host + ":" + port;
+        final InputStream content = request.getContent();
+
+        boolean retried = false;
+        while (true) {
+            PooledConnection connection = leaseConnection(route);
+            final boolean reused = connection != null;
+            if (connection == null) {
+                boolean connected = false;
+                try {
+                    connection = connect(route, host, port, secure);
+                    connected = true;
+                } finally {
+                    if (!connected) {
+                        pool.cancelReservation(route);
+                    }
+                }
+            }
+            boolean written = false;
+            try {
+                writeRequest(connection, request);
+                written = true;
+                return readResponse(connection, request);
+            } catch (final IOException e) {
+                pool.release(connection, false);
+                /*
+                 * The server may have closed a pooled connection while it was
+                 * idle, in which case either the write fails or the connection
+                 * closes before any byte of the response. Only then is the
+                 * request known not to have been processed, so retry once on
+                 * a new connection if the content can be sent again. A read
+                 * timeout or a failure after the response started arriving is
+                 * never retried.
+                 */
+                final boolean unprocessed = !written || e instanceof NoResponseException;
+                if (reused && !retried && unprocessed
+                        && (content == null || content.markSupported())) {
+                    log.debug("Pooled connection to " + route + " failed, retrying", e);
+                    retried = true;
+                    if (content != null) {
+                        content.reset();
+                    }
+                    continue;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Closes all pooled connections and stops monitoring them.
+     */
+    @Override
+    public void shutdown() {
+        if (config.useReaper()) {
+            IdleConnectionReaper.removeConnectionPool(pool);
+        }
+        pool.shutdown();
+        if (proxyClient != null) {
+            proxyClient.shutdown();
+        }
+    }
+
+    /**
+     * @return the connection pool of this client.
+     */
+    HttpConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    private PooledConnection leaseConnection(String route) throws IOException {
+        try {
+            return pool.lease(route, config.getConnectionTimeout());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+        }
+    }
+
+    PooledConnection connect(String route, String host, int port, boolean secure)
+            throws IOException {
+        final Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSoTimeout(config.getSocketTimeout());
+            final int[] bufferSizeHints = config.getSocketBufferSizeHints();
+            if (bufferSizeHints[0] > 0) {
+                socket.setSendBufferSize(bufferSizeHints[0]);
+            }
+            if (bufferSizeHints[1] > 0) {
+                socket.setReceiveBufferSize(bufferSizeHints[1]);
+            }
+            if (config.getLocalAddress() != null) {
+                socket.bind(new InetSocketAddress(config.getLocalAddress(), 0));
+            }
+            socket.connect(new InetSocketAddress(host, port), config.getConnectionTimeout());
+            if (!secure) {
+                return new PooledConnection(route, socket);
+            }
+            // Layering with the host and port lets the factory resume a
+            // cached TLS session and send the server name indication.
+            final SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, host,
+                    port, true);
+            sslSocket.startHandshake();
+            if (!hostnameVerifier.verify(host, sslSocket.getSession())) {
+                throw new SSLPeerUnverifiedException("Hostname " + host
+                        + " does not match the certificate of the server");
+            }
+            return new PooledConnection(route, sslSocket);
+        } catch (final IOException e) {
+            try {
+                socket.close();
+            } catch (final IOException ignored) {
+                // the original exception is more meaningful
+            }
+            throw e;
+        }
+    }
+
+    void writeRequest(PooledConnection connection, HttpRequest request) throws IOException {
+        final URI uri = request.getUri();
+        String path = uri.getRawPath();
+        if (path == null || path.length() == 0) {
+            path = "/";
+        }
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+
+        final StringBuilder head = new StringBuilder(256);
+        head.append(request.getMethod()).append(' ').append(path).append(" HTTP/1.1\r\n");
+        boolean hasHost = false;
+        if (request.getHeaders() != null) {
+            for (final Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                final String key = header.getKey();
+                // Framing headers are written below; 100-continue is not
+                // supported, so the body is always sent right away.
+                if (key.equalsIgnoreCase(HttpHeader.CONTENT_LENGTH)
+                        || key.equalsIgnoreCase(HttpHeader.EXPECT)
+                        || key.equalsIgnoreCase("Transfer-Encoding")
+                        || key.equalsIgnoreCase("Connection")) {
+                    continue;
+                }
+                if (key.equalsIgnoreCase(HttpHeader.HOST)) {
+                    hasHost = true;
+                }
+                head.append(key).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        if (!hasHost) {
+            head.append("Host: ").append(uri.getHost());
+            if (uri.getPort() != -1) {
+                head.append(':').append(uri.getPort());
+            }
+            head.append("\r\n");
+        }
+
+        final InputStream content = request.getContent();
+        final boolean chunked = content != null && request.isStreaming();
+        if (chunked) {
+            head.append("Transfer-Encoding: chunked\r\n");
+        } else if (content != null) {
+            head.append("Content-Length: ").append(request.getContentLength()).append("\r\n");
+        } else if ("POST".equals(request.getMethod()) || "PUT".equals(request.getMethod())) {
+            head.append("Content-Length: 0\r\n");
+        }
+        head.append("\r\n");
+
+        CurlBuilder curlBuilder = null;
+        ByteArrayOutputStream curlContent = null;
+        if (config.isCurlLogging()) {
+            curlBuilder = new CurlBuilder(uri.toURL()).setMethod(request.getMethod());
+            if (request.getHeaders() != null) {
+                curlBuilder.setHeaders(request.getHeaders());
+            }
+            if (content != null) {
+                if (request.getContentLength() < Integer.MAX_VALUE) {
+                    curlContent = new ByteArrayOutputStream();
+                } else {
+                    curlBuilder.setContentOverflow(true);
+                }
+            }
+        }
+
+        final OutputStream out = connection.out;
+        out.write(head.toString().getBytes(StringUtils.UTF8));
+        if (chunked) {
+            writeChunked(content, out, connection.buffer, curlContent);
+        } else if (content != null) {
+            writeFixedLength(content, out, connection.buffer, request.getContentLength(),
+                    curlContent);
+        }
+        out.flush();
+
+        if (curlBuilder != null) {
+            if (curlContent != null && curlContent.size() > 0) {
+                curlBuilder.setContent(new String(curlContent.toByteArray(), StringUtils.UTF8));
+            }
+            if (curlBuilder.isValid()) {
+                printToLog(curlBuilder.build());
+            } else {
+                printToLog("Failed to create curl, content too long");
+            }
+        }
+    }
+
+    protected void printToLog(String message) {
+        log.debug(message);
+    }
+
+    /**
+     * Writes content of a known length. The content is also copied to
+     * curlContent, unless it is null.
+     */
+    private void writeFixedLength(InputStream content, OutputStream out, byte[] buffer,
+            long length, ByteArrayOutputStream curlContent) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            final int read = content.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new IOException("Request content ended " + remaining
+                        + " bytes before its declared length of " + length);
+            }
+            out.write(buffer, 0, read);
+            if (curlContent != null) {
+                curlContent.write(buffer, 0, read);
+            }
+            remaining -= read;
+        }
+    }
+
+    private void writeChunked(InputStream content, OutputStream out, byte[] buffer,
+            ByteArrayOutputStream curlContent) throws IOException {
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            if (read == 0) {
+                continue;
+            }
+            out.write(Integer.toHexString(read).getBytes(StringUtils.UTF8));
+            out.write(CRLF);
+            out.write(buffer, 0, read);
+            out.write(CRLF);
+            if (curlContent != null) {
+                curlContent.write(buffer, 0, read);
+            }
+        }
+        out.write(LAST_CHUNK);
+    }
+
+    HttpResponse readResponse(PooledConnection connection, HttpRequest request)
+            throws IOException {
+        final InputStream in = connection.in;
+        String statusLine;
+        int statusCode;
+        Map<String, String> headers;
+        boolean first = true;
+        do {
+            statusLine = readLine(in);
+            if (statusLine == null) {
+                throw first ? new NoResponseException()
+                        : new EOFException("Connection closed before a response was received");
+            }
+            first = false;
+            statusCode = parseStatusCode(statusLine);
+            headers = readHeaders(in);
+            // Skip interim responses such as 100 Continue.
+        } while (statusCode >= HTTP_STATUS_CONTINUE && statusCode < HTTP_STATUS_OK);
+
+        final int firstSpace = statusLine.indexOf(' ');
+        final int secondSpace = statusLine.indexOf(' ', firstSpace + 1);
+        final String statusText = secondSpace == -1 ? "" : statusLine.substring(secondSpace + 1);
+
+        final Map<String, String> lowerCaseHeaders = new HashMap<String, String>();
+        final HttpResponse.Builder builder = HttpResponse.builder()
+                .statusCode(statusCode)
+                .statusText(statusText);
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+            lowerCaseHeaders.put(StringUtils.lowerCase(header.getKey()), header.getValue());
+        }
+
+        final String connectionHeader = lowerCaseHeaders.get("connection");
+        boolean keepAlive = statusLine.startsWith("HTTP/1.0")
+                ? "keep-alive".equalsIgnoreCase(connectionHeader)
+                : !"close".equalsIgnoreCase(connectionHeader);
+
+        final boolean isHead = "HEAD".equals(request.getMethod());
+        if (isHead || statusCode == HTTP_STATUS_NO_CONTENT
+                || statusCode == HTTP_STATUS_NOT_MODIFIED) {
+            pool.release(connection, keepAlive);
+            return builder.content(isHead ? null : new ByteArrayInputStream(new byte[0]))
+                    .build();
+        }
+
+        final InputStream body;
+        final String transferEncoding = lowerCaseHeaders.get("transfer-encoding");
+        final String contentLength = lowerCaseHeaders.get("content-length");
+        if (transferEncoding != null && "chunked".equalsIgnoreCase(transferEncoding.trim())) {
+            body = new ChunkedInputStream(in);
+        } else if (contentLength != null) {
+            final long length;
+            try {
+                length = Long.parseLong(contentLength.trim());
+            } catch (final NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + contentLength);
+            }
+            if (length == 0) {
+                pool.release(connection, keepAlive);
+                return builder.content(new ByteArrayInputStream(new byte[0])).build();
+            }
+            body = new FixedLengthInputStream(in, length);
+        } else {
+            // The body is delimited by the server closing the connection.
+            keepAlive = false;
+            body = in;
+        }
+        return builder.content(new ResponseBodyInputStream(body, connection, keepAlive))
+                .build();
+    }
+
+    private static int parseStatusCode(String statusLine) throws IOException {
+        final int firstSpace = statusLine.indexOf(' ');
+        if (!statusLine.startsWith("HTTP/") || firstSpace == -1) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+        int end = statusLine.indexOf(' ', firstSpace + 1);
+        if (end == -1) {
+            end = statusLine.length();
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(firstSpace + 1, end));
+        } catch (final NumberFormatException e) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+    }
+
+    private static Map<String, String> readHeaders(InputStream in) throws IOException {
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        String line;
+        while ((line = readLine(in)) != null && line.length() > 0) {
+            final int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            final String key = line.substring(0, colon).trim();
+            // No AWS service returns a list of header values, so it's safe to
+            // keep the first one.
+            if (!headers.containsKey(key)) {
+                headers.put(key, line.substring(colon + 1).trim());
+            }
+        }
+        if (line == null) {
+            throw new EOFException("Connection closed while reading response headers");
+        }
+        return headers;
+    }
+
+    /**
+     * Reads a CRLF (or LF) terminated line.
+     *
+     * @return the line without its terminator, or null at end of stream.
+     */
+    static String readLine(InputStream in) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                final int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Response line exceeds " + MAX_LINE_LENGTH + " bytes");
+            }
+            line.append((char) b);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private static SSLSocketFactory createSslSocketFactory(ClientConfiguration config) {
+        if (config.getTrustManager() == null) {
+            return HttpsURLConnection.getDefaultSSLSocketFactory();
+        }
+        try {
+            final SSLContext sc = SSLContext.getInstance("TLS");
+            sc.init(null, new TrustManager[] {
+                    config.getTrustManager()
+            }, null);
+            return sc.getSocketFactory();
+        } catch (final GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Response content that hands its connection back to the pool once the
+     * body has been fully read. Closing the stream early drains a small
+     * remainder so that the connection can still be reused.
+     */
+    private final class ResponseBodyInputStream extends FilterInputStream {
+        private final PooledConnection connection;
+        private final boolean keepAlive;
+        private boolean released;
+
+        ResponseBodyInputStream(InputStream body, PooledConnection connection, boolean keepAlive) {
+            super(body);
+            this.connection = connection;
+            this.keepAlive = keepAlive;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (released) {
+                return -1;
+            }
+            final int b = readOrRelease(super.read());
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (released) {
+                return -1;
+            }
+            return readOrRelease(super.read(b, off, len));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (released) {
+                return;
+            }
+            boolean reusable = false;
+            if (keepAlive) {
+                try {
+                    int drained = 0;
+                    int read;
+                    while (drained <= MAX_DRAIN_BYTES
+                            && (read = in.read(connection.buffer)) != -1) {
+                        drained += read;
+                    }
+                    reusable = drained <= MAX_DRAIN_BYTES;
+                } catch (final IOException e) {
+                    reusable = false;
+                }
+            }
+            release(reusable);
+        }
+
+        private int readOrRelease(int result) throws IOException {
+            if (result == -1) {
+                release(keepAlive);
+            }
+            return result;
+        }
+
+        private void release(boolean reusable) {
+            if (!released) {
+                released = true;
+                pool.release(connection, reusable);
+            }
+        }
+    }
+
+    /**
+     * Thrown when the connection closes before any byte of the response, so
+     * that the server is known not to have processed the request.
+     */
+    private static final class NoResponseException extends EOFException {
+        private static final long serialVersionUID = 1L;
+
+        NoResponseException() {
+            super("Connection closed before a response was received");
+        }
+    }
+
+    /**
+     * Reads a body delimited by a Content-Length header.
+     */
+    private static final class FixedLengthInputStream extends FilterInputStream {
+        private long remaining;
+
+        FixedLengthInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = in.read();
+            if (b == -1) {
+                throw prematureEnd();
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                throw prematureEnd();
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // the connection is owned by the pool
+        }
+
+        private IOException prematureEnd() {
+            return new EOFException("Connection closed with " + remaining
+                    + " bytes of the response body remaining");
+        }
+    }
+
+    /**
+     * Reads a body with chunked transfer coding.
+     */
+    private static final class ChunkedInputStream extends FilterInputStream {
+        private long chunkRemaining;
+        private boolean eof;
+
+        ChunkedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            final int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Connection closed inside a chunk");
+            }
+            chunkRemaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            final int read = in.read(b, off, (int) Math.min(len, chunkRemaining));
+            if (read == -1) {
+                throw new EOFException("Connection closed inside a chunk");
+            }
+            chunkRemaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return eof ? 0 : (int) Math.min(in.available(), chunkRemaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // the connection is owned by the pool
+        }
+
+        /**
+         * Positions the stream on chunk data.
+         *
+         * @return false once the last chunk has been consumed.
+         */
+        private boolean nextChunk() throws IOException {
+            if (eof) {
+                return false;
+            }
+            if (chunkRemaining > 0) {
+                return true;
+            }
+            String line = readLine(in);
+            // The CRLF terminating the previous chunk's data.
+            if (line != null && line.length() == 0) {
+                line = readLine(in);
+            }
+            if (line == null) {
+                throw new EOFException("Connection closed before the last chunk");
+            }
+            final int extension = line.indexOf(';');
+            final String size = (extension == -1 ? line : line.substring(0, extension)).trim();
+            try {
+                chunkRemaining = Long.parseLong(size, HEX_RADIX);
+            } catch (final NumberFormatException e) {
+                throw new IOException("Invalid chunk size: " + line);
+            }
+            if (chunkRemaining == 0) {
+                // Skip the trailer.
+                readHeaders(in);
+                eof = true;
+                return false;
+            }
+            return true;
+        }
+    }
+}
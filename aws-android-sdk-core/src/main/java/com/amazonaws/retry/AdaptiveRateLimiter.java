@@ -0,0 +1,184 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+/**
+ * Client side rate limiter that adapts the rate at which a client sends
+ * requests to the rate a service is able to sustain.
+ * <p>
+ * The limiter stays inactive until the first throttling error is reported.
+ * From then on requests draw tokens from a bucket refilled at the current
+ * sending rate. Each throttling error cuts the rate multiplicatively, and
+ * each successful response grows it back along a cubic curve centred on the
+ * rate at which the last throttling error happened, which quickly recovers
+ * lost throughput while probing carefully around the service's limit.
+ * <p>
+ * The limiter is thread-safe and is meant to be shared by all requests of a
+ * client, or by several clients, through
+ * {@link com.amazonaws.ClientConfiguration#setRateLimiter}.
+ */
+public class AdaptiveRateLimiter {
+
+    /** Lowest sending rate, in requests per second. */
+    private static final double MIN_FILL_RATE = 0.5;
+
+    /** Lowest bucket capacity, so a single request can always go through. */
+    private static final double MIN_CAPACITY = 1;
+
+    /** Weight of the latest sample in the measured sending rate. */
+    private static final double SMOOTH = 0.8;
+
+    /** Factor applied to the sending rate on a throttling error. */
+    private static final double BETA = 0.7;
+
+    /** Scale of the cubic growth after a throttling error. */
+    private static final double SCALE_CONSTANT = 0.4;
+
+    /** Width of the buckets the sending rate is measured over, in seconds. */
+    private static final double RATE_BUCKET_SECONDS = 0.5;
+
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    private double fillRate;
+    private double maxCapacity;
+    private double currentCapacity;
+    private double lastTimestamp = -1;
+    private boolean enabled;
+
+    private double measuredTxRate;
+    private double lastTxRateBucket;
+    private long requestCount;
+    private double lastMaxRate;
+    private double lastThrottleTime;
+    private double timeWindow;
+
+    /**
+     * Constructs an inactive rate limiter.
+     */
+    public AdaptiveRateLimiter() {
+        lastTxRateBucket = Math.floor(currentTimeSeconds());
+        lastThrottleTime = currentTimeSeconds();
+    }
+
+    /**
+     * Reserves a token for sending one request and returns how long the
+     * caller has to wait before sending it. The token is reserved even if a
+     * wait is required, so the caller must send the request after waiting.
+     *
+     * @return the time to wait in milliseconds, 0 if the request can be sent
+     *         right away.
+     */
+    public synchronized long acquire() {
+        if (!enabled) {
+            return 0;
+        }
+        refill();
+        currentCapacity -= 1;
+        if (currentCapacity >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-currentCapacity / fillRate * MILLIS_PER_SECOND);
+    }
+
+    /**
+     * Adjusts the sending rate after a response has been received.
+     *
+     * @param throttled whether the response was a throttling error.
+     */
+    public synchronized void updateSendingRate(boolean throttled) {
+        updateMeasuredRate();
+        final double calculatedRate;
+        if (throttled) {
+            final double rateToUse = enabled ? Math.min(measuredTxRate, fillRate)
+                    : measuredTxRate;
+            lastMaxRate = rateToUse;
+            calculateTimeWindow();
+            lastThrottleTime = currentTimeSeconds();
+            calculatedRate = rateToUse * BETA;
+            enabled = true;
+        } else {
+            calculateTimeWindow();
+            final double elapsed = currentTimeSeconds() - lastThrottleTime - timeWindow;
+            calculatedRate = SCALE_CONSTANT * elapsed * elapsed * elapsed + lastMaxRate;
+        }
+        updateRate(Math.min(calculatedRate, 2 * measuredTxRate));
+    }
+
+    /**
+     * @return whether the limiter is throttling requests, which is the case
+     *         once a throttling error has been reported.
+     */
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the current sending rate in requests per second. Only
+     *         meaningful while the limiter is enabled.
+     */
+    public synchronized double getSendingRate() {
+        return fillRate;
+    }
+
+    /**
+     * @return the measured rate at which requests complete, in requests per
+     *         second.
+     */
+    public synchronized double getMeasuredRate() {
+        return measuredTxRate;
+    }
+
+    /**
+     * Returns the current time in seconds. Overridden in tests.
+     */
+    double currentTimeSeconds() {
+        return System.nanoTime() / 1e9;
+    }
+
+    private void refill() {
+        final double now = currentTimeSeconds();
+        if (lastTimestamp < 0) {
+            lastTimestamp = now;
+            return;
+        }
+        currentCapacity = Math.min(maxCapacity,
+                currentCapacity + (now - lastTimestamp) * fillRate);
+        lastTimestamp = now;
+    }
+
+    private void updateRate(double newRps) {
+        refill();
+        fillRate = Math.max(newRps, MIN_FILL_RATE);
+        maxCapacity = Math.max(newRps, MIN_CAPACITY);
+        currentCapacity = Math.min(currentCapacity, maxCapacity);
+    }
+
+    private void updateMeasuredRate() {
+        final double now = currentTimeSeconds();
+        final double timeBucket = Math.floor(now / RATE_BUCKET_SECONDS) * RATE_BUCKET_SECONDS;
+        requestCount++;
+        if (timeBucket > lastTxRateBucket) {
+            final double currentRate = requestCount / (timeBucket - lastTxRateBucket);
+            measuredTxRate = currentRate * SMOOTH + measuredTxRate * (1 - SMOOTH);
+            requestCount = 0;
+            lastTxRateBucket = timeBucket;
+        }
+    }
+
+    private void calculateTimeWindow() {
+        timeWindow = Math.cbrt(lastMaxRate * (1 - BETA) / SCALE_CONSTANT);
+    }
+}
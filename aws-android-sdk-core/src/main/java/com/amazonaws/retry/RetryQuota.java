@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+
+/**
+ * Token bucket that limits how many retries a client may issue. Every retry
+ * withdraws tokens from the bucket and every successful request returns
+ * tokens, so once a service starts failing consistently the client stops
+ * retrying instead of multiplying the load it sends. The quota is thread-safe
+ * and is meant to be shared by all requests of a client, or by several
+ * clients, through {@link com.amazonaws.ClientConfiguration#setRetryQuota}.
+ */
+public class RetryQuota {
+
+    /** Default capacity of the bucket, enough for 100 throttling retries. */
+    public static final int DEFAULT_CAPACITY = 500;
+
+    /** Tokens withdrawn for retrying after a service error. */
+    public static final int RETRY_COST = 5;
+
+    /**
+     * Tokens withdrawn for retrying after a client side failure such as a
+     * timeout, which is more likely to indicate an unhealthy service.
+     */
+    public static final int TIMEOUT_RETRY_COST = 10;
+
+    /** Tokens returned by a request that succeeded on its first attempt. */
+    public static final int NO_RETRY_INCREMENT = 1;
+
+    private final int capacity;
+
+    /** Tokens currently available. Guarded by this. */
+    private int available;
+
+    /**
+     * Constructs a retry quota with the {@link #DEFAULT_CAPACITY}.
+     */
+    public RetryQuota() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a retry quota.
+     *
+     * @param capacity the maximum number of tokens in the bucket, which is
+     *            also the initial number of tokens.
+     */
+    public RetryQuota(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.available = capacity;
+    }
+
+    /**
+     * Tries to withdraw the tokens needed to retry after the given failure.
+     *
+     * @param exception the failure of the previous attempt.
+     * @return the number of tokens withdrawn, or a negative value if the
+     *         quota is exhausted and the request must not be retried.
+     */
+    public synchronized int acquire(AmazonClientException exception) {
+        final int cost = exception instanceof AmazonServiceException ? RETRY_COST
+                : TIMEOUT_RETRY_COST;
+        if (available < cost) {
+            return -1;
+        }
+        available -= cost;
+        return cost;
+    }
+
+    /**
+     * Returns tokens to the bucket after a successful request.
+     *
+     * @param acquired the tokens withdrawn for the retry that succeeded, or 0
+     *            if the request succeeded without retrying.
+     */
+    public synchronized void release(int acquired) {
+        available = Math.min(capacity, available + (acquired > 0 ? acquired : NO_RETRY_INCREMENT));
+    }
+
+    /**
+     * @return the number of tokens currently available.
+     */
+    public synchronized int getAvailableCapacity() {
+        return available;
+    }
+
+    /**
+     * @return the maximum number of tokens in the bucket.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
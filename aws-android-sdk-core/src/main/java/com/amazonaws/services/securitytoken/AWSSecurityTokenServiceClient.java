@@ -274,7 +274,8 @@ public class AWSSecurityTokenServiceClient extends AmazonWebServiceClient implem
      */
     public AWSSecurityTokenServiceClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
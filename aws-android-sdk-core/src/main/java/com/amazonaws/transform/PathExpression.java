@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.transform;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A psuedo-xpath expression, such as {@code "imageSet/item/id"}, split into
+ * its element names so that it can be tested against the position of a
+ * {@link StaxUnmarshallerContext} without building any strings. An expression
+ * is tested by checking the depth first and then comparing the names of the
+ * innermost elements, one per step.
+ */
+public final class PathExpression {
+
+    /**
+     * Expressions passed to {@link StaxUnmarshallerContext} as strings are
+     * compiled once and kept here. They come from generated unmarshallers, so
+     * there is a fixed number of them; the limit only guards against callers
+     * building expressions at runtime.
+     */
+    private static final int MAX_CACHED_EXPRESSIONS = 4096;
+    private static final ConcurrentHashMap<String, PathExpression> CACHE =
+            new ConcurrentHashMap<String, PathExpression>();
+
+    private static final PathExpression CURRENT = new PathExpression(".", null, 0);
+
+    private final String expression;
+
+    /** The element names, outermost first; null for ".". */
+    private final String[] names;
+
+    /**
+     * How much deeper than the starting depth the last element is. Attribute
+     * steps do not count as a level.
+     */
+    private final int depthIncrement;
+
+    /** False if the expression names an attribute, which never matches. */
+    private final boolean matchable;
+
+    private PathExpression(String expression, String[] names, int depthIncrement) {
+        this.expression = expression;
+        this.names = names;
+        this.depthIncrement = depthIncrement;
+        boolean noAttributes = true;
+        if (names != null) {
+            for (final String name : names) {
+                if (name.length() == 0 || name.charAt(0) == '@') {
+                    noAttributes = false;
+                }
+            }
+        }
+        this.matchable = noAttributes;
+    }
+
+    /**
+     * Returns the compiled form of the specified expression.
+     *
+     * @param expression The psuedo-xpath expression, with steps separated by
+     *            '/'. "." matches any position.
+     * @return The compiled expression.
+     */
+    public static PathExpression compile(String expression) {
+        PathExpression compiled = CACHE.get(expression);
+        if (compiled == null) {
+            compiled = parse(expression);
+            if (CACHE.size() < MAX_CACHED_EXPRESSIONS) {
+                CACHE.putIfAbsent(expression, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    private static PathExpression parse(String expression) {
+        if (".".equals(expression)) {
+            return CURRENT;
+        }
+        int steps = 1;
+        for (int i = 0; i < expression.length(); i++) {
+            if (expression.charAt(i) == '/') {
+                steps++;
+            }
+        }
+        final String[] names = new String[steps];
+        int depthIncrement = 0;
+        int start = 0;
+        for (int i = 0; i < steps; i++) {
+            int end = expression.indexOf('/', start);
+            if (end < 0) {
+                end = expression.length();
+            }
+            names[i] = expression.substring(start, end);
+            if (i > 0 && !names[i].startsWith("@")) {
+                depthIncrement++;
+            }
+            start = end + 1;
+        }
+        return new PathExpression(expression, names, depthIncrement);
+    }
+
+    /**
+     * Tests this expression against a stack of element names.
+     *
+     * @param elementNames The element names, indexed by depth from 1.
+     * @param currentDepth The depth of the current element.
+     * @param startingStackDepth The depth where the expression must start
+     *            matching.
+     * @return True if the expression matches the current element.
+     */
+    boolean matches(String[] elementNames, int currentDepth, int startingStackDepth) {
+        if (names == null) {
+            return true;
+        }
+        if (!matchable || currentDepth != startingStackDepth + depthIncrement
+                || names.length > currentDepth) {
+            return false;
+        }
+        for (int i = names.length - 1, depth = currentDepth; i >= 0; i--, depth--) {
+            if (!names[i].equals(elementNames[depth])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
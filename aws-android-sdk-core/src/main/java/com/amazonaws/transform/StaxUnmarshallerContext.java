@@ -44,6 +44,12 @@ public class StaxUnmarshallerContext {
     public final Deque<String> stack = new LinkedList<String>();
     private String stackString = "";
 
+    /**
+     * The name of the element at each depth, from 1 up to the current depth,
+     * used to test expressions without building strings.
+     */
+    private String[] elementNames = new String[16];
+
     private Map<String, String> metadata = new HashMap<String, String>();
     private List<MetadataExpression> metadataExpressions = new ArrayList<MetadataExpression>();
 
@@ -144,19 +150,35 @@ public class StaxUnmarshallerContext {
      *         the XML document, starting from the specified depth.
      */
     public boolean testExpression(String expression, int startingStackDepth) {
-        if (".".equals(expression))
-            return true;
+        return testExpression(PathExpression.compile(expression), startingStackDepth);
+    }
 
-        int index = -1;
-        while ((index = expression.indexOf("/", index + 1)) > -1) {
-            // Don't consider attributes a new depth level
-            if (expression.charAt(index + 1) != '@') {
-                startingStackDepth++;
-            }
-        }
+    /**
+     * Tests the specified compiled expression against the current position in
+     * the XML document being parsed.
+     *
+     * @param expression The compiled psuedo-xpath expression to test.
+     * @return True if the expression matches the current document position,
+     *         otherwise false.
+     */
+    public boolean testExpression(PathExpression expression) {
+        return testExpression(expression, getCurrentDepth());
+    }
 
-        return (getCurrentDepth() == startingStackDepth
-                && stackString.endsWith("/" + expression));
+    /**
+     * Tests the specified compiled expression against the current position in
+     * the XML document being parsed, and restricts the expression to matching
+     * at the specified stack depth.
+     *
+     * @param expression The compiled psuedo-xpath expression to test.
+     * @param startingStackDepth The depth in the stack representing where the
+     *            expression must start matching in order for this method to
+     *            return true.
+     * @return True if the specified expression matches the current position in
+     *         the XML document, starting from the specified depth.
+     */
+    public boolean testExpression(PathExpression expression, int startingStackDepth) {
+        return expression.matches(elementNames, getCurrentDepth(), startingStackDepth);
     }
 
     /**
@@ -191,7 +213,8 @@ public class StaxUnmarshallerContext {
 
         // look for meta data
         if (currentEventType == XmlPullParser.START_TAG) {
-            for (MetadataExpression metadataExpression : metadataExpressions) {
+            for (int i = 0, size = metadataExpressions.size(); i < size; i++) {
+                MetadataExpression metadataExpression = metadataExpressions.get(i);
                 if (testExpression(metadataExpression.expression,
                         metadataExpression.targetDepth)) {
                     metadata.put(metadataExpression.key, readText());
@@ -227,7 +250,8 @@ public class StaxUnmarshallerContext {
      *            data.
      */
     public void registerMetadataExpression(String expression, int targetDepth, String storageKey) {
-        metadataExpressions.add(new MetadataExpression(expression, targetDepth, storageKey));
+        metadataExpressions.add(new MetadataExpression(PathExpression.compile(expression),
+                targetDepth, storageKey));
     }
 
     /*
@@ -241,11 +265,11 @@ public class StaxUnmarshallerContext {
     @SuppressWarnings("checkstyle:visibilitymodifier")
     private static class MetadataExpression {
 
-        public String expression;
+        public PathExpression expression;
         public int targetDepth;
         public String key;
 
-        public MetadataExpression(String expression, int targetDepth, String key) {
+        public MetadataExpression(PathExpression expression, int targetDepth, String key) {
             this.expression = expression;
             this.targetDepth = targetDepth;
             this.key = key;
@@ -254,8 +278,16 @@ public class StaxUnmarshallerContext {
 
     private void updateContext() {
         if (currentEventType == XmlPullParser.START_TAG) {
-            stackString += "/" + xpp.getName();
+            String name = xpp.getName();
+            stackString += "/" + name;
             stack.push(stackString);
+            int depth = stack.size();
+            if (depth >= elementNames.length) {
+                String[] grown = new String[elementNames.length * 2];
+                System.arraycopy(elementNames, 0, grown, 0, elementNames.length);
+                elementNames = grown;
+            }
+            elementNames[depth] = name;
         } else if (currentEventType == XmlPullParser.END_TAG) {
             stack.pop();
             stackString = stack.isEmpty() ? "" : stack.peek();
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util;
+
+import java.io.Writer;
+
+/**
+ * Writer that encodes characters as UTF-8 straight into a growable byte
+ * array, so that a request body can be produced without an intermediate
+ * string. Malformed surrogates are encoded as '?', the same as
+ * {@link String#getBytes(java.nio.charset.Charset)} does.
+ * <p>
+ * {@link #obtain()} returns a writer whose buffer is reused by the calling
+ * thread; {@link #toByteArray()} returns a copy of the content and makes the
+ * writer available for reuse, after which it must no longer be used by the
+ * caller. This class is not thread safe.
+ */
+public final class Utf8ByteArrayWriter extends Writer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Buffers grown beyond this size are not kept for reuse. */
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+    /** Bytes reserved per written char. */
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    private static final ThreadLocal<Utf8ByteArrayWriter> THREAD_WRITER =
+            new ThreadLocal<Utf8ByteArrayWriter>() {
+                @Override
+                protected Utf8ByteArrayWriter initialValue() {
+                    return new Utf8ByteArrayWriter(true);
+                }
+            };
+
+    private final boolean reusable;
+    private byte[] buffer;
+    private int count;
+    /** High surrogate waiting for its low surrogate, or 0. */
+    private char highSurrogate;
+    private boolean inUse;
+
+    /**
+     * Creates a writer with its own buffer.
+     */
+    public Utf8ByteArrayWriter() {
+        this(false);
+    }
+
+    private Utf8ByteArrayWriter(boolean reusable) {
+        this.reusable = reusable;
+        this.buffer = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns an empty writer whose buffer is reused by the calling thread
+     * once {@link #toByteArray()} has been called.
+     *
+     * @return an empty writer.
+     */
+    public static Utf8ByteArrayWriter obtain() {
+        Utf8ByteArrayWriter writer = THREAD_WRITER.get();
+        if (writer.inUse) {
+            // still held by an enclosing caller, or abandoned after an error
+            writer = new Utf8ByteArrayWriter(true);
+            THREAD_WRITER.set(writer);
+        }
+        writer.inUse = true;
+        return writer;
+    }
+
+    @Override
+    public void write(int c) {
+        ensureCapacity(1);
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        if ((off | len) < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(len);
+        for (int i = off; i < off + len; i++) {
+            encode(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        if ((off | len) < 0 || len > str.length() - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(len);
+        for (int i = off; i < off + len; i++) {
+            encode(str.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Does nothing, the content remains available from
+     * {@link #toByteArray()}.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return the number of bytes encoded so far.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns a copy of the UTF-8 encoded content. A writer returned by
+     * {@link #obtain()} is reset and handed back to its thread.
+     *
+     * @return the content.
+     */
+    public byte[] toByteArray() {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            ensureCapacity(1);
+            buffer[count++] = '?';
+        }
+        final byte[] content = new byte[count];
+        System.arraycopy(buffer, 0, content, 0, count);
+        if (reusable) {
+            count = 0;
+            if (buffer.length > MAX_RETAINED_CAPACITY) {
+                buffer = new byte[INITIAL_CAPACITY];
+            }
+            inUse = false;
+        }
+        return content;
+    }
+
+    /**
+     * Makes room for the given number of chars.
+     */
+    private void ensureCapacity(int chars) {
+        // one extra byte for a pending high surrogate that turns out unpaired
+        final long required = count + (long) chars * MAX_BYTES_PER_CHAR + 1;
+        if (required > buffer.length) {
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("Content too large");
+            }
+            final int capacity = (int) Math.max(required, Math.min(buffer.length * 2L,
+                    Integer.MAX_VALUE - 8));
+            final byte[] grown = new byte[capacity];
+            System.arraycopy(buffer, 0, grown, 0, count);
+            buffer = grown;
+        }
+    }
+
+    @SuppressWarnings("checkstyle:magicnumber")
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            final char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                final int codePoint = Character.toCodePoint(high, c);
+                buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+            buffer[count++] = '?';
+        }
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+}
@@ -22,7 +22,9 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import com.amazonaws.retry.AdaptiveRateLimiter;
 import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryQuota;
 
 import org.junit.Test;
 
@@ -93,12 +95,39 @@ public class ClientConfigurationTest {
         c.withReaper(true);
         assertTrue(c.useReaper());
 
+        c.withConnectionPool(true);
+        assertTrue(c.isUseConnectionPool());
+        c.setUseConnectionPool(false);
+        assertFalse(c.isUseConnectionPool());
+
+        c.withMaxConnectionsPerHost(1);
+        assertEquals(c.getMaxConnectionsPerHost(), 1);
+        c.setMaxConnectionsPerHost(2);
+        assertEquals(c.getMaxConnectionsPerHost(), 2);
+
+        c.withConnectionMaxIdleMillis(1);
+        assertEquals(c.getConnectionMaxIdleMillis(), 1);
+        c.setConnectionMaxIdleMillis(2);
+        assertEquals(c.getConnectionMaxIdleMillis(), 2);
+
         RetryPolicy rp = new RetryPolicy(null, null, 0, false);
         c.withRetryPolicy(rp);
         assertSame(rp, c.getRetryPolicy());
         c.setRetryPolicy(null);
         assertNull(c.getRetryPolicy());
 
+        RetryQuota quota = new RetryQuota();
+        c.withRetryQuota(quota);
+        assertSame(quota, c.getRetryQuota());
+        c.setRetryQuota(null);
+        assertNull(c.getRetryQuota());
+
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter();
+        c.withRateLimiter(limiter);
+        assertSame(limiter, c.getRateLimiter());
+        c.setRateLimiter(null);
+        assertNull(c.getRateLimiter());
+
         c.withSignerOverride("over");
         assertEquals(c.getSignerOverride(), "over");
         c.setSignerOverride("ride");
@@ -145,8 +174,13 @@ public class ClientConfigurationTest {
         c.withProxyPort(1);
         c.withProxyUsername("user");
         c.withReaper(true);
+        c.withConnectionPool(true);
+        c.withMaxConnectionsPerHost(3);
+        c.withConnectionMaxIdleMillis(4);
         RetryPolicy rp = new RetryPolicy(null, null, 0, false);
         c.withRetryPolicy(rp);
+        c.withRetryQuota(new RetryQuota());
+        c.withRateLimiter(new AdaptiveRateLimiter());
         c.withSignerOverride("over");
         c.withSocketBufferSizeHints(0, 1);
         c.withSocketTimeout(0);
@@ -167,7 +201,12 @@ public class ClientConfigurationTest {
         assertEquals(c.getProxyPort(), n.getProxyPort());
         assertEquals(c.getProxyUsername(), n.getProxyUsername());
         assertEquals(c.useReaper(), n.useReaper());
+        assertEquals(c.isUseConnectionPool(), n.isUseConnectionPool());
+        assertEquals(c.getMaxConnectionsPerHost(), n.getMaxConnectionsPerHost());
+        assertEquals(c.getConnectionMaxIdleMillis(), n.getConnectionMaxIdleMillis());
         assertEquals(c.getRetryPolicy(), n.getRetryPolicy());
+        assertSame(c.getRetryQuota(), n.getRetryQuota());
+        assertSame(c.getRateLimiter(), n.getRateLimiter());
         assertEquals(c.getSignerOverride(), n.getSignerOverride());
         assertArrayEquals(c.getSocketBufferSizeHints(), n.getSocketBufferSizeHints());
         assertEquals(c.getSocketTimeout(), n.getSocketTimeout());
@@ -189,6 +189,56 @@ public class AWS4SignerTest {
         assertNull(request.getHeaders().get("Authorization"));
     }
 
+    @Test
+    public void testSigningKeyIsCached() throws Exception {
+        AWS4Signer.clearSigningKeyCache();
+        final Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        signer.overrideDate(c.getTime());
+
+        final AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+        Request<?> request = generateBasicRequest();
+        signer.sign(request, credentials);
+        final String first = request.getHeaders().get("Authorization");
+        assertEquals(0, AWS4Signer.getSigningKeyCacheHitCount());
+        assertEquals(1, AWS4Signer.getSigningKeyCacheMissCount());
+
+        request = generateBasicRequest();
+        signer.sign(request, credentials);
+        assertEquals(first, request.getHeaders().get("Authorization"));
+        assertEquals(1, AWS4Signer.getSigningKeyCacheHitCount());
+        assertEquals(0.5, AWS4Signer.getSigningKeyCacheHitRate(), 0.0001);
+
+        // a rotated secret key for the same access key must not reuse the key
+        request = generateBasicRequest();
+        signer.sign(request, new BasicAWSCredentials("access", "rotated"));
+        assertFalse(first.equals(request.getHeaders().get("Authorization")));
+        assertEquals(2, AWS4Signer.getSigningKeyCacheMissCount());
+
+        // neither must a new day
+        c.add(Calendar.DATE, 1);
+        signer.overrideDate(c.getTime());
+        request = generateBasicRequest();
+        signer.sign(request, credentials);
+        assertEquals(3, AWS4Signer.getSigningKeyCacheMissCount());
+    }
+
+    @Test
+    public void testSigningKeyCacheEvictsLeastRecentlyUsed() {
+        final SigningKeyCache cache = new SigningKeyCache(2);
+        final AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+        cache.put(credentials, "19810216", "us-east-1", "a", new byte[] {1});
+        cache.put(credentials, "19810216", "us-east-1", "b", new byte[] {2});
+        assertEquals(1, cache.get(credentials, "19810216", "us-east-1", "a")[0]);
+        cache.put(credentials, "19810216", "us-east-1", "c", new byte[] {3});
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(credentials, "19810216", "us-east-1", "b"));
+        assertEquals(3, cache.get(credentials, "19810216", "us-east-1", "c")[0]);
+        assertNull(cache.get(credentials, "19810217", "us-east-1", "c"));
+    }
+
     private Request<?> generateBasicRequest() {
         final Request<?> request = new DefaultRequest<Void>("Foo");
         request.setContent(new ByteArrayInputStream("{\"TableName\": \"foo\"}"
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.SDKGlobalConfiguration;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CognitoCredentialsProviderTest {
+
+    private static final long SESSION_MILLIS = 3600 * 1000L;
+
+    @Test
+    public void testValidCredentialsAreReused() {
+        CountingProvider provider = new CountingProvider(SESSION_MILLIS);
+
+        AWSSessionCredentials credentials = provider.getCredentials();
+        assertSame(credentials, provider.getCredentials());
+        assertSame(credentials, provider.getCredentials());
+        assertEquals(1, provider.sessions.get());
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneSession() throws Exception {
+        final CountingProvider provider = new CountingProvider(SESSION_MILLIS);
+        provider.sessionDelayMillis = 100;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    provider.getCredentials();
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1, provider.sessions.get());
+    }
+
+    @Test
+    public void testCredentialsWithinPrefetchThresholdRefreshInBackground() throws Exception {
+        CountingProvider provider = new CountingProvider(SESSION_MILLIS);
+        AWSSessionCredentials first = provider.getCredentials();
+
+        // age the credentials to between the refresh and prefetch thresholds
+        SDKGlobalConfiguration.setGlobalTimeOffset(
+                -(int) (SESSION_MILLIS / 1000) + CognitoCredentialsProvider.DEFAULT_THRESHOLD_SECONDS
+                        + 100);
+        try {
+            // still valid, so returned without waiting for the refresh
+            assertSame(first, provider.getCredentials());
+
+            assertTrue(provider.refreshed.await(5, TimeUnit.SECONDS));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (provider.getCredentials() == first
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertNotSame(first, provider.getCredentials());
+            assertEquals(2, provider.sessions.get());
+        } finally {
+            SDKGlobalConfiguration.setGlobalTimeOffset(0);
+        }
+    }
+
+    @Test
+    public void testShortSessionNotPrefetchedOnEveryCall() throws Exception {
+        // shorter than the default prefetch threshold
+        CountingProvider provider = new CountingProvider(900 * 1000L);
+        provider.setSessionDuration(900);
+
+        AWSSessionCredentials first = provider.getCredentials();
+        for (int i = 0; i < 100; i++) {
+            assertSame(first, provider.getCredentials());
+        }
+        assertFalse(provider.refreshed.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, provider.sessions.get());
+    }
+
+    @Test
+    public void testPrefetchDisabledBelowRefreshThreshold() {
+        CountingProvider provider = new CountingProvider(
+                (CognitoCredentialsProvider.DEFAULT_THRESHOLD_SECONDS + 100) * 1000L);
+        provider.setPrefetchThreshold(provider.getRefreshThreshold());
+
+        AWSSessionCredentials first = provider.getCredentials();
+        assertSame(first, provider.getCredentials());
+        assertEquals(1, provider.sessions.get());
+    }
+
+    @Test
+    public void testExpiredCredentialsRefreshInline() {
+        CountingProvider provider = new CountingProvider(1000L);
+
+        AWSSessionCredentials first = provider.getCredentials();
+        provider.lifetimeMillis = SESSION_MILLIS;
+        assertNotSame(first, provider.getCredentials());
+        assertEquals(2, provider.sessions.get());
+    }
+
+    @Test
+    public void testClearCredentialsStartsNewSession() {
+        CountingProvider provider = new CountingProvider(SESSION_MILLIS);
+
+        AWSSessionCredentials first = provider.getCredentials();
+        provider.clearCredentials();
+        assertNotSame(first, provider.getCredentials());
+        assertEquals(2, provider.sessions.get());
+    }
+
+    private static class CountingProvider extends CognitoCredentialsProvider {
+        final AtomicInteger sessions = new AtomicInteger();
+        final CountDownLatch refreshed = new CountDownLatch(1);
+        volatile long lifetimeMillis;
+        volatile long sessionDelayMillis;
+
+        CountingProvider(long lifetimeMillis) {
+            super((AWSCognitoIdentityProvider) null, (String) null, (String) null,
+                    (AWSSecurityTokenService) null);
+            this.lifetimeMillis = lifetimeMillis;
+        }
+
+        @Override
+        protected void startSession() {
+            if (sessionDelayMillis > 0) {
+                try {
+                    Thread.sleep(sessionDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int session = sessions.incrementAndGet();
+            sessionCredentials = new BasicSessionCredentials("access" + session,
+                    "secret" + session, "token" + session);
+            setSessionCredentialsExpiration(new Date(System.currentTimeMillis()
+                    + lifetimeMillis));
+            if (session > 1) {
+                refreshed.countDown();
+            }
+        }
+    }
+}
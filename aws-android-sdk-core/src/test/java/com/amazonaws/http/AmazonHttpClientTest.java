@@ -32,6 +32,7 @@ import com.amazonaws.Response;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AnonymousAWSCredentials;
 import com.amazonaws.auth.Signer;
+import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.handlers.CredentialsRequestHandler;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.internal.CRC32MismatchException;
@@ -51,6 +52,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class AmazonHttpClientTest {
     private HttpClient httpClient;
@@ -218,6 +221,94 @@ public class AmazonHttpClientTest {
         EasyMock.verify(httpClient);
     }
 
+    @Test
+    public void testExecuteAsyncRetriesIOException() throws Exception {
+        IOException exception = new IOException("BOOM");
+
+        EasyMock
+                .expect(httpClient.execute(EasyMock.<HttpRequest> anyObject()))
+                .andThrow(exception)
+                .times(4);
+
+        EasyMock.replay(httpClient);
+
+        ExecutionContext context = new ExecutionContext();
+
+        Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setEndpoint(java.net.URI.create(
+                "http://testsvc.region.amazonaws.com"));
+        request.addHeader(HttpHeader.CONTENT_LENGTH, "0");
+        request.setContent(new ByteArrayInputStream(new byte[0]));
+
+        Future<Response<Object>> future = client.executeAsync(request, null, null, context);
+        try {
+            future.get();
+            Assert.fail("No exception when request repeatedly fails!");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AmazonClientException);
+            Assert.assertSame(exception, e.getCause().getCause());
+        }
+
+        // Verify that we called execute 4 times.
+        EasyMock.verify(httpClient);
+    }
+
+    @Test
+    public void testExecuteAsyncNotifiesHandler() throws Exception {
+        HttpResponse response = HttpResponse.builder()
+                .content(new ByteArrayInputStream(new byte[0]))
+                .statusCode(200)
+                .statusText("OK")
+                .build();
+        EasyMock
+                .expect(httpClient.execute(EasyMock.<HttpRequest> anyObject()))
+                .andReturn(response);
+        EasyMock.replay(httpClient);
+
+        HttpResponseHandler<AmazonWebServiceResponse<String>> responseHandler = new HttpResponseHandler<AmazonWebServiceResponse<String>>() {
+
+            @Override
+            public AmazonWebServiceResponse<String> handle(HttpResponse response) throws Exception {
+                AmazonWebServiceResponse<String> awsResponse = new AmazonWebServiceResponse<String>();
+                awsResponse.setResult("Result");
+                return awsResponse;
+            }
+
+            @Override
+            public boolean needsConnectionLeftOpen() {
+                return false;
+            }
+        };
+
+        final AmazonWebServiceRequest originalRequest = new AmazonWebServiceRequest() {
+        };
+        Request<?> request = new DefaultRequest<String>(originalRequest, "testsvc");
+        request.setEndpoint(java.net.URI.create(
+                "http://testsvc.region.amazonaws.com"));
+
+        final List<String> results = new ArrayList<String>();
+        Future<Response<String>> future = client.executeAsync(request, responseHandler, null,
+                new ExecutionContext(),
+                new AsyncHandler<AmazonWebServiceRequest, Response<String>>() {
+                    @Override
+                    public void onError(Exception exception) {
+                        Assert.fail("Unexpected error " + exception);
+                    }
+
+                    @Override
+                    public void onSuccess(AmazonWebServiceRequest request,
+                            Response<String> result) {
+                        assertSame(originalRequest, request);
+                        results.add(result.getAwsResponse());
+                    }
+                });
+
+        assertEquals("Result", future.get().getAwsResponse());
+        assertEquals(1, results.size());
+        assertEquals("Result", results.get(0));
+        EasyMock.verify(httpClient);
+    }
+
     @Test
     public void testHandleResponse() throws IOException {
 
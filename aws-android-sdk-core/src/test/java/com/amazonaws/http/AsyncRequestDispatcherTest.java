@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncRequestDispatcherTest {
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newScheduledThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveConcurrency() {
+        new AsyncRequestDispatcher(scheduler, 0);
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() throws InterruptedException {
+        AsyncRequestDispatcher dispatcher = new AsyncRequestDispatcher(scheduler, 2);
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(5);
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    int now = concurrent.incrementAndGet();
+                    synchronized (maxConcurrent) {
+                        maxConcurrent.set(Math.max(maxConcurrent.get(), now));
+                    }
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    concurrent.decrementAndGet();
+                    finished.countDown();
+                }
+            });
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, dispatcher.getRunningCount());
+        assertEquals(3, dispatcher.getPendingCount());
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxConcurrent.get());
+    }
+
+    @Test
+    public void testScheduledAttemptDoesNotHoldSlot() throws InterruptedException {
+        AsyncRequestDispatcher dispatcher = new AsyncRequestDispatcher(scheduler, 1);
+        final CountDownLatch ran = new CountDownLatch(1);
+        dispatcher.schedule(new AsyncRequestDispatcher.DelayedAttempt() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+
+            @Override
+            public void onRejected(RejectedExecutionException e) {
+            }
+        }, 200);
+
+        assertEquals(0, dispatcher.getRunningCount());
+        assertEquals(0, dispatcher.getPendingCount());
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testScheduledAttemptRejectedAfterShutdown() throws InterruptedException {
+        AsyncRequestDispatcher dispatcher = new AsyncRequestDispatcher(scheduler, 1);
+        final CountDownLatch rejected = new CountDownLatch(1);
+        dispatcher.schedule(new AsyncRequestDispatcher.DelayedAttempt() {
+            @Override
+            public void run() {
+            }
+
+            @Override
+            public void onRejected(RejectedExecutionException e) {
+                rejected.countDown();
+            }
+        }, 200);
+        // delayed tasks still run after shutdown, but cannot start the attempt
+        scheduler.shutdown();
+
+        assertTrue(rejected.await(5, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getRunningCount());
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PooledHttpClientTest {
+
+    /** Ends a response after which the server closes the connection. */
+    private static final String CLOSE = "\u0000";
+
+    private ServerSocket serverSocket;
+    private Thread serverThread;
+    private final AtomicInteger acceptedConnections = new AtomicInteger();
+    private final List<String> requestLines = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> requestBodies = Collections.synchronizedList(new ArrayList<String>());
+    private volatile String[] responses;
+    private final AtomicInteger responseIndex = new AtomicInteger();
+    private PooledHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        acceptedConnections.incrementAndGet();
+                        serve(socket);
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        client = new PooledHttpClient(new ClientConfiguration()
+                .withConnectionPool(true)
+                .withReaper(false));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.shutdown();
+        serverSocket.close();
+    }
+
+    /**
+     * Serves requests on one connection until the client closes it. A null
+     * response closes the connection without answering.
+     */
+    private void serve(Socket socket) throws IOException {
+        final InputStream in = socket.getInputStream();
+        final OutputStream out = socket.getOutputStream();
+        try {
+            while (true) {
+                final String requestLine = PooledHttpClient.readLine(in);
+                if (requestLine == null) {
+                    return;
+                }
+                requestLines.add(requestLine);
+                int contentLength = 0;
+                String line;
+                while ((line = PooledHttpClient.readLine(in)).length() > 0) {
+                    if (line.toLowerCase().startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                final byte[] body = new byte[contentLength];
+                int read = 0;
+                while (read < contentLength) {
+                    read += in.read(body, read, contentLength - read);
+                }
+                requestBodies.add(new String(body, StringUtils.UTF8));
+                final String response = responses[responseIndex.getAndIncrement()];
+                if (response == null) {
+                    return;
+                }
+                final boolean close = response.endsWith(CLOSE);
+                out.write(response.substring(0, response.length() - (close ? 1 : 0))
+                        .getBytes(StringUtils.UTF8));
+                out.flush();
+                if (close) {
+                    return;
+                }
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private HttpRequest request(String method, String path, String body) {
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Host", "localhost:" + serverSocket.getLocalPort());
+        InputStream content = null;
+        if (body != null) {
+            final byte[] bytes = body.getBytes(StringUtils.UTF8);
+            headers.put(HttpHeader.CONTENT_LENGTH, String.valueOf(bytes.length));
+            content = new ByteArrayInputStream(bytes);
+        }
+        return new HttpRequest(method,
+                URI.create("http://localhost:" + serverSocket.getLocalPort() + path),
+                headers, content);
+    }
+
+    @Test
+    public void testConnectionIsReused() throws IOException {
+        responses = new String[] {
+                "HTTP/1.1 200 OK\r\nContent-Length: 5\r\nx-amz-request-id: 1\r\n\r\nfirst",
+                "HTTP/1.1 200 OK\r\nContent-Length: 6\r\n\r\nsecond"
+        };
+
+        HttpResponse first = client.execute(request("POST", "/a?x=1", "hello"));
+        assertEquals(200, first.getStatusCode());
+        assertEquals("OK", first.getStatusText());
+        assertEquals("1", first.getHeaders().get("x-amz-request-id"));
+        assertEquals("first", IOUtils.toString(first.getContent()));
+
+        HttpResponse second = client.execute(request("GET", "/b", null));
+        assertEquals("second", IOUtils.toString(second.getContent()));
+
+        assertEquals(1, acceptedConnections.get());
+        assertEquals("POST /a?x=1 HTTP/1.1", requestLines.get(0));
+        assertEquals("GET /b HTTP/1.1", requestLines.get(1));
+        assertEquals("hello", requestBodies.get(0));
+        assertEquals(1, client.getConnectionPool().getIdleCount());
+    }
+
+    @Test
+    public void testChunkedResponse() throws IOException {
+        responses = new String[] {
+                "HTTP/1.1 100 Continue\r\n\r\n"
+                        + "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + "5\r\nhello\r\n7;ext=1\r\n, world\r\n0\r\nTrailer: x\r\n\r\n",
+                "HTTP/1.1 204 No Content\r\n\r\n"
+        };
+
+        HttpResponse response = client.execute(request("GET", "/", null));
+        assertEquals(200, response.getStatusCode());
+        assertEquals("hello, world", IOUtils.toString(response.getContent()));
+
+        HttpResponse empty = client.execute(request("DELETE", "/", null));
+        assertEquals(204, empty.getStatusCode());
+        assertEquals(1, acceptedConnections.get());
+    }
+
+    @Test
+    public void testHeadResponseHasNoContent() throws IOException {
+        responses = new String[] {
+                "HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n"
+        };
+        HttpResponse response = client.execute(request("HEAD", "/", null));
+        assertNull(response.getRawContent());
+        assertEquals("10", response.getHeaders().get("Content-Length"));
+        assertEquals(1, client.getConnectionPool().getIdleCount());
+    }
+
+    @Test
+    public void testConnectionCloseIsNotPooled() throws IOException {
+        responses = new String[] {
+                "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 2\r\n\r\nok",
+                "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok"
+        };
+        IOUtils.toString(client.execute(request("GET", "/", null)).getContent());
+        assertEquals(0, client.getConnectionPool().getIdleCount());
+        assertEquals(0, client.getConnectionPool().getAllocatedCount());
+    }
+
+    @Test
+    public void testEarlyCloseDrainsAndReuses() throws IOException {
+        responses = new String[] {
+                "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello",
+                "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok"
+        };
+        HttpResponse response = client.execute(request("GET", "/", null));
+        response.getRawContent().read();
+        response.getRawContent().close();
+
+        assertEquals("ok", IOUtils.toString(client.execute(request("GET", "/", null))
+                .getContent()));
+        assertEquals(1, acceptedConnections.get());
+    }
+
+    @Test
+    public void testRetriesWhenPooledConnectionClosesBeforeResponse() throws IOException {
+        responses = new String[] {
+                "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok",
+                null,
+                "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nretry"
+        };
+        IOUtils.toString(client.execute(request("GET", "/", null)).getContent());
+        assertEquals("retry", IOUtils.toString(client.execute(request("PUT", "/", "body"))
+                .getContent()));
+        assertEquals(2, acceptedConnections.get());
+        assertEquals(3, requestLines.size());
+    }
+
+    @Test
+    public void testDoesNotRetryAfterResponseStarted() throws IOException {
+        responses = new String[] {
+                "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok",
+                "HTTP/1.1 100 Continue\r\n\r\n" + CLOSE,
+                "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok"
+        };
+        IOUtils.toString(client.execute(request("GET", "/", null)).getContent());
+        try {
+            client.execute(request("PUT", "/", "body"));
+            fail("expected an IOException");
+        } catch (final IOException expected) {
+            // the server may have processed the request
+        }
+        assertEquals(1, acceptedConnections.get());
+        assertEquals(2, requestLines.size());
+    }
+
+    @Test
+    public void testDoesNotRetryAfterReadTimeout() throws IOException {
+        responses = new String[] {
+                "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok",
+                "",
+                "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok"
+        };
+        client.shutdown();
+        client = new PooledHttpClient(new ClientConfiguration()
+                .withConnectionPool(true)
+                .withReaper(false)
+                .withSocketTimeout(200));
+        IOUtils.toString(client.execute(request("GET", "/", null)).getContent());
+        try {
+            client.execute(request("GET", "/", null));
+            fail("expected a SocketTimeoutException");
+        } catch (final SocketTimeoutException expected) {
+            // the server may still process the request
+        }
+        assertEquals(1, acceptedConnections.get());
+        assertEquals(2, requestLines.size());
+    }
+
+    @Test
+    public void testCurlLogging() throws IOException {
+        responses = new String[] {
+                "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok"
+        };
+        final List<String> logs = new ArrayList<String>();
+        client.shutdown();
+        client = new PooledHttpClient(new ClientConfiguration()
+                .withConnectionPool(true)
+                .withReaper(false)
+                .withCurlLogging(true)) {
+            @Override
+            protected void printToLog(String message) {
+                logs.add(message);
+            }
+        };
+        IOUtils.toString(client.execute(request("PUT", "/path", "body")).getContent());
+        assertEquals(1, logs.size());
+        final String curl = logs.get(0);
+        assertTrue(curl, curl.startsWith("curl -X PUT "));
+        assertTrue(curl, curl.contains(" -d 'body' "));
+        assertTrue(curl, curl.endsWith(" http://localhost:" + serverSocket.getLocalPort()
+                + "/path"));
+    }
+
+    @Test
+    public void testPoolEvictsExpiredConnections() throws Exception {
+        HttpConnectionPool pool = new HttpConnectionPool(1, 1, 0);
+        assertNull(pool.lease("route", 100));
+        pool.cancelReservation("route");
+        assertEquals(0, pool.getAllocatedCount());
+
+        Socket socket = new Socket("localhost", serverSocket.getLocalPort());
+        assertNull(pool.lease("route", 100));
+        pool.release(new HttpConnectionPool.PooledConnection("route", socket), true);
+        assertEquals(1, pool.getIdleCount());
+        Thread.sleep(5);
+        pool.closeExpiredConnections();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getAllocatedCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void testPoolTimesOutWhenRouteIsFull() throws Exception {
+        HttpConnectionPool pool = new HttpConnectionPool(1, 10, 1000);
+        assertNull(pool.lease("route", 100));
+        pool.lease("route", 50);
+    }
+}
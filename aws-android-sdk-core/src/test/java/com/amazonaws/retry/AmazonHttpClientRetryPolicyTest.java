@@ -22,6 +22,7 @@ import com.amazonaws.http.AmazonHttpClient;
 import com.amazonaws.http.ExecutionContext;
 import com.amazonaws.util.AWSRequestMetrics;
 
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -53,6 +54,12 @@ public class AmazonHttpClientRetryPolicyTest extends RetryPolicyTestBase {
                                  // ClientConfiguration level
     }
 
+    @After
+    public void resetRetryQuotaAndRateLimiter() {
+        clientConfiguration.setRetryQuota(null);
+        clientConfiguration.setRateLimiter(null);
+    }
+
     /**
      * Tests AmazonHttpClient's behavior upon simulated service exceptions when
      * the request payload is repeatable.
@@ -297,4 +304,59 @@ public class AmazonHttpClientRetryPolicyTest extends RetryPolicyTestBase {
                         .getTimingInfo()
                         .getCounter(AWSRequestMetrics.Field.RequestCount.toString()).intValue());
     }
+
+    /**
+     * Tests that retries stop once the configured retry quota is exhausted,
+     * even though the retry policy allows more.
+     */
+    @Test
+    public void testRetryQuotaLimitsRetries() {
+        IOException simulatedIOException = new IOException("fake IOException");
+        injectMockHttpClient(testedClient, new ThrowingExceptionHttpClient(simulatedIOException));
+        RetryQuota retryQuota = new RetryQuota(RetryQuota.TIMEOUT_RETRY_COST * 2 + 1);
+        clientConfiguration.setRetryQuota(retryQuota);
+
+        ExecutionContext context = new ExecutionContext(true);
+        try {
+            testedClient.execute(getSampleRequestWithRepeatableContent(originalRequest),
+                    null,
+                    errorResponseHandler,
+                    context);
+            Assert.fail("AmazonClientException is expected.");
+        } catch (AmazonClientException ace) {
+            Assert.assertTrue(simulatedIOException == ace.getCause());
+        }
+
+        // two retries were paid for, the third one was refused
+        Assert.assertEquals(1, retryQuota.getAvailableCapacity());
+        Assert.assertEquals(
+                3,
+                context.getAwsRequestMetrics()
+                        .getTimingInfo()
+                        .getCounter(AWSRequestMetrics.Field.RequestCount.toString()).intValue());
+    }
+
+    /**
+     * Tests that throttling errors switch on the configured rate limiter.
+     */
+    @Test
+    public void testThrottlingEnablesRateLimiter() {
+        injectMockHttpClient(testedClient, new ReturnServiceErrorHttpClient(400, "Throttling"));
+        AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter();
+        clientConfiguration.setRateLimiter(rateLimiter);
+        clientConfiguration.setRetryPolicy(new RetryPolicy(retryCondition,
+                backoffStrategy, 0, false));
+
+        Assert.assertFalse(rateLimiter.isEnabled());
+        try {
+            testedClient.execute(getSampleRequestWithRepeatableContent(originalRequest),
+                    null,
+                    errorResponseHandler,
+                    new ExecutionContext(true));
+            Assert.fail("AmazonServiceException is expected.");
+        } catch (AmazonServiceException ase) {
+            Assert.assertEquals("Throttling", ase.getErrorCode());
+        }
+        Assert.assertTrue(rateLimiter.isEnabled());
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+
+import org.junit.Test;
+
+public class RetryQuotaTest {
+
+    @Test
+    public void testAcquireAndRelease() {
+        RetryQuota quota = new RetryQuota(12);
+        assertEquals(RetryQuota.RETRY_COST, quota.acquire(new AmazonServiceException("throttled")));
+        assertEquals(7, quota.getAvailableCapacity());
+        assertTrue(quota.acquire(new AmazonClientException("timeout")) < 0);
+        assertEquals(7, quota.getAvailableCapacity());
+
+        quota.release(RetryQuota.RETRY_COST);
+        assertEquals(12, quota.getAvailableCapacity());
+        assertEquals(RetryQuota.TIMEOUT_RETRY_COST,
+                quota.acquire(new AmazonClientException("timeout")));
+        assertEquals(2, quota.getAvailableCapacity());
+
+        // successful first attempts slowly refill the bucket
+        quota.release(0);
+        assertEquals(2 + RetryQuota.NO_RETRY_INCREMENT, quota.getAvailableCapacity());
+    }
+
+    @Test
+    public void testReleaseIsCappedAtCapacity() {
+        RetryQuota quota = new RetryQuota();
+        quota.release(RetryQuota.TIMEOUT_RETRY_COST);
+        assertEquals(RetryQuota.DEFAULT_CAPACITY, quota.getAvailableCapacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new RetryQuota(0);
+    }
+
+    @Test
+    public void testRateLimiterBacksOffAndRecovers() {
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter();
+        assertEquals(0, limiter.acquire());
+        assertFalse(limiter.isEnabled());
+
+        // 10 requests per second for two seconds, then a throttling error
+        for (int i = 0; i < 20; i++) {
+            limiter.now += 0.1;
+            limiter.updateSendingRate(false);
+        }
+        limiter.updateSendingRate(true);
+        assertTrue(limiter.isEnabled());
+        final double throttledRate = limiter.getSendingRate();
+        assertTrue(throttledRate < limiter.getMeasuredRate());
+
+        // the bucket is drained, so the next requests have to wait
+        limiter.now += 1;
+        long waited = 0;
+        for (int i = 0; i < 20; i++) {
+            waited += limiter.acquire();
+        }
+        assertTrue(waited > 0);
+
+        // successes grow the rate back above the throttled rate
+        for (int i = 0; i < 50; i++) {
+            limiter.now += 0.1;
+            limiter.updateSendingRate(false);
+        }
+        assertTrue(limiter.getSendingRate() > throttledRate);
+    }
+
+    private static final class FakeClockRateLimiter extends AdaptiveRateLimiter {
+        private double now;
+
+        @Override
+        double currentTimeSeconds() {
+            return now;
+        }
+    }
+}
@@ -105,6 +105,49 @@ public class StaxUnmarshallerContextTest {
         assertFalse("expression not match", context.testExpression("imageSet/item_id", 2));
     }
 
+    @Test
+    public void testCompiledExpression() throws Exception {
+        context = getContext(XML_STRING, null);
+        while (!(context.nextEvent() == XmlPullParser.START_TAG && context.getCurrentDepth() == 4))
+            ;
+
+        assertTrue(context.testExpression(PathExpression.compile("."), 1));
+        assertTrue(context.testExpression(PathExpression.compile("id")));
+        assertTrue(context.testExpression(PathExpression.compile("item/id"), 3));
+        assertTrue(context.testExpression(PathExpression.compile("imageSet/item/id"), 2));
+        assertTrue(context.testExpression(
+                PathExpression.compile("DescribeImagesResponse/imageSet/item/id"), 1));
+        assertFalse("depth not match",
+                context.testExpression(PathExpression.compile("imageSet/item/id"), 3));
+        assertFalse("expression not match",
+                context.testExpression(PathExpression.compile("imageSet/item_id"), 2));
+        assertFalse("partial name", context.testExpression("d"));
+        assertFalse("longer than stack",
+                context.testExpression("root/DescribeImagesResponse/imageSet/item/id", 0));
+        assertFalse("attributes never match", context.testExpression("item/@id", 3));
+        assertFalse("attributes never match", context.testExpression("id/@attr", 4));
+        assertEquals("imageSet/item/id", PathExpression.compile("imageSet/item/id").toString());
+    }
+
+    @Test
+    public void testDeepDocument() throws Exception {
+        StringBuilder xml = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            xml.append("<e").append(i).append('>');
+        }
+        xml.append("<leaf>value</leaf>");
+        for (int i = 39; i >= 0; i--) {
+            xml.append("</e").append(i).append('>');
+        }
+        context = getContext(xml.toString(), null);
+        while (!(context.nextEvent() == XmlPullParser.START_TAG && context.getCurrentDepth() == 41))
+            ;
+        assertTrue(context.testExpression("e38/e39/leaf", 39));
+        assertFalse(context.testExpression("e37/e39/leaf", 39));
+        assertEquals("value", context.readText());
+        assertTrue(context.testExpression("e38/e39", 39));
+    }
+
     @Test
     public void testMetadata() throws Exception {
         String key = "AWS_REQUEST_ID";
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.util;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.amazonaws.util.json.AwsJsonWriter;
+import com.amazonaws.util.json.JsonUtils;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+public class Utf8ByteArrayWriterTest {
+
+    private static final String[] SAMPLES = {
+            "",
+            "plain ascii",
+            "café über Ж",
+            "€ 中文 ￿",
+            "emoji 😀 and 𐀀",
+            "unpaired \ud83d high",
+            "unpaired \ude00 low",
+            "trailing high \ud83d",
+            "\ud83d😀"
+    };
+
+    @Test
+    public void testEncodingMatchesStringGetBytes() throws Exception {
+        for (String sample : SAMPLES) {
+            Utf8ByteArrayWriter writer = new Utf8ByteArrayWriter();
+            writer.write(sample);
+            assertArrayEquals(sample, sample.getBytes(UTF8), writer.toByteArray());
+        }
+    }
+
+    @Test
+    public void testSurrogatePairSplitAcrossWrites() throws Exception {
+        Utf8ByteArrayWriter writer = new Utf8ByteArrayWriter();
+        writer.write("a\ud83d");
+        writer.write('\ude00');
+        writer.write(new char[] {
+                'b'
+        }, 0, 1);
+        assertArrayEquals("a😀b".getBytes(UTF8), writer.toByteArray());
+    }
+
+    @Test
+    public void testGrowsBeyondInitialCapacity() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append(i % 3 == 0 ? '中' : 'x');
+        }
+        String large = sb.toString();
+        Utf8ByteArrayWriter writer = new Utf8ByteArrayWriter();
+        for (int i = 0; i < large.length(); i += 7) {
+            writer.write(large, i, Math.min(7, large.length() - i));
+        }
+        assertArrayEquals(large.getBytes(UTF8), writer.toByteArray());
+    }
+
+    @Test
+    public void testObtainReusesWriterAfterToByteArray() throws Exception {
+        Utf8ByteArrayWriter first = Utf8ByteArrayWriter.obtain();
+        first.write("first");
+        assertArrayEquals("first".getBytes(UTF8), first.toByteArray());
+
+        Utf8ByteArrayWriter second = Utf8ByteArrayWriter.obtain();
+        assertSame(first, second);
+        assertEquals(0, second.size());
+        second.write("second");
+        assertArrayEquals("second".getBytes(UTF8), second.toByteArray());
+    }
+
+    @Test
+    public void testObtainWhileInUseReturnsNewWriter() throws Exception {
+        Utf8ByteArrayWriter outer = Utf8ByteArrayWriter.obtain();
+        outer.write("outer");
+        Utf8ByteArrayWriter inner = Utf8ByteArrayWriter.obtain();
+        assertNotSame(outer, inner);
+        inner.write("inner");
+        assertArrayEquals("inner".getBytes(UTF8), inner.toByteArray());
+        assertArrayEquals("outer".getBytes(UTF8), outer.toByteArray());
+    }
+
+    @Test
+    public void testJsonWriterOutputMatchesStringWriter() throws Exception {
+        StringWriter stringWriter = new StringWriter();
+        writeSampleJson(JsonUtils.getJsonWriter(stringWriter));
+
+        Utf8ByteArrayWriter utf8Writer = Utf8ByteArrayWriter.obtain();
+        writeSampleJson(JsonUtils.getJsonWriter(utf8Writer));
+
+        assertArrayEquals(stringWriter.toString().getBytes(UTF8), utf8Writer.toByteArray());
+    }
+
+    private static void writeSampleJson(AwsJsonWriter jsonWriter) throws Exception {
+        jsonWriter.beginObject();
+        jsonWriter.name("TableName").value("täble");
+        jsonWriter.name("Items").beginArray();
+        for (String sample : SAMPLES) {
+            jsonWriter.value(sample);
+        }
+        jsonWriter.endArray();
+        jsonWriter.name("Count").value(42);
+        jsonWriter.endObject();
+        jsonWriter.close();
+    }
+}
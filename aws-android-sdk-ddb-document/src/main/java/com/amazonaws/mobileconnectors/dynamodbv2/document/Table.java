@@ -29,6 +29,7 @@ import com.amazonaws.services.dynamodbv2.model.ReturnValue;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.util.ItemCache;
 import com.amazonaws.util.VersionInfoUtils;
 
 import java.util.ArrayList;
@@ -58,6 +59,8 @@ public class Table {
     private List<String> hashKeys = new ArrayList<String>();
     private List<String> rangeKeys = new ArrayList<String>();
     private List<AttributeDefinition> attributes = new ArrayList<AttributeDefinition>();
+    private ItemCache itemCache;
+    private long itemCacheTtlMillis;
 
     /**
      * Constructor.
@@ -168,6 +171,27 @@ public class Table {
         return tableName;
     }
 
+    /**
+     * Sets a local cache that getItem reads through. Items are cached when
+     * read in full or put, and removed when updated without returning ALL_NEW
+     * attributes or deleted. Consistent reads skip the cached copy but still
+     * refresh it.
+     *
+     * @param itemCache the item cache, or null to always read from DynamoDB.
+     * @param ttlMillis how long items may be served from the cache.
+     */
+    public void setItemCache(ItemCache itemCache, long ttlMillis) {
+        this.itemCache = itemCache;
+        this.itemCacheTtlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the item cache getItem reads through, or null.
+     */
+    public ItemCache getItemCache() {
+        return itemCache;
+    }
+
     public TableDescription getTableDescription() {
         return tableDescription;
     }
@@ -277,7 +301,14 @@ public class Table {
         }
 
         Table.appendDynamoDBDocumentUserAgentString(request);
-        final PutItemResult result = client.putItem(request);
+        final PutItemResult result;
+        try {
+            result = client.putItem(request);
+        } catch (final RuntimeException e) {
+            invalidateCachedItem(keyOf(request.getItem()));
+            throw e;
+        }
+        cacheItem(request.getItem());
 
         Document ret = null;
         if (config != null && config.getReturnValue().compareTo(ReturnValue.ALL_OLD) == 0) {
@@ -343,12 +374,24 @@ public class Table {
             }
         }
 
-        Table.appendDynamoDBDocumentUserAgentString(request);
-        final GetItemResult response = this.client.getItem(request);
+        // only whole items are cached, so projections always go to the table
+        final boolean wholeItem = request.getAttributesToGet() == null;
+        Map<String, AttributeValue> item = null;
+        if (itemCache != null && wholeItem && !Boolean.TRUE.equals(request.getConsistentRead())) {
+            item = itemCache.get(tableName, key);
+        }
 
-        final Map<String, AttributeValue> item = response.getItem();
-        if (item == null || item.size() == 0) {
-            return null;
+        if (item == null) {
+            Table.appendDynamoDBDocumentUserAgentString(request);
+            final GetItemResult response = this.client.getItem(request);
+
+            item = response.getItem();
+            if (item == null || item.size() == 0) {
+                return null;
+            }
+            if (wholeItem) {
+                cacheItem(item);
+            }
         }
 
         final Document returnDocument = fromAttributeMap(item);
@@ -408,7 +451,12 @@ public class Table {
         }
         Table.appendDynamoDBDocumentUserAgentString(request);
 
-        final DeleteItemResult result = this.client.deleteItem(request);
+        final DeleteItemResult result;
+        try {
+            result = this.client.deleteItem(request);
+        } finally {
+            invalidateCachedItem(key);
+        }
 
         final Document returnDocument = this.fromAttributeMap(result.getAttributes());
         returnDocument.commit();
@@ -663,7 +711,18 @@ public class Table {
 
         Table.appendDynamoDBDocumentUserAgentString(updateRequest);
 
-        final UpdateItemResult result = this.client.updateItem(updateRequest);
+        final UpdateItemResult result;
+        try {
+            result = this.client.updateItem(updateRequest);
+        } catch (final RuntimeException e) {
+            invalidateCachedItem(key);
+            throw e;
+        }
+        if (config.getReturnValue() == ReturnValue.ALL_NEW) {
+            cacheItem(result.getAttributes());
+        } else {
+            invalidateCachedItem(key);
+        }
         doc.commit();
 
         if (config.getReturnValue() != ReturnValue.NONE) {
@@ -672,6 +731,41 @@ public class Table {
         return null;
     }
 
+    private void cacheItem(Map<String, AttributeValue> item) {
+        if (itemCache == null || item == null) {
+            return;
+        }
+        final Map<String, AttributeValue> key = keyOf(item);
+        if (key != null) {
+            itemCache.put(tableName, key, item, null, itemCacheTtlMillis);
+        }
+    }
+
+    private void invalidateCachedItem(Map<String, AttributeValue> key) {
+        if (itemCache != null && key != null) {
+            itemCache.invalidate(tableName, key);
+        }
+    }
+
+    /**
+     * Returns the primary key attributes of an item, or null if the table
+     * description has not been loaded or a key attribute is missing.
+     */
+    private Map<String, AttributeValue> keyOf(Map<String, AttributeValue> item) {
+        if (this.keys.isEmpty()) {
+            return null;
+        }
+        final Key key = new Key();
+        for (final String keyName : this.keys.keySet()) {
+            final AttributeValue value = item.get(keyName);
+            if (value == null) {
+                return null;
+            }
+            key.put(keyName, value);
+        }
+        return key;
+    }
+
     private void clear() {
         this.keys = new HashMap<String, KeyDescription>();
         this.hashKeys = new ArrayList<String>();
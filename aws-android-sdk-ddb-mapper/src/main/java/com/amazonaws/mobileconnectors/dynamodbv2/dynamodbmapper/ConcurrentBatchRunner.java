@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import com.amazonaws.AmazonClientException;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends batch requests built from a queue of pending items on an executor,
+ * keeping a bounded number of them in flight. Items a batch could not process
+ * are put back on the queue by {@link #onResult(Object)} and go out in a later
+ * batch once a jittered, exponentially growing backoff has elapsed.
+ * <p>
+ * Results are handled on the thread calling {@link #run()}, so subclasses do
+ * not need to synchronize the state they collect them into.
+ *
+ * @param <T> the type of a pending item
+ * @param <R> the result of one batch request
+ */
+abstract class ConcurrentBatchRunner<T, R> {
+
+    private static final long BACKOFF_BASE_IN_MILLISECONDS = 50;
+    private static final int MAX_BACKOFF_EXPONENT = 16;
+
+    private final Random random = new Random();
+    private final CompletionService<R> completionService;
+    private final int maxInFlight;
+    private final LinkedList<T> pending = new LinkedList<T>();
+    private final List<Future<R>> submitted = new LinkedList<Future<R>>();
+
+    private int inFlight;
+    private int retries;
+    private long notBefore;
+
+    ConcurrentBatchRunner(Executor executor, int maxInFlight) {
+        this.completionService = new ExecutorCompletionService<R>(executor);
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Queues an item to be sent in a later batch.
+     */
+    void add(T item) {
+        pending.add(item);
+    }
+
+    /**
+     * Removes up to a batch worth of items from the head of the pending queue
+     * and returns the request sending them. Called on the thread running
+     * {@link #run()}.
+     */
+    abstract Callable<R> nextBatch(LinkedList<T> pending);
+
+    /**
+     * Handles the result of one batch, re-queuing anything left unprocessed
+     * through {@link #add(Object)}.
+     *
+     * @return true if the batch made progress, false if the runner should back
+     *         off before sending the next batch
+     */
+    abstract boolean onResult(R result);
+
+    /**
+     * Sends batches until the pending queue is empty and every request has
+     * completed. An exception thrown by a request cancels the remaining ones
+     * and is rethrown.
+     */
+    void run() {
+        try {
+            while (!pending.isEmpty() || inFlight > 0) {
+                while (inFlight < maxInFlight && !pending.isEmpty()
+                        && System.currentTimeMillis() >= notBefore) {
+                    submitted.add(completionService.submit(nextBatch(pending)));
+                    inFlight++;
+                }
+
+                final long wait = notBefore - System.currentTimeMillis();
+                Future<R> done;
+                if (inFlight == 0) {
+                    Thread.sleep(Math.max(wait, 1));
+                    continue;
+                } else if (!pending.isEmpty() && inFlight < maxInFlight) {
+                    done = completionService.poll(Math.max(wait, 1), TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        continue;
+                    }
+                } else {
+                    done = completionService.take();
+                }
+                inFlight--;
+                submitted.remove(done);
+
+                if (onResult(getResult(done))) {
+                    retries = 0;
+                } else {
+                    retries++;
+                    notBefore = System.currentTimeMillis() + backoffDelay(retries);
+                }
+            }
+        } catch (final InterruptedException e) {
+            cancelAll();
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        } catch (final RuntimeException e) {
+            cancelAll();
+            throw e;
+        }
+    }
+
+    private R getResult(Future<R> done) throws InterruptedException {
+        try {
+            return done.get();
+        } catch (final ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new AmazonClientException("Batch request failed.", ee.getCause());
+        }
+    }
+
+    private void cancelAll() {
+        for (final Future<R> future : submitted) {
+            future.cancel(true);
+        }
+        submitted.clear();
+    }
+
+    /**
+     * "Full jitter" backoff: a random delay up to an exponentially growing
+     * cap, so that concurrent batches which were throttled together do not
+     * retry in lockstep.
+     */
+    long backoffDelay(int retries) {
+        final long cap = Math.min(DynamoDBMapper.MAX_BACKOFF_IN_MILLISECONDS,
+                BACKOFF_BASE_IN_MILLISECONDS << Math.min(retries, MAX_BACKOFF_EXPONENT));
+        return 1 + random.nextInt((int) cap);
+    }
+}
@@ -94,11 +94,14 @@ import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Pre-defined strategies for mapping between Java types and DynamoDB types.
@@ -203,6 +206,18 @@ public final class ConversionSchemas {
         private final DynamoDBReflector reflector;
         private final S3ClientCache s3cc;
 
+        /*
+         * Fully resolved (augmented) marshallers and unmarshallers keyed by
+         * getter, and the property table of each model class, so converting an
+         * item does no per-attribute lookups beyond these maps.
+         */
+        private final ConcurrentMap<Method, ArgumentMarshaller> marshallerCache =
+                new ConcurrentHashMap<Method, ArgumentMarshaller>();
+        private final ConcurrentMap<Method, ArgumentUnmarshaller> unmarshallerCache =
+                new ConcurrentHashMap<Method, ArgumentUnmarshaller>();
+        private final ConcurrentMap<Class<?>, ItemProperty[]> propertyCache =
+                new ConcurrentHashMap<Class<?>, ItemProperty[]>();
+
         public StandardItemConverter(
                 MarshallerSet marshallerSet,
                 UnmarshallerSet unmarshallerSet,
@@ -268,15 +283,15 @@ public final class ConversionSchemas {
             final Map<String, AttributeValue> result =
                     new HashMap<String, AttributeValue>();
 
-            for (final Method getter : reflector.getRelevantGetters(clazz)) {
+            for (final ItemProperty property : getProperties(clazz)) {
                 final Object getterResult =
-                        ReflectionUtils.safeInvoke(getter, object);
+                        ReflectionUtils.safeInvoke(property.getter, object);
 
                 if (getterResult != null) {
-                    final AttributeValue value = convert(getter, getterResult);
+                    final AttributeValue value = property.getMarshaller()
+                            .marshall(getterResult);
                     if (value != null) {
-                        final String name = reflector.getAttributeName(getter);
-                        result.put(name, value);
+                        result.put(property.attributeName, value);
                     }
                 }
             }
@@ -284,12 +299,28 @@ public final class ConversionSchemas {
             return result;
         }
 
-        private ArgumentMarshaller getMarshaller(Method getter) {
-            ArgumentMarshaller marshaller =
-                    marshallerSet.getMarshaller(getter);
-
-            marshaller = augment(getter.getGenericReturnType(), marshaller);
+        private ItemProperty[] getProperties(Class<?> clazz) {
+            ItemProperty[] properties = propertyCache.get(clazz);
+            if (properties == null) {
+                final Collection<Method> getters = reflector.getRelevantGetters(clazz);
+                properties = new ItemProperty[getters.size()];
+                int i = 0;
+                for (final Method getter : getters) {
+                    properties[i++] = new ItemProperty(getter,
+                            reflector.getAttributeName(getter));
+                }
+                propertyCache.put(clazz, properties);
+            }
+            return properties;
+        }
 
+        private ArgumentMarshaller getMarshaller(Method getter) {
+            ArgumentMarshaller marshaller = marshallerCache.get(getter);
+            if (marshaller == null) {
+                marshaller = marshallerSet.getMarshaller(getter);
+                marshaller = augment(getter.getGenericReturnType(), marshaller);
+                marshallerCache.put(getter, marshaller);
+            }
             return marshaller;
         }
 
@@ -413,41 +444,32 @@ public final class ConversionSchemas {
                 return result;
             }
 
-            for (final Method m : reflector.getRelevantGetters(clazz)) {
-                final String attributeName = reflector.getAttributeName(m);
-                final AttributeValue av = value.get(attributeName);
+            for (final ItemProperty property : getProperties(clazz)) {
+                final AttributeValue av = value.get(property.attributeName);
                 if (av != null) {
-                    setValue(result, m, av);
+                    final Method setter = property.getSetter();
+                    final Object unmarshalled = unmarshall(property.getUnmarshaller(),
+                            setter, av);
+                    ReflectionUtils.safeInvoke(setter, result, unmarshalled);
                 }
             }
 
             return result;
         }
 
-        private void setValue(
-                Object target,
-                Method getter,
-                AttributeValue value) {
-
-            final Method setter = reflector.getSetter(getter);
-            final ArgumentUnmarshaller unmarshaller =
-                    getUnmarshaller(getter, setter);
-
-            final Object unmarshalled = unmarshall(unmarshaller, setter, value);
-            ReflectionUtils.safeInvoke(setter, target, unmarshalled);
-        }
-
         private ArgumentUnmarshaller getUnmarshaller(
                 Method getter,
                 Method setter) {
 
-            ArgumentUnmarshaller unmarshaller =
-                    unmarshallerSet.getUnmarshaller(getter, setter);
-
-            unmarshaller = augment(
-                    setter.getGenericParameterTypes()[0], unmarshaller);
-
-            return new NullableUnmarshaller(unmarshaller);
+            ArgumentUnmarshaller unmarshaller = unmarshallerCache.get(getter);
+            if (unmarshaller == null) {
+                unmarshaller = unmarshallerSet.getUnmarshaller(getter, setter);
+                unmarshaller = augment(
+                        setter.getGenericParameterTypes()[0], unmarshaller);
+                unmarshaller = new NullableUnmarshaller(unmarshaller);
+                unmarshallerCache.put(getter, unmarshaller);
+            }
+            return unmarshaller;
         }
 
         private ArgumentUnmarshaller getMemberUnmarshaller(Type type) {
@@ -584,6 +606,51 @@ public final class ConversionSchemas {
             }
         }
 
+        /**
+         * A mapped property of a model class. The setter and converters are
+         * resolved on first use, so a property that never needs them (e.g. a
+         * read-only one that is only saved) raises no mapping error.
+         */
+        private final class ItemProperty {
+            private final Method getter;
+            private final String attributeName;
+            private volatile Method setter;
+            private volatile ArgumentMarshaller marshaller;
+            private volatile ArgumentUnmarshaller unmarshaller;
+
+            ItemProperty(Method getter, String attributeName) {
+                this.getter = getter;
+                this.attributeName = attributeName;
+            }
+
+            Method getSetter() {
+                Method result = setter;
+                if (result == null) {
+                    result = reflector.getSetter(getter);
+                    setter = result;
+                }
+                return result;
+            }
+
+            ArgumentMarshaller getMarshaller() {
+                ArgumentMarshaller result = marshaller;
+                if (result == null) {
+                    result = StandardItemConverter.this.getMarshaller(getter);
+                    marshaller = result;
+                }
+                return result;
+            }
+
+            ArgumentUnmarshaller getUnmarshaller() {
+                ArgumentUnmarshaller result = unmarshaller;
+                if (result == null) {
+                    result = StandardItemConverter.this.getUnmarshaller(getter, getSetter());
+                    unmarshaller = result;
+                }
+                return result;
+            }
+        }
+
         private static <T> T createObject(Class<T> clazz) {
             try {
 
@@ -1263,11 +1330,11 @@ public final class ConversionSchemas {
 
     static class CachingMarshallerSet implements MarshallerSet {
 
-        private final Map<Method, ArgumentMarshaller> cache =
-                new HashMap<Method, ArgumentMarshaller>();
+        private final ConcurrentMap<Method, ArgumentMarshaller> cache =
+                new ConcurrentHashMap<Method, ArgumentMarshaller>();
 
-        private final Map<Type, ArgumentMarshaller> memberCache =
-                new HashMap<Type, ArgumentMarshaller>();
+        private final ConcurrentMap<Type, ArgumentMarshaller> memberCache =
+                new ConcurrentHashMap<Type, ArgumentMarshaller>();
 
         private final MarshallerSet wrapped;
 
@@ -1277,40 +1344,40 @@ public final class ConversionSchemas {
 
         @Override
         public ArgumentMarshaller getMarshaller(Method getter) {
-            synchronized (cache) {
-                ArgumentMarshaller marshaler = cache.get(getter);
-                if (marshaler != null) {
-                    return marshaler;
-                }
+            ArgumentMarshaller marshaler = cache.get(getter);
+            if (marshaler != null) {
+                return marshaler;
+            }
 
-                marshaler = wrapped.getMarshaller(getter);
+            marshaler = wrapped.getMarshaller(getter);
+            if (marshaler != null) {
                 cache.put(getter, marshaler);
-                return marshaler;
             }
+            return marshaler;
         }
 
         @Override
         public ArgumentMarshaller getMemberMarshaller(Type memberType) {
-            synchronized (memberCache) {
-                ArgumentMarshaller marshaller = memberCache.get(memberType);
-                if (marshaller != null) {
-                    return marshaller;
-                }
+            ArgumentMarshaller marshaller = memberCache.get(memberType);
+            if (marshaller != null) {
+                return marshaller;
+            }
 
-                marshaller = wrapped.getMemberMarshaller(memberType);
+            marshaller = wrapped.getMemberMarshaller(memberType);
+            if (marshaller != null) {
                 memberCache.put(memberType, marshaller);
-                return marshaller;
             }
+            return marshaller;
         }
     }
 
     static class CachingUnmarshallerSet implements UnmarshallerSet {
 
-        private final Map<Method, ArgumentUnmarshaller> cache =
-                new HashMap<Method, ArgumentUnmarshaller>();
+        private final ConcurrentMap<Method, ArgumentUnmarshaller> cache =
+                new ConcurrentHashMap<Method, ArgumentUnmarshaller>();
 
-        private final Map<Type, ArgumentUnmarshaller> memberCache =
-                new HashMap<Type, ArgumentUnmarshaller>();
+        private final ConcurrentMap<Type, ArgumentUnmarshaller> memberCache =
+                new ConcurrentHashMap<Type, ArgumentUnmarshaller>();
 
         private final UnmarshallerSet wrapped;
 
@@ -1323,30 +1390,30 @@ public final class ConversionSchemas {
                 Method getter,
                 Method setter) {
 
-            synchronized (cache) {
-                ArgumentUnmarshaller unmarshaler = cache.get(getter);
-                if (unmarshaler != null) {
-                    return unmarshaler;
-                }
+            ArgumentUnmarshaller unmarshaler = cache.get(getter);
+            if (unmarshaler != null) {
+                return unmarshaler;
+            }
 
-                unmarshaler = wrapped.getUnmarshaller(getter, setter);
+            unmarshaler = wrapped.getUnmarshaller(getter, setter);
+            if (unmarshaler != null) {
                 cache.put(getter, unmarshaler);
-                return unmarshaler;
             }
+            return unmarshaler;
         }
 
         @Override
         public ArgumentUnmarshaller getMemberUnmarshaller(Type memberType) {
-            synchronized (memberCache) {
-                ArgumentUnmarshaller unmarshaller = memberCache.get(memberType);
-                if (unmarshaller != null) {
-                    return unmarshaller;
-                }
+            ArgumentUnmarshaller unmarshaller = memberCache.get(memberType);
+            if (unmarshaller != null) {
+                return unmarshaller;
+            }
 
-                unmarshaller = wrapped.getMemberUnmarshaller(memberType);
+            unmarshaller = wrapped.getMemberUnmarshaller(memberType);
+            if (unmarshaller != null) {
                 memberCache.put(memberType, unmarshaller);
-                return unmarshaller;
             }
+            return unmarshaller;
         }
     }
 
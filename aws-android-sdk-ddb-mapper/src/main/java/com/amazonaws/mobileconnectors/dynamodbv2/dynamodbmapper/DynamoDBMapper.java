@@ -56,6 +56,7 @@ import com.amazonaws.services.dynamodbv2.model.Select;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
 import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.amazonaws.services.dynamodbv2.util.ItemCache;
 import com.amazonaws.services.s3.model.Region;
 import com.amazonaws.util.VersionInfoUtils;
 
@@ -64,6 +65,7 @@ import org.apache.commons.logging.LogFactory;
 import org.json.JSONObject;
 
 import java.lang.reflect.Method;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -78,6 +80,9 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Object mapper for domain-object interaction with DynamoDB.
@@ -184,6 +189,15 @@ public class DynamoDBMapper {
 
     private final AttributeTransformer transformer;
 
+    /**
+     * Converters built from the standard conversion schemas, which keep the
+     * per-class property tables used to convert items.
+     */
+    private final ConcurrentMap<ConversionSchema, ItemConverter> converterCache =
+            new ConcurrentHashMap<ConversionSchema, ItemConverter>();
+
+    private static final int MAX_CACHED_CONVERTERS = 8;
+
     /** The max back off time for batch write */
     static final long MAX_BACKOFF_IN_MILLISECONDS = 1000 * 3;
 
@@ -597,10 +611,14 @@ public class DynamoDBMapper {
         rq.setTableName(tableName);
         rq.setConsistentRead(config.getConsistentReads() == ConsistentReads.CONSISTENT);
 
-        final GetItemResult item = db.getItem(applyUserAgent(rq));
-        final Map<String, AttributeValue> itemAttributes = item.getItem();
+        Map<String, AttributeValue> itemAttributes = getCachedItem(tableName, key, config);
         if (itemAttributes == null) {
-            return null;
+            final GetItemResult item = db.getItem(applyUserAgent(rq));
+            itemAttributes = item.getItem();
+            if (itemAttributes == null) {
+                return null;
+            }
+            cacheItem(clazz, tableName, itemAttributes, config);
         }
 
         final T object = privateMarshallIntoObject(
@@ -1280,9 +1298,17 @@ public class DynamoDBMapper {
             }
 
             /*
-             * Execute the implementation of the low level request.
+             * Execute the implementation of the low level request. If it
+             * fails, whatever is cached for the item may no longer match the
+             * table, e.g. after a version conflict.
              */
-            executeLowLevelRequest();
+            try {
+                executeLowLevelRequest();
+            } catch (final RuntimeException e) {
+                invalidateCachedItem(clazz, tableName, key.isEmpty()
+                        ? convertToItem(updateValues) : key, saveConfig);
+                throw e;
+            }
 
             /*
              * Finally, after the service call has succeeded, update the
@@ -1399,7 +1425,10 @@ public class DynamoDBMapper {
                     .withReturnValues(ReturnValue.ALL_NEW)
                     .withRequestMetricCollector(saveConfig.getRequestMetricCollector());
 
-            return db.updateItem(applyUserAgent(req));
+            final UpdateItemResult result = db.updateItem(applyUserAgent(req));
+            // ALL_NEW returns the whole item, unmodeled attributes included
+            cacheItem(clazz, getTableName(), result.getAttributes(), saveConfig);
+            return result;
         }
 
         /**
@@ -1428,7 +1457,9 @@ public class DynamoDBMapper {
                     .withConditionalOperator(userProvidedConditionOperator)
                     .withRequestMetricCollector(saveConfig.getRequestMetricCollector());
 
-            return db.putItem(applyUserAgent(req));
+            final PutItemResult result = db.putItem(applyUserAgent(req));
+            cacheItem(clazz, getTableName(), attributeValues, saveConfig);
+            return result;
         }
 
         private void onAutoGenerateAssignableKey(Method method, String attributeName) {
@@ -1587,7 +1618,11 @@ public class DynamoDBMapper {
                             deleteExpression.getConditionalOperator());
 
         }
-        db.deleteItem(applyUserAgent(req));
+        try {
+            db.deleteItem(applyUserAgent(req));
+        } finally {
+            invalidateCachedItem(clazz, tableName, key, config);
+        }
     }
 
     /**
@@ -1699,6 +1734,13 @@ public class DynamoDBMapper {
      * see, http://docs.aws.amazon
      * .com/amazondynamodb/latest/APIReference/API_BatchWriteItem.html
      * </p>
+     * <p>
+     * If the config specifies a
+     * {@link DynamoDBMapperConfig#getBatchExecutor() batch executor}, the
+     * batches are sent concurrently on it, and items DynamoDB leaves
+     * unprocessed are retried in later batches. Writes to the same item made
+     * in one call are then not guaranteed to be applied in list order.
+     * </p>
      *
      * @param objectsToWrite A list of objects to save to DynamoDB. <b>No
      *            version checks are performed</b>, as required by the
@@ -1708,8 +1750,9 @@ public class DynamoDBMapper {
      *            version checks are performed</b>, as required by the
      *            {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)}
      *            API.
-     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()} is
-     *            considered; if specified, all objects in the two parameter
+     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()}
+     *            and the batch executor settings are considered; if a table
+     *            name override is specified, all objects in the two parameter
      *            lists will be considered to belong to the given table
      *            override. In particular, this method <b>always acts as if
      *            SaveBehavior.CLOBBER was specified</b> regardless of the value
@@ -1758,6 +1801,8 @@ public class DynamoDBMapper {
                 requestItems.put(tableName, new LinkedList<WriteRequest>());
             }
 
+            invalidateCachedItem(clazz, tableName, attributeValues, config);
+
             final AttributeTransformer.Parameters<?> parameters =
                     toParameters(attributeValues, clazz, tableName, config);
 
@@ -1773,6 +1818,7 @@ public class DynamoDBMapper {
             final String tableName = getTableName(clazz, toDelete, config);
 
             final Map<String, AttributeValue> key = getKey(converter, toDelete);
+            invalidateCachedItem(clazz, tableName, key, config);
 
             if (!requestItems.containsKey(tableName)) {
                 requestItems.put(tableName, new LinkedList<WriteRequest>());
@@ -1782,6 +1828,12 @@ public class DynamoDBMapper {
                     new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(key)));
         }
 
+        // With a batch executor every request is handed off here, leaving
+        // requestItems empty for the serial loop below.
+        if (config.getBatchExecutor() != null) {
+            totalFailedBatches.addAll(writeBatchesConcurrently(requestItems, config));
+        }
+
         // Break into chunks of 25 items and make service requests to DynamoDB
         while (!requestItems.isEmpty()) {
 
@@ -1958,6 +2010,116 @@ public class DynamoDBMapper {
         return failedBatch;
     }
 
+    /**
+     * Sends the write requests on the configured batch executor, keeping up to
+     * {@link DynamoDBMapperConfig#getMaxConcurrentBatches()} BatchWriteItem
+     * calls in flight. Unprocessed items are folded into later batches after a
+     * jittered backoff rather than retried on their own. Empties requestItems.
+     */
+    private List<FailedBatch> writeBatchesConcurrently(
+            Map<String, List<WriteRequest>> requestItems, DynamoDBMapperConfig config) {
+        final List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
+        final ConcurrentBatchRunner<Entry<String, WriteRequest>, List<FailedBatch>> runner =
+                new ConcurrentBatchRunner<Entry<String, WriteRequest>, List<FailedBatch>>(
+                        config.getBatchExecutor(), getMaxConcurrentBatches(config)) {
+
+                    @Override
+                    Callable<List<FailedBatch>> nextBatch(
+                            LinkedList<Entry<String, WriteRequest>> pending) {
+                        final Map<String, List<WriteRequest>> batch =
+                                new HashMap<String, List<WriteRequest>>();
+                        for (int i = 0; i < MAX_ITEMS_PER_BATCH && !pending.isEmpty(); i++) {
+                            final Entry<String, WriteRequest> item = pending.removeFirst();
+                            if (!batch.containsKey(item.getKey())) {
+                                batch.put(item.getKey(), new LinkedList<WriteRequest>());
+                            }
+                            batch.get(item.getKey()).add(item.getValue());
+                        }
+                        return new Callable<List<FailedBatch>>() {
+                            @Override
+                            public List<FailedBatch> call() {
+                                return writeBatchOnce(batch);
+                            }
+                        };
+                    }
+
+                    @Override
+                    boolean onResult(List<FailedBatch> result) {
+                        boolean progress = true;
+                        for (final FailedBatch failedBatch : result) {
+                            if (failedBatch.getException() == null) {
+                                // unprocessed items go back in the queue
+                                for (final Entry<String, List<WriteRequest>> table : failedBatch
+                                        .getUnprocessedItems().entrySet()) {
+                                    for (final WriteRequest writeRequest : table.getValue()) {
+                                        add(new SimpleImmutableEntry<String, WriteRequest>(
+                                                table.getKey(), writeRequest));
+                                    }
+                                }
+                                progress = false;
+                            } else {
+                                failedBatches.add(failedBatch);
+                            }
+                        }
+                        return progress && !containsThrottlingException(result);
+                    }
+                };
+
+        for (final Entry<String, List<WriteRequest>> table : requestItems.entrySet()) {
+            for (final WriteRequest writeRequest : table.getValue()) {
+                runner.add(new SimpleImmutableEntry<String, WriteRequest>(
+                        table.getKey(), writeRequest));
+            }
+        }
+        requestItems.clear();
+
+        runner.run();
+        return failedBatches;
+    }
+
+    /**
+     * Makes a single BatchWriteItem call. Unprocessed items are returned as a
+     * failed batch without an exception; a request that is too large is split
+     * in half and written with {@link #writeOneBatch(Map)}.
+     */
+    List<FailedBatch> writeBatchOnce(Map<String, List<WriteRequest>> batch) {
+        final List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
+        try {
+            final BatchWriteItemResult result = db.batchWriteItem(applyBatchOperationUserAgent(
+                    new BatchWriteItemRequest().withRequestItems(batch)));
+            if (result.getUnprocessedItems() != null && !result.getUnprocessedItems().isEmpty()) {
+                final FailedBatch unprocessed = new FailedBatch();
+                unprocessed.setUnprocessedItems(result.getUnprocessedItems());
+                failedBatches.add(unprocessed);
+            }
+        } catch (final Exception e) {
+            final FailedBatch failedBatch = new FailedBatch();
+            failedBatch.setUnprocessedItems(batch);
+            failedBatch.setException(e);
+
+            if (e instanceof AmazonServiceException
+                    && RetryUtils.isRequestEntityTooLargeException((AmazonServiceException) e)
+                    && computeFailedBatchSize(failedBatch) > 1) {
+                final Map<String, List<WriteRequest>> firstHalfBatch =
+                        new HashMap<String, List<WriteRequest>>();
+                final Map<String, List<WriteRequest>> secondHalfBatch =
+                        new HashMap<String, List<WriteRequest>>();
+                divideBatch(batch, firstHalfBatch, secondHalfBatch);
+                failedBatches.addAll(writeOneBatch(firstHalfBatch));
+                failedBatches.addAll(writeOneBatch(secondHalfBatch));
+            } else {
+                failedBatches.add(failedBatch);
+            }
+        }
+        return failedBatches;
+    }
+
+    private static int getMaxConcurrentBatches(DynamoDBMapperConfig config) {
+        return config.getMaxConcurrentBatches() == null
+                ? DynamoDBMapperConfig.DEFAULT_MAX_CONCURRENT_BATCHES
+                : config.getMaxConcurrentBatches();
+    }
+
     /**
      * Retrieves multiple items from multiple tables using their primary keys.
      *
@@ -1978,9 +2140,11 @@ public class DynamoDBMapper {
      *
      * @param itemsToGet Key objects, corresponding to the class to fetch, with
      *            their primary key values set.
-     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()}
-     *            and {@link DynamoDBMapperConfig#getConsistentReads()} are
-     *            considered.
+     * @param config Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getConsistentReads()} and the
+     *            batch executor settings are considered. With a
+     *            {@link DynamoDBMapperConfig#getBatchExecutor() batch executor}
+     *            the BatchGetItem calls are sent concurrently on it.
      * @return A map of the loaded objects. Each key in the map is the name of a
      *         DynamoDB table. Each value in the map is a list of objects that
      *         have been loaded from that table. All objects for each table can
@@ -2002,6 +2166,10 @@ public class DynamoDBMapper {
 
         final ItemConverter converter = getConverter(config);
 
+        if (config.getBatchExecutor() != null) {
+            return loadBatchesConcurrently(itemsToGet, consistentReads, config, converter);
+        }
+
         for (final Object keyObject : itemsToGet) {
             final Class<?> clazz = keyObject.getClass();
 
@@ -2149,6 +2317,118 @@ public class DynamoDBMapper {
 
     }
 
+    /**
+     * Loads the keys on the configured batch executor, keeping up to
+     * {@link DynamoDBMapperConfig#getMaxConcurrentBatches()} BatchGetItem calls
+     * in flight. Unprocessed keys are folded into later batches after a
+     * jittered backoff; results are unmarshalled on the calling thread.
+     */
+    private Map<String, List<Object>> loadBatchesConcurrently(
+            final List<Object> itemsToGet,
+            final boolean consistentReads,
+            final DynamoDBMapperConfig config,
+            final ItemConverter converter) {
+
+        final Map<String, Class<?>> classesByTableName = new HashMap<String, Class<?>>();
+        final Map<String, List<Object>> resultSet = new HashMap<String, List<Object>>();
+
+        final ConcurrentBatchRunner<Entry<String, Map<String, AttributeValue>>, BatchGetItemResult> runner =
+                new ConcurrentBatchRunner<Entry<String, Map<String, AttributeValue>>, BatchGetItemResult>(
+                        config.getBatchExecutor(), getMaxConcurrentBatches(config)) {
+
+                    private int retriesWithoutData;
+
+                    @Override
+                    Callable<BatchGetItemResult> nextBatch(
+                            LinkedList<Entry<String, Map<String, AttributeValue>>> pending) {
+                        final Map<String, KeysAndAttributes> requestItems =
+                                new HashMap<String, KeysAndAttributes>();
+                        for (int i = 0; i < MAX_BATCH_GET_COUNT && !pending.isEmpty(); i++) {
+                            final Entry<String, Map<String, AttributeValue>> item =
+                                    pending.removeFirst();
+                            if (!requestItems.containsKey(item.getKey())) {
+                                requestItems.put(item.getKey(), new KeysAndAttributes()
+                                        .withConsistentRead(consistentReads)
+                                        .withKeys(new LinkedList<Map<String, AttributeValue>>()));
+                            }
+                            requestItems.get(item.getKey()).getKeys().add(item.getValue());
+                        }
+                        final BatchGetItemRequest batchGetItemRequest = new BatchGetItemRequest()
+                                .withRequestMetricCollector(config.getRequestMetricCollector());
+                        batchGetItemRequest.setRequestItems(requestItems);
+                        return new Callable<BatchGetItemResult>() {
+                            @Override
+                            public BatchGetItemResult call() {
+                                return db.batchGetItem(
+                                        applyBatchOperationUserAgent(batchGetItemRequest));
+                            }
+                        };
+                    }
+
+                    @Override
+                    boolean onResult(BatchGetItemResult result) {
+                        boolean receivedData = false;
+                        final Map<String, List<Map<String, AttributeValue>>> responses = result
+                                .getResponses();
+                        if (responses != null) {
+                            for (final String tableName : responses.keySet()) {
+                                List<Object> objects = resultSet.get(tableName);
+                                if (objects == null) {
+                                    objects = new LinkedList<Object>();
+                                    resultSet.put(tableName, objects);
+                                }
+
+                                final Class<?> clazz = classesByTableName.get(tableName);
+
+                                for (final Map<String, AttributeValue> item : responses
+                                        .get(tableName)) {
+                                    final AttributeTransformer.Parameters<?> parameters =
+                                            toParameters(item, clazz, tableName, config);
+                                    objects.add(privateMarshallIntoObject(converter, parameters));
+                                    receivedData = true;
+                                }
+                            }
+                        }
+
+                        final Map<String, KeysAndAttributes> unprocessedKeys = result
+                                .getUnprocessedKeys();
+                        if (unprocessedKeys == null || unprocessedKeys.isEmpty()) {
+                            retriesWithoutData = 0;
+                            return true;
+                        }
+                        if (receivedData) {
+                            retriesWithoutData = 0;
+                        } else if (++retriesWithoutData > BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS) {
+                            throw new AmazonClientException(
+                                    "Batch Get Item request to server hasn't received any data. "
+                                            + "Please try again later.");
+                        }
+                        for (final Entry<String, KeysAndAttributes> table : unprocessedKeys
+                                .entrySet()) {
+                            for (final Map<String, AttributeValue> key : table.getValue()
+                                    .getKeys()) {
+                                add(new SimpleImmutableEntry<String, Map<String, AttributeValue>>(
+                                        table.getKey(), key));
+                            }
+                        }
+                        return false;
+                    }
+                };
+
+        for (final Object keyObject : itemsToGet) {
+            final Class<?> clazz = keyObject.getClass();
+
+            final String tableName = getTableName(clazz, keyObject, config);
+            classesByTableName.put(tableName, clazz);
+
+            runner.add(new SimpleImmutableEntry<String, Map<String, AttributeValue>>(
+                    tableName, getKey(converter, keyObject)));
+        }
+
+        runner.run();
+        return resultSet;
+    }
+
     private final class ValueUpdate {
 
         private final Method method;
@@ -2487,6 +2767,7 @@ public class DynamoDBMapper {
         final QueryRequest queryRequest = createQueryRequestFromExpression(clazz, queryExpression, config);
 
         final QueryResult scanResult = db.query(applyUserAgent(queryRequest));
+        cacheQueryResults(clazz, queryRequest, scanResult.getItems(), config);
         final QueryResultPage<T> result = new QueryResultPage<T>();
         final List<AttributeTransformer.Parameters<T>> parameters =
                 toParameters(scanResult.getItems(), clazz, queryRequest.getTableName(), config);
@@ -2603,6 +2884,100 @@ public class DynamoDBMapper {
         return config;
     }
 
+    /**
+     * Returns the attributes of the item with the given key from the
+     * configured item cache, or null if there is no cache, the read has to be
+     * consistent or the item is not cached.
+     */
+    private Map<String, AttributeValue> getCachedItem(String tableName,
+            Map<String, AttributeValue> key, DynamoDBMapperConfig config) {
+        final ItemCache cache = config.getItemCache();
+        if (cache == null || config.getConsistentReads() == ConsistentReads.CONSISTENT) {
+            return null;
+        }
+        return cache.get(tableName, key);
+    }
+
+    /**
+     * Stores all the attributes of an item, as read from or written to the
+     * table, in the configured item cache.
+     */
+    private void cacheItem(Class<?> clazz, String tableName, Map<String, AttributeValue> item,
+            DynamoDBMapperConfig config) {
+        final ItemCache cache = config.getItemCache();
+        if (cache == null || item == null) {
+            return;
+        }
+        final Map<String, AttributeValue> key = getKeyFromItem(clazz, item);
+        if (key == null) {
+            return;
+        }
+        final Long ttl = config.getItemCacheTtlMillis();
+        cache.put(tableName, key, item, getVersionAttributeName(clazz), ttl == null
+                ? DynamoDBMapperConfig.DEFAULT_ITEM_CACHE_TTL_MILLIS : ttl);
+    }
+
+    /**
+     * Removes the item with the key found in the given attributes from the
+     * configured item cache.
+     */
+    private void invalidateCachedItem(Class<?> clazz, String tableName,
+            Map<String, AttributeValue> attributes, DynamoDBMapperConfig config) {
+        final ItemCache cache = config.getItemCache();
+        if (cache == null) {
+            return;
+        }
+        final Map<String, AttributeValue> key = getKeyFromItem(clazz, attributes);
+        if (key != null) {
+            cache.invalidate(tableName, key);
+        }
+    }
+
+    /**
+     * Caches the items of a query page if they are whole items of the table,
+     * rather than index entries or projections.
+     */
+    void cacheQueryResults(Class<?> clazz, QueryRequest queryRequest,
+            List<Map<String, AttributeValue>> items, DynamoDBMapperConfig config) {
+        if (config == null || config.getItemCache() == null || items == null
+                || queryRequest.getIndexName() != null
+                || queryRequest.getAttributesToGet() != null
+                || queryRequest.getProjectionExpression() != null
+                || (queryRequest.getSelect() != null
+                && !Select.ALL_ATTRIBUTES.toString().equals(queryRequest.getSelect()))) {
+            return;
+        }
+        for (final Map<String, AttributeValue> item : items) {
+            cacheItem(clazz, queryRequest.getTableName(), item, config);
+        }
+    }
+
+    /**
+     * Returns the primary key attributes of an item, or null if any is missing.
+     */
+    private Map<String, AttributeValue> getKeyFromItem(Class<?> clazz,
+            Map<String, AttributeValue> item) {
+        final Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        for (final Method keyGetter : reflector.getPrimaryKeyGetters(clazz)) {
+            final String attributeName = reflector.getAttributeName(keyGetter);
+            final AttributeValue value = item.get(attributeName);
+            if (value == null) {
+                return null;
+            }
+            key.put(attributeName, value);
+        }
+        return key;
+    }
+
+    private String getVersionAttributeName(Class<?> clazz) {
+        for (final Method getter : reflector.getRelevantGetters(clazz)) {
+            if (reflector.isVersionAttributeGetter(getter)) {
+                return reflector.getAttributeName(getter);
+            }
+        }
+        return null;
+    }
+
     /**
      * @param config never null
      */
@@ -3184,11 +3559,27 @@ public class DynamoDBMapper {
     ItemConverter getConverter(DynamoDBMapperConfig config) {
         final ConversionSchema schema = config.getConversionSchema();
 
+        ItemConverter converter = converterCache.get(schema);
+        if (converter != null) {
+            return converter;
+        }
+
         final ConversionSchema.Dependencies params = new ConversionSchema.Dependencies()
                 .with(DynamoDBReflector.class, reflector)
                 .with(S3ClientCache.class, s3cc);
 
-        return schema.getConverter(params);
+        converter = schema.getConverter(params);
+
+        // The standard converters are stateless apart from their caches, so
+        // keep them; custom schemas may hand out a fresh converter each time.
+        if (schema instanceof ConversionSchemas.StandardConversionSchema
+                && converterCache.size() < MAX_CACHED_CONVERTERS) {
+            final ItemConverter existing = converterCache.putIfAbsent(schema, converter);
+            if (existing != null) {
+                converter = existing;
+            }
+        }
+        return converter;
     }
 
     private void pauseExponentially(int retries) {
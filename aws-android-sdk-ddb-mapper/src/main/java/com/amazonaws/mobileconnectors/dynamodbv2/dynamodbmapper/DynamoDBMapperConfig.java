@@ -16,6 +16,9 @@
 package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.dynamodbv2.util.ItemCache;
+
+import java.util.concurrent.Executor;
 
 /**
  * Immutable configuration object for service call behavior. An instance of this
@@ -52,6 +55,11 @@ public class DynamoDBMapperConfig {
         private PaginationLoadingStrategy paginationLoadingStrategy;
         private RequestMetricCollector requestMetricCollector;
         private ConversionSchema conversionSchema;
+        private Executor batchExecutor;
+        private Integer maxConcurrentBatches;
+        private Integer paginationReadAheadPages;
+        private ItemCache itemCache;
+        private Long itemCacheTtlMillis;
 
         /**
          * Creates a new builder initialized with the {@link #DEFAULT} values.
@@ -65,6 +73,11 @@ public class DynamoDBMapperConfig {
             paginationLoadingStrategy = DEFAULT.getPaginationLoadingStrategy();
             requestMetricCollector = DEFAULT.getRequestMetricCollector();
             conversionSchema = DEFAULT.getConversionSchema();
+            batchExecutor = DEFAULT.getBatchExecutor();
+            maxConcurrentBatches = DEFAULT.getMaxConcurrentBatches();
+            paginationReadAheadPages = DEFAULT.getPaginationReadAheadPages();
+            itemCache = DEFAULT.getItemCache();
+            itemCacheTtlMillis = DEFAULT.getItemCacheTtlMillis();
         }
 
         /**
@@ -255,6 +268,122 @@ public class DynamoDBMapperConfig {
             return this;
         }
 
+        /**
+         * @return the current batch executor
+         */
+        public Executor getBatchExecutor() {
+            return batchExecutor;
+        }
+
+        /**
+         * @param value the new batch executor, or null to send batch
+         *            requests one at a time on the calling thread
+         */
+        public void setBatchExecutor(Executor value) {
+            batchExecutor = value;
+        }
+
+        /**
+         * @param value the new batch executor
+         * @return this builder
+         */
+        public Builder withBatchExecutor(Executor value) {
+            setBatchExecutor(value);
+            return this;
+        }
+
+        /**
+         * @return the current maximum number of concurrent batch requests
+         */
+        public Integer getMaxConcurrentBatches() {
+            return maxConcurrentBatches;
+        }
+
+        /**
+         * @param value the new maximum number of concurrent batch requests
+         */
+        public void setMaxConcurrentBatches(Integer value) {
+            maxConcurrentBatches = value;
+        }
+
+        /**
+         * @param value the new maximum number of concurrent batch requests
+         * @return this builder
+         */
+        public Builder withMaxConcurrentBatches(Integer value) {
+            setMaxConcurrentBatches(value);
+            return this;
+        }
+
+        /**
+         * @return the current number of pages read ahead in STREAMING mode
+         */
+        public Integer getPaginationReadAheadPages() {
+            return paginationReadAheadPages;
+        }
+
+        /**
+         * @param value the new number of pages read ahead in STREAMING mode
+         */
+        public void setPaginationReadAheadPages(Integer value) {
+            paginationReadAheadPages = value;
+        }
+
+        /**
+         * @param value the new number of pages read ahead in STREAMING mode
+         * @return this builder
+         */
+        public Builder withPaginationReadAheadPages(Integer value) {
+            setPaginationReadAheadPages(value);
+            return this;
+        }
+
+        /**
+         * @return the currently-configured item cache
+         */
+        public ItemCache getItemCache() {
+            return itemCache;
+        }
+
+        /**
+         * @param value the new item cache
+         */
+        public void setItemCache(ItemCache value) {
+            itemCache = value;
+        }
+
+        /**
+         * @param value the new item cache
+         * @return this builder
+         */
+        public Builder withItemCache(ItemCache value) {
+            setItemCache(value);
+            return this;
+        }
+
+        /**
+         * @return the current time to live of cached items, in milliseconds
+         */
+        public Long getItemCacheTtlMillis() {
+            return itemCacheTtlMillis;
+        }
+
+        /**
+         * @param value the new time to live of cached items, in milliseconds
+         */
+        public void setItemCacheTtlMillis(Long value) {
+            itemCacheTtlMillis = value;
+        }
+
+        /**
+         * @param value the new time to live of cached items, in milliseconds
+         * @return this builder
+         */
+        public Builder withItemCacheTtlMillis(Long value) {
+            setItemCacheTtlMillis(value);
+            return this;
+        }
+
         /**
          * Builds a new {@code DynamoDBMapperConfig} object.
          *
@@ -269,7 +398,12 @@ public class DynamoDBMapperConfig {
                     objectTableNameResolver,
                     paginationLoadingStrategy,
                     requestMetricCollector,
-                    conversionSchema);
+                    conversionSchema,
+                    batchExecutor,
+                    maxConcurrentBatches,
+                    paginationReadAheadPages,
+                    itemCache,
+                    itemCacheTtlMillis);
         }
     }
 
@@ -366,7 +500,18 @@ public class DynamoDBMapperConfig {
          * Paginated list will eagerly load all the paginated results from
          * DynamoDB as soon as the list is initialized.
          */
-        EAGER_LOADING
+        EAGER_LOADING,
+
+        /**
+         * Like ITERATION_ONLY, the list can only be iterated once and does not
+         * keep results that have already been iterated. In addition, the next
+         * pages are fetched in the background while the current one is being
+         * consumed, up to
+         * {@link DynamoDBMapperConfig#getPaginationReadAheadPages()} pages
+         * ahead of the iterator. Fetching pauses while that many pages are
+         * waiting, so a slow consumer does not cause unbounded memory use.
+         */
+        STREAMING
     }
 
     /**
@@ -528,6 +673,11 @@ public class DynamoDBMapperConfig {
     private final PaginationLoadingStrategy paginationLoadingStrategy;
     private final RequestMetricCollector requestMetricCollector;
     private final ConversionSchema conversionSchema;
+    private final Executor batchExecutor;
+    private final Integer maxConcurrentBatches;
+    private final Integer paginationReadAheadPages;
+    private final ItemCache itemCache;
+    private final Long itemCacheTtlMillis;
 
     /**
      * Legacy constructor, using default PaginationLoadingStrategy
@@ -598,7 +748,12 @@ public class DynamoDBMapperConfig {
                 null,
                 paginationLoadingStrategy,
                 requestMetricCollector,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT,
+                null,
+                null,
+                null,
+                null,
+                null);
     }
 
     private DynamoDBMapperConfig(
@@ -609,7 +764,12 @@ public class DynamoDBMapperConfig {
             ObjectTableNameResolver objectTableNameResolver,
             PaginationLoadingStrategy paginationLoadingStrategy,
             RequestMetricCollector requestMetricCollector,
-            ConversionSchema conversionSchema) {
+            ConversionSchema conversionSchema,
+            Executor batchExecutor,
+            Integer maxConcurrentBatches,
+            Integer paginationReadAheadPages,
+            ItemCache itemCache,
+            Long itemCacheTtlMillis) {
 
         this.saveBehavior = saveBehavior;
         this.consistentReads = consistentReads;
@@ -619,6 +779,11 @@ public class DynamoDBMapperConfig {
         this.paginationLoadingStrategy = paginationLoadingStrategy;
         this.requestMetricCollector = requestMetricCollector;
         this.conversionSchema = conversionSchema;
+        this.batchExecutor = batchExecutor;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.paginationReadAheadPages = paginationReadAheadPages;
+        this.itemCache = itemCache;
+        this.itemCacheTtlMillis = itemCacheTtlMillis;
     }
 
     /**
@@ -628,7 +793,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(SaveBehavior saveBehavior) {
         this(saveBehavior, null, null, null, null, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null, null);
     }
 
     /**
@@ -639,7 +804,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(ConsistentReads consistentReads) {
         this(null, consistentReads, null, null, null, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null, null);
     }
 
     /**
@@ -649,7 +814,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameOverride tableNameOverride) {
         this(null, null, tableNameOverride, null, null, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null, null);
     }
 
     /**
@@ -660,7 +825,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameResolver tableNameResolver) {
         this(null, null, null, tableNameResolver, null, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null, null);
     }
 
     /**
@@ -671,7 +836,7 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(ObjectTableNameResolver objectTableNameResolver) {
         this(null, null, null, null, objectTableNameResolver, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null, null);
     }
 
     /**
@@ -684,7 +849,7 @@ public class DynamoDBMapperConfig {
     public DynamoDBMapperConfig(TableNameResolver tableNameResolver,
             ObjectTableNameResolver objectTableNameResolver) {
         this(null, null, null, tableNameResolver, objectTableNameResolver, null, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null, null);
     }
 
     /**
@@ -697,7 +862,7 @@ public class DynamoDBMapperConfig {
             PaginationLoadingStrategy paginationLoadingStrategy) {
 
         this(null, null, null, null, null, paginationLoadingStrategy, null,
-                ConversionSchemas.DEFAULT);
+                ConversionSchemas.DEFAULT, null, null, null, null, null);
     }
 
     /**
@@ -706,7 +871,8 @@ public class DynamoDBMapperConfig {
      * @param conversionSchema the dynamodb {@link ConversionSchema}
      */
     public DynamoDBMapperConfig(ConversionSchema conversionSchema) {
-        this(null, null, null, null, null, null, null, conversionSchema);
+        this(null, null, null, null, null, null, null, conversionSchema, null, null, null,
+                null, null);
     }
 
     /**
@@ -736,6 +902,11 @@ public class DynamoDBMapperConfig {
                     defaults.getPaginationLoadingStrategy();
             this.requestMetricCollector = defaults.getRequestMetricCollector();
             this.conversionSchema = defaults.getConversionSchema();
+            this.batchExecutor = defaults.getBatchExecutor();
+            this.maxConcurrentBatches = defaults.getMaxConcurrentBatches();
+            this.paginationReadAheadPages = defaults.getPaginationReadAheadPages();
+            this.itemCache = defaults.getItemCache();
+            this.itemCacheTtlMillis = defaults.getItemCacheTtlMillis();
 
         } else {
 
@@ -773,6 +944,26 @@ public class DynamoDBMapperConfig {
                     ? defaults.getConversionSchema()
                     : overrides.getConversionSchema();
 
+            this.batchExecutor = (overrides.getBatchExecutor() == null)
+                    ? defaults.getBatchExecutor()
+                    : overrides.getBatchExecutor();
+
+            this.maxConcurrentBatches = (overrides.getMaxConcurrentBatches() == null)
+                    ? defaults.getMaxConcurrentBatches()
+                    : overrides.getMaxConcurrentBatches();
+
+            this.paginationReadAheadPages = (overrides.getPaginationReadAheadPages() == null)
+                    ? defaults.getPaginationReadAheadPages()
+                    : overrides.getPaginationReadAheadPages();
+
+            this.itemCache = (overrides.getItemCache() == null)
+                    ? defaults.getItemCache()
+                    : overrides.getItemCache();
+
+            this.itemCacheTtlMillis = (overrides.getItemCacheTtlMillis() == null)
+                    ? defaults.getItemCacheTtlMillis()
+                    : overrides.getItemCacheTtlMillis();
+
         }
     }
 
@@ -860,6 +1051,84 @@ public class DynamoDBMapperConfig {
         return conversionSchema;
     }
 
+    /**
+     * Returns the executor used to send
+     * {@link DynamoDBMapper#batchWrite(java.util.List, java.util.List, DynamoDBMapperConfig)}
+     * and {@link DynamoDBMapper#batchLoad(java.util.List, DynamoDBMapperConfig)}
+     * requests concurrently, or null if batches are sent one at a time on the
+     * calling thread. The mapper never shuts this executor down.
+     *
+     * @return the batch {@link Executor}
+     */
+    public Executor getBatchExecutor() {
+        return batchExecutor;
+    }
+
+    /**
+     * Returns the maximum number of batch requests kept in flight when a
+     * {@link #getBatchExecutor() batch executor} is configured, or null for
+     * the default of {@link #DEFAULT_MAX_CONCURRENT_BATCHES}.
+     *
+     * @return the maximum number of concurrent batch requests
+     */
+    public Integer getMaxConcurrentBatches() {
+        return maxConcurrentBatches;
+    }
+
+    /**
+     * Returns how many pages a list using
+     * {@link PaginationLoadingStrategy#STREAMING} fetches ahead of its
+     * iterator, or null for the default of
+     * {@link #DEFAULT_PAGINATION_READ_AHEAD_PAGES}.
+     *
+     * @return the number of pages read ahead
+     */
+    public Integer getPaginationReadAheadPages() {
+        return paginationReadAheadPages;
+    }
+
+    /**
+     * Returns the local cache that loads read through, or null if items are
+     * always read from DynamoDB. Loads, queries on the table itself and saves
+     * fill the cache; deletes, batch writes and failed saves invalidate the
+     * affected items. Reads with {@link ConsistentReads#CONSISTENT} skip the
+     * cached copy but still refresh it.
+     *
+     * @return the {@link ItemCache}
+     */
+    public ItemCache getItemCache() {
+        return itemCache;
+    }
+
+    /**
+     * Returns how long items stay in the {@link #getItemCache() item cache},
+     * in milliseconds, or null for the default of
+     * {@link #DEFAULT_ITEM_CACHE_TTL_MILLIS}.
+     *
+     * @return the time to live of cached items
+     */
+    public Long getItemCacheTtlMillis() {
+        return itemCacheTtlMillis;
+    }
+
+    /**
+     * Number of batch requests kept in flight when a batch executor is
+     * configured without an explicit limit.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_BATCHES = 8;
+
+    /**
+     * Number of pages a STREAMING list fetches ahead of its iterator when no
+     * explicit value is configured.
+     */
+    public static final int DEFAULT_PAGINATION_READ_AHEAD_PAGES = 2;
+
+    /**
+     * Time to live of items in the item cache when no explicit value is
+     * configured: five minutes.
+     */
+    public static final long DEFAULT_ITEM_CACHE_TTL_MILLIS = 5 * 60 * 1000L;
+
     /**
      * Default configuration uses UPDATE behavior for saves and EVENTUALly
      * consistent reads, with no table name override and lazy-loading strategy.
@@ -872,5 +1141,10 @@ public class DynamoDBMapperConfig {
             null, // ObjectTableNameResolver
             PaginationLoadingStrategy.LAZY_LOADING,
             null, // RequestMetricCollector
-            ConversionSchemas.DEFAULT);
+            ConversionSchemas.DEFAULT,
+            null, // batch Executor
+            null, // maxConcurrentBatches
+            null, // paginationReadAheadPages
+            null, // ItemCache
+            null); // itemCacheTtlMillis
 }
@@ -16,14 +16,14 @@
 package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Reflection assistant for {@link DynamoDBMapper}
@@ -32,39 +32,54 @@ class DynamoDBReflector {
 
     /*
      * Several caches for performance. Collectively, they can make this class
-     * over twice as fast.
+     * over twice as fast. They are read on every item the mapper converts, so
+     * they are concurrent maps rather than locked ones; two threads racing to
+     * fill the same entry compute identical values.
      */
-    private final Map<Class<?>, Collection<Method>> getterCache = new HashMap<Class<?>, Collection<Method>>();
-    private final Map<Class<?>, Method> primaryHashKeyGetterCache = new HashMap<Class<?>, Method>();
-    private final Map<Class<?>, Method> primaryRangeKeyGetterCache = new HashMap<Class<?>, Method>();
+    private final ConcurrentMap<Class<?>, Collection<Method>> getterCache =
+            new ConcurrentHashMap<Class<?>, Collection<Method>>();
+    private final ConcurrentMap<Class<?>, Collection<Method>> primaryKeyGettersCache =
+            new ConcurrentHashMap<Class<?>, Collection<Method>>();
+    private final ConcurrentMap<Class<?>, Method> primaryHashKeyGetterCache =
+            new ConcurrentHashMap<Class<?>, Method>();
+    private final ConcurrentMap<Class<?>, Method> primaryRangeKeyGetterCache =
+            new ConcurrentHashMap<Class<?>, Method>();
+    private final Set<Class<?>> classesWithoutRangeKey =
+            Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
 
     /*
      * All caches keyed by a Method use the getter for a particular mapped
      * property
      */
-    private final Map<Method, Method> setterCache = new HashMap<Method, Method>();
+    private final ConcurrentMap<Method, Method> setterCache =
+            new ConcurrentHashMap<Method, Method>();
 
-    private final Map<Method, String> attributeNameCache = new HashMap<Method, String>();
+    private final ConcurrentMap<Method, String> attributeNameCache =
+            new ConcurrentHashMap<Method, String>();
 
-    private final Map<Method, Boolean> versionAttributeGetterCache = new HashMap<Method, Boolean>();
-    private final Map<Method, Boolean> autoGeneratedKeyGetterCache = new HashMap<Method, Boolean>();
-
-    private final ReentrantReadWriteLock readWriteLockAttrName = new ReentrantReadWriteLock();
-    private final ReadLock readLockAttrName = readWriteLockAttrName.readLock();
-    private final WriteLock writeLockAttrName = readWriteLockAttrName.writeLock();
+    private final ConcurrentMap<Method, Boolean> versionAttributeGetterCache =
+            new ConcurrentHashMap<Method, Boolean>();
+    private final ConcurrentMap<Method, Boolean> autoGeneratedKeyGetterCache =
+            new ConcurrentHashMap<Method, Boolean>();
 
     /**
      * Returns the set of getter methods which are relevant when marshalling or
      * unmarshalling an object.
      */
     Collection<Method> getRelevantGetters(Class<?> clazz) {
-        synchronized (getterCache) {
-            if (!getterCache.containsKey(clazz)) {
-                List<Method> relevantGetters = findRelevantGetters(clazz);
-                getterCache.put(clazz, relevantGetters);
+        Collection<Method> getters = getterCache.get(clazz);
+        if (getters == null) {
+            final List<Method> relevantGetters = new ArrayList<Method>(findRelevantGetters(clazz));
+            for (final Method getter : relevantGetters) {
+                ReflectionUtils.makeAccessible(getter);
+            }
+            getters = Collections.unmodifiableList(relevantGetters);
+            final Collection<Method> existing = getterCache.putIfAbsent(clazz, getters);
+            if (existing != null) {
+                getters = existing;
             }
-            return getterCache.get(clazz);
         }
+        return getters;
     }
 
     static List<Method> findRelevantGetters(Class<?> clazz) {
@@ -100,37 +115,46 @@ class DynamoDBReflector {
      * given, or null if the class doesn't have one.
      */
     <T> Method getPrimaryRangeKeyGetter(Class<T> clazz) {
-        synchronized (primaryRangeKeyGetterCache) {
-            if (!primaryRangeKeyGetterCache.containsKey(clazz)) {
-                Method rangeKeyMethod = null;
-                for (Method method : getRelevantGetters(clazz)) {
-                    if (method.getParameterTypes().length == 0
-                            && ReflectionUtils.getterOrFieldHasAnnotation(method,
-                                    DynamoDBRangeKey.class)) {
-                        rangeKeyMethod = method;
-                        break;
-                    }
-                }
-                primaryRangeKeyGetterCache.put(clazz, rangeKeyMethod);
+        Method rangeKeyMethod = primaryRangeKeyGetterCache.get(clazz);
+        if (rangeKeyMethod != null || classesWithoutRangeKey.contains(clazz)) {
+            return rangeKeyMethod;
+        }
+
+        for (Method method : getRelevantGetters(clazz)) {
+            if (method.getParameterTypes().length == 0
+                    && ReflectionUtils.getterOrFieldHasAnnotation(method,
+                            DynamoDBRangeKey.class)) {
+                rangeKeyMethod = method;
+                break;
             }
-            return primaryRangeKeyGetterCache.get(clazz);
         }
+        if (rangeKeyMethod == null) {
+            classesWithoutRangeKey.add(clazz);
+        } else {
+            primaryRangeKeyGetterCache.put(clazz, rangeKeyMethod);
+        }
+        return rangeKeyMethod;
     }
 
     /**
      * Returns all annotated {@link DynamoDBHashKey} and
      * {@link DynamoDBRangeKey} getters for the class given, throwing an
-     * exception if there isn't one. TODO: caching
+     * exception if there isn't one.
      */
     <T> Collection<Method> getPrimaryKeyGetters(Class<T> clazz) {
-        List<Method> keyGetters = new LinkedList<Method>();
-        for (Method getter : getRelevantGetters(clazz)) {
-            if (ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class)
-                    || ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class)) {
-                keyGetters.add(getter);
+        Collection<Method> keyGetters = primaryKeyGettersCache.get(clazz);
+        if (keyGetters == null) {
+            List<Method> getters = new ArrayList<Method>(2);
+            for (Method getter : getRelevantGetters(clazz)) {
+                if (ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class)
+                        || ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                                DynamoDBRangeKey.class)) {
+                    getters.add(getter);
+                }
             }
+            keyGetters = Collections.unmodifiableList(getters);
+            primaryKeyGettersCache.put(clazz, keyGetters);
         }
-
         return keyGetters;
     }
 
@@ -139,19 +163,17 @@ class DynamoDBReflector {
      * throwing an exception if there isn't one.
      */
     <T> Method getPrimaryHashKeyGetter(Class<T> clazz) {
-        Method hashKeyMethod;
-        synchronized (primaryHashKeyGetterCache) {
-            if (!primaryHashKeyGetterCache.containsKey(clazz)) {
-                for (Method method : getRelevantGetters(clazz)) {
-                    if (method.getParameterTypes().length == 0
-                            && ReflectionUtils.getterOrFieldHasAnnotation(method,
-                                    DynamoDBHashKey.class)) {
-                        primaryHashKeyGetterCache.put(clazz, method);
-                        break;
-                    }
+        Method hashKeyMethod = primaryHashKeyGetterCache.get(clazz);
+        if (hashKeyMethod == null) {
+            for (Method method : getRelevantGetters(clazz)) {
+                if (method.getParameterTypes().length == 0
+                        && ReflectionUtils.getterOrFieldHasAnnotation(method,
+                                DynamoDBHashKey.class)) {
+                    hashKeyMethod = method;
+                    primaryHashKeyGetterCache.put(clazz, method);
+                    break;
                 }
             }
-            hashKeyMethod = primaryHashKeyGetterCache.get(clazz);
         }
 
         if (hashKeyMethod == null) {
@@ -178,13 +200,7 @@ class DynamoDBReflector {
      * Returns the attribute name corresponding to the given getter method.
      */
     String getAttributeName(Method getter) {
-        String attributeName;
-        readLockAttrName.lock();
-        try {
-            attributeName = attributeNameCache.get(getter);
-        } finally {
-            readLockAttrName.unlock();
-        }
+        String attributeName = attributeNameCache.get(getter);
         if (attributeName != null)
             return attributeName;
         DynamoDBHashKey hashKeyAnnotation = ReflectionUtils.getAnnotationFromGetterOrField(getter,
@@ -236,12 +252,7 @@ class DynamoDBReflector {
     }
 
     private String cacheAttributeName(Method getter, String attributeName) {
-        writeLockAttrName.lock();
-        try {
-            attributeNameCache.put(getter, attributeName);
-        } finally {
-            writeLockAttrName.unlock();
-        }
+        attributeNameCache.put(getter, attributeName);
         return attributeName;
     }
 
@@ -250,27 +261,29 @@ class DynamoDBReflector {
      * setter exists.
      */
     Method getSetter(Method getter) {
-        synchronized (setterCache) {
-            if (!setterCache.containsKey(getter)) {
-                String fieldName = ReflectionUtils.getFieldNameByGetter(getter, false);
-                String setterName = "set" + fieldName;
-                Method setter = null;
-                try {
-                    setter = getter.getDeclaringClass().getMethod(setterName,
-                            getter.getReturnType());
-                } catch (NoSuchMethodException e) {
-                    throw new DynamoDBMappingException(
-                            "Expected a public, one-argument method called " + setterName
-                                    + " on class " + getter.getDeclaringClass(), e);
-                } catch (SecurityException e) {
-                    throw new DynamoDBMappingException(
-                            "No access to public, one-argument method called " + setterName
-                                    + " on class " + getter.getDeclaringClass(), e);
-                }
-                setterCache.put(getter, setter);
+        Method setter = setterCache.get(getter);
+        if (setter == null) {
+            String fieldName = ReflectionUtils.getFieldNameByGetter(getter, false);
+            String setterName = "set" + fieldName;
+            try {
+                setter = getter.getDeclaringClass().getMethod(setterName,
+                        getter.getReturnType());
+            } catch (NoSuchMethodException e) {
+                throw new DynamoDBMappingException(
+                        "Expected a public, one-argument method called " + setterName
+                                + " on class " + getter.getDeclaringClass(), e);
+            } catch (SecurityException e) {
+                throw new DynamoDBMappingException(
+                        "No access to public, one-argument method called " + setterName
+                                + " on class " + getter.getDeclaringClass(), e);
+            }
+            ReflectionUtils.makeAccessible(setter);
+            final Method existing = setterCache.putIfAbsent(getter, setter);
+            if (existing != null) {
+                setter = existing;
             }
-            return setterCache.get(getter);
         }
+        return setter;
     }
 
     /**
@@ -278,36 +291,32 @@ class DynamoDBReflector {
      * version attribute.
      */
     boolean isVersionAttributeGetter(Method getter) {
-        synchronized (versionAttributeGetterCache) {
-            if (!versionAttributeGetterCache.containsKey(getter)) {
-                versionAttributeGetterCache.put(
-                        getter,
-                        getter.getName().startsWith("get")
-                                && getter.getParameterTypes().length == 0
-                                && ReflectionUtils.getterOrFieldHasAnnotation(getter,
-                                        DynamoDBVersionAttribute.class));
-            }
-            return versionAttributeGetterCache.get(getter);
+        Boolean isVersion = versionAttributeGetterCache.get(getter);
+        if (isVersion == null) {
+            isVersion = getter.getName().startsWith("get")
+                    && getter.getParameterTypes().length == 0
+                    && ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                            DynamoDBVersionAttribute.class);
+            versionAttributeGetterCache.put(getter, isVersion);
         }
+        return isVersion;
     }
 
     /**
      * Returns whether the method given is an assignable key getter.
      */
     boolean isAssignableKey(Method getter) {
-        synchronized (autoGeneratedKeyGetterCache) {
-            if (!autoGeneratedKeyGetterCache.containsKey(getter)) {
-                autoGeneratedKeyGetterCache.put(
-                        getter,
-                        ReflectionUtils.getterOrFieldHasAnnotation(getter,
-                                DynamoDBAutoGeneratedKey.class)
-                                && (ReflectionUtils.getterOrFieldHasAnnotation(getter,
-                                        DynamoDBHashKey.class) ||
-                                ReflectionUtils.getterOrFieldHasAnnotation(getter,
-                                        DynamoDBRangeKey.class)));
-            }
-            return autoGeneratedKeyGetterCache.get(getter);
+        Boolean isAssignable = autoGeneratedKeyGetterCache.get(getter);
+        if (isAssignable == null) {
+            isAssignable = ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                    DynamoDBAutoGeneratedKey.class)
+                    && (ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                            DynamoDBHashKey.class) ||
+                    ReflectionUtils.getterOrFieldHasAnnotation(getter,
+                            DynamoDBRangeKey.class));
+            autoGeneratedKeyGetterCache.put(getter, isAssignable);
         }
+        return isAssignable;
     }
 
     /**
@@ -15,6 +15,7 @@
 
 package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 
@@ -43,6 +44,8 @@ public abstract class PaginatedList<T> implements List<T> {
 
     private static final String ITERATION_ONLY_UNSUPPORTED_OPERATION_MESSAGE = " is not supported when using ITERATION_ONLY configuration.";
 
+    private static final String STREAMING_UNSUPPORTED_OPERATION_MESSAGE = " is not supported when using STREAMING configuration.";
+
     /**
      * Reference to the DynamoDB mapper for marshalling DynamoDB attributes back
      * into objects
@@ -80,6 +83,9 @@ public abstract class PaginatedList<T> implements List<T> {
      */
     private boolean iterationStarted = false;
 
+    /** Number of pages fetched ahead of the iterator in STREAMING mode. */
+    private int readAheadPages = DynamoDBMapperConfig.DEFAULT_PAGINATION_READ_AHEAD_PAGES;
+
     /**
      * Constructs a PaginatedList instance using the default
      * PaginationLoadingStrategy
@@ -186,6 +192,16 @@ public abstract class PaginatedList<T> implements List<T> {
         nextResults.clear();
     }
 
+    /**
+     * Sets the number of pages fetched ahead of the iterator in STREAMING mode.
+     * Null keeps the default.
+     */
+    void setReadAheadPages(Integer readAheadPages) {
+        if (readAheadPages != null) {
+            this.readAheadPages = Math.max(1, readAheadPages);
+        }
+    }
+
     /**
      * Fetches the next page of results (which may be empty) and returns any
      * items found.
@@ -208,10 +224,151 @@ public abstract class PaginatedList<T> implements List<T> {
      */
     @Override
     public Iterator<T> iterator() {
+        if (paginationLoadingStrategy == PaginationLoadingStrategy.STREAMING) {
+            return new StreamingIterator();
+        }
         return new PaginatedListIterator(
                 paginationLoadingStrategy == PaginationLoadingStrategy.ITERATION_ONLY);
     }
 
+    /**
+     * Iterator for STREAMING mode. It starts with the page loaded at
+     * construction, then takes pages from a {@link PagePrefetcher}, dropping
+     * each page once it has been iterated.
+     */
+    private class StreamingIterator implements Iterator<T> {
+
+        private final PagePrefetcher prefetcher;
+
+        private Iterator<T> innerIterator;
+
+        public StreamingIterator() {
+            synchronized (PaginatedList.this) {
+                if (iterationStarted) {
+                    throw new UnsupportedOperationException(
+                            "The list could only be iterated once in STREAMING mode.");
+                }
+                iterationStarted = true;
+            }
+
+            final List<T> firstPage = new ArrayList<T>(allResults);
+            allResults.clear();
+            innerIterator = firstPage.iterator();
+            prefetcher = new PagePrefetcher(readAheadPages);
+            prefetcher.schedule();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!innerIterator.hasNext()) {
+                final List<T> page = prefetcher.takePage();
+                if (page == null) {
+                    return false;
+                }
+                innerIterator = page.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return innerIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(UNMODIFIABLE_MESSAGE);
+        }
+    }
+
+    /**
+     * Fetches pages on {@link PaginationExecutors#PAGE_PREFETCH}, one request
+     * at a time since each page starts where the previous one ended, and keeps
+     * at most readAheadPages of them waiting. A task is only scheduled while
+     * there is room, so no pool thread is ever parked waiting for the
+     * consumer.
+     */
+    private final class PagePrefetcher implements Runnable {
+
+        private final int readAheadPages;
+        private final LinkedList<List<T>> pages = new LinkedList<List<T>>();
+
+        private boolean fetching;
+        private boolean exhausted;
+        private RuntimeException failure;
+
+        PagePrefetcher(int readAheadPages) {
+            this.readAheadPages = readAheadPages;
+        }
+
+        synchronized void schedule() {
+            if (!fetching && !exhausted && failure == null && pages.size() < readAheadPages) {
+                fetching = true;
+                PaginationExecutors.PAGE_PREFETCH.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<T> page = null;
+            boolean end = false;
+            RuntimeException error = null;
+            try {
+                if (atEndOfResults()) {
+                    end = true;
+                } else {
+                    page = fetchNextPage();
+                    end = atEndOfResults();
+                }
+            } catch (final RuntimeException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                fetching = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    if (page != null && !page.isEmpty()) {
+                        pages.add(page);
+                    }
+                    exhausted = end;
+                }
+                notifyAll();
+                schedule();
+            }
+        }
+
+        /**
+         * Returns the next non-empty page, waiting for it if necessary, or
+         * null once every page has been returned.
+         */
+        synchronized List<T> takePage() {
+            while (pages.isEmpty()) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (exhausted) {
+                    return null;
+                }
+                schedule();
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AmazonClientException("Interrupted while waiting for the next page.",
+                            e);
+                }
+            }
+            final List<T> page = pages.removeFirst();
+            schedule();
+            return page;
+        }
+    }
+
     private class PaginatedListIterator implements Iterator<T> {
         /**
          * Whether this iterator is constructed by a PaginatedList in
@@ -520,5 +677,9 @@ public abstract class PaginatedList<T> implements List<T> {
             throw new UnsupportedOperationException(methodSignature
                     + ITERATION_ONLY_UNSUPPORTED_OPERATION_MESSAGE);
         }
+        if (this.paginationLoadingStrategy == PaginationLoadingStrategy.STREAMING) {
+            throw new UnsupportedOperationException(methodSignature
+                    + STREAMING_UNSUPPORTED_OPERATION_MESSAGE);
+        }
     };
 }
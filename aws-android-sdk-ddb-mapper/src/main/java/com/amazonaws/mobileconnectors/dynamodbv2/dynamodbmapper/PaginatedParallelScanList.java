@@ -67,6 +67,7 @@ public class PaginatedParallelScanList<T> extends PaginatedList<T> {
 
         this.parallelScanTask = parallelScanTask;
         this.config = config;
+        setReadAheadPages(config == null ? null : config.getPaginationReadAheadPages());
 
         // Marshal the first batch of results in allResults
         allResults.addAll(marshalParallelScanResultsIntoObjects(parallelScanTask
@@ -70,7 +70,9 @@ public class PaginatedQueryList<T> extends PaginatedList<T> {
         this.queryRequest = queryRequest;
         this.queryResult = queryResult;
         this.config = config;
+        setReadAheadPages(config == null ? null : config.getPaginationReadAheadPages());
 
+        mapper.cacheQueryResults(clazz, queryRequest, queryResult.getItems(), config);
         allResults.addAll(mapper.marshallIntoObjects(
                 mapper.toParameters(
                         queryResult.getItems(),
@@ -93,6 +95,7 @@ public class PaginatedQueryList<T> extends PaginatedList<T> {
     protected synchronized List<T> fetchNextPage() {
         queryRequest.setExclusiveStartKey(queryResult.getLastEvaluatedKey());
         queryResult = dynamo.query(DynamoDBMapper.applyUserAgent(queryRequest));
+        mapper.cacheQueryResults(clazz, queryRequest, queryResult.getItems(), config);
         return mapper.marshallIntoObjects(mapper.toParameters(
                 queryResult.getItems(),
                 clazz,
@@ -70,6 +70,7 @@ public class PaginatedScanList<T> extends PaginatedList<T> {
         this.scanRequest = scanRequest;
         this.scanResult = scanResult;
         this.config = config;
+        setReadAheadPages(config == null ? null : config.getPaginationReadAheadPages());
 
         allResults.addAll(mapper.marshallIntoObjects(
                 mapper.toParameters(
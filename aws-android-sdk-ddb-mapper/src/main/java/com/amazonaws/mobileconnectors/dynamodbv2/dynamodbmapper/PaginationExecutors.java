@@ -0,0 +1,65 @@
+/*
+ * Copyright 2011-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded thread pools shared by every paginated list, replacing a new
+ * unbounded pool per scan. Threads are daemons and exit after a minute idle.
+ * <p>
+ * Segment scans never wait on other tasks. Page prefetches can wait on
+ * segment scans (a parallel scan page is a round over all segments), so the
+ * two run on separate pools and a burst of prefetches cannot starve the
+ * segment scans they wait for.
+ */
+final class PaginationExecutors {
+
+    private static final int POOL_SIZE =
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /** Runs the per-segment requests of parallel scans. */
+    static final ExecutorService SEGMENT_SCAN = newPool("dynamodbmapper-segment-scan");
+
+    /** Fetches pages ahead of STREAMING iterators. */
+    static final ExecutorService PAGE_PREFETCH = newPool("dynamodbmapper-page-prefetch");
+
+    private PaginationExecutors() {
+    }
+
+    private static ExecutorService newPool(final String name) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
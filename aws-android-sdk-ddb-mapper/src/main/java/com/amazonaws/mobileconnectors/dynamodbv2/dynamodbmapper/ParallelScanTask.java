@@ -27,7 +27,6 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 /**
@@ -74,7 +73,7 @@ public class ParallelScanTask {
         this.dynamo = dynamo;
         this.parallelScanRequests = parallelScanRequests;
         this.totalSegments = parallelScanRequests.size();
-        executorService = Executors.newCachedThreadPool();
+        executorService = PaginationExecutors.SEGMENT_SCAN;
 
         // Create synchronized views of the list to guarantee any changes are
         // visible across all threads.
@@ -103,8 +102,6 @@ public class ParallelScanTask {
                     return false;
                 }
             }
-            // Shut down if all data have been scanned and loaded.
-            executorService.shutdown();
             return true;
         }
     }
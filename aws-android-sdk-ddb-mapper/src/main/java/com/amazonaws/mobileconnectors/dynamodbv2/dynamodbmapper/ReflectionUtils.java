@@ -51,6 +51,18 @@ class ReflectionUtils {
         }
     }
 
+    /**
+     * Suppresses the access checks {@link Method#invoke} otherwise repeats on
+     * every call. Failure is harmless, the checks simply stay in place.
+     */
+    static void makeAccessible(Method method) {
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            // keep the default access checks
+        }
+    }
+
     /**
      * Returns the field name that corresponds to the given getter method,
      * according to the Java naming convention.
@@ -17,6 +17,7 @@ package com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
 import com.amazonaws.Request;
@@ -28,9 +29,12 @@ import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperCo
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.SaveBehavior;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.TableNameOverride;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.TableNameResolver;
+import com.amazonaws.services.dynamodbv2.util.ItemCache;
 
 import org.junit.Test;
 
+import java.util.concurrent.Executor;
+
 public class DynamoDBMapperConfigTest {
 
     @Test
@@ -66,6 +70,23 @@ public class DynamoDBMapperConfigTest {
         assertNotNull(b.withTableNameResolver(tnr));
         assertSame(b.getTableNameResolver(), tnr);
 
+        Executor executor = new TestExecutor();
+        assertNotNull(b.withBatchExecutor(executor));
+        assertSame(b.getBatchExecutor(), executor);
+
+        assertNotNull(b.withMaxConcurrentBatches(4));
+        assertEquals(b.getMaxConcurrentBatches(), Integer.valueOf(4));
+
+        assertNotNull(b.withPaginationReadAheadPages(3));
+        assertEquals(b.getPaginationReadAheadPages(), Integer.valueOf(3));
+
+        ItemCache itemCache = new ItemCache(1);
+        assertNotNull(b.withItemCache(itemCache));
+        assertSame(b.getItemCache(), itemCache);
+
+        assertNotNull(b.withItemCacheTtlMillis(1000L));
+        assertEquals(b.getItemCacheTtlMillis(), Long.valueOf(1000L));
+
         DynamoDBMapperConfig conf = b.build();
         assertEquals(conf.getConsistentReads(), ConsistentReads.CONSISTENT);
         assertSame(conf.getConversionSchema(), cs);
@@ -75,6 +96,11 @@ public class DynamoDBMapperConfigTest {
         assertEquals(conf.getSaveBehavior(), SaveBehavior.CLOBBER);
         assertSame(conf.getTableNameOverride(), tno);
         assertSame(conf.getTableNameResolver(), tnr);
+        assertSame(conf.getBatchExecutor(), executor);
+        assertEquals(conf.getMaxConcurrentBatches(), Integer.valueOf(4));
+        assertEquals(conf.getPaginationReadAheadPages(), Integer.valueOf(3));
+        assertSame(conf.getItemCache(), itemCache);
+        assertEquals(conf.getItemCacheTtlMillis(), Long.valueOf(1000L));
     }
 
     @Test
@@ -190,6 +216,27 @@ public class DynamoDBMapperConfigTest {
         assertEquals(copy.getTableNameResolver(), conf.getTableNameResolver());
     }
 
+    @Test
+    public void testBatchExecutorOverride() {
+        Executor executor = new TestExecutor();
+        DynamoDBMapperConfig overrides = new DynamoDBMapperConfig.Builder()
+                .withBatchExecutor(executor).build();
+
+        DynamoDBMapperConfig merged = new DynamoDBMapperConfig(DynamoDBMapperConfig.DEFAULT,
+                overrides);
+        assertSame(merged.getBatchExecutor(), executor);
+        assertNull(merged.getMaxConcurrentBatches());
+        assertNull(DynamoDBMapperConfig.DEFAULT.getBatchExecutor());
+    }
+
+    private static class TestExecutor implements Executor {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+
     private static class TestObjectTableNameResolver implements ObjectTableNameResolver {
 
         @Override
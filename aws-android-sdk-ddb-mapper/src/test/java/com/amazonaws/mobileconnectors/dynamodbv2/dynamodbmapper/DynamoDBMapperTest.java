@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -27,6 +28,7 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.HashKeyAutoGenerated;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapper.FailedBatch;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapper.SaveObjectHandler;
+import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.ConsistentReads;
 import com.amazonaws.mobileconnectors.dynamodbv2.dynamodbmapper.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClient;
@@ -37,22 +39,37 @@ import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
 import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
 import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.amazonaws.services.dynamodbv2.util.ItemCache;
 import com.amazonaws.util.StringUtils;
 
 import org.easymock.Capture;
 import org.easymock.CaptureType;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DynamoDBMapperTest {
 
@@ -61,6 +78,9 @@ public class DynamoDBMapperTest {
     private final PaginationLoadingStrategy strategy = PaginationLoadingStrategy.LAZY_LOADING;
     private DynamoDBMapperConfig config;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Before
     public void setup() {
         config = new DynamoDBMapperConfig(strategy);
@@ -554,6 +574,284 @@ public class DynamoDBMapperTest {
 
     // ----Mock test classes -----
 
+    @Test
+    public void testStandardConverterIsReusedAcrossOperations() {
+        ItemConverter converter = mapper.getConverter(config);
+        assertSame(converter, mapper.getConverter(config));
+        assertSame(converter, mapper.getConverter(new DynamoDBMapperConfig(
+                DynamoDBMapperConfig.DEFAULT, config)));
+
+        MockTwoValuePlusVersionClass original = new MockTwoValuePlusVersionClass("id",
+                "first", "second");
+        original.setVersion(3);
+        for (int i = 0; i < 2; i++) {
+            Map<String, AttributeValue> item = converter.convert(original);
+            assertEquals("id", item.get("id").getS());
+            assertEquals("3", item.get("version").getN());
+
+            MockTwoValuePlusVersionClass copy = converter.unconvert(
+                    MockTwoValuePlusVersionClass.class, item);
+            assertEquals("first", copy.getFirstValue());
+            assertEquals("second", copy.getSecondValue());
+            assertEquals(Integer.valueOf(3), copy.getVersion());
+        }
+    }
+
+    @Test
+    public void testConcurrentBatchWriteRequeuesUnprocessedItems() {
+        final List<Object> objectsToSave = new ArrayList<Object>();
+        for (int i = 0; i < 60; i++) {
+            objectsToSave.add(new MockDifferentTableName("id" + i, "value" + i));
+        }
+
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger itemsSent = new AtomicInteger();
+        EasyMock.reset(mockClient);
+        EasyMock.expect(mockClient.batchWriteItem(anyObject(BatchWriteItemRequest.class)))
+                .andAnswer(new IAnswer<BatchWriteItemResult>() {
+                    @Override
+                    public BatchWriteItemResult answer() {
+                        BatchWriteItemRequest request = (BatchWriteItemRequest) EasyMock
+                                .getCurrentArguments()[0];
+                        Map<String, List<WriteRequest>> unprocessed =
+                                new HashMap<String, List<WriteRequest>>();
+                        for (Map.Entry<String, List<WriteRequest>> table : request
+                                .getRequestItems().entrySet()) {
+                            assertTrue(table.getValue().size() <= DynamoDBMapper.MAX_ITEMS_PER_BATCH);
+                            itemsSent.addAndGet(table.getValue().size());
+                            // leave one item unprocessed on the first call
+                            if (calls.get() == 0) {
+                                unprocessed.put(table.getKey(), table.getValue().subList(0, 1));
+                            }
+                        }
+                        calls.incrementAndGet();
+                        return new BatchWriteItemResult().withUnprocessedItems(unprocessed);
+                    }
+                }).anyTimes();
+        EasyMock.replay(mockClient);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DynamoDBMapperConfig concurrentConfig = new DynamoDBMapperConfig.Builder()
+                    .withBatchExecutor(executor)
+                    .withMaxConcurrentBatches(2)
+                    .build();
+            List<FailedBatch> failed = mapper.batchWrite(objectsToSave,
+                    new ArrayList<Object>(), concurrentConfig);
+            assertEquals(0, failed.size());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the unprocessed item rides along with the last ten
+        assertEquals(3, calls.get());
+        assertEquals(61, itemsSent.get());
+    }
+
+    @Test
+    public void testConcurrentBatchLoadRequeuesUnprocessedKeys() {
+        final List<Object> itemsToGet = new ArrayList<Object>();
+        for (int i = 0; i < 150; i++) {
+            itemsToGet.add(new MockDifferentTableName("id" + i, null));
+        }
+
+        final AtomicInteger calls = new AtomicInteger();
+        EasyMock.reset(mockClient);
+        EasyMock.expect(mockClient.batchGetItem(anyObject(BatchGetItemRequest.class)))
+                .andAnswer(new IAnswer<BatchGetItemResult>() {
+                    @Override
+                    public BatchGetItemResult answer() {
+                        BatchGetItemRequest request = (BatchGetItemRequest) EasyMock
+                                .getCurrentArguments()[0];
+                        boolean first = calls.getAndIncrement() == 0;
+                        Map<String, List<Map<String, AttributeValue>>> responses =
+                                new HashMap<String, List<Map<String, AttributeValue>>>();
+                        Map<String, KeysAndAttributes> unprocessed =
+                                new HashMap<String, KeysAndAttributes>();
+                        for (Map.Entry<String, KeysAndAttributes> table : request
+                                .getRequestItems().entrySet()) {
+                            List<Map<String, AttributeValue>> keys = table.getValue().getKeys();
+                            assertTrue(keys.size() <= 100);
+                            int start = 0;
+                            if (first) {
+                                unprocessed.put(table.getKey(),
+                                        new KeysAndAttributes().withKeys(keys.get(0)));
+                                start = 1;
+                            }
+                            List<Map<String, AttributeValue>> items =
+                                    new ArrayList<Map<String, AttributeValue>>();
+                            for (Map<String, AttributeValue> key : keys.subList(start,
+                                    keys.size())) {
+                                Map<String, AttributeValue> item =
+                                        new HashMap<String, AttributeValue>(key);
+                                item.put("firstValue", new AttributeValue().withS("value"));
+                                items.add(item);
+                            }
+                            responses.put(table.getKey(), items);
+                        }
+                        return new BatchGetItemResult().withResponses(responses)
+                                .withUnprocessedKeys(unprocessed);
+                    }
+                }).anyTimes();
+        EasyMock.replay(mockClient);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Map<String, List<Object>> loadResults;
+        try {
+            loadResults = mapper.batchLoad(itemsToGet, new DynamoDBMapperConfig.Builder()
+                    .withBatchExecutor(executor)
+                    .build());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(3, calls.get());
+        assertEquals(150, loadResults
+                .get("aws-android-sdk-dynamodbmapper-test-different-table").size());
+    }
+
+    @Test
+    public void testStreamingScanReadsAheadAndDropsIteratedPages() {
+        final int pageCount = 5;
+        final AtomicInteger calls = new AtomicInteger();
+        EasyMock.reset(mockClient);
+        EasyMock.expect(mockClient.scan(anyObject(ScanRequest.class)))
+                .andAnswer(new IAnswer<ScanResult>() {
+                    @Override
+                    public ScanResult answer() {
+                        int page = calls.getAndIncrement();
+                        List<Map<String, AttributeValue>> items =
+                                new ArrayList<Map<String, AttributeValue>>();
+                        for (int i = 0; i < 3; i++) {
+                            Map<String, AttributeValue> item =
+                                    new HashMap<String, AttributeValue>();
+                            item.put("id", new AttributeValue().withS("id" + page + "-" + i));
+                            items.add(item);
+                        }
+                        ScanResult result = new ScanResult().withItems(items);
+                        if (page < pageCount - 1) {
+                            result.setLastEvaluatedKey(items.get(2));
+                        }
+                        return result;
+                    }
+                }).anyTimes();
+        EasyMock.replay(mockClient);
+
+        DynamoDBMapperConfig streamingConfig = new DynamoDBMapperConfig.Builder()
+                .withPaginationLoadingStrategy(PaginationLoadingStrategy.STREAMING)
+                .withPaginationReadAheadPages(1)
+                .build();
+        PaginatedScanList<MockDifferentTableName> list = mapper.scan(
+                MockDifferentTableName.class, new DynamoDBScanExpression(), streamingConfig);
+
+        int count = 0;
+        for (MockDifferentTableName item : list) {
+            assertEquals("id" + (count / 3) + "-" + (count % 3), item.getId());
+            // the first page, the one being iterated and at most one ahead
+            assertTrue(calls.get() <= count / 3 + 2);
+            count++;
+        }
+        assertEquals(pageCount * 3, count);
+        assertEquals(pageCount, calls.get());
+
+        try {
+            list.size();
+            fail("size() should not be supported in STREAMING mode");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            list.iterator();
+            fail("a STREAMING list should only be iterated once");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testLoadReadsThroughItemCache() {
+        ItemCache cache = new ItemCache(10);
+        DynamoDBMapperConfig cacheConfig = new DynamoDBMapperConfig.Builder()
+                .withItemCache(cache)
+                .build();
+
+        EasyMock.reset(mockClient);
+        EasyMock.expect(mockClient.getItem(anyObject(GetItemRequest.class)))
+                .andReturn(new GetItemResult().withItem(versionedItem("id", "first", 1)))
+                .times(2);
+        EasyMock.replay(mockClient);
+
+        MockTwoValuePlusVersionClass loaded = mapper.load(MockTwoValuePlusVersionClass.class,
+                "id", cacheConfig);
+        assertEquals("first", loaded.getFirstValue());
+        loaded = mapper.load(MockTwoValuePlusVersionClass.class, "id", cacheConfig);
+        assertEquals("first", loaded.getFirstValue());
+        assertEquals(Integer.valueOf(1), loaded.getVersion());
+
+        // consistent reads go to the table
+        mapper.load(MockTwoValuePlusVersionClass.class, "id", new DynamoDBMapperConfig(
+                cacheConfig, new DynamoDBMapperConfig(ConsistentReads.CONSISTENT)));
+        EasyMock.verify(mockClient);
+    }
+
+    @Test
+    public void testSaveUpdatesAndDeleteInvalidatesItemCache() {
+        ItemCache cache = new ItemCache(10);
+        DynamoDBMapperConfig cacheConfig = new DynamoDBMapperConfig.Builder()
+                .withItemCache(cache)
+                .build();
+
+        EasyMock.reset(mockClient);
+        EasyMock.expect(mockClient.updateItem(anyObject(UpdateItemRequest.class)))
+                .andReturn(new UpdateItemResult().withAttributes(
+                        versionedItem("id", "saved", 1)));
+        EasyMock.expect(mockClient.deleteItem(anyObject(DeleteItemRequest.class)))
+                .andReturn(new DeleteItemResult());
+        EasyMock.expect(mockClient.getItem(anyObject(GetItemRequest.class)))
+                .andReturn(new GetItemResult());
+        EasyMock.replay(mockClient);
+
+        MockTwoValuePlusVersionClass object = new MockTwoValuePlusVersionClass("id", "saved",
+                null);
+        mapper.save(object, cacheConfig);
+        assertEquals("saved", mapper.load(MockTwoValuePlusVersionClass.class, "id",
+                cacheConfig).getFirstValue());
+
+        mapper.delete(object, cacheConfig);
+        assertNull(mapper.load(MockTwoValuePlusVersionClass.class, "id", cacheConfig));
+        EasyMock.verify(mockClient);
+    }
+
+    @Test
+    public void testItemCacheIsPersistedAndKeepsNewerVersions() throws Exception {
+        File directory = temporaryFolder.newFolder("items");
+        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        key.put("id", new AttributeValue().withS("id"));
+
+        ItemCache cache = new ItemCache(10, directory);
+        cache.put("table", key, versionedItem("id", "second", 2), "version", 60000);
+        // a stale read of an older version does not replace the newer item
+        cache.put("table", key, versionedItem("id", "first", 1), "version", 60000);
+
+        ItemCache restored = new ItemCache(10, directory);
+        assertEquals("second", restored.get("table", key).get("firstValue").getS());
+
+        restored.invalidate("table", key);
+        assertNull(new ItemCache(10, directory).get("table", key));
+
+        cache = new ItemCache(10, directory);
+        cache.put("table", key, versionedItem("id", "expired", 3), "version", 1);
+        Thread.sleep(5);
+        assertNull(cache.get("table", key));
+    }
+
+    private static Map<String, AttributeValue> versionedItem(String id, String firstValue,
+            int version) {
+        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+        item.put("id", new AttributeValue().withS(id));
+        item.put("firstValue", new AttributeValue().withS(firstValue));
+        item.put("version", new AttributeValue().withN(Integer.toString(version)));
+        return item;
+    }
+
     @DynamoDBTable(tableName = "aws-android-sdk-dynamodbmapper-test")
     private static final class MockTwoValuePlusVersionClass {
         private String id;
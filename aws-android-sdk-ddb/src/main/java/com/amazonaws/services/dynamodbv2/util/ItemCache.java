@@ -0,0 +1,717 @@
+/*
+ * Copyright 2011-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.services.dynamodbv2.util;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.util.Base64;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A local cache of DynamoDB items, keyed by table name and primary key. Items
+ * are kept in a least-recently-used map in memory and, when a directory is
+ * given, also written to disk so that they survive the process. Entries expire
+ * after the time to live given when they are stored. The item files are
+ * limited to {@link #DEFAULT_MAX_DISK_BYTES} unless another limit is given;
+ * when they grow past it, expired items and then the least recently written
+ * ones are deleted.
+ * <p>
+ * Cached items are only as fresh as the last read or write made through this
+ * cache, so it suits data that tolerates the same staleness as eventually
+ * consistent reads. Items written by other clients are not seen until the
+ * entry expires or is invalidated. Failures to read or write the directory are
+ * treated as cache misses. The cache keeps its own copies of the items, so
+ * changing an item after storing it or after getting it from the cache doesn't
+ * change the cached item.
+ *
+ * <pre class="brush: java">
+ * ItemCache cache = new ItemCache(500, new File(context.getCacheDir(), "ddb"));
+ * </pre>
+ */
+public class ItemCache {
+
+    /**
+     * The default limit on the bytes of the items kept in the directory.
+     */
+    public static final long DEFAULT_MAX_DISK_BYTES = 10L * 1024 * 1024;
+
+    private static final int FILE_MAGIC = 0x44444243;
+    private static final int FILE_FORMAT_VERSION = 1;
+    private static final String FILE_SUFFIX = ".item";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    /** Age after which a temporary file is left over from a killed write. */
+    private static final long TEMP_FILE_MAX_AGE_MILLIS = 60 * 1000;
+
+    private static final byte TYPE_S = 1;
+    private static final byte TYPE_N = 2;
+    private static final byte TYPE_B = 3;
+    private static final byte TYPE_SS = 4;
+    private static final byte TYPE_NS = 5;
+    private static final byte TYPE_BS = 6;
+    private static final byte TYPE_M = 7;
+    private static final byte TYPE_L = 8;
+    private static final byte TYPE_NULL = 9;
+    private static final byte TYPE_BOOL = 10;
+
+    private final LinkedHashMap<String, Entry> memory;
+    private final File directory;
+    private final long maxDiskBytes;
+    /**
+     * Orders puts and invalidations, so that the item on disk is the one in
+     * memory.
+     */
+    private final Object writeLock = new Object();
+    /**
+     * The bytes of the item files, or -1 until they are counted. Guarded by
+     * the write lock. Expired files deleted by reads aren't subtracted, so
+     * this may overestimate until the next prune.
+     */
+    private long diskBytes = -1;
+
+    /**
+     * Constructs an in-memory cache.
+     *
+     * @param maxEntries the number of items kept in memory.
+     */
+    public ItemCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    /**
+     * Constructs a cache that also keeps its items in the given directory.
+     *
+     * @param maxEntries the number of items kept in memory.
+     * @param directory the directory to store items in, or null to keep them
+     *            in memory only. It is created if it does not exist.
+     * @throws IllegalArgumentException if the directory cannot be created.
+     */
+    public ItemCache(int maxEntries, File directory) {
+        this(maxEntries, directory, DEFAULT_MAX_DISK_BYTES);
+    }
+
+    /**
+     * Constructs a cache that also keeps up to the given number of bytes of
+     * items in the given directory.
+     *
+     * @param maxEntries the number of items kept in memory.
+     * @param directory the directory to store items in, or null to keep them
+     *            in memory only. It is created if it does not exist.
+     * @param maxDiskBytes the limit on the bytes of the item files in the
+     *            directory.
+     * @throws IllegalArgumentException if the directory cannot be created.
+     */
+    public ItemCache(final int maxEntries, File directory, long maxDiskBytes) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+        }
+        if (maxDiskBytes <= 0) {
+            throw new IllegalArgumentException("maxDiskBytes must be greater than zero");
+        }
+        this.memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create item cache directory "
+                    + directory);
+        }
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /**
+     * Returns the cached item with the given key, or null if it is not cached
+     * or has expired.
+     *
+     * @param tableName the table name.
+     * @param key the primary key attributes of the item.
+     * @return a copy of the cached item attributes, or null.
+     */
+    public Map<String, AttributeValue> get(String tableName, Map<String, AttributeValue> key) {
+        final String cacheKey = cacheKey(tableName, key);
+        final Entry entry = lookup(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        return copyItem(entry.item);
+    }
+
+    /**
+     * Caches an item read from or written to the given table. If the table
+     * uses a version attribute, an item with a lower version than the one
+     * already cached is ignored, so that a stale read cannot replace a newer
+     * write.
+     *
+     * @param tableName the table name.
+     * @param key the primary key attributes of the item.
+     * @param item all the attributes of the item.
+     * @param versionAttributeName the name of the numeric version attribute,
+     *            or null if the table has none.
+     * @param ttlMillis how long the item may be served from the cache.
+     */
+    public void put(String tableName, Map<String, AttributeValue> key,
+            Map<String, AttributeValue> item, String versionAttributeName, long ttlMillis) {
+        if (item == null || ttlMillis <= 0) {
+            return;
+        }
+        final String cacheKey = cacheKey(tableName, key);
+        final Entry entry = new Entry(copyItem(item), System.currentTimeMillis() + ttlMillis);
+
+        synchronized (writeLock) {
+            if (versionAttributeName != null) {
+                // loads the item from disk, if needed, before the comparison
+                lookup(cacheKey);
+            }
+            synchronized (memory) {
+                final Entry existing = memory.get(cacheKey);
+                if (versionAttributeName != null && existing != null
+                        && isOlder(item.get(versionAttributeName),
+                                existing.item.get(versionAttributeName))) {
+                    return;
+                }
+                memory.put(cacheKey, entry);
+            }
+            if (directory != null) {
+                write(cacheKey, entry);
+            }
+        }
+    }
+
+    /**
+     * Removes an item from the cache, for example after it was deleted or a
+     * write to it failed.
+     *
+     * @param tableName the table name.
+     * @param key the primary key attributes of the item.
+     */
+    public void invalidate(String tableName, Map<String, AttributeValue> key) {
+        final String cacheKey = cacheKey(tableName, key);
+        synchronized (writeLock) {
+            synchronized (memory) {
+                memory.remove(cacheKey);
+            }
+            if (directory != null) {
+                final File file = fileFor(cacheKey);
+                final long length = file.length();
+                if (file.delete() && diskBytes >= 0) {
+                    diskBytes -= length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every item from the cache.
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            synchronized (memory) {
+                memory.clear();
+            }
+            if (directory != null) {
+                final File[] files = directory.listFiles();
+                if (files != null) {
+                    for (final File file : files) {
+                        if (file.getName().endsWith(FILE_SUFFIX)) {
+                            file.delete();
+                        }
+                    }
+                }
+                diskBytes = -1;
+            }
+        }
+    }
+
+    private Entry lookup(String cacheKey) {
+        Entry entry;
+        synchronized (memory) {
+            entry = memory.get(cacheKey);
+        }
+        if (entry == null && directory != null) {
+            entry = read(cacheKey);
+            if (entry != null) {
+                synchronized (memory) {
+                    // an item put while the file was read is newer
+                    final Entry current = memory.get(cacheKey);
+                    if (current == null) {
+                        memory.put(cacheKey, entry);
+                    } else {
+                        entry = current;
+                    }
+                }
+            }
+        }
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            synchronized (memory) {
+                if (memory.get(cacheKey) == entry) {
+                    memory.remove(cacheKey);
+                }
+            }
+            if (directory != null) {
+                fileFor(cacheKey).delete();
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    private static boolean isOlder(AttributeValue version, AttributeValue cachedVersion) {
+        if (version == null || version.getN() == null
+                || cachedVersion == null || cachedVersion.getN() == null) {
+            return false;
+        }
+        try {
+            return new BigDecimal(version.getN()).compareTo(new BigDecimal(cachedVersion.getN())) < 0;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds a key that does not depend on the iteration order of the key map.
+     * Each part is prefixed with its length, so that no table name or
+     * attribute value can make two keys collide.
+     */
+    static String cacheKey(String tableName, Map<String, AttributeValue> key) {
+        if (tableName == null || key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("tableName and key must be specified");
+        }
+        final StringBuilder sb = new StringBuilder();
+        appendKeyPart(sb, tableName);
+        for (final Map.Entry<String, AttributeValue> attribute
+                : new TreeMap<String, AttributeValue>(key).entrySet()) {
+            final AttributeValue value = attribute.getValue();
+            appendKeyPart(sb, attribute.getKey());
+            if (value.getS() != null) {
+                sb.append('S');
+                appendKeyPart(sb, value.getS());
+            } else if (value.getN() != null) {
+                sb.append('N');
+                appendKeyPart(sb, value.getN());
+            } else if (value.getB() != null) {
+                sb.append('B');
+                appendKeyPart(sb, Base64.encodeAsString(
+                        BinaryUtils.copyAllBytesFrom(value.getB())));
+            } else {
+                throw new IllegalArgumentException("Key attribute " + attribute.getKey()
+                        + " must be a String, Number or Binary value");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendKeyPart(StringBuilder sb, String part) {
+        sb.append(part.length()).append(':').append(part);
+    }
+
+    /**
+     * Copies an item down to its binary values, which share no buffer with
+     * the original.
+     */
+    private static Map<String, AttributeValue> copyItem(Map<String, AttributeValue> item) {
+        final Map<String, AttributeValue> copy = new HashMap<String, AttributeValue>(
+                item.size() * 2);
+        for (final Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            copy.put(attribute.getKey(), copyValue(attribute.getValue()));
+        }
+        return copy;
+    }
+
+    private static AttributeValue copyValue(AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        // the setters of string sets copy them
+        final AttributeValue copy = new AttributeValue()
+                .withS(value.getS())
+                .withN(value.getN())
+                .withSS(value.getSS())
+                .withNS(value.getNS())
+                .withBOOL(value.getBOOL())
+                .withNULL(value.getNULL());
+        if (value.getB() != null) {
+            copy.setB(copyBytes(value.getB()));
+        }
+        if (value.getBS() != null) {
+            final List<ByteBuffer> bs = new ArrayList<ByteBuffer>(value.getBS().size());
+            for (final ByteBuffer b : value.getBS()) {
+                bs.add(copyBytes(b));
+            }
+            copy.setBS(bs);
+        }
+        if (value.getM() != null) {
+            copy.setM(copyItem(value.getM()));
+        }
+        if (value.getL() != null) {
+            final List<AttributeValue> l = new ArrayList<AttributeValue>(value.getL().size());
+            for (final AttributeValue element : value.getL()) {
+                l.add(copyValue(element));
+            }
+            copy.setL(l);
+        }
+        return copy;
+    }
+
+    private static ByteBuffer copyBytes(ByteBuffer b) {
+        return b == null ? null : ByteBuffer.wrap(BinaryUtils.copyAllBytesFrom(b));
+    }
+
+    private File fileFor(String cacheKey) {
+        final byte[] hash = Md5Utils.computeMD5Hash(cacheKey.getBytes(StringUtils.UTF8));
+        return new File(directory, BinaryUtils.toHex(hash) + FILE_SUFFIX);
+    }
+
+    private void write(String cacheKey, Entry entry) {
+        final File file = fileFor(cacheKey);
+        final File temp = new File(directory, file.getName() + "." + Thread.currentThread().getId()
+                + TEMP_FILE_SUFFIX);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_FORMAT_VERSION);
+            writeString(out, cacheKey);
+            out.writeLong(entry.expiresAt);
+            writeItem(out, entry.item);
+            out.close();
+            out = null;
+            final long replaced = file.length();
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Unable to rename " + temp + " to " + file);
+                }
+            }
+            addDiskBytes(file.length() - replaced);
+        } catch (final IOException e) {
+            // the item stays cached in memory only
+            temp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Counts bytes written to the directory and prunes it once they exceed
+     * the limit. Called holding the write lock.
+     */
+    private void addDiskBytes(long bytes) {
+        if (diskBytes >= 0) {
+            diskBytes += bytes;
+        }
+        if (diskBytes < 0 || diskBytes > maxDiskBytes) {
+            prune();
+        }
+    }
+
+    /**
+     * Deletes expired or unreadable item files and left over temporary files,
+     * then, if the items still exceed the limit, the least recently written
+     * ones until they are down to three quarters of it. Called holding the
+     * write lock.
+     */
+    private void prune() {
+        diskBytes = 0;
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final List<ItemFile> items = new ArrayList<ItemFile>(files.length);
+        for (final File file : files) {
+            final String name = file.getName();
+            if (name.endsWith(TEMP_FILE_SUFFIX)) {
+                if (file.lastModified() < now - TEMP_FILE_MAX_AGE_MILLIS) {
+                    file.delete();
+                }
+            } else if (name.endsWith(FILE_SUFFIX)) {
+                if (readExpiresAt(file) <= now) {
+                    file.delete();
+                } else {
+                    final ItemFile item = new ItemFile(file);
+                    items.add(item);
+                    diskBytes += item.length;
+                }
+            }
+        }
+        if (diskBytes <= maxDiskBytes) {
+            return;
+        }
+        Collections.sort(items, new Comparator<ItemFile>() {
+            @Override
+            public int compare(ItemFile a, ItemFile b) {
+                return a.lastModified < b.lastModified ? -1
+                        : (a.lastModified == b.lastModified ? 0 : 1);
+            }
+        });
+        final long target = maxDiskBytes / 4 * 3;
+        for (final ItemFile item : items) {
+            if (diskBytes <= target) {
+                break;
+            }
+            if (item.file.delete()) {
+                diskBytes -= item.length;
+            }
+        }
+    }
+
+    /**
+     * Returns when the item in the given file expires, or
+     * {@link Long#MIN_VALUE} if the file cannot be read.
+     */
+    private static long readExpiresAt(File file) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_FORMAT_VERSION) {
+                return Long.MIN_VALUE;
+            }
+            final int keyLength = in.readInt();
+            if (keyLength < 0 || in.skipBytes(keyLength) != keyLength) {
+                return Long.MIN_VALUE;
+            }
+            return in.readLong();
+        } catch (final IOException e) {
+            return Long.MIN_VALUE;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private Entry read(String cacheKey) {
+        final File file = fileFor(cacheKey);
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_FORMAT_VERSION
+                    || !cacheKey.equals(readString(in))) {
+                return null;
+            }
+            final long expiresAt = in.readLong();
+            return new Entry(readItem(in), expiresAt);
+        } catch (final IOException e) {
+            // a truncated or corrupt entry is a miss
+            closeQuietly(in);
+            in = null;
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static void writeItem(DataOutputStream out, Map<String, AttributeValue> item)
+            throws IOException {
+        out.writeInt(item.size());
+        for (final Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            writeString(out, attribute.getKey());
+            writeValue(out, attribute.getValue());
+        }
+    }
+
+    private static Map<String, AttributeValue> readItem(DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        final Map<String, AttributeValue> item = new HashMap<String, AttributeValue>(size * 2);
+        for (int i = 0; i < size; i++) {
+            item.put(readString(in), readValue(in));
+        }
+        return item;
+    }
+
+    private static void writeValue(DataOutputStream out, AttributeValue value) throws IOException {
+        if (value.getS() != null) {
+            out.writeByte(TYPE_S);
+            writeString(out, value.getS());
+        } else if (value.getN() != null) {
+            out.writeByte(TYPE_N);
+            writeString(out, value.getN());
+        } else if (value.getB() != null) {
+            out.writeByte(TYPE_B);
+            writeBytes(out, value.getB());
+        } else if (value.getSS() != null) {
+            out.writeByte(TYPE_SS);
+            writeStrings(out, value.getSS());
+        } else if (value.getNS() != null) {
+            out.writeByte(TYPE_NS);
+            writeStrings(out, value.getNS());
+        } else if (value.getBS() != null) {
+            out.writeByte(TYPE_BS);
+            out.writeInt(value.getBS().size());
+            for (final ByteBuffer b : value.getBS()) {
+                writeBytes(out, b);
+            }
+        } else if (value.getM() != null) {
+            out.writeByte(TYPE_M);
+            writeItem(out, value.getM());
+        } else if (value.getL() != null) {
+            out.writeByte(TYPE_L);
+            out.writeInt(value.getL().size());
+            for (final AttributeValue element : value.getL()) {
+                writeValue(out, element);
+            }
+        } else if (value.getBOOL() != null) {
+            out.writeByte(TYPE_BOOL);
+            out.writeBoolean(value.getBOOL());
+        } else {
+            out.writeByte(TYPE_NULL);
+        }
+    }
+
+    private static AttributeValue readValue(DataInputStream in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case TYPE_S:
+                return new AttributeValue().withS(readString(in));
+            case TYPE_N:
+                return new AttributeValue().withN(readString(in));
+            case TYPE_B:
+                return new AttributeValue().withB(readBytes(in));
+            case TYPE_SS:
+                return new AttributeValue().withSS(readStrings(in));
+            case TYPE_NS:
+                return new AttributeValue().withNS(readStrings(in));
+            case TYPE_BS: {
+                final int size = in.readInt();
+                final List<ByteBuffer> bs = new ArrayList<ByteBuffer>(size);
+                for (int i = 0; i < size; i++) {
+                    bs.add(readBytes(in));
+                }
+                return new AttributeValue().withBS(bs);
+            }
+            case TYPE_M:
+                return new AttributeValue().withM(readItem(in));
+            case TYPE_L: {
+                final int size = in.readInt();
+                final List<AttributeValue> l = new ArrayList<AttributeValue>(size);
+                for (int i = 0; i < size; i++) {
+                    l.add(readValue(in));
+                }
+                return new AttributeValue().withL(l);
+            }
+            case TYPE_BOOL:
+                return new AttributeValue().withBOOL(in.readBoolean());
+            case TYPE_NULL:
+                return new AttributeValue().withNULL(true);
+            default:
+                throw new IOException("Unknown attribute type " + type);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings)
+            throws IOException {
+        out.writeInt(strings.size());
+        for (final String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        final List<String> strings = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    /*
+     * DataOutputStream.writeUTF is limited to 64KB, less than an attribute
+     * value may hold.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        final byte[] bytes = s.getBytes(StringUtils.UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StringUtils.UTF8);
+    }
+
+    private static void writeBytes(DataOutputStream out, ByteBuffer b) throws IOException {
+        final byte[] bytes = BinaryUtils.copyAllBytesFrom(b);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static ByteBuffer readBytes(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (final IOException e) {
+                // nothing left to do with the stream
+            }
+        }
+    }
+
+    private static final class ItemFile {
+        final File file;
+        final long length;
+        final long lastModified;
+
+        ItemFile(File file) {
+            this.file = file;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+    }
+
+    private static final class Entry {
+        final Map<String, AttributeValue> item;
+        final long expiresAt;
+
+        Entry(Map<String, AttributeValue> item, long expiresAt) {
+            this.item = item;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.services.dynamodbv2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class ItemCacheTest {
+
+    private static final String TABLE = "table";
+    private static final long TTL = 60 * 60 * 1000;
+    private static final long MAX_DISK_BYTES = 8 * 1024;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = temp.newFolder();
+    }
+
+    @Test
+    public void testItemsSurviveRestart() {
+        final ItemCache cache = new ItemCache(10, directory, MAX_DISK_BYTES);
+        cache.put(TABLE, key(1), item(1), null, TTL);
+
+        final ItemCache restarted = new ItemCache(10, directory, MAX_DISK_BYTES);
+        assertEquals(item(1), restarted.get(TABLE, key(1)));
+    }
+
+    @Test
+    public void testLeastRecentlyWrittenItemsPrunedPastLimit() {
+        final ItemCache cache = new ItemCache(100, directory, MAX_DISK_BYTES);
+        final Set<File> written = new HashSet<File>();
+        final long start = System.currentTimeMillis() - 1000 * 1000;
+        long bytes = 0;
+        for (int i = 0; i < 30; i++) {
+            cache.put(TABLE, key(i), item(i), null, TTL);
+            // file times are too coarse to order items written this fast
+            for (final File file : itemFiles()) {
+                if (written.add(file)) {
+                    assertTrue(file.setLastModified(start + i * 1000));
+                    bytes += file.length();
+                }
+            }
+            assertTrue("bounded after " + i, diskBytes() <= MAX_DISK_BYTES);
+        }
+        assertTrue("items were pruned", bytes > MAX_DISK_BYTES);
+
+        // the last items written are kept, the first ones deleted
+        final ItemCache restarted = new ItemCache(100, directory, MAX_DISK_BYTES);
+        assertEquals(item(29), restarted.get(TABLE, key(29)));
+        assertEquals(item(28), restarted.get(TABLE, key(28)));
+        assertNull(restarted.get(TABLE, key(0)));
+        // the items are still cached in memory
+        assertEquals(item(0), cache.get(TABLE, key(0)));
+    }
+
+    @Test
+    public void testExpiredItemsSweptOnFirstWrite() throws Exception {
+        final ItemCache expiring = new ItemCache(10, directory, MAX_DISK_BYTES);
+        for (int i = 0; i < 3; i++) {
+            expiring.put(TABLE, key(i), item(i), null, 200);
+        }
+        assertEquals(3, itemFiles().length);
+        final File leftOver = new File(directory, "left.item.1.tmp");
+        assertTrue(leftOver.createNewFile());
+        assertTrue(leftOver.setLastModified(System.currentTimeMillis() - TTL));
+        final File inProgress = new File(directory, "writing.item.2.tmp");
+        assertTrue(inProgress.createNewFile());
+        Thread.sleep(250);
+
+        final ItemCache restarted = new ItemCache(10, directory, MAX_DISK_BYTES);
+        restarted.put(TABLE, key(5), item(5), null, TTL);
+        assertEquals(1, itemFiles().length);
+        assertFalse(leftOver.exists());
+        assertTrue(inProgress.exists());
+    }
+
+    @Test
+    public void testUnreadableItemsSwept() throws Exception {
+        final ItemCache cache = new ItemCache(10, directory, MAX_DISK_BYTES);
+        assertTrue(new File(directory, "corrupt.item").createNewFile());
+
+        cache.put(TABLE, key(1), item(1), null, TTL);
+        assertEquals(1, itemFiles().length);
+        assertNotNull(new ItemCache(10, directory, MAX_DISK_BYTES).get(TABLE, key(1)));
+    }
+
+    @Test
+    public void testInvalidateAndClearFreeSpace() {
+        final ItemCache cache = new ItemCache(100, directory, MAX_DISK_BYTES);
+        for (int i = 0; i < 5; i++) {
+            cache.put(TABLE, key(i), item(i), null, TTL);
+        }
+        final long bytes = diskBytes();
+        cache.invalidate(TABLE, key(0));
+        assertTrue(diskBytes() < bytes);
+        cache.clear();
+        assertEquals(0, itemFiles().length);
+
+        // still bounded after the directory was emptied
+        for (int i = 0; i < 30; i++) {
+            cache.put(TABLE, key(i), item(i), null, TTL);
+            assertTrue(diskBytes() <= MAX_DISK_BYTES);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxDiskBytesMustBePositive() {
+        new ItemCache(10, directory, 0);
+    }
+
+    private static Map<String, AttributeValue> key(int i) {
+        final Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        key.put("id", new AttributeValue().withN(Integer.toString(i)));
+        return key;
+    }
+
+    /** An item of about 1 KB on disk. */
+    private static Map<String, AttributeValue> item(int i) {
+        final char[] data = new char[1000];
+        Arrays.fill(data, (char) ('a' + i % 26));
+        final Map<String, AttributeValue> item = key(i);
+        item.put("data", new AttributeValue().withS(new String(data)));
+        return item;
+    }
+
+    private File[] itemFiles() {
+        final File[] files = directory.listFiles();
+        final Set<File> items = new HashSet<File>();
+        for (final File file : files) {
+            if (file.getName().endsWith(".item")) {
+                items.add(file);
+            }
+        }
+        return items.toArray(new File[items.size()]);
+    }
+
+    private long diskBytes() {
+        long bytes = 0;
+        for (final File file : itemFiles()) {
+            bytes += file.length();
+        }
+        return bytes;
+    }
+}
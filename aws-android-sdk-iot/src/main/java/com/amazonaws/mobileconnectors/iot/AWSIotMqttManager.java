@@ -38,11 +38,13 @@ import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
+import java.io.File;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -122,6 +124,13 @@ public class AWSIotMqttManager {
      * to proved per-topic message arrived callbacks.
      */
     private final Map<String, AWSIotMqttTopic> topicListeners;
+    /** Topic filters of the subscriptions, used to dispatch arrived messages. */
+    private final AWSIotMqttTopicTrie topicTrie = new AWSIotMqttTopicTrie();
+    /**
+     * Subscriptions matching the topic of an arrived message. Only used on the
+     * MQTT client's callback thread.
+     */
+    private final List<AWSIotMqttTopic> matchedTopics = new ArrayList<AWSIotMqttTopic>();
     /**
      * Queue for messages attempted to publish while MQTT client was offline.
      * Republished upon reconnect.
@@ -156,6 +165,24 @@ public class AWSIotMqttManager {
     private boolean fullQueueKeepsOldest;
     /** Milliseconds between publishes when publishing queued messages (draining interval). */
     private long drainingInterval;
+    /**
+     * Disk copy of the offline publish queue. Null when the queue is only kept
+     * in memory.
+     */
+    private AWSIotMqttQueueStore offlinePublishQueueStore;
+    /**
+     * Persisted queued messages that were published but not acknowledged yet,
+     * oldest first. They stay at the front of the disk copy until their
+     * delivery completes, and are queued again if the connection is lost
+     * first. Guarded by the queue.
+     */
+    private final List<AWSIotMqttQueueMessage> unacknowledgedMessages =
+            new ArrayList<AWSIotMqttQueueMessage>();
+    /**
+     * Are queued messages published as fast as the in-flight window allows
+     * instead of one per draining interval?
+     */
+    private boolean offlinePublishQueueBurstDrainEnabled;
     /** Was this disconnect requested by the user? */
     private boolean userDisconnect;
     /** Do we need to resubscribe upon reconnecting? */
@@ -364,6 +391,73 @@ public class AWSIotMqttManager {
         drainingInterval = interval;
     }
 
+    /**
+     * Keep the offline publish queue on disk so that queued messages survive
+     * the application being restarted. Messages already queued in the
+     * directory by a previous instance with the same client ID are loaded and
+     * published once connected. While persistence is enabled the queue is no
+     * longer cleared on connect. A published message is removed from disk
+     * once its delivery completes. Delivery callbacks are not persisted, so
+     * messages restored from disk are published without one. Setting the
+     * directory already in use has no effect.
+     *
+     * @param directory directory to keep the queue in, for example a
+     *            subdirectory of the application's files directory. Null
+     *            keeps the queue in memory only (default).
+     */
+    public void setOfflinePublishQueuePersistenceDirectory(File directory) {
+        synchronized (mqttMessageQueue) {
+            if (offlinePublishQueueStore != null) {
+                if (directory != null && offlinePublishQueueStore.isIn(directory)) {
+                    return;
+                }
+                requeueUnacknowledgedMessages();
+                offlinePublishQueueStore.close();
+                offlinePublishQueueStore = null;
+            }
+            if (directory == null) {
+                return;
+            }
+            final AWSIotMqttQueueStore store = new AWSIotMqttQueueStore(directory, mqttClientId);
+            final List<AWSIotMqttQueueMessage> persisted = store.load();
+            for (final AWSIotMqttQueueMessage message : mqttMessageQueue) {
+                store.add(message);
+            }
+            mqttMessageQueue.addAll(0, persisted);
+            offlinePublishQueueStore = store;
+        }
+    }
+
+    /**
+     * Is the offline publish queue kept on disk?
+     *
+     * @return true if queued messages are persisted.
+     */
+    public boolean isOfflinePublishQueuePersistenceEnabled() {
+        return offlinePublishQueueStore != null;
+    }
+
+    /**
+     * Publish queued messages as fast as the MQTT in-flight window allows when
+     * reconnected, rather than one message per draining interval. Each
+     * completed delivery frees a slot for the next queued message. Default is
+     * disabled.
+     *
+     * @param enabled true to enable burst draining.
+     */
+    public void setOfflinePublishQueueBurstDrainEnabled(boolean enabled) {
+        offlinePublishQueueBurstDrainEnabled = enabled;
+    }
+
+    /**
+     * Are queued messages published as fast as the in-flight window allows?
+     *
+     * @return true if burst draining is enabled.
+     */
+    public boolean isOfflinePublishQueueBurstDrainEnabled() {
+        return offlinePublishQueueBurstDrainEnabled;
+    }
+
     /**
      * Keep the oldest messages when publish queue is full?
      * @return boolean true if set to keep oldest messages, false if set to keep newest.
@@ -570,6 +664,7 @@ public class AWSIotMqttManager {
         offlinePublishQueueEnabled = DEFAULT_OFFLINE_PUBLISH_QUEUE_ENABLED;
         offlinePublishQueueBound = DEFAULT_OFFLINE_PUBLISH_QUEUE_BOUND;
         drainingInterval = DEFAULT_MILLIS_BETWEEN_QUEUE_PUBLISHES;
+        offlinePublishQueueBurstDrainEnabled = false;
         setFullQueueToKeepNewestMessages();
         connectionStabilityTime = DEFAULT_CONNECTION_STABILITY_TIME_SECONDS;
         unitTestMillisOverride = null;
@@ -723,7 +818,11 @@ public class AWSIotMqttManager {
         options.setKeepAliveInterval(userKeepAlive);
 
         topicListeners.clear();
-        mqttMessageQueue.clear();
+        topicTrie.clear();
+        requeueUnacknowledgedMessages();
+        if (offlinePublishQueueStore == null) {
+            mqttMessageQueue.clear();
+        }
 
         resetReconnect();
         userDisconnect = false;
@@ -796,6 +895,7 @@ public class AWSIotMqttManager {
         userDisconnect = true;
         reset();
         topicListeners.clear();
+        topicTrie.clear();
         connectionState = MqttManagerConnectionState.Disconnected;
         userConnectionCallback();
         return true;
@@ -981,6 +1081,7 @@ public class AWSIotMqttManager {
             }
             final AWSIotMqttTopic topicModel = new AWSIotMqttTopic(topic, qos, callback);
             topicListeners.put(topic, topicModel);
+            topicTrie.put(topic, topicModel);
         }
     }
 
@@ -1002,6 +1103,7 @@ public class AWSIotMqttManager {
                 throw new AmazonClientException("Client error while unsubscribing.", e);
             }
             topicListeners.remove(topic);
+            topicTrie.remove(topic);
         }
     }
 
@@ -1168,18 +1270,89 @@ public class AWSIotMqttManager {
             PublishMessageUserData publishMessageUserData) {
         final AWSIotMqttQueueMessage message = new AWSIotMqttQueueMessage(topic, data, qos, publishMessageUserData);
 
-        if (mqttMessageQueue.size() >= offlinePublishQueueBound) {
-            if (fullQueueKeepsOldest) {
-                return false;
-            } else {
-                mqttMessageQueue.remove(0);
+        synchronized (mqttMessageQueue) {
+            if (mqttMessageQueue.size() >= offlinePublishQueueBound) {
+                if (fullQueueKeepsOldest) {
+                    return false;
+                } else {
+                    removeMessageFromQueue();
+                }
             }
-        }
 
-        mqttMessageQueue.add(message);
+            mqttMessageQueue.add(message);
+            if (offlinePublishQueueStore != null) {
+                offlinePublishQueueStore.add(message);
+            }
+        }
         return true;
     }
 
+    /**
+     * Drop the message at the head of the publishing queue.
+     */
+    private void removeMessageFromQueue() {
+        synchronized (mqttMessageQueue) {
+            if (mqttMessageQueue.isEmpty()) {
+                return;
+            }
+            if (offlinePublishQueueStore != null) {
+                // behind the published messages on disk
+                offlinePublishQueueStore.remove(unacknowledgedMessages.size());
+            }
+            mqttMessageQueue.remove(0);
+        }
+    }
+
+    /**
+     * Take the message at the head of the publishing queue to publish it. A
+     * persisted message stays on disk until {@link #acknowledgeQueuedMessage}.
+     *
+     * @return the message, or null if the queue is empty.
+     */
+    private AWSIotMqttQueueMessage takeMessageFromQueue() {
+        synchronized (mqttMessageQueue) {
+            if (mqttMessageQueue.isEmpty()) {
+                return null;
+            }
+            final AWSIotMqttQueueMessage message = mqttMessageQueue.remove(0);
+            if (offlinePublishQueueStore != null) {
+                unacknowledgedMessages.add(message);
+            }
+            return message;
+        }
+    }
+
+    /**
+     * Remove a published queued message from disk once its delivery completed
+     * or failed.
+     *
+     * @param userData the user data the message was published with.
+     */
+    private void acknowledgeQueuedMessage(Object userData) {
+        synchronized (mqttMessageQueue) {
+            for (int i = 0; i < unacknowledgedMessages.size(); i++) {
+                if (unacknowledgedMessages.get(i).getUserData() == userData) {
+                    unacknowledgedMessages.remove(i);
+                    if (offlinePublishQueueStore != null) {
+                        offlinePublishQueueStore.remove(i);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Put the published messages that weren't acknowledged back at the head
+     * of the publishing queue, where they still are on disk.
+     */
+    private void requeueUnacknowledgedMessages() {
+        synchronized (mqttMessageQueue) {
+            mqttMessageQueue.addAll(0, unacknowledgedMessages);
+            unacknowledgedMessages.clear();
+        }
+    }
+
     /**
      * Publish messages from the message queue.
      * Called to handle publishing messages accumulated in the message queue when the client was unable to publish.
@@ -1187,31 +1360,26 @@ public class AWSIotMqttManager {
     void publishMessagesFromQueue() {
         if (connectionState == MqttManagerConnectionState.Connected && mqttMessageQueue != null
                 && !mqttMessageQueue.isEmpty()) {
-            final AWSIotMqttQueueMessage message = mqttMessageQueue.remove(0);
-            if (message != null) {
-                try {
-                    if (message.getUserData() != null && message.getUserData().getUserCallback() != null) {
-                        // this queued message has a callback, publish passing the user data
-                        mqttClient
-                                .publish(message.getTopic(), message.getMessage(), message.getQos()
-                                        .asInt(), false, message.getUserData(), null);
-                    } else {
-                        // this queued message does not have a callback
-                        mqttClient
-                                .publish(message.getTopic(), message.getMessage(), message.getQos()
-                                        .asInt(), false);
+            if (offlinePublishQueueBurstDrainEnabled) {
+                // fill the in-flight window, deliveryComplete() drains the rest
+                synchronized (mqttMessageQueue) {
+                    int inFlight = mqttClient.getPendingDeliveryTokens().length;
+                    while (connectionState == MqttManagerConnectionState.Connected
+                            && inFlight < MqttConnectOptions.MAX_INFLIGHT_DEFAULT) {
+                        final AWSIotMqttQueueMessage message = takeMessageFromQueue();
+                        if (message == null) {
+                            break;
+                        }
+                        publishQueuedMessage(message);
+                        inFlight++;
                     }
-                } catch (final MqttException e) {
-                    // Call this message a failure.  It is possible that this is due to a
-                    // connection issue (we are in this path because the connection dropped),
-                    // however there are also exceptions inherent to the message (valid topic),
-                    // such that publishing this message would never succeed.  It is safer to
-                    // remove the message from the queue and notify failure than to block
-                    // the queue indefinitely.
-                    userPublishCallback(message.getUserData().getUserCallback(),
-                            AWSIotMqttMessageDeliveryCallback.MessageDeliveryStatus.Fail,
-                            message.getUserData().getUserData());
                 }
+                return;
+            }
+
+            final AWSIotMqttQueueMessage message = takeMessageFromQueue();
+            if (message != null) {
+                publishQueuedMessage(message);
             }
 
             (new Handler(Looper.getMainLooper())).postDelayed(new Runnable() {
@@ -1227,6 +1395,32 @@ public class AWSIotMqttManager {
         }
     }
 
+    /**
+     * Publish a message taken from the message queue, notifying failure through
+     * the message's callback.
+     *
+     * @param message queued message.
+     */
+    private void publishQueuedMessage(AWSIotMqttQueueMessage message) {
+        try {
+            // the user data identifies the message once its delivery completes
+            mqttClient
+                    .publish(message.getTopic(), message.getMessage(), message.getQos()
+                            .asInt(), false, message.getUserData(), null);
+        } catch (final MqttException e) {
+            // Call this message a failure.  It is possible that this is due to a
+            // connection issue (we are in this path because the connection dropped),
+            // however there are also exceptions inherent to the message (valid topic),
+            // such that publishing this message would never succeed.  It is safer to
+            // remove the message from the queue and notify failure than to block
+            // the queue indefinitely.
+            acknowledgeQueuedMessage(message.getUserData());
+            userPublishCallback(message.getUserData().getUserCallback(),
+                    AWSIotMqttMessageDeliveryCallback.MessageDeliveryStatus.Fail,
+                    message.getUserData().getUserData());
+        }
+    }
+
     /**
      * Setup the MQTT client calbacks. The Paho MQTT client exposes callbacks
      * for connection status, publish status and incoming messages. The Android
@@ -1239,6 +1433,7 @@ public class AWSIotMqttManager {
             @Override
             public void connectionLost(Throwable cause) {
                 LOGGER.warn("connection is Lost");
+                requeueUnacknowledgedMessages();
                 if (!userDisconnect && autoReconnect) {
                     connectionState = MqttManagerConnectionState.Reconnecting;
                     userConnectionCallback();
@@ -1260,15 +1455,16 @@ public class AWSIotMqttManager {
                 LOGGER.info("message arrived on topic: " + topic);
                 final byte[] data = mqttMessage.getPayload();
 
-                for (final String topicKey : topicListeners.keySet()) {
-                    if (isTopicMatch(topicKey, topic)) {
-                        final AWSIotMqttTopic topicModel = topicListeners.get(topicKey);
-                        if (topicModel != null) {
-                            if (topicModel.getCallback() != null) {
-                                topicModel.getCallback().onMessageArrived(topic, data);
-                            }
+                topicTrie.match(topic, matchedTopics);
+                try {
+                    for (int i = 0; i < matchedTopics.size(); i++) {
+                        final AWSIotMqttTopic topicModel = matchedTopics.get(i);
+                        if (topicModel.getCallback() != null) {
+                            topicModel.getCallback().onMessageArrived(topic, data);
                         }
                     }
+                } finally {
+                    matchedTopics.clear();
                 }
             }
 
@@ -1278,12 +1474,16 @@ public class AWSIotMqttManager {
                 if (token != null) {
                     final Object o = token.getUserContext();
                     if (o instanceof PublishMessageUserData) {
+                        acknowledgeQueuedMessage(o);
                         final PublishMessageUserData pmud = (PublishMessageUserData) o;
                         userPublishCallback(pmud.getUserCallback(),
                                 AWSIotMqttMessageDeliveryCallback.MessageDeliveryStatus.Success,
                                 pmud.getUserData());
                     }
                 }
+                if (offlinePublishQueueBurstDrainEnabled && !mqttMessageQueue.isEmpty()) {
+                    publishMessagesFromQueue();
+                }
             }
         });
     }
@@ -1348,55 +1548,4 @@ public class AWSIotMqttManager {
             cb.statusChanged(status, userData);
         }
     }
-
-    /**
-     * Does the topic match the topic filter?
-     *
-     * @param topicFilter MQTT topic filter (subscriptions, including
-     *            wildcards).
-     * @param topic - the aboslute topic (no wildcards) on which a message was
-     *            published.
-     * @return true if the topic matches the filter, false otherwise.
-     */
-    static boolean isTopicMatch(String topicFilter, String topic) {
-        final String[] topicFilterTokens = topicFilter.split("/");
-        final String[] topicTokens = topic.split("/");
-
-        if (topicFilterTokens.length > topicTokens.length) {
-            return false;
-        }
-
-        for (int i = 0; i < topicFilterTokens.length; i++) {
-            final String topicFilterToken = topicFilterTokens[i];
-            final String topicToken = topicTokens[i];
-
-            // we're equal up to this point, the # matches all that is left
-            if (("#").equals(topicFilterToken)) {
-                return true;
-            }
-
-            // if the filter has a +, go to the next token
-            // if the filter token matches the topic token, go to the next token
-            // if neither are true then we've discovered a mismatch
-            if (!("+").equals(topicFilterToken) && !topicFilterToken.equals(topicToken)) {
-                return false;
-            }
-        }
-
-        // if we're here the strings matched token-for-token (including any
-        // '+'s)
-        // and we have reached the end of the topic filter
-        // we have a match unless there are more tokens left in the topic
-        // if we have filter 1/2/3 then:
-        // 1/2/3 matches
-        // 1/2/3/4 does not match
-        //
-        // if we have filter 1/2/+ then:
-        // 1/2/3 matches
-        // 1/2/3/4 does not match
-        //
-        // we already know the filter can't be longer than the topic (from
-        // above)
-        return (topicFilterTokens.length == topicTokens.length);
-    }
 }
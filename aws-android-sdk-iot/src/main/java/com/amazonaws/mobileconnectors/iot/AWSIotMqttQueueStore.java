@@ -0,0 +1,460 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.iot;
+
+import com.amazonaws.util.StringUtils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Disk copy of the offline publish queue, so that queued messages survive the
+ * process being killed. Messages are appended to a log file, each prefixed
+ * with its length and a CRC32 checksum:
+ *
+ * <pre>
+ * [int length][int crc32][byte qos][short topic length][topic][payload]
+ * </pre>
+ *
+ * The offset of the first message still queued is kept in a head file, so
+ * removing a message from the front of the queue is a single small write. The
+ * log is truncated when the queue becomes empty and compacted when most of it
+ * has been removed. A message removed from behind the front stays in the log
+ * until the messages before it are removed. Delivery callbacks can't be
+ * persisted; messages restored from disk are published without one. Messages
+ * that can't be written are only kept in memory.
+ */
+class AWSIotMqttQueueStore {
+    private static final Log LOGGER = LogFactory.getLog(AWSIotMqttQueueStore.class);
+
+    private static final String LOG_FILE_SUFFIX = ".queue";
+    private static final String HEAD_FILE_SUFFIX = ".head";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    /** Size of the length and checksum prefix of a message. */
+    private static final int HEADER_SIZE = 8;
+    /** Size of the qos and topic length fields. */
+    private static final int FIELDS_SIZE = 3;
+    private static final int MAX_TOPIC_LENGTH = 0xFFFF;
+    /** The log is compacted once this many bytes at its front are removed. */
+    private static final long COMPACT_THRESHOLD_BYTES = 256 * 1024L;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    /**
+     * Set in the stored head while a compacted log replaces the log. The head
+     * then refers to the old log, which is still in place as long as the
+     * compacted one exists under its temporary name.
+     */
+    private static final long COMPACTING = 1L << 62;
+
+    private final File directory;
+    private final File logFile;
+    private final File headFile;
+    /** The compacted log while it is being written. */
+    private final File tempFile;
+    /**
+     * Sizes of the messages in the log, in queue order; 0 for messages only
+     * kept in memory.
+     */
+    private final LinkedList<Integer> messageSizes = new LinkedList<Integer>();
+    private OutputStream logStream;
+    private RandomAccessFile headStream;
+    /** Offset of the first queued message in the log. */
+    private long head;
+    private long logLength;
+
+    /**
+     * Creates a store for the offline queue of an MQTT client.
+     *
+     * @param directory directory to keep the queue in.
+     * @param clientId MQTT client ID, used to name the queue files.
+     */
+    AWSIotMqttQueueStore(File directory, String clientId) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Can't create directory " + directory);
+        }
+        this.directory = directory;
+        final String name = "awsiot_" + clientId.replaceAll("[^A-Za-z0-9_-]", "_");
+        logFile = new File(directory, name + LOG_FILE_SUFFIX);
+        headFile = new File(directory, name + HEAD_FILE_SUFFIX);
+        tempFile = new File(logFile.getPath() + TEMP_FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the messages queued on disk. A message at the end of the log that
+     * was cut off while being written is dropped, and so is a compaction that
+     * was interrupted before the compacted log replaced the log.
+     *
+     * @return queued messages, oldest first.
+     */
+    synchronized List<AWSIotMqttQueueMessage> load() {
+        final List<AWSIotMqttQueueMessage> messages = new ArrayList<AWSIotMqttQueueMessage>();
+        messageSizes.clear();
+        head = readHead();
+        final boolean compacting = (head & COMPACTING) != 0;
+        if (compacting) {
+            head &= ~COMPACTING;
+            if (!tempFile.exists()) {
+                // the compacted log, which starts with the head, is in place
+                head = 0;
+            }
+        }
+        if (tempFile.exists() && !tempFile.delete()) {
+            LOGGER.error("Failed to delete " + tempFile.getName());
+        }
+        if (compacting) {
+            try {
+                writeHead();
+            } catch (final IOException e) {
+                LOGGER.error("Failed to update offline queue.", e);
+            }
+        }
+        logLength = logFile.length();
+        if (head > logLength) {
+            head = 0;
+        }
+        long offset = head;
+        if (logLength > head) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile),
+                        BUFFER_SIZE));
+                if (in.skip(head) != head) {
+                    throw new IOException("Failed to seek in " + logFile.getName());
+                }
+                AWSIotMqttQueueMessage message;
+                while ((message = readMessage(in, logLength - offset)) != null) {
+                    final int size = HEADER_SIZE + FIELDS_SIZE
+                            + message.getTopic().getBytes(StringUtils.UTF8).length
+                            + message.getMessage().length;
+                    messages.add(message);
+                    messageSizes.add(size);
+                    offset += size;
+                }
+            } catch (final IOException e) {
+                LOGGER.error("Failed to read offline queue.", e);
+            } finally {
+                closeQuietly(in);
+            }
+        }
+        if (offset < logLength) {
+            LOGGER.warn("Dropping " + (logLength - offset) + " corrupted bytes of offline queue.");
+            truncate(offset);
+        }
+        if (messages.isEmpty()) {
+            reset();
+        }
+        return messages;
+    }
+
+    /**
+     * Appends a message to the end of the queue. A message that can't be
+     * written is still counted, so that {@link #removeFirst()} stays aligned
+     * with the queue in memory.
+     *
+     * @param message message to append.
+     */
+    synchronized void add(AWSIotMqttQueueMessage message) {
+        final byte[] topic = message.getTopic().getBytes(StringUtils.UTF8);
+        if (topic.length > MAX_TOPIC_LENGTH) {
+            LOGGER.warn("Topic too long to persist, message only kept in memory.");
+            messageSizes.add(0);
+            return;
+        }
+        final int length = FIELDS_SIZE + topic.length + message.getMessage().length;
+        final ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+        record.position(HEADER_SIZE);
+        record.put((byte) message.getQos().asInt());
+        record.putShort((short) topic.length);
+        record.put(topic);
+        record.put(message.getMessage());
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        try {
+            if (logStream == null) {
+                logStream = new FileOutputStream(logFile, true);
+            }
+            logStream.write(record.array());
+            logLength += record.capacity();
+            messageSizes.add(record.capacity());
+        } catch (final IOException e) {
+            LOGGER.error("Failed to persist offline queue message, message only kept in memory.",
+                    e);
+            messageSizes.add(0);
+            // drop whatever part of the message was written
+            truncate(logLength);
+        }
+    }
+
+    /**
+     * Removes the message at the front of the queue.
+     */
+    synchronized void removeFirst() {
+        final Integer size = messageSizes.poll();
+        if (size == null) {
+            return;
+        }
+        if (messageSizes.isEmpty()) {
+            reset();
+            return;
+        }
+        head += size;
+        if (head >= COMPACT_THRESHOLD_BYTES && head * 2 >= logLength) {
+            try {
+                compact();
+                return;
+            } catch (final IOException e) {
+                LOGGER.error("Failed to compact offline queue.", e);
+            }
+        }
+        try {
+            writeHead();
+        } catch (final IOException e) {
+            LOGGER.error("Failed to update offline queue.", e);
+        }
+    }
+
+    /**
+     * Removes a message. Only removing the first message removes it from
+     * disk; any other is removed together with the messages before it, so a
+     * crash in between restores it.
+     *
+     * @param index position of the message in the queue.
+     */
+    synchronized void remove(int index) {
+        if (index == 0) {
+            removeFirst();
+            return;
+        }
+        if (index >= messageSizes.size()) {
+            return;
+        }
+        final int size = messageSizes.remove(index);
+        messageSizes.set(index - 1, messageSizes.get(index - 1) + size);
+    }
+
+    /**
+     * Removes all messages.
+     */
+    synchronized void clear() {
+        messageSizes.clear();
+        reset();
+    }
+
+    /**
+     * Is this the store kept in the given directory?
+     *
+     * @param other a directory.
+     * @return true if the queue is kept in that directory.
+     */
+    boolean isIn(File other) {
+        try {
+            return directory.getCanonicalFile().equals(other.getCanonicalFile());
+        } catch (final IOException e) {
+            return directory.getAbsoluteFile().equals(other.getAbsoluteFile());
+        }
+    }
+
+    /**
+     * Closes the queue files. They are opened again if the store is used
+     * afterwards.
+     */
+    synchronized void close() {
+        closeLog();
+        if (headStream != null) {
+            try {
+                headStream.close();
+            } catch (final IOException e) {
+                LOGGER.error("Failed to close offline queue.", e);
+            }
+            headStream = null;
+        }
+    }
+
+    private void reset() {
+        closeLog();
+        head = 0;
+        logLength = 0;
+        if (logFile.exists() && !logFile.delete()) {
+            LOGGER.error("Failed to delete " + logFile.getName());
+        }
+        try {
+            writeHead();
+        } catch (final IOException e) {
+            LOGGER.error("Failed to update offline queue.", e);
+        }
+    }
+
+    /**
+     * Copies the queued messages to a new log that starts with the first of
+     * them. The stored head is marked while the new log replaces the old one,
+     * so that {@link #load()} can tell which of them a crash left in place.
+     * If the logs can't be swapped, the old log is kept.
+     */
+    private void compact() throws IOException {
+        closeLog();
+        if (tempFile.exists() && !tempFile.delete()) {
+            throw new IOException("Failed to delete " + tempFile.getName());
+        }
+        final InputStream in = new FileInputStream(logFile);
+        final OutputStream out = new FileOutputStream(tempFile);
+        try {
+            if (in.skip(head) != head) {
+                throw new IOException("Failed to seek in " + logFile.getName());
+            }
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        writeHead(head | COMPACTING);
+        if (!tempFile.renameTo(logFile)) {
+            if (!tempFile.delete()) {
+                LOGGER.error("Failed to delete " + tempFile.getName());
+            }
+            writeHead();
+            throw new IOException("Failed to compact offline queue");
+        }
+        logLength -= head;
+        head = 0;
+        writeHead();
+    }
+
+    private void truncate(long length) {
+        closeLog();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(logFile, "rw");
+            raf.setLength(length);
+            logLength = length;
+        } catch (final IOException e) {
+            LOGGER.error("Failed to truncate offline queue.", e);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (final IOException e) {
+                    LOGGER.error("Failed to close offline queue.", e);
+                }
+            }
+        }
+    }
+
+    private long readHead() {
+        if (!headFile.isFile()) {
+            return 0;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(headFile));
+            return in.readLong();
+        } catch (final IOException e) {
+            LOGGER.warn("Failed to read offline queue head.", e);
+            return 0;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void writeHead() throws IOException {
+        writeHead(head);
+    }
+
+    private void writeHead(long value) throws IOException {
+        if (headStream == null) {
+            headStream = new RandomAccessFile(headFile, "rw");
+        }
+        headStream.seek(0);
+        headStream.writeLong(value);
+    }
+
+    private void closeLog() {
+        if (logStream != null) {
+            try {
+                logStream.close();
+            } catch (final IOException e) {
+                LOGGER.error("Failed to close offline queue.", e);
+            }
+            logStream = null;
+        }
+    }
+
+    private static AWSIotMqttQueueMessage readMessage(DataInputStream in, long remaining)
+            throws IOException {
+        if (remaining < HEADER_SIZE + FIELDS_SIZE) {
+            return null;
+        }
+        final byte[] record;
+        final int checksum;
+        try {
+            final int length = in.readInt();
+            checksum = in.readInt();
+            if (length < FIELDS_SIZE || length > remaining - HEADER_SIZE) {
+                return null;
+            }
+            record = new byte[length];
+            in.readFully(record);
+        } catch (final EOFException e) {
+            return null;
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(record);
+        final AWSIotMqttQos qos = buffer.get() == 0 ? AWSIotMqttQos.QOS0 : AWSIotMqttQos.QOS1;
+        final int topicLength = buffer.getShort() & MAX_TOPIC_LENGTH;
+        if (topicLength > buffer.remaining()) {
+            return null;
+        }
+        final String topic = new String(record, FIELDS_SIZE, topicLength, StringUtils.UTF8);
+        final byte[] payload = new byte[buffer.remaining() - topicLength];
+        System.arraycopy(record, FIELDS_SIZE + topicLength, payload, 0, payload.length);
+        return new AWSIotMqttQueueMessage(topic, payload, qos,
+                new PublishMessageUserData(null, null));
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (final IOException e) {
+                LOGGER.error("Failed to close offline queue.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.iot;
+
+import java.util.List;
+
+/**
+ * A trie of MQTT topic filters, one level per node, that finds the
+ * subscriptions matching a topic in time proportional to the depth of the
+ * topic rather than the number of subscriptions. Filters may use the
+ * single-level wildcard '+' and the multi-level wildcard '#' as defined by
+ * MQTT 3.1.1: "a/#" also matches "a", and wildcards in the first level don't
+ * match topics starting with '$'. Matching doesn't allocate.
+ */
+class AWSIotMqttTopicTrie {
+    private static final char LEVEL_SEPARATOR = '/';
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+    private static final char SYSTEM_TOPIC_PREFIX = '$';
+
+    private final Node root = new Node(null);
+
+    /**
+     * Adds a subscription, replacing any subscription to the same filter.
+     *
+     * @param topicFilter MQTT topic filter, may contain wildcards.
+     * @param topic the subscription.
+     */
+    synchronized void put(String topicFilter, AWSIotMqttTopic topic) {
+        Node node = root;
+        int start = 0;
+        while (true) {
+            int end = topicFilter.indexOf(LEVEL_SEPARATOR, start);
+            final boolean isLastLevel = end < 0;
+            if (isLastLevel) {
+                end = topicFilter.length();
+            }
+            final String level = topicFilter.substring(start, end);
+            if (isLastLevel && MULTI_LEVEL_WILDCARD.equals(level)) {
+                if (node.multiLevel == null) {
+                    node.multiLevel = new Node(level);
+                }
+                node = node.multiLevel;
+            } else if (SINGLE_LEVEL_WILDCARD.equals(level)) {
+                if (node.singleLevel == null) {
+                    node.singleLevel = new Node(level);
+                }
+                node = node.singleLevel;
+            } else {
+                Node child = node.findChild(level, 0, level.length());
+                if (child == null) {
+                    child = new Node(level);
+                    node.addChild(child);
+                }
+                node = child;
+            }
+            if (isLastLevel) {
+                break;
+            }
+            start = end + 1;
+        }
+        node.topic = topic;
+    }
+
+    /**
+     * Removes the subscription to a topic filter.
+     *
+     * @param topicFilter MQTT topic filter.
+     */
+    synchronized void remove(String topicFilter) {
+        remove(root, topicFilter, 0);
+    }
+
+    /**
+     * Removes all subscriptions.
+     */
+    synchronized void clear() {
+        root.topic = null;
+        root.singleLevel = null;
+        root.multiLevel = null;
+        root.children = null;
+        root.childCount = 0;
+    }
+
+    /**
+     * Adds the subscriptions whose filters match the topic to a list.
+     *
+     * @param topic the topic, without wildcards, on which a message was
+     *            published.
+     * @param matches the list to add matching subscriptions to.
+     */
+    synchronized void match(String topic, List<AWSIotMqttTopic> matches) {
+        final boolean isSystemTopic = !topic.isEmpty()
+                && topic.charAt(0) == SYSTEM_TOPIC_PREFIX;
+        match(root, topic, 0, !isSystemTopic, matches);
+    }
+
+    private static void match(Node node, String topic, int start, boolean allowWildcards,
+            List<AWSIotMqttTopic> matches) {
+        // "a/#" matches "a" as well as every topic below it
+        if (allowWildcards && node.multiLevel != null && node.multiLevel.topic != null) {
+            matches.add(node.multiLevel.topic);
+        }
+        if (start > topic.length()) {
+            // all levels of the topic are consumed
+            if (node.topic != null) {
+                matches.add(node.topic);
+            }
+            return;
+        }
+        int end = topic.indexOf(LEVEL_SEPARATOR, start);
+        if (end < 0) {
+            end = topic.length();
+        }
+        final Node child = node.findChild(topic, start, end);
+        if (child != null) {
+            match(child, topic, end + 1, true, matches);
+        }
+        if (allowWildcards && node.singleLevel != null) {
+            match(node.singleLevel, topic, end + 1, true, matches);
+        }
+    }
+
+    /**
+     * Removes a filter below the given node.
+     *
+     * @return true if the node no longer holds any subscription
+     */
+    private static boolean remove(Node node, String topicFilter, int start) {
+        if (start > topicFilter.length()) {
+            node.topic = null;
+            return node.isEmpty();
+        }
+        int end = topicFilter.indexOf(LEVEL_SEPARATOR, start);
+        final boolean isLastLevel = end < 0;
+        if (isLastLevel) {
+            end = topicFilter.length();
+        }
+        if (isLastLevel && isLevel(topicFilter, start, end, MULTI_LEVEL_WILDCARD)) {
+            node.multiLevel = null;
+        } else if (isLevel(topicFilter, start, end, SINGLE_LEVEL_WILDCARD)) {
+            if (node.singleLevel != null && remove(node.singleLevel, topicFilter, end + 1)) {
+                node.singleLevel = null;
+            }
+        } else {
+            final Node child = node.findChild(topicFilter, start, end);
+            if (child != null && remove(child, topicFilter, end + 1)) {
+                node.removeChild(child);
+            }
+        }
+        return node.isEmpty();
+    }
+
+    private static boolean isLevel(String s, int start, int end, String level) {
+        return end - start == level.length() && s.regionMatches(start, level, 0, level.length());
+    }
+
+    /**
+     * A level of topic filters. Children matching a level exactly are kept in
+     * an open addressing table keyed by the String hash code of the level, so
+     * that they can be found from a region of the topic without creating a
+     * substring.
+     */
+    private static final class Node {
+        private static final int INITIAL_CAPACITY = 4;
+
+        final String level;
+        final int levelHash;
+        /** Subscription whose filter ends at this node. */
+        AWSIotMqttTopic topic;
+        /** Child for the '+' wildcard. */
+        Node singleLevel;
+        /** Child for the '#' wildcard. */
+        Node multiLevel;
+        Node[] children;
+        int childCount;
+
+        Node(String level) {
+            this.level = level;
+            this.levelHash = level == null ? 0 : level.hashCode();
+        }
+
+        boolean isEmpty() {
+            return topic == null && singleLevel == null && multiLevel == null
+                    && childCount == 0;
+        }
+
+        Node findChild(String s, int start, int end) {
+            if (children == null) {
+                return null;
+            }
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + s.charAt(i);
+            }
+            final int length = end - start;
+            final int mask = children.length - 1;
+            for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+                final Node child = children[i];
+                if (child == null) {
+                    return null;
+                }
+                if (child.levelHash == hash && child.level.length() == length
+                        && child.level.regionMatches(0, s, start, length)) {
+                    return child;
+                }
+            }
+        }
+
+        void addChild(Node child) {
+            if (children == null) {
+                children = new Node[INITIAL_CAPACITY];
+            } else if ((childCount + 1) * 2 > children.length) {
+                rehash(children.length * 2);
+            }
+            insert(children, child);
+            childCount++;
+        }
+
+        void removeChild(Node child) {
+            childCount--;
+            final Node[] old = children;
+            children = childCount == 0 ? null : new Node[old.length];
+            if (children != null) {
+                for (final Node n : old) {
+                    if (n != null && n != child) {
+                        insert(children, n);
+                    }
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            final Node[] old = children;
+            children = new Node[capacity];
+            for (final Node n : old) {
+                if (n != null) {
+                    insert(children, n);
+                }
+            }
+        }
+
+        private static void insert(Node[] table, Node child) {
+            final int mask = table.length - 1;
+            int i = spread(child.levelHash) & mask;
+            while (table[i] != null) {
+                i = (i + 1) & mask;
+            }
+            table[i] = child;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
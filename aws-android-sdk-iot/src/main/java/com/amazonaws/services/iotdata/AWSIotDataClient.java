@@ -205,7 +205,8 @@ public class AWSIotDataClient extends AmazonWebServiceClient implements AWSIotDa
      */
     public AWSIotDataClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.iot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+public class AWSIotMqttQueueStoreTest {
+
+    private static final String CLIENT_ID = "client";
+    private static final String TOPIC = "things/t";
+    /** Length and checksum, qos and topic length, topic, then the payload. */
+    private static final int RECORD_OVERHEAD = 8 + 3 + TOPIC.length();
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File directory;
+    private File logFile;
+    private File headFile;
+    private File tempFile;
+
+    @Before
+    public void setup() throws IOException {
+        directory = temp.newFolder();
+        logFile = new File(directory, "awsiot_" + CLIENT_ID + ".queue");
+        headFile = new File(directory, "awsiot_" + CLIENT_ID + ".head");
+        tempFile = new File(directory, "awsiot_" + CLIENT_ID + ".queue.tmp");
+    }
+
+    @Test
+    public void testMessagesSurviveRestart() {
+        AWSIotMqttQueueStore store = newStore();
+        assertTrue(store.load().isEmpty());
+        store.add(message(1, AWSIotMqttQos.QOS0));
+        store.add(message(2, AWSIotMqttQos.QOS1));
+        store.add(message(3, AWSIotMqttQos.QOS1));
+        store.removeFirst();
+        // killed without closing
+
+        final List<AWSIotMqttQueueMessage> messages = newStore().load();
+        assertEquals(2, messages.size());
+        assertMessage(2, messages.get(0));
+        assertEquals(AWSIotMqttQos.QOS1, messages.get(0).getQos());
+        assertMessage(3, messages.get(1));
+    }
+
+    @Test
+    public void testEmptyQueueDeletesLog() {
+        final AWSIotMqttQueueStore store = newStore();
+        store.load();
+        store.add(message(1, AWSIotMqttQos.QOS0));
+        assertTrue(logFile.exists());
+        store.removeFirst();
+        assertFalse(logFile.exists());
+        assertTrue(newStore().load().isEmpty());
+    }
+
+    @Test
+    public void testMessageCutOffByCrashIsDropped() throws IOException {
+        final AWSIotMqttQueueStore store = newStore();
+        store.load();
+        store.add(message(1, AWSIotMqttQos.QOS0));
+        store.add(message(2, AWSIotMqttQos.QOS0));
+        store.close();
+        final long length = logFile.length();
+        append(logFile, new byte[] {
+                0, 0, 0, 100, 1, 2, 3
+        });
+
+        AWSIotMqttQueueStore restarted = newStore();
+        assertEquals(2, restarted.load().size());
+        assertEquals("torn message truncated", length, logFile.length());
+
+        // appending continues after the last complete message
+        restarted.add(message(3, AWSIotMqttQos.QOS0));
+        restarted.close();
+        final List<AWSIotMqttQueueMessage> messages = newStore().load();
+        assertEquals(3, messages.size());
+        assertMessage(3, messages.get(2));
+    }
+
+    @Test
+    public void testCorruptedMessageDropsTheRest() throws IOException {
+        final AWSIotMqttQueueStore store = newStore();
+        store.load();
+        for (int i = 1; i <= 3; i++) {
+            store.add(message(i, AWSIotMqttQos.QOS0));
+        }
+        store.close();
+        // flip a byte in the payload of the second message
+        final RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+        raf.seek(recordSize(1) + RECORD_OVERHEAD);
+        raf.write('x');
+        raf.close();
+
+        final List<AWSIotMqttQueueMessage> messages = newStore().load();
+        assertEquals(1, messages.size());
+        assertMessage(1, messages.get(0));
+        assertEquals(recordSize(1), logFile.length());
+    }
+
+    @Test
+    public void testLogCompactedWhenMostIsRemoved() {
+        final AWSIotMqttQueueStore store = newStore();
+        store.load();
+        // 100 messages of about 4 KB
+        for (int i = 0; i < 100; i++) {
+            store.add(largeMessage(i));
+        }
+        final long length = logFile.length();
+        for (int i = 0; i < 70; i++) {
+            store.removeFirst();
+        }
+        assertTrue("compacted", logFile.length() < length);
+        assertFalse(tempFile.exists());
+
+        final List<AWSIotMqttQueueMessage> messages = newStore().load();
+        assertEquals(30, messages.size());
+        assertArrayEquals(largeMessage(70).getMessage(), messages.get(0).getMessage());
+        assertArrayEquals(largeMessage(99).getMessage(), messages.get(29).getMessage());
+    }
+
+    @Test
+    public void testCrashBeforeCompactedLogReplacesLog() throws IOException {
+        final AWSIotMqttQueueStore store = newStore();
+        store.load();
+        for (int i = 1; i <= 3; i++) {
+            store.add(message(i, AWSIotMqttQos.QOS0));
+        }
+        store.close();
+        // the compacted log was partly written when the process was killed
+        writeHead(recordSize(1) | compacting());
+        final OutputStream out = new FileOutputStream(tempFile);
+        out.write(new byte[] {
+                1, 2, 3
+        });
+        out.close();
+
+        final List<AWSIotMqttQueueMessage> messages = newStore().load();
+        assertEquals(2, messages.size());
+        assertMessage(2, messages.get(0));
+        assertFalse(tempFile.exists());
+        assertEquals(recordSize(1), readHead());
+    }
+
+    @Test
+    public void testCrashAfterCompactedLogReplacesLog() throws IOException {
+        final AWSIotMqttQueueStore store = newStore();
+        store.load();
+        for (int i = 1; i <= 3; i++) {
+            store.add(message(i, AWSIotMqttQos.QOS0));
+        }
+        store.close();
+        // the compacted log is in place but the head still refers to the old
+        // log when the process was killed
+        final byte[] log = read(logFile);
+        final FileOutputStream out = new FileOutputStream(logFile);
+        out.write(log, (int) recordSize(1), log.length - (int) recordSize(1));
+        out.close();
+        writeHead(recordSize(1) | compacting());
+
+        final List<AWSIotMqttQueueMessage> messages = newStore().load();
+        assertEquals(2, messages.size());
+        assertMessage(2, messages.get(0));
+        assertMessage(3, messages.get(1));
+        assertEquals(0, readHead());
+    }
+
+    @Test
+    public void testRemovedBehindFrontIsRemovedWithFront() {
+        final AWSIotMqttQueueStore store = newStore();
+        store.load();
+        for (int i = 1; i <= 4; i++) {
+            store.add(message(i, AWSIotMqttQos.QOS0));
+        }
+        store.remove(2);
+
+        // a crash before the front is removed restores it
+        assertEquals(4, newStore().load().size());
+
+        store.remove(0);
+        List<AWSIotMqttQueueMessage> messages = newStore().load();
+        assertEquals(3, messages.size());
+        store.remove(0);
+        messages = newStore().load();
+        assertEquals(1, messages.size());
+        assertMessage(4, messages.get(0));
+    }
+
+    @Test
+    public void testReopenedAfterClose() {
+        final AWSIotMqttQueueStore store = newStore();
+        store.load();
+        store.add(message(1, AWSIotMqttQos.QOS0));
+        store.close();
+        store.add(message(2, AWSIotMqttQos.QOS0));
+        store.removeFirst();
+        store.close();
+
+        final List<AWSIotMqttQueueMessage> messages = newStore().load();
+        assertEquals(1, messages.size());
+        assertMessage(2, messages.get(0));
+    }
+
+    @Test
+    public void testIsIn() throws IOException {
+        final AWSIotMqttQueueStore store = newStore();
+        assertTrue(store.isIn(directory));
+        assertTrue(store.isIn(new File(new File(directory, "sub"), "..")));
+        assertFalse(store.isIn(temp.newFolder()));
+    }
+
+    private AWSIotMqttQueueStore newStore() {
+        return new AWSIotMqttQueueStore(directory, CLIENT_ID);
+    }
+
+    private static AWSIotMqttQueueMessage message(int i, AWSIotMqttQos qos) {
+        return new AWSIotMqttQueueMessage(TOPIC, payload(i), qos,
+                new PublishMessageUserData(null, null));
+    }
+
+    private static AWSIotMqttQueueMessage largeMessage(int i) {
+        final byte[] payload = new byte[4096];
+        for (int j = 0; j < payload.length; j++) {
+            payload[j] = (byte) (i + j);
+        }
+        return new AWSIotMqttQueueMessage(TOPIC, payload, AWSIotMqttQos.QOS0,
+                new PublishMessageUserData(null, null));
+    }
+
+    private static byte[] payload(int i) {
+        return ("message " + i).getBytes();
+    }
+
+    private static long recordSize(int i) {
+        return RECORD_OVERHEAD + payload(i).length;
+    }
+
+    private static void assertMessage(int i, AWSIotMqttQueueMessage message) {
+        assertEquals(TOPIC, message.getTopic());
+        assertArrayEquals(payload(i), message.getMessage());
+    }
+
+    /** The flag the store sets in the head while swapping logs. */
+    private static long compacting() {
+        return 1L << 62;
+    }
+
+    private void writeHead(long head) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(headFile));
+        out.writeLong(head);
+        out.close();
+    }
+
+    private long readHead() throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(headFile, "r");
+        try {
+            return raf.readLong();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void append(File file, byte[] bytes) throws IOException {
+        final OutputStream out = new FileOutputStream(file, true);
+        out.write(bytes);
+        out.close();
+    }
+
+    private static byte[] read(File file) throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.iot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class AWSIotMqttTopicTrieTest {
+
+    private static final Boolean SAME = null;
+
+    /**
+     * Filter, topic, whether the trie matches, and whether the linear
+     * isTopicMatch the trie replaced matched, or SAME if it agrees.
+     */
+    private static final Object[][] CASES = {
+            // exact levels
+            {"a", "a", true, SAME},
+            {"a/b", "a/b", true, SAME},
+            {"a/b", "a/c", false, SAME},
+            {"a/b", "a", false, SAME},
+            {"a", "a/b", false, SAME},
+            {"a/b/c", "a/b/c", true, SAME},
+
+            // single-level wildcard
+            {"+", "a", true, SAME},
+            {"+", "a/b", false, SAME},
+            {"a/+", "a/b", true, SAME},
+            {"a/+", "a/b/c", false, SAME},
+            {"a/+/c", "a/b/c", true, SAME},
+            {"a/+/c", "a/b/d", false, SAME},
+            {"+/+", "a/b", true, SAME},
+            {"+/b", "a/b", true, SAME},
+
+            // multi-level wildcard
+            {"#", "a", true, SAME},
+            {"#", "a/b/c", true, SAME},
+            {"a/#", "a/b", true, SAME},
+            {"a/#", "a/b/c", true, SAME},
+            {"a/#", "b/c", false, SAME},
+            {"a/+/#", "a/b/c/d", true, SAME},
+            // '#' also matches the parent level (MQTT 3.1.1, 4.7.1.2)
+            {"a/#", "a", true, false},
+            {"a/b/#", "a/b", true, false},
+            {"a/+/#", "a/b", true, false},
+
+            // topics starting with '$' aren't matched by a leading wildcard
+            // (MQTT 3.1.1, 4.7.2)
+            {"#", "$aws/things/t", false, true},
+            {"+/things/t", "$aws/things/t", false, true},
+            {"$aws/#", "$aws/things/t", true, SAME},
+            {"$aws/+/t", "$aws/things/t", true, SAME},
+            {"$aws/things/t", "$aws/things/t", true, SAME},
+            {"a/#", "a/$b", true, SAME},
+            {"a/+", "a/$b", true, SAME},
+
+            // empty levels are levels too
+            {"a//b", "a//b", true, SAME},
+            {"a/+/b", "a//b", true, SAME},
+            {"+/a", "/a", true, SAME},
+            {"/a", "/a", true, SAME},
+            {"a/b", "a//b", false, SAME},
+            // a trailing empty level was dropped by String.split
+            {"a/+", "a/", true, false},
+            {"a/", "a/", true, SAME},
+            {"a/", "a", false, true},
+            {"a", "a/", false, true},
+            {"+/+", "/", true, false},
+            {"#", "/", true, false},
+            {"/#", "/", true, false},
+    };
+
+    @Test
+    public void testMatchesEachFilter() {
+        for (final Object[] c : CASES) {
+            final AWSIotMqttTopicTrie trie = new AWSIotMqttTopicTrie();
+            final String filter = (String) c[0];
+            final String topic = (String) c[1];
+            trie.put(filter, subscription(filter));
+            assertEquals(filter + " matches " + topic, c[2], !match(trie, topic).isEmpty());
+        }
+    }
+
+    @Test
+    public void testDifferencesFromLinearMatch() {
+        for (final Object[] c : CASES) {
+            final String filter = (String) c[0];
+            final String topic = (String) c[1];
+            final Object expected = c[3] == SAME ? c[2] : c[3];
+            assertEquals("isTopicMatch(" + filter + ", " + topic + ")", expected,
+                    isTopicMatch(filter, topic));
+        }
+    }
+
+    @Test
+    public void testMatchesAllFilters() {
+        final AWSIotMqttTopicTrie trie = new AWSIotMqttTopicTrie();
+        final Set<String> topics = new HashSet<String>();
+        for (final Object[] c : CASES) {
+            trie.put((String) c[0], subscription((String) c[0]));
+            topics.add((String) c[1]);
+        }
+        // filters sharing levels match as they do on their own
+        for (final String topic : topics) {
+            final Set<String> expected = new HashSet<String>();
+            for (final Object[] c : CASES) {
+                final AWSIotMqttTopicTrie single = new AWSIotMqttTopicTrie();
+                single.put((String) c[0], subscription((String) c[0]));
+                if (!match(single, topic).isEmpty()) {
+                    expected.add((String) c[0]);
+                }
+            }
+            final List<String> actual = match(trie, topic);
+            assertEquals("no duplicates for " + topic, expected.size(), actual.size());
+            assertEquals("filters matching " + topic, expected, new HashSet<String>(actual));
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        final AWSIotMqttTopicTrie trie = new AWSIotMqttTopicTrie();
+        final String[] filters = {"a/b", "a/+", "a/#", "#", "a/b/c", "+/b"};
+        for (final String filter : filters) {
+            trie.put(filter, subscription(filter));
+        }
+        assertEquals(5, match(trie, "a/b").size());
+
+        trie.remove("a/+");
+        trie.remove("#");
+        final Set<String> expected = new HashSet<String>();
+        expected.add("a/b");
+        expected.add("a/#");
+        expected.add("+/b");
+        assertEquals(expected, new HashSet<String>(match(trie, "a/b")));
+
+        // removing a filter that was never added, or a prefix of one
+        trie.remove("a/c");
+        trie.remove("a");
+        assertEquals(expected, new HashSet<String>(match(trie, "a/b")));
+        assertEquals(2, match(trie, "a/b/c").size());
+
+        trie.clear();
+        assertTrue(match(trie, "a/b").isEmpty());
+    }
+
+    @Test
+    public void testManyChildren() {
+        final AWSIotMqttTopicTrie trie = new AWSIotMqttTopicTrie();
+        for (int i = 0; i < 100; i++) {
+            trie.put("things/" + i, subscription("things/" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1, match(trie, "things/" + i).size());
+        }
+        for (int i = 0; i < 100; i += 2) {
+            trie.remove("things/" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2, match(trie, "things/" + i).size());
+        }
+    }
+
+    private static AWSIotMqttTopic subscription(String filter) {
+        return new AWSIotMqttTopic(filter, AWSIotMqttQos.QOS0, null);
+    }
+
+    private static List<String> match(AWSIotMqttTopicTrie trie, String topic) {
+        final List<AWSIotMqttTopic> matches = new ArrayList<AWSIotMqttTopic>();
+        trie.match(topic, matches);
+        final List<String> filters = new ArrayList<String>();
+        for (final AWSIotMqttTopic match : matches) {
+            filters.add(match.getTopic());
+        }
+        return filters;
+    }
+
+    /**
+     * The linear matching AWSIotMqttManager used before the trie.
+     */
+    private static boolean isTopicMatch(String topicFilter, String topic) {
+        final String[] topicFilterTokens = topicFilter.split("/");
+        final String[] topicTokens = topic.split("/");
+        if (topicFilterTokens.length > topicTokens.length) {
+            return false;
+        }
+        for (int i = 0; i < topicFilterTokens.length; i++) {
+            final String topicFilterToken = topicFilterTokens[i];
+            if ("#".equals(topicFilterToken)) {
+                return true;
+            }
+            if (!"+".equals(topicFilterToken) && !topicFilterToken.equals(topicTokens[i])) {
+                return false;
+            }
+        }
+        return topicFilterTokens.length == topicTokens.length;
+    }
+}
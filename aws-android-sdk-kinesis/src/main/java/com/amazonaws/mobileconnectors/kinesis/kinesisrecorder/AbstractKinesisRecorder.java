@@ -17,7 +17,9 @@ package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
 
 
 import com.amazonaws.AmazonClientException;
-import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.FileRecordStore.RecordIterator;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.SegmentedRecordStore.Position;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.SegmentedRecordStore.Record;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.SegmentedRecordStore.RecordIterator;
 import com.amazonaws.util.StringUtils;
 
 import org.apache.commons.logging.Log;
@@ -25,7 +27,17 @@ import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An abstract class for Amazon Kinesis recorders. It manages local file store
@@ -45,13 +57,21 @@ public abstract class AbstractKinesisRecorder {
      * Maximum size in bytes of records in PutRecordBatch.
      */
     private static final int MAX_BATCH_RECORDS_SIZE_BYTES = 512 * 1024;
+    /**
+     * Seconds an idle thread of the batch pool is kept.
+     */
+    private static final long BATCH_THREAD_KEEP_ALIVE_SECONDS = 60;
 
     /**
      * The configurable options for Kinesis Recorder, includes the
      * ClientConfiguration of the low level client.
      */
     protected KinesisRecorderConfig config;
-    protected FileRecordStore recordStore;
+    protected SegmentedRecordStore recordStore;
+    /**
+     * Sends batches when several are in flight; guarded by this.
+     */
+    private ThreadPoolExecutor batchExecutor;
 
     /**
      * Gets the sender to send saved records.
@@ -66,7 +86,8 @@ public abstract class AbstractKinesisRecorder {
      * @param recordStore local file store that keeps Kinesis records
      * @param config configuration
      */
-    protected AbstractKinesisRecorder(FileRecordStore recordStore, KinesisRecorderConfig config) {
+    protected AbstractKinesisRecorder(SegmentedRecordStore recordStore,
+            KinesisRecorderConfig config) {
         if (recordStore == null) {
             throw new IllegalArgumentException("Record store can't be null");
         }
@@ -97,7 +118,7 @@ public abstract class AbstractKinesisRecorder {
      */
     public void saveRecord(byte[] data, String streamName) {
         try {
-            recordStore.put(FileRecordParser.asString(streamName, data));
+            recordStore.put(streamName, data);
         } catch (final IOException e) {
             throw new AmazonClientException("Error saving record", e);
         }
@@ -118,6 +139,11 @@ public abstract class AbstractKinesisRecorder {
      *             to be valid, it will be kept.
      */
     public synchronized void submitAllRecords() {
+        final int maxConcurrentBatches = config == null ? 1 : config.getMaxConcurrentBatches();
+        if (maxConcurrentBatches > 1 && !requiresOrderedDelivery()) {
+            submitAllRecordsPipelined(maxConcurrentBatches);
+            return;
+        }
         final RecordSender sender = getRecordSender();
         final RecordIterator iterator = recordStore.iterator();
         final List<byte[]> data = new ArrayList<byte[]>(MAX_RECORDS_PER_BATCH);
@@ -193,6 +219,224 @@ public abstract class AbstractKinesisRecorder {
         }
     }
 
+    /**
+     * Submits all saved records with up to the given number of batches in
+     * flight. The next batch is read while earlier ones are being sent.
+     * Batches are acknowledged in the order they were read. When a batch
+     * fails, the batches still in flight are waited for, so that every batch
+     * that was sent is removed from disk rather than sent again. The records
+     * of a batch that failed but can be retried are saved again.
+     *
+     * @param maxConcurrentBatches maximum number of batches in flight
+     */
+    private void submitAllRecordsPipelined(int maxConcurrentBatches) {
+        final RecordSender sender = getRecordSender();
+        final RecordIterator iterator = recordStore.iterator();
+        final ExecutorService executor = getBatchExecutor(maxConcurrentBatches);
+        final LinkedList<PendingBatch> inFlight = new LinkedList<PendingBatch>();
+        int retry = 0;
+        int count = 0;
+        try {
+            while (retry < MAX_RETRY_COUNT) {
+                while (inFlight.size() < maxConcurrentBatches && iterator.hasNext()) {
+                    final List<byte[]> data = new ArrayList<byte[]>(MAX_RECORDS_PER_BATCH);
+                    final String streamName = nextBatch(iterator, data, MAX_RECORDS_PER_BATCH,
+                            MAX_BATCH_RECORDS_SIZE_BYTES);
+                    if (streamName == null || data.isEmpty()) {
+                        break;
+                    }
+                    inFlight.add(new PendingBatch(streamName, data, iterator.getReadPosition(),
+                            executor.submit(new Callable<List<byte[]>>() {
+                                @Override
+                                public List<byte[]> call() {
+                                    return sender.sendBatch(streamName, data);
+                                }
+                            })));
+                }
+                if (inFlight.isEmpty()) {
+                    break;
+                }
+
+                final PendingBatch batch = inFlight.removeFirst();
+                final List<byte[]> failures;
+                try {
+                    failures = await(batch);
+                } catch (final AmazonClientException ace) {
+                    inFlight.addFirst(batch);
+                    count += drain(sender, iterator, inFlight);
+                    throw ace;
+                }
+
+                final int successCount = batch.data.size() - failures.size();
+                count += successCount;
+                try {
+                    iterator.removeRecordsBefore(batch.end);
+                } catch (final IOException e) {
+                    throw new AmazonClientException("Failed to remove read records", e);
+                }
+                if (successCount == 0) {
+                    // no record went through, increase retry count.
+                    retry++;
+                }
+                for (final byte[] bytes : failures) {
+                    saveRecord(bytes, batch.streamName);
+                }
+            }
+        } finally {
+            for (final PendingBatch batch : inFlight) {
+                // only left when interrupted; they're sent again next time
+                batch.result.cancel(true);
+            }
+            LOGGER.debug(String.format("submitAllRecords sent %d records", count));
+            try {
+                iterator.close();
+            } catch (final IOException e) {
+                throw new AmazonClientException("Failed to close record file", e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the batches in flight after a batch failed, removes all of
+     * them from disk and saves again the records that can be retried. Like
+     * the failed records of a batch, they're removed before being saved
+     * again.
+     *
+     * @param sender the sender of the batches
+     * @param iterator the iterator the batches were read from
+     * @param inFlight the batches in flight, starting with the failed one;
+     *            emptied unless interrupted
+     * @return the number of records sent
+     */
+    private int drain(RecordSender sender, RecordIterator iterator,
+            LinkedList<PendingBatch> inFlight) {
+        final Position end = inFlight.getLast().end;
+        final List<PendingBatch> retries = new ArrayList<PendingBatch>();
+        int count = 0;
+        while (!inFlight.isEmpty()) {
+            final PendingBatch batch = inFlight.getFirst();
+            try {
+                final List<byte[]> failures = await(batch);
+                count += batch.data.size() - failures.size();
+                retries.add(new PendingBatch(batch.streamName, failures, batch.end,
+                        batch.result));
+            } catch (final AmazonClientException ace) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // the remaining batches stay on disk and are sent again
+                    return count;
+                }
+                if (sender.isRecoverable(ace)) {
+                    LOGGER.error(
+                            "ServiceException in submit all, the values of the data inside the requests appears valid.  The request will be kept",
+                            ace);
+                    retries.add(batch);
+                } else {
+                    // We have reason to believe the values in the request
+                    // is invalid and cannot be sent or recovered.
+                    LOGGER.error(
+                            "ServiceException in submit all, the last request is presumed to be the cause and will be dropped",
+                            ace);
+                }
+            }
+            inFlight.removeFirst();
+        }
+
+        try {
+            iterator.removeRecordsBefore(end);
+        } catch (final IOException e) {
+            throw new AmazonClientException("Failed to remove read records", e);
+        }
+        for (final PendingBatch batch : retries) {
+            for (final byte[] bytes : batch.data) {
+                saveRecord(bytes, batch.streamName);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Waits for a batch to be sent.
+     *
+     * @param batch the batch
+     * @return the records that failed
+     * @throws AmazonClientException if the batch couldn't be sent or the
+     *             thread is interrupted
+     */
+    private List<byte[]> await(PendingBatch batch) {
+        try {
+            return batch.result.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while submitting records", e);
+        } catch (final ExecutionException e) {
+            throw e.getCause() instanceof AmazonClientException
+                    ? (AmazonClientException) e.getCause()
+                    : new AmazonClientException("Failed to send records", e.getCause());
+        }
+    }
+
+    /**
+     * Gets the pool that sends batches, creating it when it doesn't exist or
+     * the number of concurrent batches changed. Its threads stop when idle.
+     *
+     * @param maxConcurrentBatches maximum number of batches in flight
+     * @return the pool
+     */
+    private ExecutorService getBatchExecutor(int maxConcurrentBatches) {
+        if (batchExecutor != null
+                && batchExecutor.getMaximumPoolSize() == maxConcurrentBatches) {
+            return batchExecutor;
+        }
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+        }
+        batchExecutor = new ThreadPoolExecutor(maxConcurrentBatches, maxConcurrentBatches,
+                BATCH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "kinesis-recorder-"
+                                + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        batchExecutor.allowCoreThreadTimeOut(true);
+        return batchExecutor;
+    }
+
+    /**
+     * Whether records must be sent in the order they were saved. If so,
+     * batches are sent one at a time regardless of
+     * {@link KinesisRecorderConfig#getMaxConcurrentBatches()}.
+     *
+     * @return true if records must be sent in order
+     */
+    protected boolean requiresOrderedDelivery() {
+        return false;
+    }
+
+    /**
+     * A batch that has been read and is being sent.
+     */
+    private static final class PendingBatch {
+        final String streamName;
+        final List<byte[]> data;
+        /** Read position after the last record of the batch. **/
+        final Position end;
+        final Future<List<byte[]>> result;
+
+        PendingBatch(String streamName, List<byte[]> data, Position end,
+                Future<List<byte[]>> result) {
+            this.streamName = streamName;
+            this.data = data;
+            this.end = end;
+            this.result = result;
+        }
+    }
+
     /**
      * Reads a batch of records belong to the same stream into a list. If data
      * is read successfully, the stream name is returned.
@@ -211,27 +455,16 @@ public abstract class AbstractKinesisRecorder {
         String lastStreamName = null;
         int size = 0;
         int count = 0;
-        final FileRecordParser frp = new FileRecordParser();
         while (iterator.hasNext() && count < maxCount && size < maxSize) {
-            final String line = iterator.peek();
-            if (line == null || line.isEmpty()) {
-                continue;
-            }
-            // parse a line. Skip in case of corrupted data
-            try {
-                frp.parse(line);
-            } catch (final Exception e) {
-                LOGGER.warn("Failed to read line. Skip.", e);
-                continue;
-            }
+            final Record record = iterator.peek();
 
             // check whether it belongs to previous batch
-            if (lastStreamName == null || lastStreamName.equals(frp.streamName)) {
-                data.add(frp.bytes);
+            if (lastStreamName == null || lastStreamName.equals(record.streamName)) {
+                data.add(record.data);
                 // update counter
                 count++;
-                size += frp.bytes.length;
-                lastStreamName = frp.streamName;
+                size += record.data.length;
+                lastStreamName = record.streamName;
                 iterator.next();
             } else {
                 break;
@@ -259,7 +492,7 @@ public abstract class AbstractKinesisRecorder {
      * @return long The number of bytes used
      */
     public long getDiskBytesUsed() {
-        return recordStore.getFileSize();
+        return recordStore.getDiskBytesUsed();
     }
 
     /**
@@ -38,7 +38,9 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * The FileRecordStore is responsible for recording Kinesis PutRecordRequests to
  * the Android disk. Currently it stores each request as a JSON object
- * representing it's properties. One request per line.
+ * representing it's properties. One request per line. Recorders now keep
+ * records in a {@link SegmentedRecordStore}; this store is only used to read
+ * records saved by earlier versions.
  */
 class FileRecordStore {
     private static final Log LOGGER = LogFactory.getLog(FileRecordStore.class);
@@ -21,6 +21,7 @@ import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.kinesis.AmazonKinesis;
 import com.amazonaws.services.kinesis.AmazonKinesisClient;
+import com.amazonaws.util.StringUtils;
 import com.amazonaws.util.VersionInfoUtils;
 
 import org.apache.commons.logging.Log;
@@ -143,7 +144,7 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
      */
     public KinesisRecorder(File directory, Regions region,
             AWSCredentialsProvider credentialsProvider, KinesisRecorderConfig config) {
-        super(new FileRecordStore(directory, RECORD_FILE_NAME,
+        super(new SegmentedRecordStore(directory, RECORD_FILE_NAME,
                 config.getMaxStorageSize()), config);
 
         if (directory == null || credentialsProvider == null || region == null || config == null) {
@@ -167,7 +168,7 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
      * @param recordStore record store
      * @param config configuration
      */
-    KinesisRecorder(KinesisStreamRecordSender sender, FileRecordStore recordStore,
+    KinesisRecorder(KinesisStreamRecordSender sender, SegmentedRecordStore recordStore,
             KinesisRecorderConfig config) {
         super(recordStore, config);
         this.sender = sender;
@@ -229,6 +230,14 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
         return sender;
     }
 
+    /**
+     * Records that share a configured partition key are sent in order.
+     */
+    @Override
+    protected boolean requiresOrderedDelivery() {
+        return config != null && !StringUtils.isBlank(config.getPartitionKey());
+    }
+
     @Override
     public void saveRecord(byte[] data, String streamName) {
         if (streamName == null || !STREAM_NAME_PATTERN.matcher(streamName).matches()) {
@@ -27,6 +27,7 @@ public class KinesisRecorderConfig {
     private long maxStorageSize = DEFAUT_MAX_STORAGE_SIZE;
     private final ClientConfiguration clientConfiguration;
     private String partitionKey;
+    private int maxConcurrentBatches = 1;
 
     /**
      * Construct an instance of KinesisRecorderConfig which has default values
@@ -60,6 +61,7 @@ public class KinesisRecorderConfig {
         this.maxStorageSize = other.getMaxStorageSize();
         this.clientConfiguration = new ClientConfiguration(other.getClientConfiguration());
         this.partitionKey = other.partitionKey;
+        this.maxConcurrentBatches = other.maxConcurrentBatches;
     }
 
     /**
@@ -85,6 +87,33 @@ public class KinesisRecorderConfig {
         return this;
     }
 
+    /**
+     * Sets the maximum number of batches submitAllRecords keeps in flight.
+     * With more than one, the next batch is read and sent while earlier ones
+     * are still being sent, which drains a large backlog faster. Records are
+     * only removed from disk once all batches before them have been sent. The
+     * default is 1, which sends one batch at a time. Records of a recorder
+     * that must keep them in order, such as a KinesisRecorder with a fixed
+     * partition key, are always sent one batch at a time.
+     *
+     * @param maxConcurrentBatches the maximum number of batches in flight.
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withMaxConcurrentBatches(int maxConcurrentBatches) {
+        if (maxConcurrentBatches < 1) {
+            throw new IllegalArgumentException("maxConcurrentBatches must be at least 1");
+        }
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        return this;
+    }
+
+    /**
+     * @return The maximum number of batches submitAllRecords keeps in flight.
+     */
+    public int getMaxConcurrentBatches() {
+        return this.maxConcurrentBatches;
+    }
+
     /**
      * @return The current max storage in bytes that KinesisRecorder is allowed
      *         to use.
@@ -0,0 +1,714 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.StringUtils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * The SegmentedRecordStore is responsible for recording Kinesis records to the
+ * Android disk. Records are appended to a log of segment files, each record
+ * prefixed with its length and a CRC32 checksum of its content:
+ *
+ * <pre>
+ * [int length][int crc32][short stream name length][stream name][data]
+ * </pre>
+ *
+ * Appending a record is a single write to the open segment. The position of
+ * the first record that hasn't been sent is kept in a checkpoint file, so
+ * removing read records only rewrites the checkpoint and deletes segments
+ * that have been fully read. A new segment is started once the current one
+ * reaches the segment size.
+ */
+class SegmentedRecordStore {
+    private static final Log LOGGER = LogFactory.getLog(SegmentedRecordStore.class);
+
+    /** Default size in bytes after which a new segment is started. **/
+    static final long DEFAULT_SEGMENT_SIZE = 1024 * 1024L;
+
+    static final String SEGMENT_DIRECTORY_SUFFIX = ".segments";
+    static final String SEGMENT_FILE_SUFFIX = ".seg";
+    static final String CHECKPOINT_FILE_NAME = "checkpoint";
+
+    /** Size of the length and checksum prefix of a record. **/
+    static final int RECORD_HEADER_SIZE = 8;
+    private static final int STREAM_NAME_LENGTH_SIZE = 2;
+    private static final int MAX_STREAM_NAME_LENGTH = 0xFFFF;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final ReentrantLock accessLock = new ReentrantLock(true);
+
+    /** The directory the segments are stored in. **/
+    private final File segmentDirectory;
+    private final File checkpointFile;
+    private final long maxStorageSize;
+    private final long segmentSize;
+
+    /** Ids of all segments on disk, the last one is written to. **/
+    private final TreeSet<Long> segmentIds = new TreeSet<Long>();
+    /** Total size in bytes of all segments. **/
+    private long diskBytesUsed;
+
+    /** Position of the first record that hasn't been removed. **/
+    private long checkpointSegmentId;
+    private long checkpointOffset;
+
+    /** Open stream of the segment being written, null if none is open. **/
+    private OutputStream writer;
+    private long writerSegmentLength;
+
+    /**
+     * Creates the SegmentedRecordStore. Records in a text record file of the
+     * same name, written by a previous version, are moved into the log.
+     *
+     * @param workDirectory The directory (which the SegmentedRecordStore is
+     *            only used for the KinesisRecorder) to use to store records
+     *            in
+     * @param recordFileName Name of the record store
+     * @param maxStorageSize Maximum storage size in bytes
+     */
+    public SegmentedRecordStore(File workDirectory, String recordFileName, long maxStorageSize) {
+        this(workDirectory, recordFileName, maxStorageSize, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates the SegmentedRecordStore with the given segment size.
+     *
+     * @param workDirectory The directory to store records in
+     * @param recordFileName Name of the record store
+     * @param maxStorageSize Maximum storage size in bytes
+     * @param segmentSize Size in bytes after which a new segment is started
+     */
+    SegmentedRecordStore(File workDirectory, String recordFileName, long maxStorageSize,
+            long segmentSize) {
+        this.maxStorageSize = maxStorageSize;
+        this.segmentSize = segmentSize;
+        final FileManager fileManager = new FileManager(workDirectory);
+        final File recordsDir = fileManager.createDirectory(Constants.RECORDS_DIRECTORY);
+        segmentDirectory = fileManager.createDirectory(Constants.RECORDS_DIRECTORY
+                + File.separator + recordFileName + SEGMENT_DIRECTORY_SUFFIX);
+        if (recordsDir == null || segmentDirectory == null) {
+            throw new AmazonClientException("Failed to create record store");
+        }
+        checkpointFile = new File(segmentDirectory, CHECKPOINT_FILE_NAME);
+        try {
+            loadSegments();
+            importLegacyRecords(new File(recordsDir, recordFileName));
+        } catch (final IOException ioe) {
+            throw new AmazonClientException("Failed to create record store", ioe);
+        }
+    }
+
+    /**
+     * Appends a record to the log.
+     *
+     * @param streamName the stream the record belongs to
+     * @param data the data of the record
+     * @return true if the record was saved, false if the store is full
+     * @throws IOException if the record can't be written
+     */
+    public boolean put(final String streamName, final byte[] data) throws IOException {
+        final byte[] name = streamName.getBytes(StringUtils.UTF8);
+        if (name.length > MAX_STREAM_NAME_LENGTH) {
+            throw new IllegalArgumentException("Stream name is too long: " + streamName);
+        }
+        final int payloadLength = STREAM_NAME_LENGTH_SIZE + name.length + data.length;
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payloadLength);
+        record.position(RECORD_HEADER_SIZE);
+        record.putShort((short) name.length);
+        record.put(name);
+        record.put(data);
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, payloadLength);
+        record.putInt(0, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+
+        accessLock.lock();
+        try {
+            if (diskBytesUsed + record.capacity() > maxStorageSize) {
+                return false;
+            }
+            if (writer != null && writerSegmentLength > 0
+                    && writerSegmentLength + record.capacity() > segmentSize) {
+                closeWriter();
+            }
+            if (writer == null) {
+                openWriter();
+            }
+            writer.write(record.array());
+            writerSegmentLength += record.capacity();
+            diskBytesUsed += record.capacity();
+            return true;
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of bytes the segments of this store occupy on disk.
+     *
+     * @return the number of bytes used
+     */
+    public long getDiskBytesUsed() {
+        accessLock.lock();
+        try {
+            return diskBytesUsed;
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    public RecordIterator iterator() {
+        return new RecordIterator();
+    }
+
+    private File segmentFile(long segmentId) {
+        return new File(segmentDirectory, String.format(Locale.US, "%020d", segmentId)
+                + SEGMENT_FILE_SUFFIX);
+    }
+
+    /**
+     * Starts a new segment after the last one.
+     */
+    private void openWriter() throws IOException {
+        final long segmentId = segmentIds.isEmpty() ? checkpointSegmentId : segmentIds.last() + 1;
+        writer = new FileOutputStream(segmentFile(segmentId), true);
+        writerSegmentLength = 0;
+        segmentIds.add(segmentId);
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (final IOException e) {
+                LOGGER.error("failed to close segment", e);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Reads the segments and the checkpoint on disk. A record at the end of
+     * the last segment that was cut off, e.g. when the process was killed in
+     * the middle of a write, is truncated. Records whose content is corrupted
+     * are kept and skipped when read. Appending always starts a new segment.
+     */
+    private void loadSegments() throws IOException {
+        final File[] files = segmentDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final String name = file.getName();
+                if (!name.endsWith(SEGMENT_FILE_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    segmentIds.add(Long.parseLong(name.substring(0,
+                            name.length() - SEGMENT_FILE_SUFFIX.length())));
+                } catch (final NumberFormatException e) {
+                    LOGGER.warn("Ignore unknown file " + name);
+                }
+            }
+        }
+        if (!segmentIds.isEmpty()) {
+            truncateCorruptedTail(segmentFile(segmentIds.last()));
+        }
+        for (final Long segmentId : segmentIds) {
+            diskBytesUsed += segmentFile(segmentId).length();
+        }
+        readCheckpoint();
+    }
+
+    private void truncateCorruptedTail(File segment) throws IOException {
+        final long validLength = scanValidLength(segment);
+        if (validLength < segment.length()) {
+            LOGGER.warn("Truncate corrupted records at the end of " + segment.getName());
+            final RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+            try {
+                raf.setLength(validLength);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private long scanValidLength(File segment) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(segment), READ_BUFFER_SIZE));
+        final long length = segment.length();
+        long offset = 0;
+        try {
+            Record record;
+            while ((record = readRecord(in, length - offset)) != null) {
+                offset += record.size;
+            }
+        } finally {
+            in.close();
+        }
+        return offset;
+    }
+
+    private void readCheckpoint() {
+        checkpointSegmentId = segmentIds.isEmpty() ? 0 : segmentIds.first();
+        checkpointOffset = 0;
+        if (!checkpointFile.isFile()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(checkpointFile));
+            final long segmentId = in.readLong();
+            final long offset = in.readLong();
+            if (segmentIds.contains(segmentId)) {
+                checkpointSegmentId = segmentId;
+                checkpointOffset = offset;
+            } else if (segmentIds.isEmpty()) {
+                checkpointSegmentId = segmentId;
+            }
+        } catch (final IOException e) {
+            LOGGER.warn("Failed to read checkpoint. Read from the first segment.", e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Saves the checkpoint. It's written to a temporary file and renamed so
+     * that the previous checkpoint is kept if writing fails.
+     */
+    private void writeCheckpoint() throws IOException {
+        final File tempFile = new File(segmentDirectory, CHECKPOINT_FILE_NAME + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+        try {
+            out.writeLong(checkpointSegmentId);
+            out.writeLong(checkpointOffset);
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(checkpointFile)
+                && !(checkpointFile.delete() && tempFile.renameTo(checkpointFile))) {
+            throw new IOException("Failed to save checkpoint");
+        }
+    }
+
+    /**
+     * Moves the records of a text record file written by a previous version
+     * into the log, then deletes the file.
+     */
+    private void importLegacyRecords(File legacyFile) throws IOException {
+        if (!legacyFile.isFile()) {
+            return;
+        }
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(legacyFile), StringUtils.UTF8));
+        final FileRecordParser frp = new FileRecordParser();
+        int count = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    frp.parse(line);
+                } catch (final Exception e) {
+                    LOGGER.warn("Failed to read line. Skip.", e);
+                    continue;
+                }
+                if (put(frp.streamName, frp.bytes)) {
+                    count++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        LOGGER.debug(String.format("Imported %d records from %s", count, legacyFile.getName()));
+        if (!legacyFile.delete()) {
+            LOGGER.error("Failed to delete " + legacyFile.getName());
+        }
+    }
+
+    /**
+     * Reads one record. A record whose content doesn't match its checksum is
+     * returned as corrupted, so that reading can continue after it; only a
+     * length that doesn't fit in the segment stops reading.
+     *
+     * @param in the stream positioned at the start of a record
+     * @param remaining bytes left in the segment
+     * @return the record, or null if the end of the segment is reached or the
+     *         length of the record is invalid
+     */
+    private static Record readRecord(DataInputStream in, long remaining) throws IOException {
+        if (remaining < RECORD_HEADER_SIZE + STREAM_NAME_LENGTH_SIZE) {
+            return null;
+        }
+        final int length;
+        final int checksum;
+        final byte[] payload;
+        try {
+            length = in.readInt();
+            checksum = in.readInt();
+            if (length < STREAM_NAME_LENGTH_SIZE || length > remaining - RECORD_HEADER_SIZE) {
+                return null;
+            }
+            payload = new byte[length];
+            in.readFully(payload);
+        } catch (final EOFException e) {
+            return null;
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            return Record.corrupted(RECORD_HEADER_SIZE + length);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(payload);
+        final int nameLength = buffer.getShort() & MAX_STREAM_NAME_LENGTH;
+        if (nameLength > buffer.remaining()) {
+            return Record.corrupted(RECORD_HEADER_SIZE + length);
+        }
+        final String streamName = new String(payload, STREAM_NAME_LENGTH_SIZE, nameLength,
+                StringUtils.UTF8);
+        final byte[] data = new byte[length - STREAM_NAME_LENGTH_SIZE - nameLength];
+        System.arraycopy(payload, STREAM_NAME_LENGTH_SIZE + nameLength, data, 0, data.length);
+        return new Record(streamName, data, RECORD_HEADER_SIZE + length);
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (final IOException e) {
+                LOGGER.error("failed to close stream", e);
+            }
+        }
+    }
+
+    /**
+     * A record read from the log.
+     */
+    static final class Record {
+        final String streamName;
+        final byte[] data;
+        /** Size of the record in the log, including its prefix. **/
+        final int size;
+        /** Whether the content of the record can't be read. **/
+        final boolean corrupted;
+
+        Record(String streamName, byte[] data, int size) {
+            this(streamName, data, size, false);
+        }
+
+        private Record(String streamName, byte[] data, int size, boolean corrupted) {
+            this.streamName = streamName;
+            this.data = data;
+            this.size = size;
+            this.corrupted = corrupted;
+        }
+
+        static Record corrupted(int size) {
+            return new Record(null, null, size, true);
+        }
+    }
+
+    /**
+     * A position in the log.
+     */
+    static final class Position {
+        final long segmentId;
+        final long offset;
+
+        Position(long segmentId, long offset) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Iterates records from the checkpoint on. Records that have been read can
+     * be removed with {@link #removeReadRecords()}.
+     */
+    public class RecordIterator implements java.util.Iterator<Record> {
+        /** Position after the last record returned by next(). **/
+        private long readSegmentId;
+        private long readOffset;
+        private Record nextBuffer;
+        private DataInputStream reader;
+        private long readerSegmentId;
+        private long readerOffset;
+        private boolean started;
+
+        private void tryStart() {
+            if (!started) {
+                readSegmentId = checkpointSegmentId;
+                readOffset = checkpointOffset;
+                started = true;
+            }
+        }
+
+        /**
+         * Reads the record at the read position, moving on to the next
+         * segment when the current one has been read to the end.
+         */
+        private Record readNext() throws IOException {
+            tryStart();
+            while (true) {
+                if (!segmentIds.contains(readSegmentId)) {
+                    final Long next = segmentIds.higher(readSegmentId);
+                    if (next == null) {
+                        return null;
+                    }
+                    moveTo(next);
+                }
+                final File segment = segmentFile(readSegmentId);
+                final long length = segment.length();
+                if (reader == null || readerSegmentId != readSegmentId
+                        || readerOffset != readOffset) {
+                    tryCloseReader();
+                    reader = new DataInputStream(new BufferedInputStream(
+                            new FileInputStream(segment), READ_BUFFER_SIZE));
+                    if (readOffset > 0 && reader.skip(readOffset) != readOffset) {
+                        throw new IOException("Failed to seek in " + segment.getName());
+                    }
+                    readerSegmentId = readSegmentId;
+                    readerOffset = readOffset;
+                }
+                final Record record = readRecord(reader, length - readOffset);
+                if (record != null && record.corrupted) {
+                    LOGGER.warn("Skip corrupted record at " + readOffset + " in "
+                            + segment.getName());
+                    readerOffset += record.size;
+                    readOffset += record.size;
+                    continue;
+                }
+                if (record != null) {
+                    readerOffset += record.size;
+                    return record;
+                }
+                tryCloseReader();
+                final Long next = segmentIds.higher(readSegmentId);
+                if (readOffset < length) {
+                    // the length of a record is invalid, so the rest of the
+                    // segment can't be read
+                    LOGGER.warn("Skip corrupted records in " + segment.getName());
+                    if (next == null) {
+                        // append to a new segment rather than after the
+                        // corrupted records
+                        closeWriter();
+                    }
+                }
+                if (next == null) {
+                    return null;
+                }
+                moveTo(next);
+            }
+        }
+
+        private void moveTo(long segmentId) {
+            readSegmentId = segmentId;
+            readOffset = 0;
+        }
+
+        private void tryCloseReader() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peek() != null;
+        }
+
+        @Override
+        public Record next() {
+            accessLock.lock();
+            try {
+                final Record next = peek();
+                if (next != null) {
+                    readOffset += next.size;
+                    nextBuffer = null;
+                }
+                return next;
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        public Record peek() {
+            accessLock.lock();
+            try {
+                if (nextBuffer == null) {
+                    nextBuffer = readNext();
+                }
+                return nextBuffer;
+            } catch (final IOException ioe) {
+                throw new AmazonClientException("IO Error", ioe);
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "The remove() operation is not supported for this iterator");
+        }
+
+        /**
+         * Gets the position after the last record returned by next(). It can
+         * be passed to {@link #removeRecordsBefore(Position)} once the records
+         * read so far have been handled, while reading continues.
+         *
+         * @return the read position
+         */
+        public Position getReadPosition() {
+            accessLock.lock();
+            try {
+                tryStart();
+                return new Position(readSegmentId, readOffset);
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        /**
+         * Removes the records returned by next() so far. Segments that have
+         * been read completely are deleted.
+         *
+         * @throws IOException if the checkpoint can't be saved
+         */
+        public void removeReadRecords() throws IOException {
+            accessLock.lock();
+            try {
+                if (!started) {
+                    return;
+                }
+                tryCloseReader();
+                nextBuffer = null;
+                removeRecordsBefore(getReadPosition());
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        /**
+         * Removes the records before the given position, which must not be
+         * after the read position. Segments that have been read completely
+         * are deleted.
+         *
+         * @param position a position from {@link #getReadPosition()}
+         * @throws IOException if the checkpoint can't be saved
+         */
+        public void removeRecordsBefore(Position position) throws IOException {
+            accessLock.lock();
+            try {
+                long segmentId = position.segmentId;
+                long offset = position.offset;
+                if (segmentIds.contains(segmentId)
+                        && offset >= segmentFile(segmentId).length()) {
+                    // the segment has been read completely
+                    final Long next = segmentIds.higher(segmentId);
+                    if (next == null) {
+                        // appending continues in a new segment
+                        closeWriter();
+                        segmentId++;
+                    } else {
+                        segmentId = next;
+                    }
+                    offset = 0;
+                    if (readSegmentId == position.segmentId && readOffset == position.offset) {
+                        moveTo(segmentId);
+                    }
+                }
+                while (!segmentIds.isEmpty() && segmentIds.first() < segmentId) {
+                    final long deletedId = segmentIds.pollFirst();
+                    final File segment = segmentFile(deletedId);
+                    diskBytesUsed -= segment.length();
+                    if (!segment.delete()) {
+                        LOGGER.error("Failed to delete " + segment.getName());
+                    }
+                }
+                checkpointSegmentId = segmentId;
+                checkpointOffset = offset;
+                writeCheckpoint();
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        /**
+         * Removes all records in the store.
+         *
+         * @throws IOException if a segment can't be deleted
+         */
+        public void removeAllRecords() throws IOException {
+            accessLock.lock();
+            try {
+                tryCloseReader();
+                closeWriter();
+                nextBuffer = null;
+                final long nextSegmentId = segmentIds.isEmpty() ? checkpointSegmentId
+                        : segmentIds.last() + 1;
+                for (final Long segmentId : segmentIds) {
+                    final File segment = segmentFile(segmentId);
+                    if (segment.exists() && !segment.delete()) {
+                        throw new IOException("Failed to delete " + segment.getName());
+                    }
+                }
+                segmentIds.clear();
+                diskBytesUsed = 0;
+                checkpointSegmentId = nextSegmentId;
+                checkpointOffset = 0;
+                writeCheckpoint();
+                started = false;
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        public void close() throws IOException {
+            accessLock.lock();
+            try {
+                tryCloseReader();
+            } finally {
+                accessLock.unlock();
+            }
+        }
+    }
+}
@@ -204,7 +204,8 @@ public class AmazonKinesisClient extends AmazonWebServiceClient implements Amazo
      */
     public AmazonKinesisClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
@@ -208,7 +208,8 @@ public class AmazonKinesisFirehoseClient extends AmazonWebServiceClient implemen
      */
     public AmazonKinesisFirehoseClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
@@ -24,7 +24,7 @@ import static org.junit.Assert.fail;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
-import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.FileRecordStore.RecordIterator;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.SegmentedRecordStore.RecordIterator;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -32,14 +32,19 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(manifest = Config.NONE)
@@ -56,7 +61,7 @@ public class AbstractKinesisRecorderTest {
     static class MockAbstractKinesisRecorder extends AbstractKinesisRecorder {
         private RecordSender sender;
 
-        protected MockAbstractKinesisRecorder(FileRecordStore recordStore,
+        protected MockAbstractKinesisRecorder(SegmentedRecordStore recordStore,
                 KinesisRecorderConfig config) {
             super(recordStore, config);
         }
@@ -75,7 +80,8 @@ public class AbstractKinesisRecorderTest {
     public void setup() throws IOException {
         sender = Mockito.mock(RecordSender.class);
         KinesisRecorderConfig config = new KinesisRecorderConfig();
-        FileRecordStore recordStore = new FileRecordStore(temp.newFolder(), RECORD_FILE_NAME,
+        SegmentedRecordStore recordStore = new SegmentedRecordStore(temp.newFolder(),
+                RECORD_FILE_NAME,
                 config.getMaxStorageSize());
         MockAbstractKinesisRecorder mockRecorder = new MockAbstractKinesisRecorder(recordStore,
                 config);
@@ -276,6 +282,115 @@ public class AbstractKinesisRecorderTest {
         assertTrue("records not removed", recorder.getDiskBytesUsed() > 0);
     }
 
+    @Test
+    public void testSubmitAllRecordsPipelined() throws IOException {
+        AbstractKinesisRecorder pipelined = newRecorder(new KinesisRecorderConfig()
+                .withMaxConcurrentBatches(4));
+        // 1024 records spread over 8 batches of two streams
+        for (int i = 0; i < 512; i++) {
+            pipelined.saveRecord(randomBytes(1024), STREAM_NAME);
+        }
+        for (int i = 0; i < 512; i++) {
+            pipelined.saveRecord(randomBytes(1024), "another_stream");
+        }
+        Mockito.when(sender.sendBatch(Mockito.anyString(), Mockito.anyListOf(byte[].class)))
+                .thenReturn(new ArrayList<byte[]>());
+        pipelined.submitAllRecords();
+        Mockito.verify(sender, Mockito.times(8)).sendBatch(Mockito.anyString(),
+                Mockito.anyListOf(byte[].class));
+        assertEquals("no records after submitAllRecords", 0, pipelined.getDiskBytesUsed());
+    }
+
+    @Test
+    public void testSubmitAllRecordsPipelinedWithRecoverableFailures() throws IOException {
+        AbstractKinesisRecorder pipelined = newRecorder(new KinesisRecorderConfig()
+                .withMaxConcurrentBatches(4));
+        for (int i = 0; i < 512; i++) {
+            pipelined.saveRecord(randomBytes(1024), STREAM_NAME);
+        }
+        long size = pipelined.getDiskBytesUsed();
+        AmazonServiceException ase = new AmazonServiceException("some failures");
+        Mockito.when(sender.sendBatch(Mockito.anyString(), Mockito.anyListOf(byte[].class)))
+                .thenThrow(ase);
+        Mockito.when(sender.isRecoverable(ase)).thenReturn(true);
+        try {
+            pipelined.submitAllRecords();
+            fail("Should throw exception");
+        } catch (AmazonClientException ace) {
+            assertSame("same exception", ase, ace);
+        }
+        assertEquals("no records sent", size, pipelined.getDiskBytesUsed());
+    }
+
+    @Test
+    public void testSubmitAllRecordsPipelinedRemovesBatchesSentBeforeFailure()
+            throws IOException {
+        AbstractKinesisRecorder pipelined = newRecorder(new KinesisRecorderConfig()
+                .withMaxConcurrentBatches(4));
+        // one batch per stream
+        for (String streamName : Arrays.asList("first", "second", "third")) {
+            for (int i = 0; i < 10; i++) {
+                pipelined.saveRecord(randomBytes(1024), streamName);
+            }
+        }
+        AmazonServiceException ase = new AmazonServiceException("offline");
+        Mockito.when(sender.sendBatch(Mockito.anyString(), Mockito.anyListOf(byte[].class)))
+                .thenReturn(new ArrayList<byte[]>());
+        Mockito.when(sender.sendBatch(Mockito.eq("first"), Mockito.anyListOf(byte[].class)))
+                .thenThrow(ase);
+        Mockito.when(sender.isRecoverable(ase)).thenReturn(true);
+        try {
+            pipelined.submitAllRecords();
+            fail("Should throw exception");
+        } catch (AmazonClientException ace) {
+            assertSame("same exception", ase, ace);
+        }
+        Mockito.verify(sender).sendBatch(Mockito.eq("second"), Mockito.anyListOf(byte[].class));
+        Mockito.verify(sender).sendBatch(Mockito.eq("third"), Mockito.anyListOf(byte[].class));
+
+        // only the failed batch is kept and sent again
+        assertEquals("failed batch kept", 10 * 1024 + 10 * (8 + 2 + "first".length()),
+                pipelined.getDiskBytesUsed());
+        Mockito.reset(sender);
+        Mockito.when(sender.sendBatch(Mockito.anyString(), Mockito.anyListOf(byte[].class)))
+                .thenReturn(new ArrayList<byte[]>());
+        pipelined.submitAllRecords();
+        Mockito.verify(sender).sendBatch(Mockito.eq("first"), Mockito.anyListOf(byte[].class));
+        Mockito.verifyNoMoreInteractions(sender);
+        assertEquals("no records after submitAllRecords", 0, pipelined.getDiskBytesUsed());
+    }
+
+    @Test
+    public void testSubmitAllRecordsPipelinedReusesThreads() throws IOException {
+        AbstractKinesisRecorder pipelined = newRecorder(new KinesisRecorderConfig()
+                .withMaxConcurrentBatches(2));
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        Mockito.when(sender.sendBatch(Mockito.anyString(), Mockito.anyListOf(byte[].class)))
+                .thenAnswer(new Answer<List<byte[]>>() {
+                    @Override
+                    public List<byte[]> answer(InvocationOnMock invocation) {
+                        threads.add(Thread.currentThread());
+                        return new ArrayList<byte[]>();
+                    }
+                });
+        for (int i = 0; i < 5; i++) {
+            pipelined.saveRecord(randomBytes(1024), STREAM_NAME);
+            pipelined.saveRecord(randomBytes(1024), "another_stream");
+            pipelined.submitAllRecords();
+        }
+        assertTrue("threads reused", threads.size() <= 2);
+        assertEquals("no records after submitAllRecords", 0, pipelined.getDiskBytesUsed());
+    }
+
+    private AbstractKinesisRecorder newRecorder(KinesisRecorderConfig config) throws IOException {
+        SegmentedRecordStore recordStore = new SegmentedRecordStore(temp.newFolder(),
+                RECORD_FILE_NAME, config.getMaxStorageSize());
+        MockAbstractKinesisRecorder mockRecorder = new MockAbstractKinesisRecorder(recordStore,
+                config);
+        mockRecorder.setRecordSender(sender);
+        return mockRecorder;
+    }
+
     private byte[] randomBytes(int length) {
         byte[] data = new byte[length];
         new Random().nextBytes(data);
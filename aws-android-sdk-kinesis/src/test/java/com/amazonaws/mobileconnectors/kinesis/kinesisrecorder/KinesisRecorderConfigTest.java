@@ -58,11 +58,13 @@ public class KinesisRecorderConfigTest {
     public void copyConstructor() {
         KinesisRecorderConfig kConfig = new KinesisRecorderConfig();
         kConfig.withMaxStorageSize(5);
+        kConfig.withMaxConcurrentBatches(4);
 
         KinesisRecorderConfig copiedConfig = new KinesisRecorderConfig(kConfig);
 
         assertEquals(kConfig.getMaxStorageSize(),
                 copiedConfig.getMaxStorageSize());
+        assertEquals(4, copiedConfig.getMaxConcurrentBatches());
 
     }
 
@@ -72,6 +74,9 @@ public class KinesisRecorderConfigTest {
         KinesisRecorderConfig kConfig = new KinesisRecorderConfig();
         kConfig.withMaxStorageSize(100);
         assertEquals(kConfig.getMaxStorageSize(), 100);
+        assertEquals(1, kConfig.getMaxConcurrentBatches());
+        kConfig.withMaxConcurrentBatches(3);
+        assertEquals(3, kConfig.getMaxConcurrentBatches());
     }
 
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.SegmentedRecordStore.Record;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.SegmentedRecordStore.RecordIterator;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+public class SegmentedRecordStoreTest {
+
+    private static final String STREAM_NAME = "stream";
+    private static final String RECORD_FILE_NAME = "records";
+    private static final long MAX_STORAGE_SIZE = 1024 * 1024 * 5L;
+    private static final long SEGMENT_SIZE = 100L;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testPutIterateAndRemoveAcrossSegments() throws IOException {
+        File directory = temp.newFolder();
+        SegmentedRecordStore store = new SegmentedRecordStore(directory, RECORD_FILE_NAME,
+                MAX_STORAGE_SIZE, SEGMENT_SIZE);
+        for (int i = 1; i <= 10; i++) {
+            assertTrue(store.put(STREAM_NAME, bytes(i)));
+        }
+        assertTrue("records span several segments", segmentFiles(directory).length > 1);
+
+        RecordIterator iter = store.iterator();
+        int counter = 0;
+        while (iter.hasNext()) {
+            counter++;
+            Record record = iter.next();
+            assertEquals(STREAM_NAME, record.streamName);
+            assertArrayEquals(bytes(counter), record.data);
+            if (counter % 5 == 0) {
+                iter.removeReadRecords();
+            }
+        }
+        assertEquals(10, counter);
+        assertNull(iter.next());
+        iter.close();
+        assertEquals("all records removed", 0, store.getDiskBytesUsed());
+        assertEquals("all segments deleted", 0, segmentFiles(directory).length);
+
+        // appending continues after everything has been removed
+        assertTrue(store.put(STREAM_NAME, bytes(11)));
+        iter = store.iterator();
+        assertArrayEquals(bytes(11), iter.peek().data);
+        assertArrayEquals(bytes(11), iter.next().data);
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testCheckpointSurvivesRestart() throws IOException {
+        File directory = temp.newFolder();
+        SegmentedRecordStore store = new SegmentedRecordStore(directory, RECORD_FILE_NAME,
+                MAX_STORAGE_SIZE, SEGMENT_SIZE);
+        for (int i = 1; i <= 10; i++) {
+            store.put(STREAM_NAME, bytes(i));
+        }
+        RecordIterator iter = store.iterator();
+        for (int i = 0; i < 4; i++) {
+            iter.next();
+        }
+        iter.removeReadRecords();
+        // read but not removed
+        iter.next();
+        iter.close();
+
+        store = new SegmentedRecordStore(directory, RECORD_FILE_NAME, MAX_STORAGE_SIZE,
+                SEGMENT_SIZE);
+        iter = store.iterator();
+        for (int i = 5; i <= 10; i++) {
+            assertArrayEquals(bytes(i), iter.next().data);
+        }
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testCorruptedTailIsTruncated() throws IOException {
+        File directory = temp.newFolder();
+        SegmentedRecordStore store = new SegmentedRecordStore(directory, RECORD_FILE_NAME,
+                MAX_STORAGE_SIZE);
+        store.put(STREAM_NAME, bytes(1));
+        store.put(STREAM_NAME, bytes(2));
+        long size = store.getDiskBytesUsed();
+
+        // simulate a write cut off by a crash
+        File[] segments = segmentFiles(directory);
+        assertEquals(1, segments.length);
+        OutputStream out = new FileOutputStream(segments[0], true);
+        out.write(new byte[] {
+                0, 0, 0, 100, 1, 2, 3
+        });
+        out.close();
+
+        store = new SegmentedRecordStore(directory, RECORD_FILE_NAME, MAX_STORAGE_SIZE);
+        assertEquals(size, store.getDiskBytesUsed());
+        store.put(STREAM_NAME, bytes(3));
+        RecordIterator iter = store.iterator();
+        for (int i = 1; i <= 3; i++) {
+            assertArrayEquals(bytes(i), iter.next().data);
+        }
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testCorruptedRecordIsSkipped() throws IOException {
+        File directory = temp.newFolder();
+        SegmentedRecordStore store = new SegmentedRecordStore(directory, RECORD_FILE_NAME,
+                MAX_STORAGE_SIZE);
+        for (int i = 1; i <= 3; i++) {
+            store.put(STREAM_NAME, bytes(i));
+        }
+        long size = store.getDiskBytesUsed();
+
+        // flip a byte in the data of the second record; each record is 20
+        // bytes and its data starts after 16
+        File[] segments = segmentFiles(directory);
+        assertEquals(1, segments.length);
+        RandomAccessFile raf = new RandomAccessFile(segments[0], "rw");
+        raf.seek(20 + 16);
+        raf.write('x');
+        raf.close();
+
+        store = new SegmentedRecordStore(directory, RECORD_FILE_NAME, MAX_STORAGE_SIZE);
+        assertEquals("records after the corrupted one are kept", size,
+                store.getDiskBytesUsed());
+        RecordIterator iter = store.iterator();
+        assertArrayEquals(bytes(1), iter.next().data);
+        assertArrayEquals(bytes(3), iter.next().data);
+        assertFalse(iter.hasNext());
+        iter.removeReadRecords();
+        assertEquals(0, store.getDiskBytesUsed());
+    }
+
+    @Test
+    public void testWhenWritingExceedsMaxStorageSize_noMoreRecordsWritten() throws IOException {
+        // each record is 8 bytes of prefix, 2 + 6 bytes of stream name and 4
+        // bytes of data
+        SegmentedRecordStore store = new SegmentedRecordStore(temp.newFolder(),
+                RECORD_FILE_NAME, 100L);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(store.put(STREAM_NAME, bytes(i)));
+        }
+        assertEquals(100L, store.getDiskBytesUsed());
+        assertFalse(store.put(STREAM_NAME, bytes(5)));
+        assertEquals(100L, store.getDiskBytesUsed());
+    }
+
+    @Test
+    public void testRemoveAllRecords() throws IOException {
+        File directory = temp.newFolder();
+        SegmentedRecordStore store = new SegmentedRecordStore(directory, RECORD_FILE_NAME,
+                MAX_STORAGE_SIZE, SEGMENT_SIZE);
+        for (int i = 0; i < 10; i++) {
+            store.put(STREAM_NAME, bytes(i));
+        }
+        store.iterator().removeAllRecords();
+        assertEquals(0, store.getDiskBytesUsed());
+        assertEquals(0, segmentFiles(directory).length);
+        assertFalse(store.iterator().hasNext());
+    }
+
+    @Test
+    public void testImportLegacyRecords() throws IOException {
+        File directory = temp.newFolder();
+        File recordsDir = new File(directory, Constants.RECORDS_DIRECTORY);
+        recordsDir.mkdirs();
+        File legacyFile = new File(recordsDir, RECORD_FILE_NAME);
+        OutputStream out = new FileOutputStream(legacyFile);
+        for (int i = 0; i < 3; i++) {
+            out.write((FileRecordParser.asString(STREAM_NAME, bytes(i)) + "\n")
+                    .getBytes(StringUtils.UTF8));
+        }
+        out.close();
+
+        SegmentedRecordStore store = new SegmentedRecordStore(directory, RECORD_FILE_NAME,
+                MAX_STORAGE_SIZE);
+        assertFalse("legacy file deleted", legacyFile.exists());
+        RecordIterator iter = store.iterator();
+        for (int i = 0; i < 3; i++) {
+            Record record = iter.next();
+            assertEquals(STREAM_NAME, record.streamName);
+            assertArrayEquals(bytes(i), record.data);
+        }
+        assertFalse(iter.hasNext());
+    }
+
+    private byte[] bytes(int i) {
+        return String.format("%04d", i).getBytes(StringUtils.UTF8);
+    }
+
+    private File[] segmentFiles(File directory) {
+        File segmentDirectory = new File(new File(directory, Constants.RECORDS_DIRECTORY),
+                RECORD_FILE_NAME + SegmentedRecordStore.SEGMENT_DIRECTORY_SUFFIX);
+        return segmentDirectory.listFiles(new java.io.FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SegmentedRecordStore.SEGMENT_FILE_SUFFIX);
+            }
+        });
+    }
+}
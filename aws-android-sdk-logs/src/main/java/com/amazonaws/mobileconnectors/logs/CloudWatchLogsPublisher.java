@@ -0,0 +1,651 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.logs;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.logs.AmazonCloudWatchLogs;
+import com.amazonaws.services.logs.model.CreateLogStreamRequest;
+import com.amazonaws.services.logs.model.DataAlreadyAcceptedException;
+import com.amazonaws.services.logs.model.InputLogEvent;
+import com.amazonaws.services.logs.model.InvalidParameterException;
+import com.amazonaws.services.logs.model.InvalidSequenceTokenException;
+import com.amazonaws.services.logs.model.PutLogEventsRequest;
+import com.amazonaws.services.logs.model.PutLogEventsResult;
+import com.amazonaws.services.logs.model.RejectedLogEventsInfo;
+import com.amazonaws.services.logs.model.ResourceAlreadyExistsException;
+import com.amazonaws.services.logs.model.ResourceNotFoundException;
+import com.amazonaws.util.StringUtils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes log events to Amazon CloudWatch Logs in batches.
+ * <p>
+ * Logging an event only adds it to a lock-free in-memory queue. Queued events
+ * are sent by a background thread every {@code flushIntervalMillis}, as soon
+ * as a full batch is waiting, or when {@link #flush()} is called. Each log
+ * stream's events are sorted by timestamp and sent in as few PutLogEvents
+ * calls as the service limits allow: 10,000 events, 1,048,576 bytes and a
+ * span of 24 hours per call.
+ * <p>
+ * The sequence token returned by each call is kept per log stream. When the
+ * service rejects a token, the call is retried right away with the token the
+ * error reports, without describing the stream. Log streams that do not exist
+ * yet are created; their log group must exist.
+ * <p>
+ * Events the service rejects are logged and dropped. When a whole call is
+ * rejected as invalid, its events are sent again in halves to find the
+ * invalid ones, so that the valid events are still sent.
+ * <p>
+ * If a directory is given, events that could not be sent are saved there
+ * after every send and loaded again when a publisher is created on the same
+ * directory, so they survive the application being restarted. Events logged
+ * since the last send are only held in memory.
+ */
+public class CloudWatchLogsPublisher {
+    private static final Log LOGGER = LogFactory.getLog(CloudWatchLogsPublisher.class);
+
+    /** Maximum number of events in one PutLogEvents call. */
+    static final int MAX_BATCH_EVENTS = 10000;
+
+    /**
+     * Maximum size of one PutLogEvents call, counted as the UTF-8 size of the
+     * messages plus {@code EVENT_OVERHEAD_BYTES} for each event.
+     */
+    static final int MAX_BATCH_BYTES = 1048576;
+
+    static final int EVENT_OVERHEAD_BYTES = 26;
+
+    /** Maximum size of one event, overhead included. */
+    static final int MAX_EVENT_BYTES = 262144;
+
+    /** Maximum time between the first and last events of one call. */
+    static final long MAX_BATCH_SPAN_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private static final int MAX_PUT_ATTEMPTS = 4;
+
+    /**
+     * Maximum number of calls made to find the invalid events of a batch the
+     * service rejected as invalid. Enough to find a few invalid events in a
+     * full batch; the events not sent by then are dropped.
+     */
+    static final int MAX_SPLIT_CALLS = 32;
+
+    private static final String PENDING_FILE_NAME = "cloudwatch-logs-pending";
+    private static final int PENDING_FILE_MAGIC = 0x434c4f47;
+    private static final int PENDING_FILE_VERSION = 1;
+
+    private static final Comparator<LogEvent> BY_TIMESTAMP = new Comparator<LogEvent>() {
+        @Override
+        public int compare(LogEvent left, LogEvent right) {
+            return left.timestamp < right.timestamp ? -1
+                    : (left.timestamp == right.timestamp ? 0 : 1);
+        }
+    };
+
+    private final AmazonCloudWatchLogs client;
+    private final CloudWatchLogsPublisherConfig config;
+    private final File pendingFile;
+    private final int flushThreshold;
+
+    private final ConcurrentLinkedQueue<LogEvent> queue = new ConcurrentLinkedQueue<LogEvent>();
+    private final AtomicInteger queuedEvents = new AtomicInteger();
+    private final AtomicInteger bufferedEvents = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean shutDown;
+
+    /** Events taken off the queue that were not sent yet. Guarded by this. */
+    private final List<LogEvent> unsent = new ArrayList<LogEvent>();
+
+    /** Next sequence token of each log stream. Guarded by this. */
+    private final Map<String, String> sequenceTokens = new HashMap<String, String>();
+
+    private final Runnable backgroundFlush = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            try {
+                flush();
+            } catch (final AmazonClientException e) {
+                // the events are kept and sent again next time
+            } catch (final RuntimeException e) {
+                // keep the scheduler alive for the next flush
+                LOGGER.error("Failed to flush log events", e);
+            }
+        }
+    };
+
+    /**
+     * Creates a publisher that only keeps events in memory, with the default
+     * configuration.
+     *
+     * @param client the client used to send events
+     */
+    public CloudWatchLogsPublisher(AmazonCloudWatchLogs client) {
+        this(client, null, new CloudWatchLogsPublisherConfig());
+    }
+
+    /**
+     * Creates a publisher, loading any events a previous publisher on the same
+     * directory could not send.
+     *
+     * @param client the client used to send events
+     * @param directory directory in which unsent events are saved, or null to
+     *            only keep them in memory
+     * @param config configuration
+     */
+    public CloudWatchLogsPublisher(AmazonCloudWatchLogs client, File directory,
+            CloudWatchLogsPublisherConfig config) {
+        if (client == null) {
+            throw new IllegalArgumentException("Client can't be null");
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("Config can't be null");
+        }
+        this.client = client;
+        this.config = new CloudWatchLogsPublisherConfig(config);
+        this.flushThreshold = Math.max(1,
+                Math.min(MAX_BATCH_EVENTS, this.config.getMaxBufferedEvents() / 2));
+
+        if (directory != null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalArgumentException("Can't create directory " + directory);
+            }
+            pendingFile = new File(directory, PENDING_FILE_NAME);
+            loadUnsent();
+        } else {
+            pendingFile = null;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "cloudwatch-logs-publisher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final long interval = this.config.getFlushIntervalMillis();
+        if (interval > 0) {
+            scheduler.scheduleWithFixedDelay(backgroundFlush, interval, interval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Logs a message with the current time.
+     *
+     * @see #log(String, String, long, String)
+     */
+    public boolean log(String logGroupName, String logStreamName, String message) {
+        return log(logGroupName, logStreamName, System.currentTimeMillis(), message);
+    }
+
+    /**
+     * Queues a log event to be sent later. This method does not block.
+     *
+     * @param logGroupName the log group, which must exist
+     * @param logStreamName the log stream, created if it does not exist
+     * @param timestamp the time of the event in milliseconds since the epoch
+     * @param message the message
+     * @return false if the event was dropped because {@code maxBufferedEvents}
+     *         events are already buffered
+     */
+    public boolean log(String logGroupName, String logStreamName, long timestamp,
+            String message) {
+        if (logGroupName == null || logStreamName == null || message == null) {
+            throw new IllegalArgumentException(
+                    "Log group name, log stream name and message can't be null");
+        }
+        if (shutDown) {
+            throw new AmazonClientException("The publisher has been shut down.");
+        }
+        final int size = utf8Length(message) + EVENT_OVERHEAD_BYTES;
+        if (size > MAX_EVENT_BYTES) {
+            throw new IllegalArgumentException("Log event message exceeds "
+                    + (MAX_EVENT_BYTES - EVENT_OVERHEAD_BYTES) + " bytes");
+        }
+        if (bufferedEvents.incrementAndGet() > config.getMaxBufferedEvents()) {
+            bufferedEvents.decrementAndGet();
+            return false;
+        }
+        queue.add(new LogEvent(logGroupName, logStreamName, timestamp, message, size));
+        if (queuedEvents.incrementAndGet() >= flushThreshold
+                && flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(backgroundFlush);
+            } catch (final RejectedExecutionException e) {
+                flushScheduled.set(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of events logged or loaded that were not sent yet
+     */
+    public int getBufferedEventCount() {
+        return bufferedEvents.get();
+    }
+
+    /**
+     * Sends all buffered events. Events of a log stream that fail to be sent
+     * are kept, and saved to disk if the publisher has a directory; other log
+     * streams are still sent unless the service could not be reached. Events
+     * the service rejects are logged and dropped. Note: this method makes
+     * synchronous calls, do not call it on the main thread of your
+     * application.
+     *
+     * @return the number of events sent
+     * @throws AmazonClientException the first error that kept events from
+     *             being sent, after the other log streams have been sent
+     */
+    public synchronized int flush() {
+        LogEvent event;
+        while ((event = queue.poll()) != null) {
+            queuedEvents.decrementAndGet();
+            unsent.add(event);
+        }
+        if (unsent.isEmpty()) {
+            return 0;
+        }
+
+        final Map<String, List<LogEvent>> byStream = new LinkedHashMap<String, List<LogEvent>>();
+        for (final LogEvent e : unsent) {
+            List<LogEvent> events = byStream.get(e.streamKey);
+            if (events == null) {
+                events = new ArrayList<LogEvent>();
+                byStream.put(e.streamKey, events);
+            }
+            events.add(e);
+        }
+        final int total = unsent.size();
+        unsent.clear();
+
+        int sent = 0;
+        AmazonClientException failure = null;
+        // events of a partly sent batch that were sent or dropped
+        final Set<LogEvent> settled = new HashSet<LogEvent>();
+        for (final List<LogEvent> events : byStream.values()) {
+            // stable, so events with the same timestamp keep their order
+            Collections.sort(events, BY_TIMESTAMP);
+            int start = 0;
+            while (start < events.size()) {
+                if (failure != null && !(failure instanceof AmazonServiceException)) {
+                    // the service can't be reached, don't try other streams
+                    break;
+                }
+                final int end = batchEnd(events, start);
+                try {
+                    sent += sendBatch(events.subList(start, end), settled);
+                } catch (final AmazonClientException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    break;
+                } catch (final RuntimeException e) {
+                    // keep the events rather than losing them to a bug
+                    if (failure == null) {
+                        failure = new AmazonClientException("Unable to send log events", e);
+                    }
+                    break;
+                }
+                start = end;
+            }
+            for (final LogEvent e : events.subList(start, events.size())) {
+                if (!settled.contains(e)) {
+                    unsent.add(e);
+                }
+            }
+        }
+        bufferedEvents.addAndGet(unsent.size() - total);
+        saveUnsent();
+
+        if (failure != null) {
+            throw failure;
+        }
+        return sent;
+    }
+
+    /**
+     * Stops the background sends and sends the buffered events one last time.
+     * Events that can't be sent are saved to disk if the publisher has a
+     * directory. Events can't be logged afterwards.
+     *
+     * @throws AmazonClientException if some events could not be sent
+     */
+    public void shutdown() {
+        shutDown = true;
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * @return the index after the last of the events from {@code start} that
+     *         fit in one call; events must be sorted by timestamp
+     */
+    private static int batchEnd(List<LogEvent> events, int start) {
+        final long first = events.get(start).timestamp;
+        int bytes = 0;
+        int end = start;
+        while (end < events.size() && end - start < MAX_BATCH_EVENTS) {
+            final LogEvent e = events.get(end);
+            if (bytes + e.size > MAX_BATCH_BYTES || e.timestamp - first > MAX_BATCH_SPAN_MILLIS) {
+                break;
+            }
+            bytes += e.size;
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Sends one batch of events. If the service rejects the batch as invalid,
+     * its halves are sent on their own, and so on until only the invalid
+     * events are left, which are dropped.
+     *
+     * @param settled receives the events that were sent or dropped, for when
+     *            a later call fails
+     * @return the number of events the service accepted
+     */
+    private int sendBatch(List<LogEvent> batch, Set<LogEvent> settled) {
+        final int[] callsLeft = {
+                MAX_SPLIT_CALLS
+        };
+        return sendOrSplit(batch, settled, callsLeft);
+    }
+
+    private int sendOrSplit(List<LogEvent> batch, Set<LogEvent> settled, int[] callsLeft) {
+        if (callsLeft[0] <= 0) {
+            drop(batch, "the invalid events of their batch could not be found");
+            settled.addAll(batch);
+            return 0;
+        }
+        callsLeft[0]--;
+        try {
+            final int accepted = putLogEvents(batch);
+            settled.addAll(batch);
+            return accepted;
+        } catch (final InvalidParameterException e) {
+            if (batch.size() == 1) {
+                // sending it again would fail again
+                drop(batch, e.getMessage());
+                settled.addAll(batch);
+                return 0;
+            }
+            final int middle = batch.size() / 2;
+            return sendOrSplit(batch.subList(0, middle), settled, callsLeft)
+                    + sendOrSplit(batch.subList(middle, batch.size()), settled, callsLeft);
+        }
+    }
+
+    private static void drop(List<LogEvent> batch, String reason) {
+        final LogEvent head = batch.get(0);
+        LOGGER.warn(String.format("Dropped %d log events of %s/%s rejected as invalid: %s",
+                batch.size(), head.logGroupName, head.logStreamName, reason));
+    }
+
+    /**
+     * Sends one batch of events of a single log stream, keeping its sequence
+     * token up to date.
+     *
+     * @return the number of events the service accepted
+     */
+    private int putLogEvents(List<LogEvent> batch) {
+        final LogEvent head = batch.get(0);
+        final List<InputLogEvent> inputs = new ArrayList<InputLogEvent>(batch.size());
+        for (final LogEvent e : batch) {
+            inputs.add(new InputLogEvent().withTimestamp(e.timestamp).withMessage(e.message));
+        }
+        final PutLogEventsRequest request = new PutLogEventsRequest(head.logGroupName,
+                head.logStreamName, inputs);
+
+        boolean createdStream = false;
+        for (int attempt = 1;; attempt++) {
+            request.setSequenceToken(sequenceTokens.get(head.streamKey));
+            try {
+                final PutLogEventsResult result = client.putLogEvents(request);
+                sequenceTokens.put(head.streamKey, result.getNextSequenceToken());
+                return batch.size() - logRejected(head, batch.size(),
+                        result.getRejectedLogEventsInfo());
+            } catch (final InvalidSequenceTokenException e) {
+                if (attempt >= MAX_PUT_ATTEMPTS) {
+                    throw e;
+                }
+                sequenceTokens.put(head.streamKey, sequenceToken(e.getExpectedSequenceToken()));
+            } catch (final DataAlreadyAcceptedException e) {
+                // an earlier send of this batch went through
+                sequenceTokens.put(head.streamKey, sequenceToken(e.getExpectedSequenceToken()));
+                return batch.size();
+            } catch (final ResourceNotFoundException e) {
+                if (createdStream || attempt >= MAX_PUT_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    client.createLogStream(new CreateLogStreamRequest(head.logGroupName,
+                            head.logStreamName));
+                } catch (final ResourceAlreadyExistsException ignored) {
+                    // created by someone else in the meantime
+                }
+                sequenceTokens.remove(head.streamKey);
+                createdStream = true;
+            }
+        }
+    }
+
+    /**
+     * Logs the ranges of events of a call that the service rejected. Events
+     * before the too old and expired end indexes and from the too new start
+     * index are rejected.
+     *
+     * @return the number of events rejected
+     */
+    private static int logRejected(LogEvent head, int count, RejectedLogEventsInfo info) {
+        if (info == null) {
+            return 0;
+        }
+        final int tooOldEnd = index(info.getTooOldLogEventEndIndex(), 0, count);
+        final int expiredEnd = index(info.getExpiredLogEventEndIndex(), 0, count);
+        final int rejectedEnd = Math.max(tooOldEnd, expiredEnd);
+        final int tooNewStart = Math.max(rejectedEnd,
+                index(info.getTooNewLogEventStartIndex(), count, count));
+        if (tooOldEnd > 0) {
+            LOGGER.warn(String.format("Log events 0-%d of %d sent to %s/%s were too old",
+                    tooOldEnd - 1, count, head.logGroupName, head.logStreamName));
+        }
+        if (expiredEnd > 0) {
+            LOGGER.warn(String.format("Log events 0-%d of %d sent to %s/%s were expired",
+                    expiredEnd - 1, count, head.logGroupName, head.logStreamName));
+        }
+        if (tooNewStart < count) {
+            LOGGER.warn(String.format("Log events %d-%d of %d sent to %s/%s were too new",
+                    tooNewStart, count - 1, count, head.logGroupName, head.logStreamName));
+        }
+        return rejectedEnd + count - tooNewStart;
+    }
+
+    /**
+     * @return the index clamped to [0, count], or the default if it is null
+     */
+    private static int index(Integer index, int defaultIndex, int count) {
+        return index == null ? defaultIndex : Math.max(0, Math.min(count, index));
+    }
+
+    /**
+     * The expected token of an error is missing when the stream expects none;
+     * the error unmarshaller turns a missing value into "null".
+     */
+    private static String sequenceToken(String expected) {
+        return expected == null || "null".equals(expected) ? null : expected;
+    }
+
+    /**
+     * Replaces the saved events with the unsent ones. A failure to save is
+     * ignored: the events are still in memory and saved again after the next
+     * send.
+     */
+    private void saveUnsent() {
+        if (pendingFile == null) {
+            return;
+        }
+        if (unsent.isEmpty()) {
+            pendingFile.delete();
+            return;
+        }
+        final File temp = new File(pendingFile.getPath() + ".tmp");
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp)));
+            try {
+                out.writeInt(PENDING_FILE_MAGIC);
+                out.writeInt(PENDING_FILE_VERSION);
+                out.writeInt(unsent.size());
+                for (final LogEvent e : unsent) {
+                    out.writeUTF(e.logGroupName);
+                    out.writeUTF(e.logStreamName);
+                    out.writeLong(e.timestamp);
+                    final byte[] message = e.message.getBytes(StringUtils.UTF8);
+                    out.writeInt(message.length);
+                    out.write(message);
+                }
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(pendingFile)) {
+                pendingFile.delete();
+                if (!temp.renameTo(pendingFile)) {
+                    temp.delete();
+                }
+            }
+        } catch (final IOException e) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Loads the events saved by a previous publisher. A file that can't be
+     * read is deleted.
+     */
+    private void loadUnsent() {
+        if (!pendingFile.isFile()) {
+            return;
+        }
+        final List<LogEvent> loaded = new ArrayList<LogEvent>();
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(pendingFile)));
+            try {
+                if (in.readInt() != PENDING_FILE_MAGIC || in.readInt() != PENDING_FILE_VERSION) {
+                    throw new IOException("Unrecognized file " + pendingFile);
+                }
+                final int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    final String logGroupName = in.readUTF();
+                    final String logStreamName = in.readUTF();
+                    final long timestamp = in.readLong();
+                    final int length = in.readInt();
+                    if (length < 0 || length > MAX_EVENT_BYTES) {
+                        throw new IOException("Corrupted file " + pendingFile);
+                    }
+                    final byte[] message = new byte[length];
+                    in.readFully(message);
+                    loaded.add(new LogEvent(logGroupName, logStreamName, timestamp,
+                            new String(message, StringUtils.UTF8),
+                            length + EVENT_OVERHEAD_BYTES));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (final IOException e) {
+            pendingFile.delete();
+            return;
+        }
+        synchronized (this) {
+            unsent.addAll(loaded);
+        }
+        bufferedEvents.addAndGet(loaded.size());
+    }
+
+    /**
+     * @return the number of bytes of the UTF-8 encoding of the string
+     */
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static final class LogEvent {
+        final String logGroupName;
+        final String logStreamName;
+        final String streamKey;
+        final long timestamp;
+        final String message;
+        final int size;
+
+        LogEvent(String logGroupName, String logStreamName, long timestamp, String message,
+                int size) {
+            this.logGroupName = logGroupName;
+            this.logStreamName = logStreamName;
+            this.streamKey = logGroupName + '\n' + logStreamName;
+            this.timestamp = timestamp;
+            this.message = message;
+            this.size = size;
+        }
+    }
+}
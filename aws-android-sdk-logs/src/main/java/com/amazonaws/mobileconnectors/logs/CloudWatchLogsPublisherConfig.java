@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.logs;
+
+/**
+ * Allows configuration of certain CloudWatchLogsPublisher parameters, such as
+ * the number of events it may buffer and how often it sends them.
+ */
+public class CloudWatchLogsPublisherConfig {
+
+    private static final int DEFAULT_MAX_BUFFERED_EVENTS = 10000;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 30 * 1000L;
+
+    private int maxBufferedEvents = DEFAULT_MAX_BUFFERED_EVENTS;
+    private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+
+    /**
+     * Construct an instance of CloudWatchLogsPublisherConfig which has default
+     * values of maxBufferedEvents = 10000 and flushIntervalMillis = 30
+     * seconds.
+     */
+    public CloudWatchLogsPublisherConfig() {
+    }
+
+    /**
+     * Creates a copy of the passed in CloudWatchLogsPublisherConfig.
+     *
+     * @param other the CloudWatchLogsPublisherConfig to copy.
+     */
+    public CloudWatchLogsPublisherConfig(CloudWatchLogsPublisherConfig other) {
+        this.maxBufferedEvents = other.maxBufferedEvents;
+        this.flushIntervalMillis = other.flushIntervalMillis;
+    }
+
+    /**
+     * Sets the maximum number of events the publisher holds, counting both
+     * the events waiting to be sent and those that failed to be sent. Events
+     * logged beyond this limit are dropped.
+     *
+     * @param maxBufferedEvents the maximum number of buffered events.
+     * @return This class for chaining
+     */
+    public CloudWatchLogsPublisherConfig withMaxBufferedEvents(int maxBufferedEvents) {
+        if (maxBufferedEvents < 1) {
+            throw new IllegalArgumentException("maxBufferedEvents must be at least 1");
+        }
+        this.maxBufferedEvents = maxBufferedEvents;
+        return this;
+    }
+
+    /**
+     * @return The maximum number of events the publisher holds.
+     */
+    public int getMaxBufferedEvents() {
+        return this.maxBufferedEvents;
+    }
+
+    /**
+     * Sets how often buffered events are sent in the background. Events are
+     * also sent as soon as a full batch is waiting. A value of zero disables
+     * the periodic send, leaving it to {@code flush()}.
+     *
+     * @param flushIntervalMillis the time between background sends in
+     *            milliseconds.
+     * @return This class for chaining
+     */
+    public CloudWatchLogsPublisherConfig withFlushIntervalMillis(long flushIntervalMillis) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("flushIntervalMillis can't be negative");
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+        return this;
+    }
+
+    /**
+     * @return The time between background sends in milliseconds, or zero if
+     *         events are only sent by {@code flush()}.
+     */
+    public long getFlushIntervalMillis() {
+        return this.flushIntervalMillis;
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A high level publisher for Amazon CloudWatch Logs.
+ * <p>
+ * CloudWatchLogsPublisher buffers log events in memory and sends them in as
+ * few PutLogEvents calls as the service limits allow, keeping track of the
+ * sequence token of every log stream. Events that could not be sent are kept
+ * on the device and sent once the publisher is created again.
+ */
+package com.amazonaws.mobileconnectors.logs;
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.logs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.logs.AmazonCloudWatchLogs;
+import com.amazonaws.services.logs.model.InputLogEvent;
+import com.amazonaws.services.logs.model.InvalidParameterException;
+import com.amazonaws.services.logs.model.PutLogEventsRequest;
+import com.amazonaws.services.logs.model.PutLogEventsResult;
+import com.amazonaws.services.logs.model.RejectedLogEventsInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class CloudWatchLogsPublisherTest {
+
+    private static final String GROUP = "group";
+    private static final String STREAM = "stream";
+    private static final long T0 = 1500000000000L;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final FakeLogs fakeLogs = new FakeLogs();
+    private final CloudWatchLogsPublisherConfig config = new CloudWatchLogsPublisherConfig()
+            .withFlushIntervalMillis(0)
+            .withMaxBufferedEvents(100000);
+    private File directory;
+    private CloudWatchLogsPublisher publisher;
+
+    @Before
+    public void setup() throws IOException {
+        directory = temp.newFolder();
+        publisher = new CloudWatchLogsPublisher(fakeLogs.client, directory, config);
+    }
+
+    @After
+    public void teardown() {
+        fakeLogs.failure = null;
+        fakeLogs.invalidMessage = null;
+        fakeLogs.failOnMessage = null;
+        publisher.shutdown();
+    }
+
+    @Test
+    public void testEventsSentInTimestampOrder() {
+        final List<Long> timestamps = new ArrayList<Long>();
+        for (int i = 0; i < 100; i++) {
+            timestamps.add(T0 + i);
+        }
+        Collections.shuffle(timestamps, new Random(1));
+        for (final long timestamp : timestamps) {
+            publisher.log(GROUP, STREAM, timestamp, "m" + timestamp);
+        }
+
+        assertEquals(100, publisher.flush());
+        assertEquals(1, fakeLogs.calls.size());
+        final List<InputLogEvent> sent = fakeLogs.calls.get(0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(T0 + i, (long) sent.get(i).getTimestamp());
+            assertEquals("m" + (T0 + i), sent.get(i).getMessage());
+        }
+        assertEquals(0, publisher.getBufferedEventCount());
+    }
+
+    @Test
+    public void testBatchSplitAtEventLimit() {
+        final int count = CloudWatchLogsPublisher.MAX_BATCH_EVENTS + 5;
+        // keeps the background flush of a full queue from taking part
+        synchronized (publisher) {
+            for (int i = 0; i < count; i++) {
+                publisher.log(GROUP, STREAM, T0 + i, "m");
+            }
+            assertEquals(count, publisher.flush());
+        }
+
+        assertEquals(Arrays.asList(CloudWatchLogsPublisher.MAX_BATCH_EVENTS, 5),
+                fakeLogs.callSizes());
+        // the second call carries the token returned by the first
+        assertNull(fakeLogs.tokens.get(0));
+        assertEquals("token1", fakeLogs.tokens.get(1));
+    }
+
+    @Test
+    public void testBatchSplitAtByteLimit() {
+        final char[] chars = new char[250000];
+        Arrays.fill(chars, 'x');
+        final String message = new String(chars);
+        for (int i = 0; i < 6; i++) {
+            publisher.log(GROUP, STREAM, T0 + i, message);
+        }
+
+        assertEquals(6, publisher.flush());
+        // four events and their overhead fit in 1 MB, five don't
+        assertEquals(Arrays.asList(4, 2), fakeLogs.callSizes());
+    }
+
+    @Test
+    public void testBatchSplitAt24HourSpan() {
+        publisher.log(GROUP, STREAM, T0, "first");
+        publisher.log(GROUP, STREAM, T0 + TimeUnit.HOURS.toMillis(1), "hour");
+        publisher.log(GROUP, STREAM, T0 + CloudWatchLogsPublisher.MAX_BATCH_SPAN_MILLIS, "day");
+        publisher.log(GROUP, STREAM, T0 + CloudWatchLogsPublisher.MAX_BATCH_SPAN_MILLIS + 1,
+                "after a day");
+
+        assertEquals(4, publisher.flush());
+        assertEquals(Arrays.asList(3, 1), fakeLogs.callSizes());
+        assertEquals("after a day", fakeLogs.calls.get(1).get(0).getMessage());
+    }
+
+    @Test
+    public void testStreamsSentSeparately() {
+        publisher.log(GROUP, STREAM, T0, "a");
+        publisher.log(GROUP, "other", T0, "b");
+        publisher.log(GROUP, STREAM, T0 + 1, "c");
+
+        assertEquals(3, publisher.flush());
+        assertEquals(Arrays.asList(2, 1), fakeLogs.callSizes());
+        assertEquals(Arrays.asList(STREAM, "other"), fakeLogs.streams);
+    }
+
+    @Test
+    public void testOnlyInvalidEventsDropped() {
+        fakeLogs.invalidMessage = "bad";
+        for (int i = 0; i < 8; i++) {
+            publisher.log(GROUP, STREAM, T0 + i, i == 5 ? "bad" : "good" + i);
+        }
+
+        assertEquals(7, publisher.flush());
+        assertEquals(0, publisher.getBufferedEventCount());
+        final List<String> accepted = fakeLogs.acceptedMessages();
+        assertEquals(7, accepted.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i != 5, accepted.contains("good" + i));
+        }
+    }
+
+    @Test
+    public void testSplittingGivesUpAfterMaxCalls() {
+        // the whole stream is invalid
+        fakeLogs.invalidMessage = "";
+        for (int i = 0; i < 1000; i++) {
+            publisher.log(GROUP, STREAM, T0 + i, "");
+        }
+
+        assertEquals(0, publisher.flush());
+        assertEquals(CloudWatchLogsPublisher.MAX_SPLIT_CALLS, fakeLogs.calls.size());
+        assertEquals(0, publisher.getBufferedEventCount());
+    }
+
+    @Test
+    public void testRejectedEventsNotSentAgain() {
+        fakeLogs.rejected = new RejectedLogEventsInfo()
+                .withTooOldLogEventEndIndex(2)
+                .withExpiredLogEventEndIndex(1)
+                .withTooNewLogEventStartIndex(4);
+        for (int i = 0; i < 5; i++) {
+            publisher.log(GROUP, STREAM, T0 + i, "m" + i);
+        }
+
+        assertEquals(2, publisher.flush());
+        assertEquals(0, publisher.getBufferedEventCount());
+        fakeLogs.rejected = null;
+        assertEquals(0, publisher.flush());
+        assertEquals(1, fakeLogs.calls.size());
+    }
+
+    @Test
+    public void testUnsentEventsSavedAndLoaded() throws Exception {
+        fakeLogs.failure = new AmazonClientException("Unable to reach the service");
+        publisher.log(GROUP, STREAM, T0, "first");
+        publisher.log(GROUP, "other", T0 + 1, "second é中");
+        try {
+            publisher.flush();
+            fail("expected the failure");
+        } catch (final AmazonClientException e) {
+            assertEquals(fakeLogs.failure, e);
+        }
+        assertEquals(2, publisher.getBufferedEventCount());
+
+        fakeLogs.failure = null;
+        fakeLogs.calls.clear();
+        fakeLogs.streams.clear();
+        final CloudWatchLogsPublisher restarted = new CloudWatchLogsPublisher(fakeLogs.client,
+                directory, config);
+        try {
+            assertEquals(2, restarted.getBufferedEventCount());
+            assertEquals(2, restarted.flush());
+            assertEquals(Arrays.asList(STREAM, "other"), fakeLogs.streams);
+            assertEquals(T0, (long) fakeLogs.calls.get(0).get(0).getTimestamp());
+            assertEquals("first", fakeLogs.calls.get(0).get(0).getMessage());
+            assertEquals(T0 + 1, (long) fakeLogs.calls.get(1).get(0).getTimestamp());
+            assertEquals("second é中", fakeLogs.calls.get(1).get(0).getMessage());
+        } finally {
+            restarted.shutdown();
+        }
+
+        // nothing left to load
+        final CloudWatchLogsPublisher empty = new CloudWatchLogsPublisher(fakeLogs.client,
+                directory, config);
+        assertEquals(0, empty.getBufferedEventCount());
+        empty.shutdown();
+    }
+
+    @Test
+    public void testFailureWhileSplittingKeepsOnlyUnsentEvents() {
+        fakeLogs.invalidMessage = "bad";
+        // sent, sent, invalid, fails to send
+        publisher.log(GROUP, STREAM, T0, "a");
+        publisher.log(GROUP, STREAM, T0 + 1, "b");
+        publisher.log(GROUP, STREAM, T0 + 2, "bad");
+        publisher.log(GROUP, STREAM, T0 + 3, "d");
+        fakeLogs.failOnMessage = "d";
+        try {
+            publisher.flush();
+            fail("expected the failure");
+        } catch (final AmazonClientException e) {
+            assertTrue(e.getMessage().contains("d"));
+        }
+        assertEquals(1, publisher.getBufferedEventCount());
+
+        fakeLogs.failOnMessage = null;
+        fakeLogs.calls.clear();
+        assertEquals(1, publisher.flush());
+        assertEquals(Arrays.asList("d"), fakeLogs.acceptedMessages());
+    }
+
+    /**
+     * Accepts the events of a call unless one of them has the invalid or
+     * failing message or a failure is set, and records the calls.
+     */
+    private static final class FakeLogs {
+        private final AmazonCloudWatchLogs client = mock(AmazonCloudWatchLogs.class);
+        private final List<List<InputLogEvent>> calls = new ArrayList<List<InputLogEvent>>();
+        private final List<Boolean> accepted = new ArrayList<Boolean>();
+        private final List<String> tokens = new ArrayList<String>();
+        private final List<String> streams = new ArrayList<String>();
+        private volatile AmazonClientException failure;
+        private volatile String invalidMessage;
+        private volatile String failOnMessage;
+        private volatile RejectedLogEventsInfo rejected;
+        private int nextToken = 1;
+
+        FakeLogs() {
+            when(client.putLogEvents(any(PutLogEventsRequest.class))).thenAnswer(
+                    new Answer<PutLogEventsResult>() {
+                        @Override
+                        public PutLogEventsResult answer(InvocationOnMock invocation) {
+                            return putLogEvents((PutLogEventsRequest) invocation
+                                    .getArguments()[0]);
+                        }
+                    });
+        }
+
+        private synchronized PutLogEventsResult putLogEvents(PutLogEventsRequest request) {
+            if (failure != null) {
+                throw failure;
+            }
+            final List<InputLogEvent> events = new ArrayList<InputLogEvent>(
+                    request.getLogEvents());
+            calls.add(events);
+            tokens.add(request.getSequenceToken());
+            streams.add(request.getLogStreamName());
+            for (final InputLogEvent event : events) {
+                if (event.getMessage().equals(invalidMessage)) {
+                    accepted.add(false);
+                    throw new InvalidParameterException("Invalid log event");
+                }
+            }
+            for (final InputLogEvent event : events) {
+                if (event.getMessage().equals(failOnMessage)) {
+                    accepted.add(false);
+                    throw new AmazonClientException("Failed to send " + failOnMessage);
+                }
+            }
+            accepted.add(true);
+            return new PutLogEventsResult()
+                    .withNextSequenceToken("token" + nextToken++)
+                    .withRejectedLogEventsInfo(rejected);
+        }
+
+        synchronized List<Integer> callSizes() {
+            final List<Integer> sizes = new ArrayList<Integer>();
+            for (final List<InputLogEvent> call : calls) {
+                sizes.add(call.size());
+            }
+            return sizes;
+        }
+
+        synchronized List<String> acceptedMessages() {
+            final List<String> messages = new ArrayList<String>();
+            for (int i = 0; i < calls.size(); i++) {
+                if (accepted.get(accepted.size() - calls.size() + i)) {
+                    for (final InputLogEvent event : calls.get(i)) {
+                        messages.add(event.getMessage());
+                    }
+                }
+            }
+            return messages;
+        }
+    }
+}
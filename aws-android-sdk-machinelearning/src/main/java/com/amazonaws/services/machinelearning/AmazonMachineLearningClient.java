@@ -203,7 +203,8 @@ public class AmazonMachineLearningClient extends AmazonWebServiceClient implemen
      */
     public AmazonMachineLearningClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
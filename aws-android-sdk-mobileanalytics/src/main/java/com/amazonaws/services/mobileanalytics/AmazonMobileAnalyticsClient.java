@@ -206,7 +206,8 @@ public class AmazonMobileAnalyticsClient extends AmazonWebServiceClient implemen
      */
     public AmazonMobileAnalyticsClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
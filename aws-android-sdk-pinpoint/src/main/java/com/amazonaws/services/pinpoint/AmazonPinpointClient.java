@@ -197,7 +197,8 @@ public class AmazonPinpointClient extends AmazonWebServiceClient implements Amaz
      */
     public AmazonPinpointClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
@@ -204,7 +204,8 @@ public class AmazonPinpointAnalyticsClient extends AmazonWebServiceClient implem
      */
     public AmazonPinpointAnalyticsClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
@@ -206,7 +206,8 @@ public class AmazonPollyClient extends AmazonWebServiceClient implements AmazonP
      */
     public AmazonPollyClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
@@ -201,7 +201,8 @@ public class AmazonRekognitionClient extends AmazonWebServiceClient implements A
      */
     public AmazonRekognitionClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
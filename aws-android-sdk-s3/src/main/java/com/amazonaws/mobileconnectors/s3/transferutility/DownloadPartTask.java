@@ -0,0 +1,147 @@
+/**
+ * Copyright 2015-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.mobileconnectors.s3.transferutility.TransferService.NetworkInfoReceiver;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Callable;
+
+/**
+ * Downloads one byte range of a multipart download and writes it into the
+ * target file at the range's offset.
+ */
+class DownloadPartTask implements Callable<Boolean> {
+    private static final Log LOGGER = LogFactory.getLog(DownloadPartTask.class);
+    private static final int SIXTEEN_KB = 1024 * 16;
+
+    private final int partId;
+    private final GetObjectRequest request;
+    private final File file;
+    private final long fileOffset;
+    private final AmazonS3 s3;
+    private final TransferDBUtil dbUtil;
+    private final NetworkInfoReceiver networkInfoReceiver;
+
+    @SuppressWarnings("checkstyle:parameternumber")
+    public DownloadPartTask(int partId,
+                            GetObjectRequest request,
+                            File file,
+                            long fileOffset,
+                            AmazonS3 s3,
+                            TransferDBUtil dbUtil,
+                            NetworkInfoReceiver networkInfoReceiver) {
+        this.partId = partId;
+        this.request = request;
+        this.file = file;
+        this.fileOffset = fileOffset;
+        this.s3 = s3;
+        this.dbUtil = dbUtil;
+        this.networkInfoReceiver = networkInfoReceiver;
+    }
+
+    /*
+     * Runs part download task and returns whether successfully downloaded.
+     */
+    @Override
+    public Boolean call() throws Exception {
+        try {
+            final S3Object object = s3.getObject(request);
+            if (object == null) {
+                // the ETag constraint wasn't met
+                throw new ObjectChangedException();
+            }
+            writeToFile(object.getObjectContent());
+            dbUtil.updateState(partId, TransferState.PART_COMPLETED);
+            return true;
+        } catch (final Exception e) {
+            if (RetryUtils.isInterrupted(e)) {
+                // thread interrupted by user
+                return false;
+            }
+            if (networkInfoReceiver != null
+                && !networkInfoReceiver.isNetworkConnected()) {
+                /*
+                 * Network connection is being interrupted. Moving the TransferState
+                 * to WAITING_FOR_NETWORK till the network availability resumes.
+                 */
+                dbUtil.updateState(partId, TransferState.WAITING_FOR_NETWORK);
+                LOGGER.debug("Network Connection Interrupted: " +
+                        "Moving the TransferState to WAITING_FOR_NETWORK");
+            } else {
+                dbUtil.updateState(partId, TransferState.FAILED);
+                LOGGER.error("Encountered error downloading part ", e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the part's content into the file, starting at the part's offset.
+     *
+     * @param is the content of the part
+     */
+    private void writeToFile(InputStream is) throws IOException {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            raf.seek(fileOffset);
+            final byte[] buffer = new byte[SIXTEEN_KB];
+            int bytesRead;
+            while ((bytesRead = is.read(buffer)) != -1) {
+                raf.write(buffer, 0, bytesRead);
+            }
+            // the part is only recorded as completed once it is on disk
+            raf.getFD().sync();
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (final IOException ioe) {
+                    LOGGER.warn("got exception", ioe);
+                }
+            }
+            try {
+                is.close();
+            } catch (final IOException ioe) {
+                LOGGER.warn("got exception", ioe);
+            }
+        }
+    }
+
+    /**
+     * Thrown when the object no longer matches the ETag the download started
+     * with, so that the parts downloaded so far can't be combined with it.
+     */
+    static final class ObjectChangedException extends AmazonClientException {
+        private static final long serialVersionUID = 1L;
+
+        ObjectChangedException() {
+            super("The object was modified while it was being downloaded");
+        }
+    }
+}
@@ -16,10 +16,13 @@
 package com.amazonaws.mobileconnectors.s3.transferutility;
 
 
+import android.content.ContentValues;
+
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.mobileconnectors.s3.transferutility.TransferService.NetworkInfoReceiver;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Encryption;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 
@@ -33,11 +36,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Performs download operation and returns a Boolean value indicating whether
- * the file has been downloaded successfully.
+ * the file has been downloaded successfully. Objects larger than
+ * {@link TransferUtility#MINIMUM_DOWNLOAD_PART_SIZE} are split into byte
+ * ranges that are fetched in parallel by {@link DownloadPartTask}s and
+ * recorded as part records, so that a resumed download only fetches the
+ * parts that haven't completed and are still in the file. If the object
+ * changes, the part records and the file are discarded and the download
+ * starts over.
  */
 class DownloadTask implements Callable<Boolean> {
 
@@ -46,8 +59,11 @@ class DownloadTask implements Callable<Boolean> {
 
     private final AmazonS3 s3;
     private final TransferRecord download;
+    private final TransferDBUtil dbUtil;
     private final TransferStatusUpdater updater;
     private final NetworkInfoReceiver networkInfo;
+    /** Whether the download already started over after the object changed. */
+    private boolean restarted;
 
     /**
      * Constructs a DownloadTask with the given download info and S3 client.
@@ -55,13 +71,15 @@ class DownloadTask implements Callable<Boolean> {
      * @param download A TransferRecord object storing all the information of
      *            the download
      * @param s3 Low-level S3 client
+     * @param dbUtil database util
      * @param updater status updater
      * @param networkInfo network info
      */
-    public DownloadTask(TransferRecord download, AmazonS3 s3, TransferStatusUpdater updater,
-            NetworkInfoReceiver networkInfo) {
+    public DownloadTask(TransferRecord download, AmazonS3 s3, TransferDBUtil dbUtil,
+            TransferStatusUpdater updater, NetworkInfoReceiver networkInfo) {
         this.download = download;
         this.s3 = s3;
+        this.dbUtil = dbUtil;
         this.updater = updater;
         this.networkInfo = networkInfo;
     }
@@ -77,6 +95,11 @@ class DownloadTask implements Callable<Boolean> {
         }
         updater.updateState(download.id, TransferState.IN_PROGRESS);
 
+        final List<TransferRecord> parts = dbUtil.queryPartRecords(download.id);
+        if (!parts.isEmpty()) {
+            return downloadPartsAndWaitForCompletion(parts);
+        }
+
         final GetObjectRequest getObjectRequest = new GetObjectRequest(download.bucketName,
                 download.key);
         TransferUtility.appendTransferServiceUserAgentString(getObjectRequest);
@@ -103,6 +126,20 @@ class DownloadTask implements Callable<Boolean> {
             }
 
             final long bytesTotal = object.getObjectMetadata().getInstanceLength();
+            final String eTag = object.getObjectMetadata().getETag();
+            if (bytesCurrent == 0 && shouldDownloadInParts(bytesTotal)
+                    && createPartRecords(bytesTotal, eTag)) {
+                /*
+                 * Only the response headers were needed to size the parts.
+                 * Abort the stream rather than reading the whole object.
+                 */
+                object.getObjectContent().abort();
+                download.isMultipart = 1;
+                download.bytesTotal = bytesTotal;
+                download.eTag = eTag;
+                updater.updateProgress(download.id, 0, bytesTotal);
+                return downloadPartsAndWaitForCompletion(dbUtil.queryPartRecords(download.id));
+            }
             updater.updateProgress(download.id, bytesCurrent, bytesTotal);
             saveToFile(object.getObjectContent(), file);
             updater.updateProgress(download.id, bytesTotal, bytesTotal);
@@ -129,6 +166,181 @@ class DownloadTask implements Callable<Boolean> {
         return false;
     }
 
+    /**
+     * Whether an object of the given size should be fetched as parallel byte
+     * ranges. Ranged gets of client-side encrypted objects need the whole
+     * cipher text, so those are always downloaded in one stream.
+     */
+    private boolean shouldDownloadInParts(long bytesTotal) {
+        return bytesTotal > TransferUtility.MINIMUM_DOWNLOAD_PART_SIZE
+                && !(s3 instanceof AmazonS3Encryption);
+    }
+
+    /**
+     * Splits the object into byte ranges and saves a part record for each of
+     * them, together with the ETag that every part must match.
+     *
+     * @param bytesTotal the size of the object
+     * @param eTag the ETag of the object
+     * @return whether the part records were saved
+     */
+    private boolean createPartRecords(long bytesTotal, String eTag) {
+        final long partSize = TransferUtility.MINIMUM_DOWNLOAD_PART_SIZE;
+        final int partCount = (int) ((bytesTotal + partSize - 1) / partSize);
+        final ContentValues[] valuesArray = new ContentValues[partCount];
+        long rangeStart = 0;
+        for (int i = 0; i < partCount; i++) {
+            final long rangeLast = Math.min(rangeStart + partSize, bytesTotal) - 1;
+            valuesArray[i] = dbUtil.generateContentValuesForMultiPartDownload(download.id,
+                    download.bucketName, download.key, new File(download.file), i + 1,
+                    rangeStart, rangeLast, i == partCount - 1 ? 1 : 0);
+            rangeStart = rangeLast + 1;
+        }
+        return dbUtil.insertMultipartDownloadRecords(download.id, bytesTotal, eTag,
+                valuesArray) == partCount;
+    }
+
+    /**
+     * Fetches the parts that haven't completed yet in parallel and waits for
+     * all of them. A completed part is fetched again if the file no longer
+     * covers it, e.g. because the file was deleted or truncated.
+     *
+     * @param parts all part records of the download
+     * @return whether the download completed
+     */
+    private Boolean downloadPartsAndWaitForCompletion(List<TransferRecord> parts)
+            throws Exception {
+        final File file = new File(download.file);
+        final File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+
+        final long fileLength = file.length();
+        long bytesAlreadyTransferred = 0;
+        final List<TransferRecord> remainingParts = new ArrayList<TransferRecord>();
+        for (final TransferRecord part : parts) {
+            if (TransferState.PART_COMPLETED.equals(part.state)) {
+                if (part.fileOffset + part.bytesTotal <= fileLength) {
+                    bytesAlreadyTransferred += part.bytesTotal;
+                    continue;
+                }
+                LOGGER.debug("Part " + part.partNumber + " of transfer " + download.id
+                        + " is missing from the file, downloading it again");
+                dbUtil.updateState(part.id, TransferState.WAITING);
+            }
+            remainingParts.add(part);
+        }
+        if (bytesAlreadyTransferred > 0) {
+            LOGGER.debug(String.format("Resume transfer %d from %d bytes", download.id,
+                    bytesAlreadyTransferred));
+        }
+        updater.updateProgress(download.id, bytesAlreadyTransferred, download.bytesTotal);
+        LOGGER.debug("multipart download " + download.id + " in " + remainingParts.size()
+                + " parts.");
+
+        final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (final TransferRecord part : remainingParts) {
+            final GetObjectRequest request = new GetObjectRequest(download.bucketName,
+                    download.key).withRange(part.rangeStart, part.rangeLast);
+            if (download.eTag != null) {
+                request.withMatchingETagConstraint(download.eTag);
+            }
+            TransferUtility.appendMultipartTransferServiceUserAgentString(request);
+            request.setGeneralProgressListener(updater.newProgressListener(download.id));
+            futures.add(TransferThreadPool.submitTask(new DownloadPartTask(part.id, request,
+                    file, part.fileOffset, s3, dbUtil, networkInfo)));
+        }
+
+        try {
+            boolean isSuccess = true;
+            for (final Future<Boolean> f : futures) {
+                // DownloadPartTask returns false when it's interrupted by user
+                // and the state is set by caller
+                isSuccess &= f.get();
+            }
+            if (!isSuccess) {
+                return false;
+            }
+        } catch (final InterruptedException e) {
+            /*
+             * A pause or cancel from the application interrupts this thread;
+             * it's not a failure.
+             */
+            for (final Future<?> f : futures) {
+                f.cancel(true);
+            }
+            LOGGER.debug("Transfer " + download.id + " is interrupted by user");
+            return false;
+        } catch (final ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+            if (cause instanceof DownloadPartTask.ObjectChangedException) {
+                return startOver(futures, (Exception) cause);
+            }
+            for (final Future<?> f : futures) {
+                f.cancel(true);
+            }
+            if (cause instanceof Exception && RetryUtils.isInterrupted((Exception) cause)) {
+                LOGGER.debug("Transfer " + download.id + " is interrupted by user");
+                return false;
+            } else if (!networkInfo.isNetworkConnected()) {
+                LOGGER.debug("Transfer " + download.id + " waits for network");
+                updater.updateState(download.id, TransferState.WAITING_FOR_NETWORK);
+                return false;
+            }
+            LOGGER.debug("Failed to download: " + download.id + " due to " + cause);
+            updater.throwError(download.id, cause instanceof Exception ? (Exception) cause
+                    : new AmazonClientException("Failed to download part", cause));
+            updater.updateState(download.id, TransferState.FAILED);
+            return false;
+        }
+
+        dbUtil.deletePartRecords(download.id);
+        updater.updateProgress(download.id, download.bytesTotal, download.bytesTotal);
+        updater.updateState(download.id, TransferState.COMPLETED);
+        return true;
+    }
+
+    /**
+     * Discards the part records and the file of a download whose object
+     * changed, and downloads the new object from the start. The download
+     * starts over once; if the object changes again, it fails, and retrying
+     * it later starts over again.
+     *
+     * @param futures the part tasks, which all fail on the old ETag
+     * @param cause the error of the part that failed first
+     * @return whether the download completed
+     */
+    private Boolean startOver(List<Future<Boolean>> futures, Exception cause)
+            throws Exception {
+        // the file can only be discarded once no part writes to it anymore
+        for (final Future<Boolean> f : futures) {
+            try {
+                f.get();
+            } catch (final ExecutionException ignored) {
+                // fails on the ETag as well
+            }
+        }
+        dbUtil.deletePartRecords(download.id);
+        final File file = new File(download.file);
+        if (file.exists() && !file.delete()) {
+            LOGGER.warn("Failed to delete " + file);
+        }
+        download.isMultipart = 0;
+        download.eTag = null;
+        updater.updateProgress(download.id, 0, download.bytesTotal);
+
+        if (restarted) {
+            LOGGER.debug("Failed to download: " + download.id + " due to " + cause);
+            updater.throwError(download.id, cause);
+            updater.updateState(download.id, TransferState.FAILED);
+            return false;
+        }
+        LOGGER.debug("Transfer " + download.id + " starts over, the object changed");
+        restarted = true;
+        return call();
+    }
+
     /**
      * Writes stream data into a file.
      *
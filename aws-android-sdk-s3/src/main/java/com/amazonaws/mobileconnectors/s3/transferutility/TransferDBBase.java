@@ -27,6 +27,8 @@ import android.text.TextUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.Map;
+
 /**
  * Provides methods to access database through which applications can interact
  * with transfer tasks.
@@ -203,6 +205,31 @@ class TransferDBBase {
         return rowsUpdated;
     }
 
+    /**
+     * Updates several records by id in a single transaction.
+     *
+     * @param valuesById A map of record id to the values to update.
+     * @return Number of rows updated.
+     */
+    public synchronized int bulkUpdate(Map<Integer, ContentValues> valuesById) {
+        int rowsUpdated = 0;
+        ensureDatabaseOpen();
+        try {
+            database.beginTransaction();
+            for (final Map.Entry<Integer, ContentValues> entry : valuesById.entrySet()) {
+                rowsUpdated += database.update(TransferTable.TABLE_TRANSFER, entry.getValue(),
+                        TransferTable.COLUMN_ID + "=" + entry.getKey(), null);
+            }
+            database.setTransactionSuccessful();
+        } catch (final Exception e) {
+            LOGGER.error("bulkUpdate error : ", e);
+            rowsUpdated = 0;
+        } finally {
+            database.endTransaction();
+        }
+        return rowsUpdated;
+    }
+
     /**
      * Deletes a record in the table.
      *
@@ -269,6 +296,38 @@ class TransferDBBase {
         return mainUploadId;
     }
 
+    /**
+     * Updates a transfer record and inserts its part records in a single
+     * transaction.
+     *
+     * @param mainUploadId The id of the transfer the parts belong to.
+     * @param values The values to update in the transfer record.
+     * @param valuesArray The values of the part records.
+     * @return Number of part rows inserted.
+     */
+    public int bulkInsertParts(int mainUploadId, ContentValues values,
+            ContentValues[] valuesArray) {
+        int rowsInserted = 0;
+        ensureDatabaseOpen();
+        try {
+            database.beginTransaction();
+            database.update(TransferTable.TABLE_TRANSFER, values,
+                    TransferTable.COLUMN_ID + "=" + mainUploadId, null);
+            for (final ContentValues partValues : valuesArray) {
+                partValues.put(TransferTable.COLUMN_MAIN_UPLOAD_ID, mainUploadId);
+                database.insertOrThrow(TransferTable.TABLE_TRANSFER, null, partValues);
+                rowsInserted++;
+            }
+            database.setTransactionSuccessful();
+        } catch (final Exception e) {
+            LOGGER.error("bulkInsertParts error : ", e);
+            rowsInserted = 0;
+        } finally {
+            database.endTransaction();
+        }
+        return rowsInserted;
+    }
+
     private void ensureDatabaseOpen() {
         // close and reopen database.
         if (!database.isOpen()) {
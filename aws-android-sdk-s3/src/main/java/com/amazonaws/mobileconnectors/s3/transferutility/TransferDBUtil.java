@@ -31,7 +31,9 @@ import org.apache.commons.logging.LogFactory;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provides methods to conveniently perform database operations.
@@ -89,6 +91,25 @@ class TransferDBUtil {
         return transferDBBase.insert(transferDBBase.getContentUri(), values);
     }
 
+    /**
+     * Inserts the part records of a multipart download and records the size,
+     * the ETag and the multipart flag of the download in a single transaction.
+     *
+     * @param mainDownloadId The id of the download.
+     * @param bytesTotal The size of the object.
+     * @param eTag The ETag every part must match.
+     * @param valuesArray The values of the part records.
+     * @return Number of part records inserted.
+     */
+    public int insertMultipartDownloadRecords(int mainDownloadId, long bytesTotal, String eTag,
+            ContentValues[] valuesArray) {
+        final ContentValues values = new ContentValues();
+        values.put(TransferTable.COLUMN_BYTES_TOTAL, bytesTotal);
+        values.put(TransferTable.COLUMN_ETAG, eTag);
+        values.put(TransferTable.COLUMN_IS_MULTIPART, 1);
+        return transferDBBase.bulkInsertParts(mainDownloadId, values, valuesArray);
+    }
+
     /**
      * Inserts a transfer record into database with the given values.
      *
@@ -178,6 +199,22 @@ class TransferDBUtil {
         return transferDBBase.update(getRecordUri(id), values, null, null);
     }
 
+    /**
+     * Updates the bytes transferred of several transfers in one transaction.
+     *
+     * @param bytesById A map of transfer id to its bytes transferred.
+     * @return Number of rows updated.
+     */
+    public int updateBytesTransferred(Map<Integer, Long> bytesById) {
+        final Map<Integer, ContentValues> valuesById = new HashMap<Integer, ContentValues>();
+        for (final Map.Entry<Integer, Long> entry : bytesById.entrySet()) {
+            final ContentValues values = new ContentValues();
+            values.put(TransferTable.COLUMN_BYTES_CURRENT, entry.getValue());
+            valuesById.put(entry.getKey(), values);
+        }
+        return transferDBBase.bulkUpdate(valuesById);
+    }
+
     /**
      * Updates the total bytes of a download record.
      *
@@ -502,6 +539,45 @@ class TransferDBUtil {
         return bytesTotal;
     }
 
+    /**
+     * Queries the part records of a multipart transfer.
+     *
+     * @param mainUploadId The id of the multipart transfer.
+     * @return A list of the part records, empty if the transfer has no parts.
+     */
+    public List<TransferRecord> queryPartRecords(int mainUploadId) {
+        final List<TransferRecord> parts = new ArrayList<TransferRecord>();
+        Cursor c = null;
+        try {
+            c = transferDBBase.query(getPartUri(mainUploadId), null, null, null, null);
+            while (c.moveToNext()) {
+                final TransferRecord part = new TransferRecord(0);
+                part.updateFromDB(c);
+                parts.add(part);
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Deletes the part records of a multipart transfer.
+     *
+     * @param mainUploadId The id of the multipart transfer.
+     * @return Number of rows deleted.
+     */
+    public int deletePartRecords(int mainUploadId) {
+        return transferDBBase.delete(transferDBBase.getContentUri(),
+                TransferTable.COLUMN_MAIN_UPLOAD_ID + "=? and "
+                        + TransferTable.COLUMN_PART_NUM + ">0",
+                new String[] {
+                    String.valueOf(mainUploadId)
+                });
+    }
+
     /**
      * Deletes the record with the given id.
      *
@@ -684,6 +760,43 @@ class TransferDBUtil {
         return values;
     }
 
+    /**
+     * Generates a ContentValues object to insert into the database with the
+     * given values for a part of a multipart download.
+     *
+     * @param mainDownloadId The id of the download the part belongs to.
+     * @param bucket The name of the bucket to download from.
+     * @param key The key of the object to download.
+     * @param file The file to download to.
+     * @param partNumber The part number of this part.
+     * @param rangeStart The first byte of the part.
+     * @param rangeLast The last byte of the part.
+     * @param isLastPart Whether this part is the last part of the download.
+     * @return The ContentValues object generated.
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public ContentValues generateContentValuesForMultiPartDownload(int mainDownloadId,
+            String bucket, String key, File file, int partNumber, long rangeStart,
+            long rangeLast, int isLastPart) {
+        final ContentValues values = new ContentValues();
+        values.put(TransferTable.COLUMN_MAIN_UPLOAD_ID, mainDownloadId);
+        values.put(TransferTable.COLUMN_TYPE, TransferType.DOWNLOAD.toString());
+        values.put(TransferTable.COLUMN_STATE, TransferState.WAITING.toString());
+        values.put(TransferTable.COLUMN_BUCKET_NAME, bucket);
+        values.put(TransferTable.COLUMN_KEY, key);
+        values.put(TransferTable.COLUMN_FILE, file.getAbsolutePath());
+        values.put(TransferTable.COLUMN_BYTES_CURRENT, 0L);
+        values.put(TransferTable.COLUMN_BYTES_TOTAL, rangeLast - rangeStart + 1);
+        values.put(TransferTable.COLUMN_IS_MULTIPART, 1);
+        values.put(TransferTable.COLUMN_PART_NUM, partNumber);
+        values.put(TransferTable.COLUMN_FILE_OFFSET, rangeStart);
+        values.put(TransferTable.COLUMN_DATA_RANGE_START, rangeStart);
+        values.put(TransferTable.COLUMN_DATA_RANGE_LAST, rangeLast);
+        values.put(TransferTable.COLUMN_IS_LAST_PART, isLastPart);
+        values.put(TransferTable.COLUMN_IS_ENCRYPTED, 0);
+        return values;
+    }
+
     /**
      * Adds mappings to a ContentValues object for the data in the passed in
      * ObjectMetadata
@@ -164,7 +164,7 @@ class TransferRecord {
         if (!isRunning() && checkIsReadyToRun()) {
             if (type.equals(TransferType.DOWNLOAD)) {
                 submittedTask = TransferThreadPool
-                        .submitTask(new DownloadTask(this, s3, updater, networkInfo));
+                        .submitTask(new DownloadTask(this, s3, dbUtil, updater, networkInfo));
             } else {
                 submittedTask = TransferThreadPool
                         .submitTask(new UploadTask(this, s3, dbUtil, updater, networkInfo));
@@ -208,7 +208,7 @@ class TransferRecord {
                 submittedTask.cancel(true);
             }
             // additional cleanups
-            if (isMultipart == 1) {
+            if (isMultipart == 1 && TransferType.UPLOAD.equals(type)) {
                 new Thread(new Runnable() {
                     @Override
                     public void run() {
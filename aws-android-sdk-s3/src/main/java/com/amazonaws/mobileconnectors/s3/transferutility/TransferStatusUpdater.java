@@ -50,6 +50,18 @@ class TransferStatusUpdater {
      * listeners too often.
      */
     private static final int UPDATE_THRESHOLD_MS = 1000;
+    /**
+     * The default interval in milliseconds at which coalesced progress is
+     * written to the database.
+     */
+    private static final long DEFAULT_PROGRESS_CHECKPOINT_INTERVAL_MS = 1000;
+
+    /**
+     * The interval at which coalesced progress is written to the database. A
+     * value of 0 writes every progress update through.
+     */
+    private static volatile long progressCheckpointIntervalMs =
+            DEFAULT_PROGRESS_CHECKPOINT_INTERVAL_MS;
 
     /**
      * A map of listeners.
@@ -65,6 +77,17 @@ class TransferStatusUpdater {
      * fired too often.
      */
     private final Map<Integer, Long> lastUpdateTime;
+    /**
+     * A journal of transfer progress that hasn't been written to the database
+     * yet. Only the latest value of each transfer is kept. Progress and state
+     * are written to the database while holding its lock, so that an older
+     * checkpoint can't overwrite the progress saved with a later state.
+     */
+    private final Map<Integer, Long> pendingProgress;
+    /**
+     * The time the journal was last written to the database.
+     */
+    private long lastCheckpointTime;
     /**
      * Database util to update transfer status.
      */
@@ -78,10 +101,35 @@ class TransferStatusUpdater {
      * This class is instantiated by TransferService.
      */
     TransferStatusUpdater(TransferDBUtil dbUtil) {
+        this(dbUtil, new Handler(Looper.getMainLooper()));
+    }
+
+    /**
+     * Constructs an updater that runs callbacks on the given handler.
+     *
+     * @param dbUtil database util to update transfer status
+     * @param mainHandler the handler that runs callbacks
+     */
+    TransferStatusUpdater(TransferDBUtil dbUtil, Handler mainHandler) {
         this.dbUtil = dbUtil;
-        mainHandler = new Handler(Looper.getMainLooper());
+        this.mainHandler = mainHandler;
         transfers = new HashMap<Integer, TransferRecord>();
         lastUpdateTime = new HashMap<Integer, Long>();
+        pendingProgress = new HashMap<Integer, Long>();
+    }
+
+    /**
+     * Sets the interval at which transfer progress is written to the
+     * database. Progress reported in between is coalesced in memory, and state
+     * changes always write it.
+     *
+     * @param intervalMs the interval in milliseconds, 0 to write every update
+     */
+    static void setProgressCheckpointInterval(long intervalMs) {
+        if (intervalMs < 0) {
+            throw new IllegalArgumentException("Checkpoint interval can't be negative");
+        }
+        progressCheckpointIntervalMs = intervalMs;
     }
 
     /**
@@ -118,6 +166,12 @@ class TransferStatusUpdater {
      * @param id id of the transfer to remove
      */
     void removeTransfer(int id) {
+        synchronized (pendingProgress) {
+            final Long pendingBytes = pendingProgress.remove(id);
+            if (pendingBytes != null) {
+                dbUtil.updateBytesTransferred(id, pendingBytes);
+            }
+        }
         transfers.remove(id);
         LISTENERS.remove(id);
         lastUpdateTime.remove(id);
@@ -142,17 +196,23 @@ class TransferStatusUpdater {
     void updateState(final int id, final TransferState newState) {
         boolean shouldNotNotify = STATES_NOT_TO_NOTIFY.contains(newState);
         final TransferRecord transfer = transfers.get(id);
-        if (transfer == null) {
-            // still wants to save state
-            if (dbUtil.updateState(id, newState) == 0) {
-                LOGGER.warn("Failed to update the status of transfer " + id);
-            }
-        } else {
-            shouldNotNotify |= newState.equals(transfer.state);
-            transfer.state = newState;
-            // save to database
-            if (dbUtil.updateTransferRecord(transfer) == 0) {
-                LOGGER.warn("Failed to update the status of transfer " + id);
+        synchronized (pendingProgress) {
+            final Long pendingBytes = pendingProgress.remove(id);
+            if (transfer == null) {
+                // still wants to save state, along with any coalesced progress
+                if (pendingBytes != null) {
+                    dbUtil.updateBytesTransferred(id, pendingBytes);
+                }
+                if (dbUtil.updateState(id, newState) == 0) {
+                    LOGGER.warn("Failed to update the status of transfer " + id);
+                }
+            } else {
+                shouldNotNotify |= newState.equals(transfer.state);
+                transfer.state = newState;
+                // save to database
+                if (dbUtil.updateTransferRecord(transfer) == 0) {
+                    LOGGER.warn("Failed to update the status of transfer " + id);
+                }
             }
         }
 
@@ -205,8 +265,8 @@ class TransferStatusUpdater {
         final long timeInMillis = System.currentTimeMillis();
 
         // update bytes transfered so that the transfer observer may pick it
-        // up.
-        dbUtil.updateBytesTransferred(id, bytesCurrent);
+        // up. Updates are coalesced and written at checkpoints.
+        journalProgress(id, bytesCurrent, timeInMillis);
 
         // invoke LISTENERS
         final List<TransferListener> list = LISTENERS.get(id);
@@ -232,6 +292,44 @@ class TransferStatusUpdater {
         }
     }
 
+    /**
+     * Records the progress of a transfer in the journal and writes the journal
+     * to the database in one transaction when the checkpoint interval has
+     * passed.
+     *
+     * @param id id of the transfer
+     * @param bytesCurrent current transferred bytes
+     * @param timeInMillis current time in milliseconds
+     */
+    private void journalProgress(int id, long bytesCurrent, long timeInMillis) {
+        synchronized (pendingProgress) {
+            pendingProgress.put(id, bytesCurrent);
+            if (timeInMillis - lastCheckpointTime < progressCheckpointIntervalMs) {
+                return;
+            }
+            lastCheckpointTime = timeInMillis;
+            final int size = pendingProgress.size();
+            if (dbUtil.updateBytesTransferred(pendingProgress) < size) {
+                LOGGER.warn("Failed to save the progress of some transfers");
+            }
+            pendingProgress.clear();
+        }
+    }
+
+    /**
+     * Writes all coalesced progress to the database.
+     */
+    void flushProgress() {
+        synchronized (pendingProgress) {
+            if (pendingProgress.isEmpty()) {
+                return;
+            }
+            lastCheckpointTime = System.currentTimeMillis();
+            dbUtil.updateBytesTransferred(pendingProgress);
+            pendingProgress.clear();
+        }
+    }
+
     /**
      * Throws an error to transfer. It triggers
      * {@link TransferListener#onError(int, Exception)} of associated LISTENERS.
@@ -260,6 +358,7 @@ class TransferStatusUpdater {
      * Clears all transfers, LISTENERS, etc.
      */
     void clear() {
+        flushProgress();
         LISTENERS.clear();
         transfers.clear();
         lastUpdateTime.clear();
@@ -325,17 +424,20 @@ class TransferStatusUpdater {
         }
 
         @Override
-        public synchronized void progressChanged(ProgressEvent progressEvent) {
-            if (progressEvent.getEventCode() == ProgressEvent.RESET_EVENT_CODE) {
-                // Reset will discard what's been transferred, so subtract the
-                // bytes transferred in this task from the total progress.
-                transfer.bytesCurrent -= bytesCurrent;
-                bytesCurrent = 0;
-            } else {
-                bytesCurrent += progressEvent.getBytesTransferred();
-                transfer.bytesCurrent += progressEvent.getBytesTransferred();
+        public void progressChanged(ProgressEvent progressEvent) {
+            // Part tasks of the same transfer report progress concurrently.
+            synchronized (transfer) {
+                if (progressEvent.getEventCode() == ProgressEvent.RESET_EVENT_CODE) {
+                    // Reset will discard what's been transferred, so subtract the
+                    // bytes transferred in this task from the total progress.
+                    transfer.bytesCurrent -= bytesCurrent;
+                    bytesCurrent = 0;
+                } else {
+                    bytesCurrent += progressEvent.getBytesTransferred();
+                    transfer.bytesCurrent += progressEvent.getBytesTransferred();
+                }
+                updateProgress(transfer.id, transfer.bytesCurrent, transfer.bytesTotal);
             }
-            updateProgress(transfer.id, transfer.bytesCurrent, transfer.bytesTotal);
         }
     }
 
@@ -99,6 +99,12 @@ public class TransferUtility {
      * a single upload
      */
     static final int MINIMUM_UPLOAD_PART_SIZE = 5 * MB;
+
+    /**
+     * Default minimum part size for download parts. Larger objects are
+     * downloaded as byte ranges fetched in parallel.
+     */
+    static final int MINIMUM_DOWNLOAD_PART_SIZE = 5 * MB;
     
     private static String userAgentFromConfig = "";
     private static void setUserAgentFromConfig(String userAgent) {
@@ -129,6 +135,8 @@ public class TransferUtility {
         private Context appContext;
         private String defaultBucket;
         private AWSConfiguration awsConfig;
+        /** The checkpoint interval, or -1 to keep the current one. */
+        private long progressCheckpointInterval = -1;
         
         protected Builder() { }
         
@@ -189,6 +197,28 @@ public class TransferUtility {
             return this;
         }
         
+        /**
+         * Sets how often transfer progress is saved to the transfer database.
+         * Progress reported in between is coalesced in memory and written in
+         * one transaction; state changes always save it. A transfer resumed
+         * after the process is killed may restart from the last saved
+         * progress. Defaults to one second, and 0 saves every update.
+         * <p>
+         * All transfer utilities of the process share the transfer service, so
+         * the interval applies to all of them; a builder that doesn't set it
+         * leaves the current interval unchanged.
+         * 
+         * @param intervalMillis The interval in milliseconds.
+         * @return builder
+         */
+        public Builder progressCheckpointInterval(final long intervalMillis) {
+            if (intervalMillis < 0) {
+                throw new IllegalArgumentException("Checkpoint interval can't be negative");
+            }
+            this.progressCheckpointInterval = intervalMillis;
+            return this;
+        }
+        
         /**
          * 
          * @return TransferUtility
@@ -213,6 +243,10 @@ public class TransferUtility {
                 }
             }
             
+            if (this.progressCheckpointInterval >= 0) {
+                TransferStatusUpdater.setProgressCheckpointInterval(
+                        this.progressCheckpointInterval);
+            }
             return new TransferUtility(this.s3, this.appContext, this.defaultBucket);
         }
     }
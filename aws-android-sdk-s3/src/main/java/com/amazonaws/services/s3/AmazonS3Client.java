@@ -47,9 +47,9 @@ import com.amazonaws.handlers.HandlerChainFactory;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.http.ExecutionContext;
 import com.amazonaws.http.HttpClient;
+import com.amazonaws.http.HttpClients;
 import com.amazonaws.http.HttpMethodName;
 import com.amazonaws.http.HttpResponseHandler;
-import com.amazonaws.http.UrlHttpClient;
 import com.amazonaws.internal.StaticCredentialsProvider;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
@@ -63,6 +63,7 @@ import com.amazonaws.services.s3.internal.Constants;
 import com.amazonaws.services.s3.internal.DeleteObjectTaggingHeaderHandler;
 import com.amazonaws.services.s3.internal.DeleteObjectsResponse;
 import com.amazonaws.services.s3.internal.DigestValidationInputStream;
+import com.amazonaws.services.s3.internal.FileDigestCache;
 import com.amazonaws.services.s3.internal.GetObjectTaggingResponseHeaderHandler;
 import com.amazonaws.services.s3.internal.InputSubstream;
 import com.amazonaws.services.s3.internal.MD5DigestCalculatingInputStream;
@@ -330,7 +331,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
      */
     public AmazonS3Client(AWSCredentialsProvider credentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(credentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(credentialsProvider, clientConfiguration,
+                HttpClients.createDefault(clientConfiguration));
     }
 
     /**
@@ -349,7 +351,7 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
     public AmazonS3Client(AWSCredentialsProvider credentialsProvider,
             ClientConfiguration clientConfiguration,
             RequestMetricCollector requestMetricCollector) {
-        super(clientConfiguration, new UrlHttpClient(clientConfiguration),
+        super(clientConfiguration, HttpClients.createDefault(clientConfiguration),
                 requestMetricCollector);
         this.awsCredentialsProvider = credentialsProvider;
         init();
@@ -1588,8 +1590,9 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
 
         // If a file is specified for upload, we need to pull some additional
         // information from it to auto-configure a few options
-        if (putObjectRequest.getFile() != null) {
-            final File file = putObjectRequest.getFile();
+        final File file = putObjectRequest.getFile();
+        byte[] contentSha256 = null;
+        if (file != null) {
             // Always set the content length, even if it's already set
             metadata.setContentLength(file.length());
 
@@ -1602,8 +1605,15 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
 
             if (calculateMD5 && !skipContentMd5Check) {
                 try {
-                    final String contentMd5_b64 = Md5Utils.md5AsBase64(file);
-                    metadata.setContentMD5(contentMd5_b64);
+                    /*
+                     * When the request will be signed with SigV4, compute the
+                     * SHA-256 of the file in the same read as the MD5, so the
+                     * signer doesn't have to hash every chunk while sending.
+                     */
+                    final FileDigestCache.Digests digests = FileDigestCache.getDigests(file,
+                            isSignedWithV4(bucketName));
+                    metadata.setContentMD5(BinaryUtils.toBase64(digests.getMd5()));
+                    contentSha256 = digests.getSha256();
                 } catch (final Exception e) {
                     throw new AmazonClientException(
                             "Unable to calculate MD5 hash: " + e.getMessage(), e);
@@ -1620,6 +1630,10 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         final Request<PutObjectRequest> request = createRequest(bucketName, key, putObjectRequest,
                 HttpMethodName.PUT);
 
+        if (contentSha256 != null) {
+            request.addHeader(Headers.CONTENT_SHA256, BinaryUtils.toHex(contentSha256));
+        }
+
         if (putObjectRequest.getAccessControlList() != null) {
             addAclHeaders(request, putObjectRequest.getAccessControlList());
         } else if (putObjectRequest.getCannedAcl() != null) {
@@ -1728,6 +1742,12 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
             returnedMetadata = invoke(request, new S3MetadataResponseHandler(), bucketName, key);
         } catch (final AmazonClientException ace) {
             fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.FAILED_EVENT_CODE);
+            if (file != null && ace instanceof AmazonS3Exception
+                    && isDigestMismatch((AmazonS3Exception) ace)) {
+                // the file changed without its length or modification time
+                // changing; don't reuse its digests for the next attempt
+                FileDigestCache.invalidate(file);
+            }
             throw ace;
         } finally {
             try {
@@ -3950,6 +3970,29 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         return signer;
     }
 
+    /**
+     * Predicts whether requests to the specified bucket will be signed with
+     * {@link AWSS3V4Signer}, following the choices of
+     * {@link #createSigner(Request, String, String)}. A wrong guess only
+     * costs hashing that isn't needed, or hashing while sending.
+     */
+    private boolean isSignedWithV4(final String bucketName) {
+        if (getSignerByURI(endpoint) instanceof AWSS3V4Signer) {
+            return true;
+        }
+        return !isSignerOverridden() && (getSignerRegionOverride() != null
+                || clientRegion != null || bucketRegionCache.get(bucketName) != null);
+    }
+
+    /**
+     * Returns true if Amazon S3 rejected an upload because the content didn't
+     * match the digests sent with it.
+     */
+    private static boolean isDigestMismatch(final AmazonS3Exception ase) {
+        return "BadDigest".equals(ase.getErrorCode())
+                || "XAmzContentSHA256Mismatch".equals(ase.getErrorCode());
+    }
+
     /**
      * Has signer been explicitly overriden in the configuration?
      */
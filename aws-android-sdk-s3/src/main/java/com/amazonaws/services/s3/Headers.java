@@ -70,6 +70,9 @@ public interface Headers {
     /** Prefix for general Amazon headers: x-amz- */
     public static final String AMAZON_PREFIX = "x-amz-";
 
+    /** SHA-256 hash of the content for SigV4: x-amz-content-sha256 */
+    public static final String CONTENT_SHA256 = "x-amz-content-sha256";
+
     /** S3's canned ACL header: x-amz-acl */
     public static final String S3_CANNED_ACL = "x-amz-acl";
 
@@ -32,6 +32,7 @@ import java.io.InputStream;
  */
 public class AWSS3V4Signer extends AWS4Signer {
     private static final String CONTENT_SHA_256 = "STREAMING-AWS4-HMAC-SHA256-PAYLOAD";
+    private static final int SHA256_HEX_LENGTH = 64;
     private static final int DEFAULT_BYTE_LENGTH = 4096;
 
     /**
@@ -69,14 +70,21 @@ public class AWSS3V4Signer extends AWS4Signer {
     /**
      * Returns the pre-defined header value and set other necessary headers if
      * the request needs to be chunk-encoded. Otherwise calls the superclass
-     * method which calculates the hash of the whole content for signing.
+     * method which calculates the hash of the whole content for signing. If
+     * the client already computed the hash of the content, for instance while
+     * computing the MD5 of an uploaded file, that hash is signed as is and the
+     * content is neither read again nor chunk-encoded.
      */
     @Override
     protected String calculateContentHash(Request<?> request) {
+        final String precomputedHash = getPrecomputedContentHash(request);
+        if (precomputedHash != null) {
+            return precomputedHash;
+        }
         // To be consistent with other service clients using sig-v4,
         // we just set the header as "required", and AWS4Signer.sign() will be
         // notified to pick up the header value returned by this method.
-        request.addHeader("x-amz-content-sha256", "required");
+        request.addHeader(Headers.CONTENT_SHA256, "required");
         if (useChunkEncoding(request)) {
             final String contentLength =
                     request.getHeaders().get(Headers.CONTENT_LENGTH);
@@ -120,13 +128,32 @@ public class AWSS3V4Signer extends AWS4Signer {
     private static boolean useChunkEncoding(Request<?> request) {
         // Whether to use chunked encoding for signing the request
         boolean chunkedEncodingEnabled = false;
-        if (request.getOriginalRequest() instanceof PutObjectRequest
-                || request.getOriginalRequest() instanceof UploadPartRequest) {
+        if ((request.getOriginalRequest() instanceof PutObjectRequest
+                || request.getOriginalRequest() instanceof UploadPartRequest)
+                && getPrecomputedContentHash(request) == null) {
             chunkedEncodingEnabled = true;
         }
         return chunkedEncodingEnabled;
     }
 
+    /**
+     * @return the hex SHA-256 hash of the content set by the client in the
+     *         "x-amz-content-sha256" header, or null if there is none
+     */
+    private static String getPrecomputedContentHash(Request<?> request) {
+        final String hash = request.getHeaders().get(Headers.CONTENT_SHA256);
+        if (hash == null || hash.length() != SHA256_HEX_LENGTH) {
+            return null;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            final char c = hash.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return null;
+            }
+        }
+        return hash;
+    }
+
     /**
      * Read the content of the request to get the length of the stream. This
      * method will wrap the stream by RepeatableInputStream if it is not
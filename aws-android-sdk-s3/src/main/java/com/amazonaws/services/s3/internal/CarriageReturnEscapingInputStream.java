@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import com.amazonaws.internal.SdkFilterInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Filtered input stream that replaces every carriage return (\r) of a UTF-8
+ * XML document with the character entity "&amp;#013;" as it is read, so that
+ * SAX parsers keep 0x0D characters instead of turning them into 0x0A. In UTF-8
+ * the byte 0x0D only ever encodes a carriage return, so the document does not
+ * need to be decoded.
+ */
+public final class CarriageReturnEscapingInputStream extends SdkFilterInputStream {
+    private static final byte[] ENTITY = "&#013;".getBytes(UTF8);
+    private static final int BUFFER_SIZE = 8192;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPosition;
+    private int bufferLength;
+
+    /** Position in ENTITY of the next byte to return, ENTITY.length if none. */
+    private int entityPosition = ENTITY.length;
+
+    /**
+     * @param in the UTF-8 encoded XML document
+     */
+    public CarriageReturnEscapingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int bytesRead = read(b, 0, 1);
+
+        if (bytesRead == -1)
+            return bytesRead;
+        return b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+
+        int written = 0;
+        while (written < len) {
+            if (entityPosition < ENTITY.length) {
+                b[off + written++] = ENTITY[entityPosition++];
+            } else if (bufferPosition < bufferLength) {
+                byte next = buffer[bufferPosition++];
+                if (next == '\r') {
+                    entityPosition = 0;
+                } else {
+                    b[off + written++] = next;
+                }
+            } else if (written > 0) {
+                // don't block for more input when there is something to return
+                break;
+            } else {
+                bufferLength = super.read(buffer, 0, BUFFER_SIZE);
+                bufferPosition = 0;
+                if (bufferLength == -1) {
+                    bufferLength = 0;
+                    return -1;
+                }
+            }
+        }
+        return written;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] skipped = new byte[(int) Math.min(n, BUFFER_SIZE)];
+        long total = 0;
+        while (total < n) {
+            int read = read(skipped, 0, (int) Math.min(n - total, skipped.length));
+            if (read == -1)
+                break;
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (ENTITY.length - entityPosition) + (bufferLength - bufferPosition);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
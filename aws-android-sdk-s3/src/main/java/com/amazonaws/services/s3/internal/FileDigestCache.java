@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes the MD5 and, if asked, the SHA-256 digest of a file in a single
+ * read, and remembers them for the last few files. An entry is only used while
+ * the file keeps the length and modification time it had when it was read, so
+ * that an upload retried by the application does not read the file again just
+ * to hash it.
+ */
+public final class FileDigestCache {
+    private static final int MAX_ENTRIES = 16;
+    private static final int BUFFER_SIZE = 128 * 1024;
+
+    private static final Map<String, Digests> CACHE =
+            new LinkedHashMap<String, Digests>(MAX_ENTRIES, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Digests> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    /**
+     * Digests of the content of a file.
+     */
+    public static final class Digests {
+        private final byte[] md5;
+        private final byte[] sha256;
+
+        Digests(byte[] md5, byte[] sha256) {
+            this.md5 = md5;
+            this.sha256 = sha256;
+        }
+
+        /**
+         * @return the MD5 digest of the file
+         */
+        public byte[] getMd5() {
+            return md5.clone();
+        }
+
+        /**
+         * @return the SHA-256 digest of the file, or null if it was not asked
+         *         for
+         */
+        public byte[] getSha256() {
+            return sha256 == null ? null : sha256.clone();
+        }
+    }
+
+    private FileDigestCache() {
+    }
+
+    /**
+     * Returns the digests of the specified file, reading it only if they are
+     * not already known for its current length and modification time.
+     *
+     * @param file the file
+     * @param sha256 whether the SHA-256 digest is needed as well as the MD5
+     * @return the digests of the file
+     * @throws IOException if the file can't be read
+     */
+    public static Digests getDigests(File file, boolean sha256) throws IOException {
+        final String key = key(file);
+        synchronized (CACHE) {
+            final Digests cached = CACHE.get(key);
+            if (cached != null && (!sha256 || cached.sha256 != null)) {
+                return cached;
+            }
+        }
+        final Digests digests = compute(file, sha256);
+        // only keep the result if the file did not change while it was read
+        if (key.equals(key(file))) {
+            synchronized (CACHE) {
+                CACHE.put(key, digests);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Forgets the digests of the specified file, for instance because the
+     * service found they did not match the content that was sent.
+     *
+     * @param file the file
+     */
+    public static void invalidate(File file) {
+        final String prefix = file.getAbsolutePath() + '\n';
+        synchronized (CACHE) {
+            for (final Iterator<String> keys = CACHE.keySet().iterator(); keys.hasNext();) {
+                if (keys.next().startsWith(prefix)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    private static String key(File file) {
+        return file.getAbsolutePath() + '\n' + file.length() + '\n' + file.lastModified();
+    }
+
+    private static Digests compute(File file, boolean sha256) throws IOException {
+        final MessageDigest md5Digest = newDigest("MD5");
+        final MessageDigest sha256Digest = sha256 ? newDigest("SHA-256") : null;
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                md5Digest.update(buffer, 0, read);
+                if (sha256Digest != null) {
+                    sha256Digest.update(buffer, 0, read);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return new Digests(md5Digest.digest(),
+                sha256Digest == null ? null : sha256Digest.digest());
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.io.InputStream;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
 
 /**
  * @see CipherLite
@@ -47,8 +48,15 @@ public class CipherLiteInputStream extends SdkFilterInputStream {
      * True if this is the last part of a multipart upload; false otherwise.
      */
     private final boolean lastMultiPart;
+    /**
+     * True if each chunk is processed into {@link #outbuf} instead of a new
+     * buffer returned by the cipher.
+     */
+    private final boolean reuseOutputBuffer;
     private boolean eof = false;
     private final byte[] bufin;
+    /** The reusable output buffer; null until first needed. */
+    private byte[] outbuf;
     private byte[] bufout;
     private int currPos = 0;
     private int maxPos = 0;
@@ -82,6 +90,22 @@ public class CipherLiteInputStream extends SdkFilterInputStream {
      */
     public CipherLiteInputStream(InputStream is, CipherLite cipherLite, int buffsize,
             boolean multipart, boolean lastMultiPart) {
+        this(is, cipherLite, buffsize, multipart, lastMultiPart, false);
+    }
+
+    /**
+     * Constructor.
+     * @param is the input stream.
+     * @param cipherLite the CipherLite.
+     * @param buffsize the buffer size.
+     * @param multipart indicator for multipart.
+     * @param lastMultiPart indicator for last multipart.
+     * @param reuseOutputBuffer true to process each chunk into an output
+     *            buffer owned by this stream rather than a new one; best
+     *            combined with a large buffer size.
+     */
+    public CipherLiteInputStream(InputStream is, CipherLite cipherLite, int buffsize,
+            boolean multipart, boolean lastMultiPart, boolean reuseOutputBuffer) {
         super(is);
         if (lastMultiPart && !multipart) {
             throw new IllegalArgumentException(
@@ -90,6 +114,7 @@ public class CipherLiteInputStream extends SdkFilterInputStream {
         this.multipart = multipart;
         this.lastMultiPart = lastMultiPart;
         this.cipherLite = cipherLite;
+        this.reuseOutputBuffer = reuseOutputBuffer;
         if (buffsize <= 0 || (buffsize % DEFAULT_IN_BUFFER_SIZE) != 0) {
             throw new IllegalArgumentException("buffsize (" + buffsize
                     + ") must be a positive multiple of "
@@ -282,12 +307,44 @@ public class CipherLiteInputStream extends SdkFilterInputStream {
             }
             return -1;
         }
-        bufout = cipherLite.update(bufin, 0, len);
         currPos = 0;
+        if (reuseOutputBuffer) {
+            maxPos = updateIntoOutputBuffer(len);
+            return maxPos;
+        }
+        bufout = cipherLite.update(bufin, 0, len);
         maxPos = (bufout == null ? 0 : bufout.length);
         return maxPos;
     }
 
+    /**
+     * Processes the first <code>len</code> bytes of the input buffer into the
+     * reusable output buffer, growing it if the cipher asks for more room.
+     *
+     * @return the number of bytes in the output buffer
+     */
+    private int updateIntoOutputBuffer(int len) {
+        final int outputSize = cipherLite.getOutputSize(len);
+        if (outbuf == null || outbuf.length < outputSize) {
+            outbuf = new byte[Math.max(outputSize, bufin.length)];
+        }
+        try {
+            final int outLen = cipherLite.update(bufin, 0, len, outbuf, 0);
+            bufout = outbuf;
+            return outLen;
+        } catch (final ShortBufferException e) {
+            // the cipher state is unchanged; retry once with ample room
+            outbuf = new byte[2 * Math.max(outputSize, bufin.length)];
+            try {
+                final int outLen = cipherLite.update(bufin, 0, len, outbuf, 0);
+                bufout = outbuf;
+                return outLen;
+            } catch (final ShortBufferException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
     void renewCipherLite() {
         cipherLite = cipherLite.recreate();
     }
@@ -257,12 +257,16 @@ final class ContentCryptoMaterial {
      * @param securityProvider
      *            security provider or null if the default security provider of
      *            the JCE is used
+     * @param kmsKeyCache
+     *            cache of the keys decrypted by KMS; or null if not enabled
      */
     private static SecretKey cek(byte[] cekSecured, String keyWrapAlgo,
             EncryptionMaterials materials, Provider securityProvider,
-            ContentCryptoScheme contentCryptoScheme, AWSKMSClient kms) {
+            ContentCryptoScheme contentCryptoScheme, AWSKMSClient kms,
+            KMSKeyCache kmsKeyCache) {
         if (isKMSKeyWrapped(keyWrapAlgo)) {
-            return cekByKMS(cekSecured, keyWrapAlgo, materials, contentCryptoScheme, kms);
+            return cekByKMS(cekSecured, keyWrapAlgo, materials, contentCryptoScheme, kms,
+                    kmsKeyCache);
         }
         Key kek;
         if (materials.getKeyPair() != null) {
@@ -308,17 +312,21 @@ final class ContentCryptoMaterial {
     }
 
     /**
-     * Decrypts the secured CEK via KMS; involves network calls.
+     * Decrypts the secured CEK via KMS; involves network calls unless the
+     * CEK is found in the specified cache.
      *
      * @return the CEK (in plaintext).
      */
     private static SecretKey cekByKMS(byte[] cekSecured, String keyWrapAlgo,
             EncryptionMaterials materials,
-            ContentCryptoScheme contentCryptoScheme, AWSKMSClient kms) {
+            ContentCryptoScheme contentCryptoScheme, AWSKMSClient kms,
+            KMSKeyCache kmsKeyCache) {
         final DecryptRequest kmsreq = new DecryptRequest()
             .withEncryptionContext(materials.getMaterialsDescription())
             .withCiphertextBlob(ByteBuffer.wrap(cekSecured));
-        final DecryptResult result = kms.decrypt(kmsreq);
+        final DecryptResult result = kmsKeyCache == null
+                ? kms.decrypt(kmsreq)
+                : kmsKeyCache.decrypt(kms, kmsreq);
         return new SecretKeySpec(copyAllBytesFrom(result.getPlaintext()),
                 contentCryptoScheme.getKeyGeneratorAlgorithm());
     }
@@ -331,9 +339,11 @@ final class ContentCryptoMaterial {
             EncryptionMaterialsAccessor kekMaterialAccessor,
             Provider securityProvider,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSKeyCache kmsKeyCache) {
         return fromObjectMetadata0(metadata, kekMaterialAccessor,
-                securityProvider, null, ExtraMaterialsDescription.NONE, keyWrapExpected, kms);
+                securityProvider, null, ExtraMaterialsDescription.NONE, keyWrapExpected, kms,
+                kmsKeyCache);
     }
 
     /**
@@ -350,9 +360,11 @@ final class ContentCryptoMaterial {
             long[] range,
             ExtraMaterialsDescription extra,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSKeyCache kmsKeyCache) {
         return fromObjectMetadata0(metadata, kekMaterialAccessor,
-                securityProvider, range, extra, keyWrapExpected, kms);
+                securityProvider, range, extra, keyWrapExpected, kms,
+                kmsKeyCache);
     }
 
     /**
@@ -365,7 +377,8 @@ final class ContentCryptoMaterial {
             long[] range,
             ExtraMaterialsDescription extra,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSKeyCache kmsKeyCache) {
         // CEK and IV
         final Map<String, String> userMeta = metadata.getUserMetadata();
         String b64key = userMeta.get(Headers.CRYPTO_KEY_V2);
@@ -430,7 +443,7 @@ final class ContentCryptoMaterial {
             throw newKeyWrapException();
         }
         final SecretKey cek = cek(cekWrapped, keyWrapAlgo, materials,
-                securityProvider, contentCryptoScheme, kms);
+                securityProvider, contentCryptoScheme, kms, kmsKeyCache);
         return new ContentCryptoMaterial(merged, cekWrapped, keyWrapAlgo,
                 contentCryptoScheme.createCipherLite(cek, iv,
                         Cipher.DECRYPT_MODE, securityProvider));
@@ -449,9 +462,11 @@ final class ContentCryptoMaterial {
             EncryptionMaterialsAccessor kekMaterialAccessor,
             Provider securityProvider,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSKeyCache kmsKeyCache) {
         return fromInstructionFile0(instFile, kekMaterialAccessor,
-                securityProvider, null, ExtraMaterialsDescription.NONE, keyWrapExpected, kms);
+                securityProvider, null, ExtraMaterialsDescription.NONE, keyWrapExpected, kms,
+                kmsKeyCache);
     }
 
     /**
@@ -468,9 +483,11 @@ final class ContentCryptoMaterial {
             long[] range,
             ExtraMaterialsDescription extra,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSKeyCache kmsKeyCache) {
         return fromInstructionFile0(instFile, kekMaterialAccessor,
-                securityProvider, range, extra, keyWrapExpected, kms);
+                securityProvider, range, extra, keyWrapExpected, kms,
+                kmsKeyCache);
     }
 
     /**
@@ -483,7 +500,8 @@ final class ContentCryptoMaterial {
             long[] range,
             ExtraMaterialsDescription extra,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSKeyCache kmsKeyCache) {
         // CEK and IV
         String b64key = instFile.get(Headers.CRYPTO_KEY_V2);
         if (b64key == null) {
@@ -550,7 +568,7 @@ final class ContentCryptoMaterial {
             throw newKeyWrapException();
         }
         final SecretKey cek = cek(cekWrapped, keyWrapAlgo, materials,
-                securityProvider, contentCryptoScheme, kms);
+                securityProvider, contentCryptoScheme, kms, kmsKeyCache);
         return new ContentCryptoMaterial(merged, cekWrapped, keyWrapAlgo,
                 contentCryptoScheme.createCipherLite(cek, iv,
                         Cipher.DECRYPT_MODE, securityProvider));
@@ -661,7 +679,7 @@ final class ContentCryptoMaterial {
                     + " from the encryption material provider");
         }
         final SecretKey cek = cek(encryptedCEK, keyWrappingAlgorithm, origKEK, p,
-                getContentCryptoScheme(), kms);
+                getContentCryptoScheme(), kms, null);
         final ContentCryptoMaterial output = create(cek, cipherLite.getIV(), newKEK,
                 getContentCryptoScheme(),  // must use same content crypto scheme
                 targetScheme,
@@ -711,7 +729,7 @@ final class ContentCryptoMaterial {
             origKEK = accessor.getEncryptionMaterials(kekMaterialsDescription);
         }
         final SecretKey cek = cek(encryptedCEK, keyWrappingAlgorithm, origKEK, p,
-                getContentCryptoScheme(), kms);
+                getContentCryptoScheme(), kms, null);
         final ContentCryptoMaterial output =
             create(cek, cipherLite.getIV(), newKEK,
                    getContentCryptoScheme(),  // must use same content crypto scheme
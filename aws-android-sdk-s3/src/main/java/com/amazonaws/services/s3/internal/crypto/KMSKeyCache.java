@@ -0,0 +1,246 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal.crypto;
+
+import static com.amazonaws.util.BinaryUtils.copyAllBytesFrom;
+
+import com.amazonaws.services.kms.AWSKMSClient;
+import com.amazonaws.services.kms.model.DecryptRequest;
+import com.amazonaws.services.kms.model.DecryptResult;
+import com.amazonaws.services.kms.model.GenerateDataKeyRequest;
+import com.amazonaws.services.kms.model.GenerateDataKeyResult;
+import com.amazonaws.services.s3.model.KMSKeyCacheConfiguration;
+import com.amazonaws.util.BinaryUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the data keys generated by KMS, so that one data key encrypts several
+ * objects within the limits of a {@link KMSKeyCacheConfiguration}, and the
+ * data keys decrypted by KMS, by their encrypted form. The cache hands out
+ * copies of the plaintext keys and zeroes its own copies when they are
+ * evicted.
+ */
+final class KMSKeyCache {
+
+    private final long maxAgeNanos;
+    private final long maxMessagesPerKey;
+    private final long maxBytesPerKey;
+
+    /** Data keys by customer master key, key spec and encryption context. */
+    private final Map<String, KeyEntry> dataKeys;
+
+    /** Decrypted data keys by encrypted key and encryption context. */
+    private final Map<String, KeyEntry> decryptedKeys;
+
+    KMSKeyCache(KMSKeyCacheConfiguration config) {
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxAgeMillis());
+        this.maxMessagesPerKey = config.getMaxMessagesPerKey();
+        this.maxBytesPerKey = config.getMaxBytesPerKey();
+        this.dataKeys = newLruMap(config.getMaxEntries());
+        this.decryptedKeys = newLruMap(config.getMaxEntries());
+    }
+
+    /**
+     * Returns a data key to encrypt an object, generated by KMS or reused from
+     * a previous call with the same request parameters.
+     *
+     * @param kms the KMS client to generate new data keys with
+     * @param req the request for a new data key
+     * @param plaintextLength the length of the object to encrypt, or -1 if it
+     *            is not known, in which case a new data key is always
+     *            generated
+     * @return the data key; its buffers are not shared with the cache
+     */
+    GenerateDataKeyResult generateDataKey(AWSKMSClient kms, GenerateDataKeyRequest req,
+            long plaintextLength) {
+        if (plaintextLength < 0 || plaintextLength > maxBytesPerKey) {
+            return kms.generateDataKey(req);
+        }
+        final String cacheKey = dataKeyCacheKey(req);
+        final long now = System.nanoTime();
+        synchronized (dataKeys) {
+            final KeyEntry entry = dataKeys.get(cacheKey);
+            if (entry != null) {
+                if (now - entry.createdNanos < maxAgeNanos
+                        && entry.messages < maxMessagesPerKey
+                        && entry.bytes + plaintextLength <= maxBytesPerKey) {
+                    entry.messages++;
+                    entry.bytes += plaintextLength;
+                    return entry.toDataKeyResult();
+                }
+                dataKeys.remove(cacheKey);
+                entry.zeroize();
+            }
+        }
+
+        final GenerateDataKeyResult result = kms.generateDataKey(req);
+        final byte[] plaintext = copyAllBytesFrom(result.getPlaintext());
+        final byte[] ciphertextBlob = copyAllBytesFrom(result.getCiphertextBlob());
+        final KeyEntry entry = new KeyEntry(plaintext, ciphertextBlob, result.getKeyId(), now);
+        entry.messages = 1;
+        entry.bytes = plaintextLength;
+        synchronized (dataKeys) {
+            final KeyEntry previous = dataKeys.put(cacheKey, entry);
+            if (previous != null) {
+                previous.zeroize();
+            }
+        }
+        // objects encrypted with this key can be read back without KMS
+        putDecryptedKey(ciphertextBlob, req.getEncryptionContext(), plaintext.clone(),
+                result.getKeyId(), now);
+        return entry.toDataKeyResult();
+    }
+
+    /**
+     * Returns the data key decrypted by KMS from the specified request, or
+     * the key cached from a previous call with the same encrypted key and
+     * encryption context.
+     *
+     * @param kms the KMS client to decrypt keys not in the cache with
+     * @param req the request to decrypt a data key
+     * @return the decrypted data key; its buffer is not shared with the cache
+     */
+    DecryptResult decrypt(AWSKMSClient kms, DecryptRequest req) {
+        final byte[] ciphertextBlob = copyAllBytesFrom(req.getCiphertextBlob());
+        final String cacheKey = decryptedKeyCacheKey(ciphertextBlob, req.getEncryptionContext());
+        final long now = System.nanoTime();
+        synchronized (decryptedKeys) {
+            final KeyEntry entry = decryptedKeys.get(cacheKey);
+            if (entry != null) {
+                if (now - entry.createdNanos < maxAgeNanos) {
+                    return entry.toDecryptResult();
+                }
+                decryptedKeys.remove(cacheKey);
+                entry.zeroize();
+            }
+        }
+
+        final DecryptResult result = kms.decrypt(req);
+        putDecryptedKey(ciphertextBlob, req.getEncryptionContext(),
+                copyAllBytesFrom(result.getPlaintext()), result.getKeyId(), now);
+        return result;
+    }
+
+    /**
+     * Caches a decrypted key; the cache takes ownership of the plaintext
+     * array.
+     */
+    private void putDecryptedKey(byte[] ciphertextBlob, Map<String, String> encryptionContext,
+            byte[] plaintext, String keyId, long now) {
+        final KeyEntry entry = new KeyEntry(plaintext, ciphertextBlob, keyId, now);
+        synchronized (decryptedKeys) {
+            final KeyEntry previous = decryptedKeys.put(
+                    decryptedKeyCacheKey(ciphertextBlob, encryptionContext), entry);
+            if (previous != null) {
+                previous.zeroize();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached plaintext of the data key for the specified request,
+     * without copying it, or null if none is cached. For tests.
+     */
+    byte[] peekDataKey(GenerateDataKeyRequest req) {
+        synchronized (dataKeys) {
+            final KeyEntry entry = dataKeys.get(dataKeyCacheKey(req));
+            return entry == null ? null : entry.plaintext;
+        }
+    }
+
+    private static String dataKeyCacheKey(GenerateDataKeyRequest req) {
+        return req.getKeyId() + '\n' + req.getKeySpec() + '\n'
+                + contextKey(req.getEncryptionContext());
+    }
+
+    private static String decryptedKeyCacheKey(byte[] ciphertextBlob,
+            Map<String, String> encryptionContext) {
+        return BinaryUtils.toHex(ciphertextBlob) + '\n' + contextKey(encryptionContext);
+    }
+
+    /**
+     * Returns an unambiguous encoding of the encryption context, independent
+     * of the order of its entries, so that a key is never reused under
+     * another context.
+     */
+    private static String contextKey(Map<String, String> encryptionContext) {
+        if (encryptionContext == null || encryptionContext.isEmpty()) {
+            return "";
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, String> e
+                : new TreeMap<String, String>(encryptionContext).entrySet()) {
+            final String value = e.getValue() == null ? "" : e.getValue();
+            sb.append(e.getKey().length()).append(':').append(e.getKey())
+                    .append(value.length()).append(':').append(value);
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, KeyEntry> newLruMap(final int maxEntries) {
+        return new LinkedHashMap<String, KeyEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KeyEntry> eldest) {
+                if (size() > maxEntries) {
+                    eldest.getValue().zeroize();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private static final class KeyEntry {
+        private final byte[] plaintext;
+        private final byte[] ciphertextBlob;
+        private final String keyId;
+        private final long createdNanos;
+        private long messages;
+        private long bytes;
+
+        KeyEntry(byte[] plaintext, byte[] ciphertextBlob, String keyId, long createdNanos) {
+            this.plaintext = plaintext;
+            this.ciphertextBlob = ciphertextBlob;
+            this.keyId = keyId;
+            this.createdNanos = createdNanos;
+        }
+
+        GenerateDataKeyResult toDataKeyResult() {
+            return new GenerateDataKeyResult()
+                    .withPlaintext(ByteBuffer.wrap(plaintext.clone()))
+                    .withCiphertextBlob(ByteBuffer.wrap(ciphertextBlob.clone()))
+                    .withKeyId(keyId);
+        }
+
+        DecryptResult toDecryptResult() {
+            return new DecryptResult()
+                    .withPlaintext(ByteBuffer.wrap(plaintext.clone()))
+                    .withKeyId(keyId);
+        }
+
+        void zeroize() {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+    }
+}
@@ -59,6 +59,22 @@ public final class RenewableCipherLiteInputStream extends CipherLiteInputStream
         super(is, c, buffsize, multipart, lastMultiPart);
     }
 
+    /**
+     * Constructor.
+     * @param is the input stream.
+     * @param c the cipher lite.
+     * @param buffsize the size of the buffer.
+     * @param multipart true if multipart is enabled.
+     * @param lastMultiPart true if it is the last multipart.
+     * @param reuseOutputBuffer true to process each chunk into an output
+     *            buffer owned by this stream rather than a new one.
+     */
+    public RenewableCipherLiteInputStream(InputStream is, CipherLite c,
+            int buffsize, boolean multipart, boolean lastMultiPart,
+            boolean reuseOutputBuffer) {
+        super(is, c, buffsize, multipart, lastMultiPart, reuseOutputBuffer);
+    }
+
     protected RenewableCipherLiteInputStream(InputStream is) {
         super(is);
     }
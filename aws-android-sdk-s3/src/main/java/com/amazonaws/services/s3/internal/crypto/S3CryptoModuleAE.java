@@ -238,7 +238,8 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
                     cryptoRange,   // range is sometimes necessary to compute the adjusted IV
                     extraMatDesc,
                     keyWrapExpected,
-                    kms
+                    kms,
+                    kmsKeyCache
             );
         securityCheck(cekMaterial, retrieved);
         final S3ObjectWrapper decrypted = decrypt(retrieved, cekMaterial, cryptoRange);
@@ -268,7 +269,8 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
                 cryptoRange,
                 extraMatDesc,
                 keyWrapExpected,
-                kms
+                kms,
+                kmsKeyCache
             );
         securityCheck(cekMaterial, retrieved);
         final S3ObjectWrapper decrypted = decrypt(retrieved, cekMaterial, cryptoRange);
@@ -417,7 +419,7 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
         wrapper.setObjectContent(new S3ObjectInputStream(
                 new CipherLiteInputStream(objectContent,
                     cekMaterial.getCipherLite(),
-                    DEFAULT_BUFFER_SIZE),
+                    cipherBufferSize, false, false, reuseCipherOutputBuffer),
                     objectContent.getHttpRequest()));
         return wrapper;
     }
@@ -109,6 +109,15 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
             Collections.synchronizedMap(new HashMap<String, T>());
     protected final S3Direct s3;
     protected final AWSKMSClient kms;
+    /** Cache of KMS data keys; or null if not enabled in the configuration. */
+    protected final KMSKeyCache kmsKeyCache;
+    /** Size of the input buffer of the cipher streams. */
+    protected final int cipherBufferSize;
+    /**
+     * True if the cipher streams process data into reusable output buffers
+     * rather than new ones for each chunk.
+     */
+    protected final boolean reuseCipherOutputBuffer;
 
     /**
      * @param cryptoConfig a read-only copy of the crypto configuration.
@@ -126,6 +135,11 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         this.cryptoScheme = S3CryptoScheme.from(cryptoConfig.getCryptoMode());
         this.contentCryptoScheme = cryptoScheme.getContentCryptoScheme();
         this.kms = kms;
+        this.kmsKeyCache = cryptoConfig.getKmsKeyCacheConfiguration() == null ? null
+                : new KMSKeyCache(cryptoConfig.getKmsKeyCacheConfiguration());
+        this.reuseCipherOutputBuffer = cryptoConfig.getCipherStreamBufferSize() > 0;
+        this.cipherBufferSize = reuseCipherOutputBuffer
+                ? cryptoConfig.getCipherStreamBufferSize() : DEFAULT_BUFFER_SIZE;
     }
 
     /**
@@ -141,6 +155,10 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         this.cryptoScheme = S3CryptoScheme.from(cryptoConfig.getCryptoMode());
         this.contentCryptoScheme = cryptoScheme.getContentCryptoScheme();
         this.kms = null;
+        this.kmsKeyCache = null;
+        this.reuseCipherOutputBuffer = cryptoConfig.getCipherStreamBufferSize() > 0;
+        this.cipherBufferSize = reuseCipherOutputBuffer
+                ? cryptoConfig.getCipherStreamBufferSize() : DEFAULT_BUFFER_SIZE;
     }
 
     /**
@@ -368,11 +386,11 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
                     req.isLastPart());
             return cipherLite.markSupported()
                  ? new CipherLiteInputStream(isCurr, cipherLite,
-                       DEFAULT_BUFFER_SIZE,
-                       IS_MULTI_PART, req.isLastPart())
+                       cipherBufferSize,
+                       IS_MULTI_PART, req.isLastPart(), reuseCipherOutputBuffer)
                  : new RenewableCipherLiteInputStream(isCurr, cipherLite,
-                        DEFAULT_BUFFER_SIZE,
-                        IS_MULTI_PART, req.isLastPart());
+                        cipherBufferSize,
+                        IS_MULTI_PART, req.isLastPart(), reuseCipherOutputBuffer);
         } catch (final Exception e) {
             cleanupDataSource(req, fileOrig, isOrig, isCurr, log);
             throw new AmazonClientException("Unable to create cipher input stream", e);
@@ -544,7 +562,9 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
             keyGenReq
                 .withGeneralProgressListener(req.getGeneralProgressListener())
                 .withRequestMetricCollector(req.getRequestMetricCollector());
-            final GenerateDataKeyResult keyGenRes = kms.generateDataKey(keyGenReq);
+            final GenerateDataKeyResult keyGenRes = kmsKeyCache == null
+                    ? kms.generateDataKey(keyGenReq)
+                    : kmsKeyCache.generateDataKey(kms, keyGenReq, plaintextLength(req));
             final SecretKey cek =
                 new SecretKeySpec(copyAllBytesFrom(keyGenRes.getPlaintext()),
                         contentCryptoScheme.getKeyGeneratorAlgorithm());
@@ -674,10 +694,10 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
 
             if (cipherLite.markSupported()) {
                 return new CipherLiteInputStream(isCurr, cipherLite,
-                        DEFAULT_BUFFER_SIZE);
+                        cipherBufferSize, false, false, reuseCipherOutputBuffer);
             } else {
                 return new RenewableCipherLiteInputStream(isCurr, cipherLite,
-                        DEFAULT_BUFFER_SIZE);
+                        cipherBufferSize, false, false, reuseCipherOutputBuffer);
             }
         } catch (final Exception e) {
             cleanupDataSource(req, fileOrig, isOrig, isCurr, log);
@@ -700,6 +720,22 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         return -1;
     }
 
+    /**
+     * Returns the length of the plaintext of the object uploaded by the
+     * specified request, or -1 if the request uploads no object or the length
+     * is not known in advance.
+     */
+    private long plaintextLength(AmazonWebServiceRequest req) {
+        if (req instanceof AbstractPutObjectRequest) {
+            final AbstractPutObjectRequest putReq = (AbstractPutObjectRequest) req;
+            final ObjectMetadata metadata = putReq.getMetadata();
+            if (putReq.getFile() != null || metadata != null) {
+                return plaintextLength(putReq, metadata);
+            }
+        }
+        return -1;
+    }
+
     public final S3CryptoScheme getS3CryptoScheme() {
         return cryptoScheme;
     }
@@ -870,7 +906,8 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
                     kekMaterialsProvider,
                     cryptoConfig.getCryptoProvider(),
                     false,   // existing CEK not necessarily key-wrapped
-                    kms
+                    kms,
+                    kmsKeyCache
                 );
         }
         final S3ObjectWrapper origIfile =
@@ -896,7 +933,8 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
             kekMaterialsProvider,
             cryptoConfig.getCryptoProvider(),
             false,   // existing CEK not necessarily key-wrapped
-            kms
+            kms,
+            kmsKeyCache
         );
     }
 
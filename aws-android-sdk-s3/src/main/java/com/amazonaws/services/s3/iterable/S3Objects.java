@@ -15,12 +15,22 @@
 
 package com.amazonaws.services.s3.iterable;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 
 import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides an easy way to iterate Amazon S3 objects in a "foreach" statement.
@@ -34,7 +44,9 @@ import java.util.Iterator;
  * <p>
  * The list of {@link S3ObjectSummary}s will be fetched lazily, a page at a
  * time, as they are needed. The size of the page can be controlled with the
- * {@link S3Objects#withBatchSize(int)} method.
+ * {@link S3Objects#withBatchSize(int)} method. With
+ * {@link S3Objects#withPrefetch(boolean)}, the next page is requested in the
+ * background while the current one is iterated.
  */
 public final class S3Objects implements Iterable<S3ObjectSummary> {
 
@@ -42,6 +54,7 @@ public final class S3Objects implements Iterable<S3ObjectSummary> {
     private String prefix = null;
     private String bucketName;
     private Integer batchSize = null;
+    private boolean prefetch = false;
 
     private S3Objects(AmazonS3 s3, String bucketName) {
         this.s3 = s3;
@@ -88,6 +101,26 @@ public final class S3Objects implements Iterable<S3ObjectSummary> {
         return this;
     }
 
+    /**
+     * Sets whether the next page of {@link S3ObjectSummary}s is requested in
+     * the background as soon as the current page arrives, so that iterating a
+     * large bucket does not wait for each request in turn. The background
+     * requests are made on a small shared pool of daemon threads. An iterator
+     * that is abandoned may leave one page being fetched.
+     *
+     * @param prefetch Whether to fetch the next page in the background.
+     * @return the S3Objects.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public S3Objects withPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
     public Integer getBatchSize() {
         return batchSize;
     }
@@ -110,6 +143,8 @@ public final class S3Objects implements Iterable<S3ObjectSummary> {
 
         private Iterator<S3ObjectSummary> currentIterator = null;
 
+        private Future<ObjectListing> nextListing = null;
+
         @Override
         public boolean hasNext() {
             prepareCurrentListing();
@@ -137,11 +172,40 @@ public final class S3Objects implements Iterable<S3ObjectSummary> {
                     req.setPrefix(getPrefix());
                     req.setMaxKeys(getBatchSize());
                     currentListing = getS3().listObjects(req);
+                } else if (nextListing != null) {
+                    currentListing = getPrefetchedListing();
                 } else {
                     currentListing = getS3().listNextBatchOfObjects(currentListing);
                 }
 
                 currentIterator = currentListing.getObjectSummaries().iterator();
+
+                if (isPrefetch() && currentListing.isTruncated()) {
+                    final ObjectListing listing = currentListing;
+                    nextListing = PrefetchExecutor.INSTANCE.submit(new Callable<ObjectListing>() {
+                        @Override
+                        public ObjectListing call() {
+                            return getS3().listNextBatchOfObjects(listing);
+                        }
+                    });
+                }
+            }
+        }
+
+        private ObjectListing getPrefetchedListing() {
+            final Future<ObjectListing> listing = nextListing;
+            nextListing = null;
+            try {
+                return listing.get();
+            } catch (final InterruptedException e) {
+                listing.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException("Interrupted while listing objects", e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new AmazonClientException("Failed to list objects", e.getCause());
             }
         }
 
@@ -152,4 +216,33 @@ public final class S3Objects implements Iterable<S3ObjectSummary> {
         return new S3ObjectIterator();
     }
 
+    /**
+     * Daemon threads shared by all prefetching iterators, created on first
+     * use. Idle threads exit after a minute.
+     */
+    private static final class PrefetchExecutor {
+        private static final int POOL_SIZE = 4;
+        private static final long KEEP_ALIVE_SECONDS = 60;
+
+        static final ExecutorService INSTANCE = newPool();
+
+        private static ExecutorService newPool() {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            final Thread thread = new Thread(r,
+                                    "s3-listing-prefetch-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
 }
@@ -31,6 +31,8 @@ import java.security.Provider;
 public class CryptoConfiguration implements Cloneable,Serializable {
 
     private static final long serialVersionUID = -8646831898339939580L;
+    /** The cipher stream buffer size must be a multiple of this. */
+    private static final int CIPHER_BLOCK_GRANULARITY = 512;
 
     private CryptoMode cryptoMode;
     private CryptoStorageMode storageMode;
@@ -48,6 +50,17 @@ public class CryptoConfiguration implements Cloneable,Serializable {
      * null if no explicit KMS region is specified.
      */
     private transient com.amazonaws.regions.Region awskmsRegion;
+    /**
+     * Limits of the cache of KMS data keys; or null if data keys are not
+     * cached, which is the default.
+     */
+    private KMSKeyCacheConfiguration kmsKeyCacheConfiguration;
+    /**
+     * Size in bytes of the blocks processed by the cipher streams into
+     * reusable output buffers; or zero for the default small blocks, each
+     * processed into a new buffer.
+     */
+    private int cipherStreamBufferSize;
 
     /**
      * Creates a new CryptoConfiguration object with default storage mode and
@@ -278,6 +291,21 @@ public class CryptoConfiguration implements Cloneable,Serializable {
         @Override public CryptoConfiguration withKmsRegion(Regions kmsRegion) {
             throw new UnsupportedOperationException();
         }
+        @Override public void setCipherStreamBufferSize(int cipherStreamBufferSize) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withCipherStreamBufferSize(
+                int cipherStreamBufferSize) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public void setKmsKeyCacheConfiguration(
+                KMSKeyCacheConfiguration kmsKeyCacheConfiguration) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withKmsKeyCacheConfiguration(
+                KMSKeyCacheConfiguration kmsKeyCacheConfiguration) {
+            throw new UnsupportedOperationException();
+        }
     }
 
     /**
@@ -301,6 +329,9 @@ public class CryptoConfiguration implements Cloneable,Serializable {
         that.cryptoProvider = this.cryptoProvider;
         that.ignoreMissingInstructionFile = this.ignoreMissingInstructionFile;
         that.awskmsRegion = this.awskmsRegion;
+        that.kmsKeyCacheConfiguration = this.kmsKeyCacheConfiguration == null ? null
+                : new KMSKeyCacheConfiguration(this.kmsKeyCacheConfiguration);
+        that.cipherStreamBufferSize = this.cipherStreamBufferSize;
         return that;
     }
 
@@ -399,4 +430,76 @@ public class CryptoConfiguration implements Cloneable,Serializable {
         this.awskmsRegion = awsKmsRegion;
         return this;
     }
+
+    /**
+     * Returns the size in bytes of the blocks processed by the cipher streams
+     * when encrypting and decrypting objects; or zero, the default, if small
+     * blocks are processed each into a new buffer.
+     */
+    public int getCipherStreamBufferSize() {
+        return cipherStreamBufferSize;
+    }
+
+    /**
+     * Sets the size in bytes of the blocks processed by the cipher streams
+     * when encrypting and decrypting objects. A positive size, such as 64 KB
+     * to 256 KB, makes the streams process large blocks into output buffers
+     * they reuse, which avoids allocating a buffer per block at the cost of
+     * two buffers of that size per open stream. Zero, the default, processes
+     * 2 KB blocks, each into a new buffer.
+     *
+     * @param cipherStreamBufferSize zero or a positive multiple of 512
+     */
+    public void setCipherStreamBufferSize(int cipherStreamBufferSize) {
+        if (cipherStreamBufferSize < 0 || cipherStreamBufferSize % CIPHER_BLOCK_GRANULARITY != 0) {
+            throw new IllegalArgumentException("cipherStreamBufferSize ("
+                    + cipherStreamBufferSize + ") must be zero or a positive multiple of "
+                    + CIPHER_BLOCK_GRANULARITY);
+        }
+        this.cipherStreamBufferSize = cipherStreamBufferSize;
+    }
+
+    /**
+     * Fluent API to set the size in bytes of the blocks processed by the
+     * cipher streams when encrypting and decrypting objects.
+     *
+     * @see #setCipherStreamBufferSize(int)
+     */
+    public CryptoConfiguration withCipherStreamBufferSize(int cipherStreamBufferSize) {
+        setCipherStreamBufferSize(cipherStreamBufferSize);
+        return this;
+    }
+
+    /**
+     * Returns the limits of the cache of KMS data keys used when the
+     * encryption materials are {@link KMSEncryptionMaterials}; or null if
+     * data keys are not cached, which is the default.
+     */
+    public KMSKeyCacheConfiguration getKmsKeyCacheConfiguration() {
+        return kmsKeyCacheConfiguration;
+    }
+
+    /**
+     * Enables the cache of KMS data keys with the specified limits, or
+     * disables it if null. When enabled, a data key generated by KMS encrypts
+     * several objects and data keys decrypted by KMS are reused, which saves
+     * a call to KMS for most uploads and downloads.
+     *
+     * @see KMSKeyCacheConfiguration
+     */
+    public void setKmsKeyCacheConfiguration(KMSKeyCacheConfiguration kmsKeyCacheConfiguration) {
+        this.kmsKeyCacheConfiguration = kmsKeyCacheConfiguration;
+    }
+
+    /**
+     * Fluent API to enable the cache of KMS data keys with the specified
+     * limits, or disable it if null.
+     *
+     * @see KMSKeyCacheConfiguration
+     */
+    public CryptoConfiguration withKmsKeyCacheConfiguration(
+            KMSKeyCacheConfiguration kmsKeyCacheConfiguration) {
+        setKmsKeyCacheConfiguration(kmsKeyCacheConfiguration);
+        return this;
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.model;
+
+import java.io.Serializable;
+
+/**
+ * Limits of the cache of KMS data keys used by the Amazon S3 Encryption Client
+ * when it is configured with {@link KMSEncryptionMaterials}. Without a cache,
+ * every encrypted upload asks KMS to generate a new data key and every
+ * download asks KMS to decrypt the data key of the object.
+ * <p>
+ * With a cache, a data key generated by KMS is reused to encrypt further
+ * objects with the same customer master key and encryption context until it
+ * gets older than the maximum age, or has encrypted the maximum number of
+ * objects or bytes. Objects whose size is not known in advance are always
+ * encrypted with a new data key. Data keys decrypted by KMS are also kept, by
+ * their encrypted form, until they get older than the maximum age. The cache
+ * zeroes its copies of the keys when they are evicted.
+ * <p>
+ * Reusing a data key means that more objects become readable by anyone who
+ * obtains that one plaintext key; keep the limits as low as the workload
+ * allows.
+ *
+ * @see CryptoConfiguration#setKmsKeyCacheConfiguration(KMSKeyCacheConfiguration)
+ */
+public class KMSKeyCacheConfiguration implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Default maximum age of a cached key, 5 minutes. */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 5 * 60 * 1000L;
+
+    /** Default maximum number of objects encrypted with one data key. */
+    public static final long DEFAULT_MAX_MESSAGES_PER_KEY = 1000;
+
+    /** Default maximum number of bytes encrypted with one data key, 1 GiB. */
+    public static final long DEFAULT_MAX_BYTES_PER_KEY = 1024L * 1024 * 1024;
+
+    /** Default maximum number of keys kept in each of the caches. */
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+
+    private long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+    private long maxMessagesPerKey = DEFAULT_MAX_MESSAGES_PER_KEY;
+    private long maxBytesPerKey = DEFAULT_MAX_BYTES_PER_KEY;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    /**
+     * Creates a configuration with the default limits.
+     */
+    public KMSKeyCacheConfiguration() {
+    }
+
+    /**
+     * Creates a copy of the specified configuration.
+     *
+     * @param other the configuration to copy
+     */
+    public KMSKeyCacheConfiguration(KMSKeyCacheConfiguration other) {
+        this.maxAgeMillis = other.maxAgeMillis;
+        this.maxMessagesPerKey = other.maxMessagesPerKey;
+        this.maxBytesPerKey = other.maxBytesPerKey;
+        this.maxEntries = other.maxEntries;
+    }
+
+    /**
+     * Returns the time in milliseconds after which a cached key is no longer
+     * used.
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * Sets the time in milliseconds after which a cached key is no longer
+     * used.
+     *
+     * @param maxAgeMillis the maximum age of a cached key; must be positive
+     */
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        if (maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("maxAgeMillis must be positive");
+        }
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Fluent API to set the time in milliseconds after which a cached key is
+     * no longer used.
+     */
+    public KMSKeyCacheConfiguration withMaxAgeMillis(long maxAgeMillis) {
+        setMaxAgeMillis(maxAgeMillis);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of objects encrypted with one data key.
+     */
+    public long getMaxMessagesPerKey() {
+        return maxMessagesPerKey;
+    }
+
+    /**
+     * Sets the maximum number of objects encrypted with one data key.
+     *
+     * @param maxMessagesPerKey the maximum number of objects; must be positive
+     */
+    public void setMaxMessagesPerKey(long maxMessagesPerKey) {
+        if (maxMessagesPerKey <= 0) {
+            throw new IllegalArgumentException("maxMessagesPerKey must be positive");
+        }
+        this.maxMessagesPerKey = maxMessagesPerKey;
+    }
+
+    /**
+     * Fluent API to set the maximum number of objects encrypted with one data
+     * key.
+     */
+    public KMSKeyCacheConfiguration withMaxMessagesPerKey(long maxMessagesPerKey) {
+        setMaxMessagesPerKey(maxMessagesPerKey);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of plaintext bytes encrypted with one data
+     * key.
+     */
+    public long getMaxBytesPerKey() {
+        return maxBytesPerKey;
+    }
+
+    /**
+     * Sets the maximum number of plaintext bytes encrypted with one data key.
+     * An object larger than this limit is encrypted with a data key of its
+     * own.
+     *
+     * @param maxBytesPerKey the maximum number of bytes; must be positive
+     */
+    public void setMaxBytesPerKey(long maxBytesPerKey) {
+        if (maxBytesPerKey <= 0) {
+            throw new IllegalArgumentException("maxBytesPerKey must be positive");
+        }
+        this.maxBytesPerKey = maxBytesPerKey;
+    }
+
+    /**
+     * Fluent API to set the maximum number of plaintext bytes encrypted with
+     * one data key.
+     */
+    public KMSKeyCacheConfiguration withMaxBytesPerKey(long maxBytesPerKey) {
+        setMaxBytesPerKey(maxBytesPerKey);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of keys kept in each of the data key and the
+     * decrypted key caches; the least recently used keys are evicted first.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Sets the maximum number of keys kept in each of the data key and the
+     * decrypted key caches.
+     *
+     * @param maxEntries the maximum number of keys; must be positive
+     */
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Fluent API to set the maximum number of keys kept in each of the data
+     * key and the decrypted key caches.
+     */
+    public KMSKeyCacheConfiguration withMaxEntries(int maxEntries) {
+        setMaxEntries(maxEntries);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "{maxAgeMillis=" + maxAgeMillis + ", maxMessagesPerKey=" + maxMessagesPerKey
+                + ", maxBytesPerKey=" + maxBytesPerKey + ", maxEntries=" + maxEntries + "}";
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentValues;
+
+import com.amazonaws.mobileconnectors.s3.transferutility.TransferService.NetworkInfoReceiver;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class DownloadTaskTest {
+
+    private static final int ID = 1;
+    private static final int PART_SIZE = TransferUtility.MINIMUM_DOWNLOAD_PART_SIZE;
+    // three parts, the last one short
+    private static final int OBJECT_SIZE = 2 * PART_SIZE + 10;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final FakeS3 fakeS3 = new FakeS3();
+    private final List<TransferRecord> parts = Collections
+            .synchronizedList(new ArrayList<TransferRecord>());
+    private final List<TransferRecord> newParts = new ArrayList<TransferRecord>();
+    private TransferDBUtil dbUtil;
+    private TransferStatusUpdater updater;
+    private NetworkInfoReceiver networkInfo;
+    private TransferRecord download;
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = new File(temp.newFolder(), "download");
+        download = new TransferRecord(ID);
+        download.bucketName = "bucket";
+        download.key = "key";
+        download.file = file.getAbsolutePath();
+
+        networkInfo = mock(NetworkInfoReceiver.class);
+        when(networkInfo.isNetworkConnected()).thenReturn(true);
+        updater = mock(TransferStatusUpdater.class);
+        dbUtil = mock(TransferDBUtil.class);
+        when(dbUtil.queryPartRecords(ID)).thenAnswer(new Answer<List<TransferRecord>>() {
+            @Override
+            public List<TransferRecord> answer(InvocationOnMock invocation) {
+                return new ArrayList<TransferRecord>(parts);
+            }
+        });
+        when(dbUtil.generateContentValuesForMultiPartDownload(eq(ID), anyString(),
+                anyString(), any(File.class), anyInt(), anyLong(), anyLong(), anyInt()))
+                .thenAnswer(new Answer<ContentValues>() {
+                    @Override
+                    public ContentValues answer(InvocationOnMock invocation) {
+                        final Object[] args = invocation.getArguments();
+                        newParts.add(part((Integer) args[4], (Long) args[5], (Long) args[6],
+                                TransferState.WAITING));
+                        return null;
+                    }
+                });
+        when(dbUtil.insertMultipartDownloadRecords(eq(ID), anyLong(), anyString(),
+                any(ContentValues[].class))).thenAnswer(new Answer<Integer>() {
+                    @Override
+                    public Integer answer(InvocationOnMock invocation) {
+                        parts.addAll(newParts);
+                        newParts.clear();
+                        return parts.size();
+                    }
+                });
+        when(dbUtil.updateState(anyInt(), any(TransferState.class))).thenAnswer(
+                new Answer<Integer>() {
+                    @Override
+                    public Integer answer(InvocationOnMock invocation) {
+                        final int partId = (Integer) invocation.getArguments()[0];
+                        synchronized (parts) {
+                            for (final TransferRecord part : parts) {
+                                if (part.id == partId) {
+                                    part.state = (TransferState) invocation.getArguments()[1];
+                                    return 1;
+                                }
+                            }
+                        }
+                        return 0;
+                    }
+                });
+        when(dbUtil.deletePartRecords(ID)).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                final int count = parts.size();
+                parts.clear();
+                return count;
+            }
+        });
+    }
+
+    @Test
+    public void testDownloadInParts() throws Exception {
+        fakeS3.setObject("etag1", 1);
+        assertTrue(newTask().call());
+
+        assertArrayEquals(content(1), readFile());
+        // the first request only sizes the parts
+        assertEquals(4, fakeS3.requests.size());
+        assertEquals(0, parts.size());
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+    }
+
+    @Test
+    public void testResumeFetchesOnlyPartsNotCompleted() throws Exception {
+        fakeS3.setObject("etag1", 1);
+        startedDownload("etag1");
+        writeFile(content(1), PART_SIZE);
+        parts.get(0).state = TransferState.PART_COMPLETED;
+
+        assertTrue(newTask().call());
+
+        assertArrayEquals(content(1), readFile());
+        assertEquals(2, fakeS3.requests.size());
+        for (final GetObjectRequest request : fakeS3.requests) {
+            assertTrue(request.getRange()[0] >= PART_SIZE);
+            assertEquals(Collections.singletonList("etag1"),
+                    request.getMatchingETagConstraints());
+        }
+        verify(updater).updateProgress(ID, PART_SIZE, OBJECT_SIZE);
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+    }
+
+    @Test
+    public void testResumeFetchesCompletedPartsMissingFromFile() throws Exception {
+        fakeS3.setObject("etag1", 1);
+        startedDownload("etag1");
+        // the file was truncated to the first part
+        writeFile(content(1), PART_SIZE);
+        parts.get(0).state = TransferState.PART_COMPLETED;
+        parts.get(1).state = TransferState.PART_COMPLETED;
+
+        assertTrue(newTask().call());
+
+        assertArrayEquals(content(1), readFile());
+        assertEquals(2, fakeS3.requests.size());
+        // the second part is fetched again
+        verify(dbUtil).updateState(ID + 2, TransferState.WAITING);
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+    }
+
+    @Test
+    public void testResumeFetchesAllPartsWhenFileDeleted() throws Exception {
+        fakeS3.setObject("etag1", 1);
+        startedDownload("etag1");
+        for (final TransferRecord part : parts) {
+            part.state = TransferState.PART_COMPLETED;
+        }
+
+        assertTrue(newTask().call());
+
+        assertArrayEquals(content(1), readFile());
+        assertEquals(3, fakeS3.requests.size());
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+    }
+
+    @Test
+    public void testObjectChangedStartsOver() throws Exception {
+        fakeS3.setObject("etag1", 1);
+        startedDownload("etag1");
+        writeFile(content(1), PART_SIZE);
+        parts.get(0).state = TransferState.PART_COMPLETED;
+        fakeS3.setObject("etag2", 2);
+
+        assertTrue(newTask().call());
+
+        assertArrayEquals(content(2), readFile());
+        assertEquals("etag2", download.eTag);
+        assertEquals(0, parts.size());
+        verify(updater, never()).updateState(ID, TransferState.FAILED);
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+    }
+
+    @Test
+    public void testObjectChangedTwiceFailsWithoutStaleParts() throws Exception {
+        fakeS3.setObject("etag1", 1);
+        fakeS3.changeOnEveryPartRequest = true;
+
+        assertFalse(newTask().call());
+
+        verify(updater).updateState(ID, TransferState.FAILED);
+        assertEquals(0, parts.size());
+        assertFalse(file.exists());
+        assertNull(download.eTag);
+    }
+
+    private DownloadTask newTask() {
+        return new DownloadTask(download, fakeS3.s3, dbUtil, updater, networkInfo);
+    }
+
+    /**
+     * Sets up the part records of a download that was interrupted after
+     * sizing its parts.
+     */
+    private void startedDownload(String eTag) {
+        download.isMultipart = 1;
+        download.bytesTotal = OBJECT_SIZE;
+        download.eTag = eTag;
+        long rangeStart = 0;
+        for (int i = 1; rangeStart < OBJECT_SIZE; i++) {
+            final long rangeLast = Math.min(rangeStart + PART_SIZE, OBJECT_SIZE) - 1;
+            parts.add(part(i, rangeStart, rangeLast, TransferState.WAITING));
+            rangeStart = rangeLast + 1;
+        }
+    }
+
+    private static TransferRecord part(int partNumber, long rangeStart, long rangeLast,
+            TransferState state) {
+        final TransferRecord part = new TransferRecord(ID + partNumber);
+        part.mainUploadId = ID;
+        part.partNumber = partNumber;
+        part.rangeStart = rangeStart;
+        part.rangeLast = rangeLast;
+        part.fileOffset = rangeStart;
+        part.bytesTotal = rangeLast - rangeStart + 1;
+        part.state = state;
+        return part;
+    }
+
+    private static byte[] content(int version) {
+        final byte[] content = new byte[OBJECT_SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31 + version);
+        }
+        return content;
+    }
+
+    private void writeFile(byte[] content, int length) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(content, 0, length);
+        out.close();
+    }
+
+    private byte[] readFile() throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final byte[] bytes = new byte[(int) raf.length()];
+        raf.readFully(bytes);
+        raf.close();
+        return bytes;
+    }
+
+    /**
+     * Serves one object, honouring ranges and ETag constraints like S3, and
+     * records the requests.
+     */
+    private static final class FakeS3 {
+        private final AmazonS3 s3 = mock(AmazonS3.class);
+        private final List<GetObjectRequest> requests = Collections
+                .synchronizedList(new ArrayList<GetObjectRequest>());
+        private volatile String eTag;
+        private volatile byte[] content;
+        private volatile int version;
+        private volatile boolean changeOnEveryPartRequest;
+
+        FakeS3() {
+            when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new Answer<S3Object>() {
+                @Override
+                public S3Object answer(InvocationOnMock invocation) {
+                    return getObject((GetObjectRequest) invocation.getArguments()[0]);
+                }
+            });
+        }
+
+        synchronized void setObject(String eTag, int version) {
+            this.eTag = eTag;
+            this.version = version;
+            this.content = content(version);
+        }
+
+        private synchronized S3Object getObject(GetObjectRequest request) {
+            requests.add(request);
+            final List<String> eTags = request.getMatchingETagConstraints();
+            if (changeOnEveryPartRequest && !eTags.isEmpty()) {
+                setObject("etag" + (version + 1), version + 1);
+            }
+            if (!eTags.isEmpty() && !eTags.contains(eTag)) {
+                return null;
+            }
+            final long[] range = request.getRange();
+            final int start = range == null ? 0 : (int) range[0];
+            final int end = range == null ? content.length : (int) range[1] + 1;
+            final ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setHeader("ETag", eTag);
+            metadata.setHeader("Content-Range", "bytes " + start + "-" + (end - 1) + "/"
+                    + content.length);
+            metadata.setContentLength(end - start);
+            final S3Object object = new S3Object();
+            object.setObjectMetadata(metadata);
+            object.setObjectContent(new ByteArrayInputStream(content, start, end - start));
+            return object;
+        }
+    }
+}
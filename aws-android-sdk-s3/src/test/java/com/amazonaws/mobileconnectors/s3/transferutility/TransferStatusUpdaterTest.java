@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.os.Handler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TransferStatusUpdaterTest {
+
+    private static final int ID = 1;
+    private static final int OTHER_ID = 2;
+
+    /** The database writes, in order, e.g. "1:100" or "1:COMPLETED". */
+    private final List<String> writes = Collections.synchronizedList(new ArrayList<String>());
+    private TransferDBUtil dbUtil;
+    private TransferStatusUpdater updater;
+    /** Counted down when the blocked checkpoint write starts. */
+    private final CountDownLatch checkpointStarted = new CountDownLatch(1);
+    /** Awaited by the next checkpoint write before it completes, if set. */
+    private volatile CountDownLatch releaseCheckpoint;
+
+    @Before
+    public void setup() {
+        dbUtil = mock(TransferDBUtil.class);
+        when(dbUtil.updateBytesTransferred(anyMapOf(Integer.class, Long.class))).thenAnswer(
+                new Answer<Integer>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Integer answer(InvocationOnMock invocation) throws Exception {
+                        final Map<Integer, Long> bytesById = (Map<Integer, Long>) invocation
+                                .getArguments()[0];
+                        final CountDownLatch release = releaseCheckpoint;
+                        if (release != null) {
+                            releaseCheckpoint = null;
+                            checkpointStarted.countDown();
+                            release.await(5, TimeUnit.SECONDS);
+                        }
+                        // a write takes effect when it completes
+                        for (final Map.Entry<Integer, Long> entry : bytesById.entrySet()) {
+                            writes.add(entry.getKey() + ":" + entry.getValue());
+                        }
+                        return bytesById.size();
+                    }
+                });
+        when(dbUtil.updateBytesTransferred(anyInt(), anyLong())).thenAnswer(
+                new Answer<Integer>() {
+                    @Override
+                    public Integer answer(InvocationOnMock invocation) {
+                        writes.add(invocation.getArguments()[0] + ":"
+                                + invocation.getArguments()[1]);
+                        return 1;
+                    }
+                });
+        when(dbUtil.updateState(anyInt(), any(TransferState.class))).thenAnswer(
+                new Answer<Integer>() {
+                    @Override
+                    public Integer answer(InvocationOnMock invocation) {
+                        writes.add(invocation.getArguments()[0] + ":"
+                                + invocation.getArguments()[1]);
+                        return 1;
+                    }
+                });
+        updater = new TransferStatusUpdater(dbUtil, mock(Handler.class));
+    }
+
+    @After
+    public void teardown() {
+        TransferStatusUpdater.setProgressCheckpointInterval(1000);
+    }
+
+    @Test
+    public void testProgressCoalescedUntilFlush() {
+        TransferStatusUpdater.setProgressCheckpointInterval(Long.MAX_VALUE);
+        // the first update of the updater is always a checkpoint
+        updater.updateProgress(ID, 1, 100);
+        writes.clear();
+
+        updater.updateProgress(ID, 10, 100);
+        updater.updateProgress(OTHER_ID, 5, 100);
+        updater.updateProgress(ID, 20, 100);
+        assertTrue(writes.isEmpty());
+
+        updater.flushProgress();
+        Collections.sort(writes);
+        assertEquals(Arrays.asList("1:20", "2:5"), writes);
+
+        // nothing left to write
+        writes.clear();
+        updater.flushProgress();
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    public void testStateChangeWritesCoalescedProgress() {
+        TransferStatusUpdater.setProgressCheckpointInterval(Long.MAX_VALUE);
+        updater.updateProgress(ID, 1, 100);
+        writes.clear();
+
+        updater.updateProgress(ID, 100, 100);
+        updater.updateProgress(OTHER_ID, 5, 100);
+        updater.updateState(ID, TransferState.COMPLETED);
+        assertEquals(Arrays.asList("1:100", "1:COMPLETED"), writes);
+
+        // only the other transfer is still pending
+        writes.clear();
+        updater.flushProgress();
+        assertEquals(Arrays.asList("2:5"), writes);
+    }
+
+    @Test
+    public void testCheckpointNotWrittenAfterCompletion() throws Exception {
+        TransferStatusUpdater.setProgressCheckpointInterval(0);
+        final CountDownLatch release = new CountDownLatch(1);
+        releaseCheckpoint = release;
+
+        // a checkpoint of stale progress is being written...
+        final Thread checkpoint = new Thread() {
+            @Override
+            public void run() {
+                updater.updateProgress(ID, 50, 100);
+            }
+        };
+        checkpoint.start();
+        assertTrue(checkpointStarted.await(5, TimeUnit.SECONDS));
+
+        // ...while the transfer completes on another thread
+        final Thread completion = new Thread() {
+            @Override
+            public void run() {
+                updater.updateProgress(ID, 100, 100);
+                updater.updateState(ID, TransferState.COMPLETED);
+            }
+        };
+        completion.start();
+        completion.join(200);
+        release.countDown();
+        checkpoint.join();
+        completion.join();
+
+        assertEquals(Arrays.asList("1:50", "1:100", "1:COMPLETED"), writes);
+    }
+}
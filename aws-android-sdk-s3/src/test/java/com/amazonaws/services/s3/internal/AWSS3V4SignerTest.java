@@ -16,6 +16,8 @@
 package com.amazonaws.services.s3.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.DefaultRequest;
@@ -34,6 +36,7 @@ import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.model.transform.RequestXmlFactory;
+import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.StringUtils;
 
 import org.junit.After;
@@ -45,6 +48,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -88,6 +93,47 @@ public class AWSS3V4SignerTest {
                 "e0a8ac165c54dc1fc3dd987f5e00b44f1b91f3c63b05ee642432e1f3c7286d69");
     }
 
+    @Test
+    public void testSignPutObjectWithPrecomputedHash() throws URISyntaxException {
+        final AWSS3V4Signer signer = new S3SignerWithDateOverride(new Date(1431115356859L));
+        // THESE ARE BOGUS CREDENTIALS
+        final AWSCredentials credentials = new BasicAWSCredentials(
+                "AKIAJd4scjDDmxXZTESTGOZQ", "LYd/ad4scjDDmxXZTESTtRz7xdOM1SiD6");
+
+        final byte[] content = "content".getBytes(StringUtils.UTF8);
+        final String hash = BinaryUtils.toHex(sha256(content));
+        final ByteArrayInputStream bais = new ByteArrayInputStream(content);
+        final ObjectMetadata om = new ObjectMetadata();
+        om.setContentLength(content.length);
+        final PutObjectRequest por = new PutObjectRequest("test-bucket123456",
+                "key", bais, om);
+        final Request<?> pr = new DefaultRequest(por, Constants.S3_SERVICE_DISPLAY_NAME);
+        pr.setContent(bais);
+        pr.setResourcePath("key");
+        pr.setHttpMethod(HttpMethodName.PUT);
+        pr.addHeader(Headers.CONTENT_LENGTH, String.valueOf(content.length));
+        pr.addHeader(Headers.CONTENT_SHA256, hash);
+        pr.setEndpoint(new
+                URI("https://test-bucket123456.s3-us-west-2.amazonaws.com"));
+        pr.addHeader("Host", "test-bucket123456.s3-us-west-2.amazonaws.com");
+        signer.sign(pr, credentials);
+
+        // the content is sent as is, signed with the hash set by the client
+        assertSame(bais, pr.getContent());
+        assertEquals(hash, pr.getHeaders().get(Headers.CONTENT_SHA256));
+        assertEquals(String.valueOf(content.length), pr.getHeaders().get(Headers.CONTENT_LENGTH));
+        assertNull(pr.getHeaders().get("x-amz-decoded-content-length"));
+        assertTrue(pr.getHeaders().get("Authorization").contains("x-amz-content-sha256"));
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Test
     public void testSignGetObject() throws URISyntaxException {
         final AWSS3V4Signer signer = new S3SignerWithDateOverride(new Date(1431114076667L));
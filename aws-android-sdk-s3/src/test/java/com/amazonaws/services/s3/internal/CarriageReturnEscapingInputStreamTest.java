@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.transform.XmlResponsesSaxParser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class CarriageReturnEscapingInputStreamTest {
+
+    private static String readAll(InputStream in, int chunk) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[chunk];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), UTF8);
+    }
+
+    private static InputStream escaping(String s) {
+        return new CarriageReturnEscapingInputStream(new ByteArrayInputStream(s.getBytes(UTF8)));
+    }
+
+    @Test
+    public void testEscapesCarriageReturns() throws Exception {
+        String document = "<Key>a\rb\r\né中\r</Key>\r";
+        String expected = document.replaceAll("\r", "&#013;");
+        for (int chunk : new int[] {
+                1, 2, 3, 7, 8192
+        }) {
+            assertEquals(expected, readAll(escaping(document), chunk));
+        }
+    }
+
+    @Test
+    public void testEscapesAcrossBufferBoundaries() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i % 13 == 0 ? '\r' : (char) ('a' + i % 26));
+        }
+        String document = sb.toString();
+        assertEquals(document.replaceAll("\r", "&#013;"), readAll(escaping(document), 4096));
+    }
+
+    @Test
+    public void testSingleByteReads() throws Exception {
+        InputStream in = escaping("\ré");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            out.write(b);
+        }
+        assertEquals("&#013;é", new String(out.toByteArray(), UTF8));
+    }
+
+    @Test
+    public void testListingKeysKeepCarriageReturns() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+                + "<Name>bucket</Name><Prefix></Prefix><Marker></Marker>"
+                + "<MaxKeys>1000</MaxKeys><IsTruncated>false</IsTruncated>"
+                + "<Contents><Key>line1\rline2</Key><Size>5</Size></Contents>"
+                + "</ListBucketResult>";
+        ObjectListing listing = new XmlResponsesSaxParser()
+                .parseListBucketObjectsResponse(new ByteArrayInputStream(xml.getBytes(UTF8)),
+                        false)
+                .getObjectListing();
+        assertEquals(1, listing.getObjectSummaries().size());
+        assertEquals("line1\rline2", listing.getObjectSummaries().get(0).getKey());
+    }
+}
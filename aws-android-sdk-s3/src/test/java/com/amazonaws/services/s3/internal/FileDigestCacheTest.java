@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Random;
+
+public class FileDigestCacheTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("FileDigestCacheTest", null);
+    }
+
+    @After
+    public void teardown() {
+        FileDigestCache.invalidate(file);
+        file.delete();
+    }
+
+    @Test
+    public void testDigests() throws Exception {
+        // larger than the read buffer
+        final byte[] content = write(300 * 1024 + 7);
+
+        final FileDigestCache.Digests digests = FileDigestCache.getDigests(file, true);
+        assertArrayEquals(MessageDigest.getInstance("MD5").digest(content), digests.getMd5());
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content),
+                digests.getSha256());
+    }
+
+    @Test
+    public void testMd5Only() throws Exception {
+        final byte[] content = write(1024);
+
+        final FileDigestCache.Digests md5Only = FileDigestCache.getDigests(file, false);
+        assertArrayEquals(MessageDigest.getInstance("MD5").digest(content), md5Only.getMd5());
+        assertNull(md5Only.getSha256());
+        assertSame(md5Only, FileDigestCache.getDigests(file, false));
+
+        // asking for SHA-256 reads the file again
+        final FileDigestCache.Digests both = FileDigestCache.getDigests(file, true);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content),
+                both.getSha256());
+        assertSame(both, FileDigestCache.getDigests(file, false));
+    }
+
+    @Test
+    public void testChangedFile() throws Exception {
+        write(1024);
+        final FileDigestCache.Digests first = FileDigestCache.getDigests(file, true);
+        assertSame(first, FileDigestCache.getDigests(file, true));
+
+        final byte[] content = write(2048);
+        final FileDigestCache.Digests second = FileDigestCache.getDigests(file, true);
+        assertNotSame(first, second);
+        assertArrayEquals(MessageDigest.getInstance("MD5").digest(content), second.getMd5());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        write(1024);
+        final FileDigestCache.Digests first = FileDigestCache.getDigests(file, true);
+        FileDigestCache.invalidate(file);
+        final FileDigestCache.Digests second = FileDigestCache.getDigests(file, true);
+        assertNotSame(first, second);
+        assertArrayEquals(first.getMd5(), second.getMd5());
+    }
+
+    private byte[] write(int length) throws IOException {
+        final byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return content;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+public class CipherLiteInputStreamTest {
+
+    private static final int LARGE_BUFFER_SIZE = 128 * 1024;
+    private static final int SMALL_BUFFER_SIZE = 2 * 1024;
+
+    private final Random random = new Random(42);
+
+    @BeforeClass
+    public static void setupClass() {
+        CryptoRuntime.enableBouncyCastle();
+    }
+
+    @Test
+    public void testCbcReusedOutputBuffer() throws Exception {
+        testRoundTrip(ContentCryptoScheme.AES_CBC);
+    }
+
+    @Test
+    public void testGcmReusedOutputBuffer() throws Exception {
+        testRoundTrip(ContentCryptoScheme.AES_GCM);
+    }
+
+    @Test
+    public void testGcmResetWithReusedOutputBuffer() throws Exception {
+        final SecretKey key = newKey(ContentCryptoScheme.AES_GCM);
+        final byte[] iv = newBytes(ContentCryptoScheme.AES_GCM.getIVLengthInBytes());
+        final byte[] plaintext = newBytes(300 * 1024 + 5);
+        final byte[] expected = process(new CipherLiteInputStream(
+                new ByteArrayInputStream(plaintext),
+                ContentCryptoScheme.AES_GCM.createCipherLite(key, iv, Cipher.ENCRYPT_MODE),
+                SMALL_BUFFER_SIZE));
+
+        final CipherLiteInputStream in = new CipherLiteInputStream(
+                new ByteArrayInputStream(plaintext),
+                ContentCryptoScheme.AES_GCM.createCipherLite(key, iv, Cipher.ENCRYPT_MODE),
+                LARGE_BUFFER_SIZE, false, false, true);
+        in.mark(-1);
+        // re-encrypting after the reset goes through the auxiliary cipher
+        final byte[] partial = new byte[200 * 1024];
+        int read = 0;
+        while (read < partial.length) {
+            read += in.read(partial, read, partial.length - read);
+        }
+        in.reset();
+        assertArrayEquals(expected, process(in));
+    }
+
+    private void testRoundTrip(ContentCryptoScheme scheme) throws Exception {
+        final SecretKey key = newKey(scheme);
+        final byte[] iv = newBytes(scheme.getIVLengthInBytes());
+        final byte[] plaintext = newBytes(1024 * 1024 + 13);
+
+        final byte[] expected = process(new CipherLiteInputStream(
+                new ByteArrayInputStream(plaintext),
+                scheme.createCipherLite(key, iv, Cipher.ENCRYPT_MODE),
+                SMALL_BUFFER_SIZE));
+        final byte[] ciphertext = process(new CipherLiteInputStream(
+                new ByteArrayInputStream(plaintext),
+                scheme.createCipherLite(key, iv, Cipher.ENCRYPT_MODE),
+                LARGE_BUFFER_SIZE, false, false, true));
+        assertArrayEquals(expected, ciphertext);
+
+        final byte[] decrypted = process(new CipherLiteInputStream(
+                new ByteArrayInputStream(ciphertext),
+                scheme.createCipherLite(key, iv, Cipher.DECRYPT_MODE),
+                LARGE_BUFFER_SIZE, false, false, true));
+        assertArrayEquals(plaintext, decrypted);
+    }
+
+    private SecretKey newKey(ContentCryptoScheme scheme) {
+        return new SecretKeySpec(newBytes(scheme.getKeyLengthInBits() / 8),
+                scheme.getKeyGeneratorAlgorithm());
+    }
+
+    private byte[] newBytes(int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] process(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
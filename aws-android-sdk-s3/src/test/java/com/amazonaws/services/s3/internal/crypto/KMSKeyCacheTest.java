@@ -0,0 +1,221 @@
+/*
+ * Copyright 2010-2017 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.kms.AWSKMSClient;
+import com.amazonaws.services.kms.model.DecryptRequest;
+import com.amazonaws.services.kms.model.DecryptResult;
+import com.amazonaws.services.kms.model.GenerateDataKeyRequest;
+import com.amazonaws.services.kms.model.GenerateDataKeyResult;
+import com.amazonaws.services.s3.model.KMSKeyCacheConfiguration;
+import com.amazonaws.util.BinaryUtils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class KMSKeyCacheTest {
+
+    private final FakeKMSClient kms = new FakeKMSClient();
+
+    @Test
+    public void testDataKeyReusedUpToMaxMessages() {
+        final KMSKeyCache cache = new KMSKeyCache(new KMSKeyCacheConfiguration()
+                .withMaxMessagesPerKey(2));
+        final byte[] first = plaintext(cache.generateDataKey(kms, request("key", null), 10));
+        assertArrayEquals(first, plaintext(cache.generateDataKey(kms, request("key", null), 10)));
+        assertEquals(1, kms.generated);
+
+        assertFalse(Arrays.equals(first,
+                plaintext(cache.generateDataKey(kms, request("key", null), 10))));
+        assertEquals(2, kms.generated);
+    }
+
+    @Test
+    public void testDataKeyReusedUpToMaxBytes() {
+        final KMSKeyCache cache = new KMSKeyCache(new KMSKeyCacheConfiguration()
+                .withMaxBytesPerKey(100));
+        cache.generateDataKey(kms, request("key", null), 60);
+        cache.generateDataKey(kms, request("key", null), 40);
+        assertEquals(1, kms.generated);
+        cache.generateDataKey(kms, request("key", null), 1);
+        assertEquals(2, kms.generated);
+
+        // larger than the limit, or of unknown length: never cached
+        cache.generateDataKey(kms, request("key", null), 101);
+        cache.generateDataKey(kms, request("key", null), -1);
+        assertEquals(4, kms.generated);
+        cache.generateDataKey(kms, request("key", null), 1);
+        assertEquals(4, kms.generated);
+    }
+
+    @Test
+    public void testDataKeyNotReusedAfterMaxAge() throws InterruptedException {
+        final KMSKeyCache cache = new KMSKeyCache(new KMSKeyCacheConfiguration()
+                .withMaxAgeMillis(1));
+        final GenerateDataKeyResult first = cache.generateDataKey(kms, request("key", null), 10);
+        Thread.sleep(10);
+        cache.generateDataKey(kms, request("key", null), 10);
+        assertEquals(2, kms.generated);
+
+        // decrypted keys expire too
+        cache.decrypt(kms, decryptRequest(first, null));
+        assertEquals(1, kms.decrypted);
+    }
+
+    @Test
+    public void testDataKeysSeparatedByKeyIdAndEncryptionContext() {
+        final KMSKeyCache cache = new KMSKeyCache(new KMSKeyCacheConfiguration());
+        final Map<String, String> context = new LinkedHashMap<String, String>();
+        context.put("a", "1");
+        context.put("b", "2");
+        final Map<String, String> reordered = new LinkedHashMap<String, String>();
+        reordered.put("b", "2");
+        reordered.put("a", "1");
+        final Map<String, String> ambiguous = new HashMap<String, String>();
+        ambiguous.put("a", "1b2");
+
+        cache.generateDataKey(kms, request("key", context), 10);
+        cache.generateDataKey(kms, request("key", reordered), 10);
+        assertEquals(1, kms.generated);
+        cache.generateDataKey(kms, request("key", ambiguous), 10);
+        cache.generateDataKey(kms, request("key", null), 10);
+        cache.generateDataKey(kms, request("other", context), 10);
+        assertEquals(4, kms.generated);
+    }
+
+    @Test
+    public void testGeneratedKeyDecryptedFromCache() {
+        final KMSKeyCache cache = new KMSKeyCache(new KMSKeyCacheConfiguration());
+        final Map<String, String> context = new HashMap<String, String>();
+        context.put("a", "1");
+        final GenerateDataKeyResult key = cache.generateDataKey(kms, request("key", context), 10);
+
+        final DecryptResult result = cache.decrypt(kms, decryptRequest(key, context));
+        assertArrayEquals(plaintext(key), BinaryUtils.copyAllBytesFrom(result.getPlaintext()));
+        assertEquals(0, kms.decrypted);
+
+        // not under another encryption context
+        cache.decrypt(kms, decryptRequest(key, null));
+        assertEquals(1, kms.decrypted);
+    }
+
+    @Test
+    public void testEvictedKeysAreZeroed() {
+        final KMSKeyCache cache = new KMSKeyCache(new KMSKeyCacheConfiguration()
+                .withMaxEntries(1)
+                .withMaxMessagesPerKey(1));
+        cache.generateDataKey(kms, request("key", null), 10);
+        final byte[] cached = cache.peekDataKey(request("key", null));
+        assertNotNull(cached);
+        assertTrue(isNonZero(cached));
+
+        // evicted as least recently used
+        cache.generateDataKey(kms, request("other", null), 10);
+        assertFalse(isNonZero(cached));
+
+        // replaced once it reached its limit
+        final byte[] other = cache.peekDataKey(request("other", null));
+        cache.generateDataKey(kms, request("other", null), 10);
+        assertFalse(isNonZero(other));
+    }
+
+    @Test
+    public void testReturnedKeysAreCopies() {
+        final KMSKeyCache cache = new KMSKeyCache(new KMSKeyCacheConfiguration());
+        final GenerateDataKeyResult key = cache.generateDataKey(kms, request("key", null), 10);
+        final byte[] expected = plaintext(key);
+        Arrays.fill(key.getPlaintext().array(), (byte) 0);
+        assertArrayEquals(expected, plaintext(cache.generateDataKey(kms, request("key", null),
+                10)));
+    }
+
+    private static GenerateDataKeyRequest request(String keyId, Map<String, String> context) {
+        return new GenerateDataKeyRequest()
+                .withKeyId(keyId)
+                .withKeySpec("AES_256")
+                .withEncryptionContext(context);
+    }
+
+    private static DecryptRequest decryptRequest(GenerateDataKeyResult key,
+            Map<String, String> context) {
+        return new DecryptRequest()
+                .withCiphertextBlob(ByteBuffer.wrap(BinaryUtils.copyAllBytesFrom(
+                        key.getCiphertextBlob())))
+                .withEncryptionContext(context);
+    }
+
+    private static byte[] plaintext(GenerateDataKeyResult result) {
+        return BinaryUtils.copyAllBytesFrom(result.getPlaintext());
+    }
+
+    private static boolean isNonZero(byte[] bytes) {
+        for (final byte b : bytes) {
+            if (b != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates distinct keys whose ciphertext is the key counter, and counts
+     * the calls.
+     */
+    private static final class FakeKMSClient extends AWSKMSClient {
+        private final Map<String, byte[]> keys = new HashMap<String, byte[]>();
+        private int generated;
+        private int decrypted;
+
+        FakeKMSClient() {
+            super(new BasicAWSCredentials("access", "secret"));
+        }
+
+        @Override
+        public GenerateDataKeyResult generateDataKey(GenerateDataKeyRequest req) {
+            generated++;
+            final byte[] plaintext = new byte[32];
+            Arrays.fill(plaintext, (byte) generated);
+            final byte[] ciphertext = ("key-" + generated).getBytes();
+            keys.put(BinaryUtils.toHex(ciphertext), plaintext);
+            return new GenerateDataKeyResult()
+                    .withPlaintext(ByteBuffer.wrap(plaintext.clone()))
+                    .withCiphertextBlob(ByteBuffer.wrap(ciphertext))
+                    .withKeyId(req.getKeyId());
+        }
+
+        @Override
+        public DecryptResult decrypt(DecryptRequest req) {
+            decrypted++;
+            final byte[] plaintext = keys.get(BinaryUtils.toHex(
+                    BinaryUtils.copyAllBytesFrom(req.getCiphertextBlob())));
+            return new DecryptResult()
+                    .withPlaintext(ByteBuffer.wrap(plaintext.clone()))
+                    .withKeyId("key");
+        }
+    }
+}
@@ -22,10 +22,12 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
@@ -148,4 +150,44 @@ public abstract class S3ObjectsTestCommon {
         assertFalse(iter.hasNext());
     }
 
+    @Test
+    public void testPrefetchesNextPageWhileIteratingCurrentOne() throws Exception {
+        when(objectListing.isTruncated()).thenReturn(true);
+        when(objectListing.getObjectSummaries()).thenReturn(
+                Arrays.asList(firstSummary));
+
+        ObjectListing secondPage = mock(ObjectListing.class);
+        when(secondPage.isTruncated()).thenReturn(false);
+        when(secondPage.getObjectSummaries()).thenReturn(
+                Arrays.asList(secondSummary));
+        when(s3.listNextBatchOfObjects(objectListing)).thenReturn(secondPage);
+
+        Iterator<S3ObjectSummary> iter = s3Objects.withPrefetch(true).iterator();
+        assertTrue(iter.hasNext());
+        verify(s3, timeout(5000)).listNextBatchOfObjects(objectListing);
+
+        assertSame(firstSummary, iter.next());
+        assertTrue(iter.hasNext());
+        assertSame(secondSummary, iter.next());
+        assertFalse(iter.hasNext());
+        verify(s3, times(1)).listNextBatchOfObjects(any(ObjectListing.class));
+    }
+
+    @Test
+    public void testPrefetchFailureIsThrownByIterator() throws Exception {
+        when(objectListing.isTruncated()).thenReturn(true);
+        when(objectListing.getObjectSummaries()).thenReturn(
+                new ArrayList<S3ObjectSummary>());
+        AmazonClientException failure = new AmazonClientException("listing failed");
+        when(s3.listNextBatchOfObjects(objectListing)).thenThrow(failure);
+
+        try {
+            s3Objects.withPrefetch(true).iterator().hasNext();
+        } catch (AmazonClientException e) {
+            assertSame(failure, e);
+            return;
+        }
+        throw new AssertionError("expected the listing failure");
+    }
+
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free estimate of the average time between events, as an exponentially
+ * weighted moving average. Used by the adaptive mode of the queue buffers to
+ * follow how fast requests arrive.
+ */
+final class ArrivalRate {
+
+    /** Weight of the newest sample; high enough to follow bursts quickly. */
+    private static final double WEIGHT = 0.5;
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final AtomicLong lastEventNanos = new AtomicLong(NONE);
+
+    /** Double bits of the average gap in nanoseconds, negative if unknown. */
+    private final AtomicLong averageGapBits = new AtomicLong(Double.doubleToLongBits(-1));
+
+    /**
+     * Records {@code count} events happening at {@code nowNanos}. The time
+     * since the previous call is spread evenly over them.
+     */
+    void record(int count, long nowNanos) {
+        final long last = lastEventNanos.getAndSet(nowNanos);
+        if (last == NONE || count <= 0) {
+            return;
+        }
+        final double gap = Math.max(0, nowNanos - last) / (double) count;
+        while (true) {
+            final long bits = averageGapBits.get();
+            final double average = Double.longBitsToDouble(bits);
+            final double updated = average < 0 ? gap : average + WEIGHT * (gap - average);
+            if (averageGapBits.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the average time between events in nanoseconds, or a negative
+     *         value until two events have been recorded
+     */
+    double averageGapNanos() {
+        return Double.longBitsToDouble(averageGapBits.get());
+    }
+}
@@ -117,6 +117,18 @@ public class QueueBufferConfig {
 
     public static final int LONGPOLL_WAIT_TIMEOUT_SECONDS_DEFAULT = 20;
 
+    /**
+     * Should the buffers adapt to the observed traffic? When enabled, an
+     * outbound batch is closed as soon as requests stop arriving at their
+     * recent rate instead of always waiting {@code maxBatchOpenMs}, and
+     * receive prefetching is sized to the rate at which messages are asked
+     * for. The configured values remain the upper bounds.
+     */
+    private boolean adaptive;
+
+    /** false */
+    private static final boolean ADAPTIVE_DEFAULT = false;
+
     public QueueBufferConfig(long maxBatchOpenMs,
             int maxInflightOutboundBatches,
             int maxInflightReceiveBatches,
@@ -136,6 +148,7 @@ public class QueueBufferConfig {
         this.visibilityTimeoutSeconds = visibilityTimeout;
         this.longPollWaitTimeoutSeconds = longPollTimeout;
         this.maxBatchSize = maxBatch;
+        this.adaptive = ADAPTIVE_DEFAULT;
     }
 
     public QueueBufferConfig() {
@@ -161,6 +174,7 @@ public class QueueBufferConfig {
         maxInflightOutboundBatches = other.maxInflightOutboundBatches;
         maxInflightReceiveBatches = other.maxInflightReceiveBatches;
         visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
+        adaptive = other.adaptive;
     }
 
     @Override
@@ -173,7 +187,7 @@ public class QueueBufferConfig {
                 + maxDoneReceiveBatches + ", maxBatchSizeBytes="
                 + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
                 + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds="
-                + longPollWaitTimeoutSeconds + "]";
+                + longPollWaitTimeoutSeconds + ", adaptive=" + adaptive + "]";
     }
 
     /**
@@ -427,6 +441,30 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * @return true if the buffers adapt batching and prefetching to the
+     *         observed traffic, within the limits of this config.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Specify "true" to close outbound batches as soon as requests stop
+     * arriving at their recent rate, and to size receive prefetching to the
+     * rate at which messages are asked for. {@code maxBatchOpenMs},
+     * {@code maxInflightReceiveBatches} and {@code maxDoneReceiveBatches}
+     * become upper bounds.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public QueueBufferConfig withAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
     /**
      * this method checks the config for validity. If the config is deemed to be
      * invalid, an informative exception is thrown.
@@ -31,8 +31,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The ReceiveQueueBuffer class is responsible for dequeueing of messages from a
@@ -40,14 +43,18 @@ import java.util.concurrent.TimeUnit;
  * the server and keeps them in a buffer which it uses to satisfy incoming
  * requests. The number of requests pre-fetched and kept in the buffer, as well
  * as the maximum number of threads used to retrieve the messages are
- * configurable.
+ * configurable. In adaptive mode, the number of batches kept in the buffer
+ * follows the rate at which messages are requested: enough to cover the
+ * messages asked for while one receive call is in flight, but no more than can
+ * be handed out within half the visibility timeout.
  * <p>
- * Synchronization strategy: - Threads must hold the TaskSpawnSyncPoint object
- * monitor to spawn a new task or modify the number of inflight tasks - Threads
- * must hold the monitor of the "futures" list to modify the list - Threads must
- * hold the monitor of the "finishedTasks" list to modify the list - If you need
- * to lock both futures and finishedTasks, lock futures first and finishedTasks
- * second
+ * Synchronization strategy: - The "futures" and "finishedTasks" queues are
+ * lock-free; only one thread at a time hands batches to futures, and a thread
+ * finding another one doing so asks it for one more pass through
+ * {@code pendingDrains} instead of blocking - Inflight tasks are counted with
+ * compare-and-set, so spawning a task never waits for a lock - Threads must
+ * hold the TaskSpawnSyncPoint object monitor to fetch the queue visibility
+ * timeout
  */
 public class ReceiveQueueBuffer {
 
@@ -61,7 +68,7 @@ public class ReceiveQueueBuffer {
 
     private final AmazonSQS sqsClient;
 
-    private long bufferCounter = 0;
+    private final AtomicLong bufferCounter = new AtomicLong();
 
     /**
      * This buffer's queue visibility timeout. Used to detect expired message
@@ -73,24 +80,42 @@ public class ReceiveQueueBuffer {
 
     /**
      * Used as permits controlling the number of in flight receive batches.
-     * Synchronized by {@code taskSpawnSyncPoint}.
      */
-    private volatile int inflightReceiveMessageBatches;
+    private final AtomicInteger inflightReceiveMessageBatches = new AtomicInteger();
 
     /**
-     * synchronize on this object to create new receive batches or modify
-     * inflight message count
+     * synchronize on this object to fetch the queue visibility timeout
      */
     private final Object taskSpawnSyncPoint = new Object();
 
+    /**
+     * Number of times futures were asked to be satisfied since the thread
+     * currently satisfying them started; zero when no thread is.
+     */
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+
+    /** Number of batches in {@code finishedTasks}. */
+    private final AtomicInteger finishedTaskCount = new AtomicInteger();
+
+    /** Rate at which messages are requested, followed in adaptive mode. */
+    private final ArrivalRate requestedMessages = new ArrivalRate();
+
+    /**
+     * Average time a receive call returning messages takes, in nanoseconds;
+     * followed in adaptive mode. Updates may race, which only loses a sample.
+     */
+    private volatile long receiveLatencyNanos = -1;
+
     /** shutdown buffer does not retrieve any more messages from sqs */
     volatile boolean shutDown = false;
 
     /** message delivery futures we gave out */
-    private final LinkedList<ReceiveMessageFuture> futures = new LinkedList<ReceiveMessageFuture>();
+    private final ConcurrentLinkedQueue<ReceiveMessageFuture> futures =
+            new ConcurrentLinkedQueue<ReceiveMessageFuture>();
 
-    /** finished batches are stored in this list. */
-    private LinkedList<ReceiveMessageBatchTask> finishedTasks = new LinkedList<ReceiveMessageBatchTask>();
+    /** finished batches are stored in this queue. */
+    private final ConcurrentLinkedQueue<ReceiveMessageBatchTask> finishedTasks =
+            new ConcurrentLinkedQueue<ReceiveMessageBatchTask>();
 
     ReceiveQueueBuffer(AmazonSQS paramSQS, Executor paramExecutor, QueueBufferConfig paramConfig,
             String url) {
@@ -108,7 +133,7 @@ public class ReceiveQueueBuffer {
     public void shutdown() {
         shutDown = true;
         try {
-            while (inflightReceiveMessageBatches > 0)
+            while (inflightReceiveMessageBatches.get() > 0)
                 Thread.sleep(100);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -135,6 +160,9 @@ public class ReceiveQueueBuffer {
         if (rq.getMaxNumberOfMessages() != null) {
             numMessages = rq.getMaxNumberOfMessages();
         }
+        if (config.isAdaptive()) {
+            requestedMessages.record(numMessages, System.nanoTime());
+        }
         QueueBufferFuture<ReceiveMessageRequest, ReceiveMessageResult> toReturn = issueFuture(
                 numMessages, callback);
 
@@ -148,45 +176,54 @@ public class ReceiveQueueBuffer {
     }
 
     /**
-     * Creates and returns a new future object. Sleeps if the list of
-     * already-issued but as yet unsatisfied futures is over a throttle limit.
+     * Creates and returns a new future object.
      *
      * @return never null
      */
     private ReceiveMessageFuture issueFuture(int size,
             QueueBufferCallback<ReceiveMessageRequest, ReceiveMessageResult> callback) {
-        synchronized (futures) {
-            ReceiveMessageFuture theFuture = new ReceiveMessageFuture(callback, size);
-            futures.addLast(theFuture);
-            return theFuture;
-        }
+        ReceiveMessageFuture theFuture = new ReceiveMessageFuture(callback, size);
+        futures.add(theFuture);
+        return theFuture;
     }
 
     /**
      * Attempts to satisfy some or all of the already-issued futures from the
      * local buffer. If the buffer is empty or there are no futures, this method
-     * won't do anything.
+     * won't do anything. If another thread is already satisfying futures, it is
+     * asked to make one more pass and this call returns immediately.
      */
     private void satisfyFuturesFromBuffer() {
-        synchronized (futures) {
-            synchronized (finishedTasks) {
-                // attempt to satisfy futures until we run out of either futures
-                // or
-                // finished tasks
-                while ((!futures.isEmpty()) && (!finishedTasks.isEmpty())) {
-                    ReceiveMessageFuture currentFuture = futures.poll();
-                    fillFuture(currentFuture);
-                }
+        if (pendingDrains.getAndIncrement() != 0) {
+            return;
+        }
+        int drains = 1;
+        do {
+            // attempt to satisfy futures until we run out of either futures
+            // or finished tasks
+            while ((!futures.isEmpty()) && (!finishedTasks.isEmpty())) {
+                ReceiveMessageFuture currentFuture = futures.poll();
+                fillFuture(currentFuture);
             }
+            drains = pendingDrains.addAndGet(-drains);
+        } while (drains != 0);
+    }
+
+    /**
+     * Removes a batch from the finished batch queue, unless {@code clear()}
+     * got to it first.
+     */
+    private void removeFinishedTask(ReceiveMessageBatchTask t) {
+        if (finishedTasks.remove(t)) {
+            finishedTaskCount.decrementAndGet();
         }
     }
 
     /**
      * Fills the future with whatever results were received by the full batch
      * currently at the head of the completed batch queue. Those results may be
-     * retrieved messages, or an exception. this method assumes that you are
-     * holding the finished tasks lock locks when invoking it. violate this
-     * assumption at your own peril
+     * retrieved messages, or an exception. Only the thread currently satisfying
+     * futures may invoke this method.
      */
     private void fillFuture(ReceiveMessageFuture f) {
         ReceiveMessageResult r = new ReceiveMessageResult();
@@ -194,8 +231,8 @@ public class ReceiveQueueBuffer {
         r.setMessages(messages);
         Exception exception = null;
 
-        if (!finishedTasks.isEmpty()) {
-            ReceiveMessageBatchTask t = finishedTasks.getFirst();
+        ReceiveMessageBatchTask t = finishedTasks.peek();
+        if (t != null) {
 
             exception = t.getException();
             int retrieved = 0;
@@ -218,7 +255,7 @@ public class ReceiveQueueBuffer {
             // we may have just drained the batch.
             batchDone = batchDone || t.isEmpty() || (exception != null);
             if (batchDone) {
-                finishedTasks.removeFirst();
+                removeFinishedTask(t);
             }
             r.setMessages(messages);
         }
@@ -234,15 +271,14 @@ public class ReceiveQueueBuffer {
 
         // now, a bit of maintenance. remove empty non-exception-bearing
         // batches so we can get new ones.
-        while (!finishedTasks.isEmpty()) {
-            ReceiveMessageBatchTask t = finishedTasks.getFirst();
+        while ((t = finishedTasks.peek()) != null) {
             if ((!t.isEmpty()) || (t.getException() != null)) {
                 // if we found a finished task that has useful content,
                 // our cleanup is done
                 break;
             }
             // throw away the empty batch.
-            finishedTasks.removeFirst();
+            removeFinishedTask(t);
         }
     }
 
@@ -256,51 +292,93 @@ public class ReceiveQueueBuffer {
         if (shutDown)
             return;
 
-        int desiredBatches = config.getMaxDoneReceiveBatches();
+        int desiredBatches = config.isAdaptive()
+                ? adaptiveDoneReceiveBatches()
+                : config.getMaxDoneReceiveBatches();
         desiredBatches = desiredBatches < 1 ? 1 : desiredBatches;
 
-        synchronized (finishedTasks) {
-            if (finishedTasks.size() >= desiredBatches)
-                return;
-
-            // if we have some finished batches already, and
-            // existing inflight batches will bring us to the limit,
-            // don't spawn more. if our finished tasks cache is empty, we will
-            // always spawn a thread.
-            if (finishedTasks.size() > 0
-                    && (finishedTasks.size() + inflightReceiveMessageBatches) >= desiredBatches)
-                return;
-        }
+        int finished = finishedTaskCount.get();
+        if (finished >= desiredBatches)
+            return;
 
-        synchronized (taskSpawnSyncPoint) {
-            if (visibilityTimeoutNanos == -1) {
-                GetQueueAttributesRequest request = new GetQueueAttributesRequest().
-                        withQueueUrl(qUrl).
-                        withAttributeNames("VisibilityTimeout");
-                ResultConverter.appendUserAgent(request, AmazonSQSBufferedAsyncClient.USER_AGENT);
-                long visibilityTimeoutSeconds = Long.parseLong(sqsClient
-                        .getQueueAttributes(request).getAttributes().get("VisibilityTimeout"));
-                visibilityTimeoutNanos = TimeUnit.NANOSECONDS.convert(visibilityTimeoutSeconds,
-                        TimeUnit.SECONDS);
-            }
+        // if we have some finished batches already, and
+        // existing inflight batches will bring us to the limit,
+        // don't spawn more. if our finished tasks cache is empty, we will
+        // always spawn a thread.
+        if (finished > 0
+                && (finished + inflightReceiveMessageBatches.get()) >= desiredBatches)
+            return;
 
-            int max = config.getMaxInflightReceiveBatches();
-            // must allow at least one inflight receive task, or receive won't
-            // work at all.
-            max = max > 0 ? max : 1;
-            int toSpawn = max - inflightReceiveMessageBatches;
-            if (toSpawn > 0) {
-                ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this);
-                ++inflightReceiveMessageBatches;
-                ++bufferCounter;
-                if (log.isTraceEnabled()) {
-                    log.trace("Spawned receive batch #" + bufferCounter + " ("
-                            + inflightReceiveMessageBatches
-                            + " of " + max + " inflight) for queue " + qUrl);
+        if (visibilityTimeoutNanos == -1) {
+            synchronized (taskSpawnSyncPoint) {
+                if (visibilityTimeoutNanos == -1) {
+                    GetQueueAttributesRequest request = new GetQueueAttributesRequest().
+                            withQueueUrl(qUrl).
+                            withAttributeNames("VisibilityTimeout");
+                    ResultConverter.appendUserAgent(request,
+                            AmazonSQSBufferedAsyncClient.USER_AGENT);
+                    long visibilityTimeoutSeconds = Long.parseLong(sqsClient
+                            .getQueueAttributes(request).getAttributes().get("VisibilityTimeout"));
+                    visibilityTimeoutNanos = TimeUnit.NANOSECONDS.convert(
+                            visibilityTimeoutSeconds, TimeUnit.SECONDS);
                 }
-                executor.execute(task);
             }
         }
+
+        int max = config.getMaxInflightReceiveBatches();
+        // must allow at least one inflight receive task, or receive won't
+        // work at all.
+        max = max > 0 ? max : 1;
+        if (config.isAdaptive()) {
+            max = Math.min(max, desiredBatches);
+        }
+        int inflight;
+        do {
+            inflight = inflightReceiveMessageBatches.get();
+            if (inflight >= max)
+                return;
+        } while (!inflightReceiveMessageBatches.compareAndSet(inflight, inflight + 1));
+
+        ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this);
+        long batchNumber = bufferCounter.incrementAndGet();
+        if (log.isTraceEnabled()) {
+            log.trace("Spawned receive batch #" + batchNumber + " ("
+                    + (inflight + 1)
+                    + " of " + max + " inflight) for queue " + qUrl);
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * @return the number of finished batches worth keeping for the current
+     *         demand: the messages requested while one receive call is in
+     *         flight, plus one batch, capped to what can be handed out within
+     *         half the visibility timeout and to {@code maxDoneReceiveBatches}
+     */
+    private int adaptiveDoneReceiveBatches() {
+        final int maxDone = config.getMaxDoneReceiveBatches();
+        final double gapNanos = requestedMessages.averageGapNanos();
+        final long latencyNanos = receiveLatencyNanos;
+        if (gapNanos < 0 || latencyNanos < 0) {
+            // nothing observed yet, start small
+            return 1;
+        }
+        final int batchSize = Math.max(1, config.getMaxBatchSize());
+        double wanted = latencyNanos / gapNanos + batchSize;
+        if (visibilityTimeoutNanos > 0) {
+            wanted = Math.min(wanted, visibilityTimeoutNanos / 2.0 / gapNanos);
+        }
+        final double batches = Math.ceil(wanted / batchSize);
+        return batches >= maxDone ? maxDone : Math.max(1, (int) batches);
+    }
+
+    /**
+     * Folds the duration of a receive call that returned messages into the
+     * average used by adaptive prefetching.
+     */
+    private void recordReceiveLatency(long nanos) {
+        final long average = receiveLatencyNanos;
+        receiveLatencyNanos = average < 0 ? nanos : average + (nanos - average) / 2;
     }
 
     /**
@@ -309,16 +387,13 @@ public class ReceiveQueueBuffer {
      */
     void reportBatchFinished(ReceiveMessageBatchTask batch)
     {
-        synchronized (finishedTasks) {
-            finishedTasks.addLast(batch);
-            if (log.isTraceEnabled()) {
-                log.info("Queue " + qUrl + " now has " + finishedTasks.size()
-                        + " receive results cached ");
-            }
-        }
-        synchronized (taskSpawnSyncPoint) {
-            --inflightReceiveMessageBatches;
+        finishedTasks.add(batch);
+        int finished = finishedTaskCount.incrementAndGet();
+        if (log.isTraceEnabled()) {
+            log.info("Queue " + qUrl + " now has " + finished
+                    + " receive results cached ");
         }
+        inflightReceiveMessageBatches.decrementAndGet();
         satisfyFuturesFromBuffer();
         spawnMoreReceiveTasks();
     }
@@ -329,12 +404,10 @@ public class ReceiveQueueBuffer {
     public void clear() {
         boolean done = false;
         while (!done) {
-            ReceiveMessageBatchTask currentBatch = null;
-            synchronized (finishedTasks) {
-                currentBatch = finishedTasks.poll();
-            }
+            ReceiveMessageBatchTask currentBatch = finishedTasks.poll();
 
             if (currentBatch != null) {
+                finishedTaskCount.decrementAndGet();
                 currentBatch.clear();
             } else {
                 // ran out of batches to clear
@@ -500,7 +573,11 @@ public class ReceiveQueueBuffer {
                     request.withWaitTimeSeconds(config.getLongPollWaitTimeoutSeconds());
                 }
 
+                long startNanos = System.nanoTime();
                 messages = sqsClient.receiveMessage(request).getMessages();
+                if (config.isAdaptive() && !messages.isEmpty()) {
+                    recordReceiveLatency(System.nanoTime() - startNanos);
+                }
             } catch (AmazonClientException e) {
                 exception = e;
             } finally {
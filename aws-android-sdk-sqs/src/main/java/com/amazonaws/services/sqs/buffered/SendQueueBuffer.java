@@ -131,6 +131,11 @@ public class SendQueueBuffer {
      */
     private final Semaphore inflightChangeMessageVisibilityBatches;
 
+    /** Arrival rate of each type of request, followed in adaptive mode. */
+    private final ArrivalRate sendMessageArrivals = new ArrivalRate();
+    private final ArrivalRate deleteMessageArrivals = new ArrivalRate();
+    private final ArrivalRate changeMessageVisibilityArrivals = new ArrivalRate();
+
     SendQueueBuffer(AmazonSQS sqsClient, Executor executor, QueueBufferConfig paramConfig,
             String url) {
         this.sqsClient = sqsClient;
@@ -320,9 +325,13 @@ public class SendQueueBuffer {
      * Task to send a batch of outbound requests to SQS.
      * <p>
      * The batch task is constructed open and accepts requests until full, or
-     * until {@code maxBatchOpenMs} elapses. At that point, the batch closes and
-     * the collected requests are assembled into a single batch request to SQS.
-     * Specialized for each type of outbound request.
+     * until {@code maxBatchOpenMs} elapses. In adaptive mode it also closes
+     * once no request has arrived for twice the recent average gap between
+     * requests, and right away if requests are further apart than
+     * {@code maxBatchOpenMs}, since waiting would then only add latency. At
+     * that point, the batch closes and the collected requests are assembled
+     * into a single batch request to SQS. Specialized for each type of
+     * outbound request.
      * <p>
      * Instances of this class (and subclasses) are thread-safe.
      *
@@ -336,8 +345,11 @@ public class SendQueueBuffer {
         final ArrayList<QueueBufferFuture<R, Result>> futures;
         AtomicBoolean open = new AtomicBoolean(true);
         volatile Listener<OutboundBatchTask<R, Result>> onCompleted = null;
+        private final ArrivalRate arrivals;
+        private long lastAddedNanos;
 
-        OutboundBatchTask() {
+        OutboundBatchTask(ArrivalRate arrivals) {
+            this.arrivals = arrivals;
             requests = new ArrayList<R>(config.getMaxBatchSize());
             futures = new ArrayList<QueueBufferFuture<R, Result>>(config.getMaxBatchSize());
         }
@@ -386,6 +398,10 @@ public class SendQueueBuffer {
 
                 futures.add(theFuture);
                 onRequestAdded(request);
+                lastAddedNanos = System.nanoTime();
+                if (config.isAdaptive()) {
+                    arrivals.record(1, lastAddedNanos);
+                }
                 return theFuture;
             } else
                 return null;
@@ -411,6 +427,22 @@ public class SendQueueBuffer {
          */
         abstract void process();
 
+        /**
+         * @return the time (milliseconds, on the {@code System.nanoTime()}
+         *         clock) at which an adaptive batch stops waiting for more
+         *         requests
+         */
+        private long adaptiveCloseMs() {
+            final double gapNanos = arrivals.averageGapNanos();
+            final long maxOpenNanos = TimeUnit.NANOSECONDS.convert(config.getMaxBatchOpenMs(),
+                    TimeUnit.MILLISECONDS);
+            final long idleNanos = (gapNanos < 0 || gapNanos > maxOpenNanos)
+                    ? 0
+                    : (long) (2 * gapNanos);
+            return TimeUnit.MILLISECONDS.convert(lastAddedNanos + idleNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+
         @Override
         public synchronized void run() {
             try {
@@ -419,10 +451,18 @@ public class SendQueueBuffer {
                         config.getMaxBatchOpenMs() + 1;
                 long t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
                 while (open.get() && (t < deadlineMs)) {
+                    // requests added while waiting push the adaptive close
+                    // time back, so it is recomputed on every pass
+                    long closeMs = config.isAdaptive()
+                            ? Math.min(deadlineMs, adaptiveCloseMs())
+                            : deadlineMs;
                     t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (t >= closeMs) {
+                        break;
+                    }
 
                     // zero means "wait forever", can't have that.
-                    long toWait = Math.max(1, deadlineMs - t);
+                    long toWait = Math.max(1, closeMs - t);
                     wait(toWait);
                 }
 
@@ -458,6 +498,10 @@ public class SendQueueBuffer {
             OutboundBatchTask<SendMessageRequest, SendMessageResult> {
         int batchSizeBytes = 0;
 
+        SendMessageBatchTask() {
+            super(sendMessageArrivals);
+        }
+
         @Override
         protected synchronized boolean isOkToAdd(SendMessageRequest request) {
             return (requests.size() < config.getMaxBatchSize())
@@ -527,6 +571,10 @@ public class SendQueueBuffer {
     private class DeleteMessageBatchTask extends
             OutboundBatchTask<DeleteMessageRequest, Void> {
 
+        DeleteMessageBatchTask() {
+            super(deleteMessageArrivals);
+        }
+
         @Override
         void process() {
             if (requests.isEmpty())
@@ -573,6 +621,10 @@ public class SendQueueBuffer {
     private class ChangeMessageVisibilityBatchTask extends
             OutboundBatchTask<ChangeMessageVisibilityRequest, Void> {
 
+        ChangeMessageVisibilityBatchTask() {
+            super(changeMessageVisibilityArrivals);
+        }
+
         @Override
         void process() {
             if (requests.isEmpty())